@@ -10,6 +10,9 @@ import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
 
@@ -53,4 +56,12 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    // Executor virtual thread cho các truy vấn I/O song song của feed (Mongo/MariaDB/Redis).
+    // Mỗi task một virtual thread, không cần pool/queue vì thread gần như miễn phí khi bị block I/O
+    @Bean(name = "feedQueryExecutor", destroyMethod = "close")
+    public ExecutorService feedQueryExecutor() {
+        ThreadFactory factory = Thread.ofVirtual().name("Feed-Query-", 0).factory();
+        return Executors.newThreadPerTaskExecutor(factory);
+    }
 }
@@ -61,6 +61,7 @@ public class MongoIndexConfig {
 
             // Posts - lastActivityAt index DESC
             createIndex("posts", "lastActivityAt", Sort.Direction.DESC);
+            createPostActivityIdIndex();
             createMessageConversationCreatedAtIndex();
             createMessageClientMessageIdUniqueIndex();
 
@@ -135,6 +136,20 @@ public class MongoIndexConfig {
         }
     }
 
+    // Keyset (lastActivityAt, _id) cho đối soát stats incremental (PostStatsReconciliationService)
+    private void createPostActivityIdIndex() {
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps("posts");
+            Document keys = new Document()
+                    .append("lastActivityAt", 1)
+                    .append("_id", 1);
+            indexOps.createIndex(new CompoundIndexDefinition(keys).named("activity_id_idx"));
+            log.info("Created lastActivityAt/_id index for posts");
+        } catch (Exception e) {
+            log.warn("Failed to create lastActivityAt/_id index for posts: {}", e.getMessage());
+        }
+    }
+
     private void createMessageConversationCreatedAtIndex() {
         try {
             IndexOperations indexOps = mongoTemplate.indexOps("messages");
@@ -16,7 +16,6 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
-import org.springframework.data.redis.listener.adapter.MessageListenerAdapter;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -36,6 +35,10 @@ public class RedisPubSubConfig {
     public static final String POST_CHANNEL = "post_realtime_channel";
     public static final String COMMENT_CHANNEL = "comment_realtime_channel";
     public static final String REACT_CHANNEL = "react_realtime_channel";
+    // Id user cần xóa cache danh sách bạn bè (SocialGraphServiceImpl tự đăng ký listener)
+    public static final String SOCIAL_GRAPH_CHANNEL = "social_graph_invalidate_channel";
+    // Id user vừa đổi thông tin hiển thị (UserSummaryLoaderImpl tự đăng ký listener)
+    public static final String USER_SUMMARY_CHANNEL = "user_summary_invalidate_channel";
 
     // 1. Tạo một Mapper SẠCH: KHÔNG bật activateDefaultTyping
     @Bean
@@ -58,24 +61,16 @@ public class RedisPubSubConfig {
         return template;
     }
 
-    // 3. Adapter SẠCH để Subscriber nhận JSON thuần túy
+    // 3. Subscriber tự đọc byte[] (streaming) nên đăng ký trực tiếp, không qua MessageListenerAdapter
     @Bean
-    public MessageListenerAdapter listenerAdapter(RedisChatSubscriber subscriber, ObjectMapper pubSubObjectMapper) {
-        MessageListenerAdapter adapter = new MessageListenerAdapter(subscriber, "onMessageReceived");
-        Jackson2JsonRedisSerializer<Object> serializer = new Jackson2JsonRedisSerializer<>(pubSubObjectMapper, Object.class);
-        adapter.setSerializer(serializer);
-        return adapter;
-    }
-
-    @Bean
-    public RedisMessageListenerContainer redisContainer(RedisConnectionFactory connectionFactory, MessageListenerAdapter listenerAdapter) {
+    public RedisMessageListenerContainer redisContainer(RedisConnectionFactory connectionFactory, RedisChatSubscriber subscriber) {
         RedisMessageListenerContainer container = new RedisMessageListenerContainer();
         container.setConnectionFactory(connectionFactory);
-        container.addMessageListener(listenerAdapter, new ChannelTopic(CHAT_CHANNEL));
-        container.addMessageListener(listenerAdapter, new ChannelTopic(NOTIFICATION_CHANNEL));
-        container.addMessageListener(listenerAdapter, new ChannelTopic(POST_CHANNEL));
-        container.addMessageListener(listenerAdapter, new ChannelTopic(COMMENT_CHANNEL));
-        container.addMessageListener(listenerAdapter, new ChannelTopic(REACT_CHANNEL));
+        container.addMessageListener(subscriber, new ChannelTopic(CHAT_CHANNEL));
+        container.addMessageListener(subscriber, new ChannelTopic(NOTIFICATION_CHANNEL));
+        container.addMessageListener(subscriber, new ChannelTopic(POST_CHANNEL));
+        container.addMessageListener(subscriber, new ChannelTopic(COMMENT_CHANNEL));
+        container.addMessageListener(subscriber, new ChannelTopic(REACT_CHANNEL));
         return container;
     }
 }
@@ -0,0 +1,121 @@
+/*
+ * @ (#) WebSocketBrokerProperties.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * @description: Cấu hình STOMP broker và transport WebSocket (app.websocket.*)
+ *   - mode=simple: broker trong JVM như trước, Redis pub/sub phát mọi sự kiện tới mọi node
+ *   - mode=relay: chuyển tiếp tới broker STOMP ngoài (RabbitMQ STOMP plugin, ActiveMQ/Artemis),
+ *     broker tự fan-out giữa các node nên sự kiện chỉ cần xử lý ở node phát ra
+ *   - inbound/outbound/broker: executor của từng channel (pool thread thường, virtual thread, đồng bộ)
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.websocket")
+public class WebSocketBrokerProperties {
+
+    public enum Mode { SIMPLE, RELAY }
+
+    public enum ExecutorStrategy {
+        // ThreadPoolExecutor có hàng đợi giới hạn
+        POOL,
+        // Mỗi frame 1 virtual thread, giới hạn số frame đang xử lý bằng queueCapacity
+        VIRTUAL,
+        // Chạy luôn trên thread gửi (mặc định của Spring cho broker channel)
+        SYNC
+    }
+
+    private Mode mode = Mode.SIMPLE;
+    private Relay relay = new Relay();
+    private Transport transport = new Transport();
+    // Chỉ typing được bỏ khi quá tải: client gửi lại liên tục và mất 1 frame không ảnh hưởng gì.
+    // Heartbeat presence không nằm ở đây: bỏ vài nhịp liên tiếp lúc quá tải sẽ làm session hết hạn và user bị báo offline
+    private ChannelPool inbound = ChannelPool.of(ExecutorStrategy.POOL, "/app/chat/*/typing");
+    private ChannelPool outbound = ChannelPool.of(ExecutorStrategy.POOL);
+    private ChannelPool broker = ChannelPool.of(ExecutorStrategy.SYNC);
+
+    public boolean isRelay() {
+        return mode == Mode.RELAY;
+    }
+
+    @Getter
+    @Setter
+    public static class Relay {
+        private String host = "localhost";
+        private int port = 61613;
+        private String virtualHost;
+        // Tài khoản cho các kết nối thay mặt client
+        private String clientLogin = "guest";
+        private String clientPasscode = "guest";
+        // Tài khoản cho kết nối "system" dùng chung để backend gửi message
+        private String systemLogin = "guest";
+        private String systemPasscode = "guest";
+        private Duration systemHeartbeatSendInterval = Duration.ofSeconds(10);
+        private Duration systemHeartbeatReceiveInterval = Duration.ofSeconds(10);
+        // Node nhận SUBSCRIBE /user/... của user không có session local sẽ broadcast qua destination này
+        private String userDestinationBroadcast = "/topic/unresolved-user-destination";
+        // Các node chia sẻ SimpUserRegistry qua destination này
+        private String userRegistryBroadcast = "/topic/simp-user-registry";
+    }
+
+    @Getter
+    @Setter
+    public static class Transport {
+        // Tổng dữ liệu chờ gửi cho 1 session; vượt ngưỡng (client chậm) thì session bị đóng
+        private int sendBufferSizeLimit = 512 * 1024;
+        // Thời gian tối đa cho 1 lần gửi tới 1 session
+        private Duration sendTimeLimit = Duration.ofSeconds(15);
+        // Kích thước tối đa 1 frame STOMP từ client
+        private int messageSizeLimit = 64 * 1024;
+        // Client phải gửi CONNECT trong khoảng này sau khi mở WebSocket
+        private Duration timeToFirstMessage = Duration.ofSeconds(60);
+    }
+
+    @Getter
+    @Setter
+    public static class ChannelPool {
+        private ExecutorStrategy strategy = ExecutorStrategy.POOL;
+        // <= 0 -> theo số CPU (core = 2 x CPU, max = 8 x CPU)
+        private int corePoolSize = 0;
+        private int maxPoolSize = 0;
+        // Hàng đợi có giới hạn để khi quá tải pool mở thêm thread tới maxPoolSize thay vì xếp hàng vô hạn
+        private int queueCapacity = 2000;
+        private int keepAliveSeconds = 60;
+        // Số frame đang chờ/chạy từ mức này trở lên thì bỏ frame có destination thuộc dropDestinations
+        private int dropDepth = 200;
+        // Mẫu AntPath của destination được phép bỏ khi quá tải, frame khác không bao giờ bị bỏ
+        private List<String> dropDestinations = new ArrayList<>();
+        // Giữ thứ tự frame trong từng session (inbound: setPreserveReceiveOrder, outbound: setPreservePublishOrder)
+        private boolean preserveOrder = false;
+
+        static ChannelPool of(ExecutorStrategy strategy, String... dropDestinations) {
+            ChannelPool pool = new ChannelPool();
+            pool.setStrategy(strategy);
+            pool.setDropDestinations(new ArrayList<>(List.of(dropDestinations)));
+            return pool;
+        }
+
+        public int resolveCorePoolSize() {
+            return corePoolSize > 0 ? corePoolSize : Runtime.getRuntime().availableProcessors() * 2;
+        }
+
+        public int resolveMaxPoolSize() {
+            return Math.max(resolveCorePoolSize(),
+                    maxPoolSize > 0 ? maxPoolSize : Runtime.getRuntime().availableProcessors() * 8);
+        }
+    }
+}
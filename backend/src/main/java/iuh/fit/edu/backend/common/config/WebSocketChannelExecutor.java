@@ -0,0 +1,160 @@
+/*
+ * @ (#) WebSocketChannelExecutor.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.config;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * @description
+ * Executor của 1 channel STOMP (clientInbound, clientOutbound, broker) kèm số liệu hàng đợi và độ trễ.
+ *   - POOL: ThreadPoolExecutor, hàng đợi đầy -> thread gửi tự chạy frame (không mất frame)
+ *   - VIRTUAL: mỗi frame 1 virtual thread, quá queueCapacity frame đang xử lý -> thread gửi tự chạy
+ *   - SYNC: chạy luôn trên thread gửi, chỉ đo số liệu
+ * Đồng thời là ChannelInterceptor: khi số frame đang chờ/chạy >= dropDepth, frame có destination tạm thời
+ * (typing, heartbeat) bị bỏ ngay ở preSend. Bỏ ở preSend (send trả false) thay vì trong execute()
+ * để không làm kẹt hàng đợi giữ thứ tự theo session của Spring.
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+public class WebSocketChannelExecutor implements Executor, ChannelInterceptor {
+
+    public record Stats(String channel, String strategy, int inFlight, int active, long completed,
+                        long dropped, long callerRuns, double avgWaitMs, double maxWaitMs,
+                        double avgHandleMs, double maxHandleMs) {}
+
+    private final String name;
+    private final WebSocketBrokerProperties.ExecutorStrategy strategy;
+    // null với SYNC
+    private final ExecutorService delegate;
+    private final int maxInFlight;
+    private final int dropDepth;
+    private final List<String> dropDestinations;
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+
+    // Frame đã nhận nhưng chưa xử lý xong (đang chờ + đang chạy)
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder handleNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator maxHandleNanos = new LongAccumulator(Math::max, 0);
+
+    public WebSocketChannelExecutor(String name, WebSocketBrokerProperties.ChannelPool pool) {
+        this.name = name;
+        this.strategy = pool.getStrategy();
+        this.dropDepth = pool.getDropDepth();
+        this.dropDestinations = List.copyOf(pool.getDropDestinations());
+        this.delegate = switch (strategy) {
+            case POOL -> new ThreadPoolExecutor(
+                    pool.resolveCorePoolSize(), pool.resolveMaxPoolSize(),
+                    pool.getKeepAliveSeconds(), TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(pool.getQueueCapacity()),
+                    Thread.ofPlatform().name("ws-" + name + "-", 0).daemon(true).factory(),
+                    new ThreadPoolExecutor.AbortPolicy());
+            case VIRTUAL -> Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ws-" + name + "-vt-", 0).factory());
+            case SYNC -> null;
+        };
+        // POOL tự giới hạn bằng hàng đợi, VIRTUAL cần giới hạn ở đây để burst không tạo vô hạn thread
+        this.maxInFlight = strategy == WebSocketBrokerProperties.ExecutorStrategy.VIRTUAL
+                ? pool.getQueueCapacity()
+                : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        long submittedAt = System.nanoTime();
+        if (inFlight.incrementAndGet() > maxInFlight || delegate == null) {
+            runOnCaller(task, submittedAt);
+            return;
+        }
+        try {
+            delegate.execute(() -> run(task, submittedAt));
+        } catch (RejectedExecutionException e) {
+            // Hàng đợi đầy hoặc đang shutdown: thread gửi tự chạy để không mất frame và tạo back-pressure
+            runOnCaller(task, submittedAt);
+        }
+    }
+
+    private void runOnCaller(Runnable task, long submittedAt) {
+        if (delegate != null) {
+            callerRuns.increment();
+        }
+        run(task, submittedAt);
+    }
+
+    private void run(Runnable task, long submittedAt) {
+        long startedAt = System.nanoTime();
+        long waited = startedAt - submittedAt;
+        waitNanos.add(waited);
+        maxWaitNanos.accumulate(waited);
+        active.incrementAndGet();
+        try {
+            task.run();
+        } finally {
+            active.decrementAndGet();
+            inFlight.decrementAndGet();
+            long took = System.nanoTime() - startedAt;
+            handleNanos.add(took);
+            maxHandleNanos.accumulate(took);
+            completed.increment();
+        }
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        if (dropDestinations.isEmpty() || inFlight.get() < dropDepth) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) {
+            return message;
+        }
+        for (String pattern : dropDestinations) {
+            if (pathMatcher.match(pattern, destination)) {
+                dropped.increment();
+                return null;
+            }
+        }
+        return message;
+    }
+
+    public Stats getStats() {
+        long done = completed.sum();
+        return new Stats(name, strategy.name(), inFlight.get(), active.get(), done,
+                dropped.sum(), callerRuns.sum(),
+                done > 0 ? toMillis(waitNanos.sum()) / done : 0, toMillis(maxWaitNanos.get()),
+                done > 0 ? toMillis(handleNanos.sum()) / done : 0, toMillis(maxHandleNanos.get()));
+    }
+
+    public void shutdown() {
+        if (delegate != null) {
+            delegate.shutdown();
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
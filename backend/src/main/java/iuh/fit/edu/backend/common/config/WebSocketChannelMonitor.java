@@ -0,0 +1,45 @@
+/*
+ * @ (#) WebSocketChannelMonitor.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * @description
+ * Giữ executor của các channel STOMP do WebSocketConfig tạo để đọc số liệu và shutdown khi tắt server
+ * (Spring không quản lý vòng đời executor truyền vào ChannelRegistration.executor()).
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+@Component
+public class WebSocketChannelMonitor {
+
+    private final Map<String, WebSocketChannelExecutor> executors = new ConcurrentHashMap<>();
+
+    public WebSocketChannelExecutor create(String channel, WebSocketBrokerProperties.ChannelPool pool) {
+        WebSocketChannelExecutor executor = new WebSocketChannelExecutor(channel, pool);
+        WebSocketChannelExecutor previous = executors.put(channel, executor);
+        if (previous != null) {
+            previous.shutdown();
+        }
+        return executor;
+    }
+
+    public List<WebSocketChannelExecutor.Stats> getStats() {
+        return executors.values().stream()
+                .map(WebSocketChannelExecutor::getStats)
+                .toList();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executors.values().forEach(WebSocketChannelExecutor::shutdown);
+    }
+}
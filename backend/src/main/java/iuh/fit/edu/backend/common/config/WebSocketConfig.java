@@ -10,6 +10,7 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.StompBrokerRelayRegistration;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.messaging.support.ChannelInterceptor;
@@ -30,6 +31,8 @@ import org.springframework.web.socket.config.annotation.*;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+    private final WebSocketBrokerProperties brokerProperties;
+    private final WebSocketChannelMonitor channelMonitor;
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
@@ -41,13 +44,46 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Raw WebSocket endpoint for React Native
         registry.addEndpoint("/ws-native")
                 .setAllowedOriginPatterns("*");
+
+        // Frame của cùng 1 session được xử lý tuần tự theo thứ tự nhận (tắt mặc định để không giảm song song)
+        registry.setPreserveReceiveOrder(brokerProperties.getInbound().isPreserveOrder());
     }
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
-        registry.enableSimpleBroker("/topic", "/queue");
         registry.setUserDestinationPrefix("/user");
+        registry.setPreservePublishOrder(brokerProperties.getOutbound().isPreserveOrder());
+        configureChannel(registry.configureBrokerChannel(), "broker", brokerProperties.getBroker());
+        if (!brokerProperties.isRelay()) {
+            registry.enableSimpleBroker("/topic", "/queue");
+            return;
+        }
+        // Broker ngoài giữ subscription và fan-out giữa các node
+        WebSocketBrokerProperties.Relay relay = brokerProperties.getRelay();
+        StompBrokerRelayRegistration registration = registry.enableStompBrokerRelay("/topic", "/queue")
+                .setRelayHost(relay.getHost())
+                .setRelayPort(relay.getPort())
+                .setClientLogin(relay.getClientLogin())
+                .setClientPasscode(relay.getClientPasscode())
+                .setSystemLogin(relay.getSystemLogin())
+                .setSystemPasscode(relay.getSystemPasscode())
+                .setSystemHeartbeatSendInterval(relay.getSystemHeartbeatSendInterval().toMillis())
+                .setSystemHeartbeatReceiveInterval(relay.getSystemHeartbeatReceiveInterval().toMillis())
+                .setUserDestinationBroadcast(relay.getUserDestinationBroadcast())
+                .setUserRegistryBroadcast(relay.getUserRegistryBroadcast());
+        if (relay.getVirtualHost() != null) {
+            registration.setVirtualHost(relay.getVirtualHost());
+        }
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        WebSocketBrokerProperties.Transport transport = brokerProperties.getTransport();
+        registration.setSendBufferSizeLimit(transport.getSendBufferSizeLimit())
+                .setSendTimeLimit((int) transport.getSendTimeLimit().toMillis())
+                .setMessageSizeLimit(transport.getMessageSizeLimit())
+                .setTimeToFirstMessage((int) transport.getTimeToFirstMessage().toMillis());
     }
 
     @Override
@@ -55,6 +91,19 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         // Đăng ký interceptor có sẵn để gắn Principal cho STOMP session.
         // Giữ nguyên quy ước hiện tại: principal.getName() là phone từ header "login".
         registration.interceptors(webSocketAuthInterceptor);
+        configureChannel(registration, "inbound", brokerProperties.getInbound());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        configureChannel(registration, "outbound", brokerProperties.getOutbound());
+    }
+
+    // Executor vừa chạy frame vừa là interceptor bỏ frame tạm thời khi quá tải
+    private void configureChannel(ChannelRegistration registration, String channel,
+                                  WebSocketBrokerProperties.ChannelPool pool) {
+        WebSocketChannelExecutor executor = channelMonitor.create(channel, pool);
+        registration.executor(executor).interceptors(executor);
     }
     
 //    @Override
@@ -1,30 +1,44 @@
 package iuh.fit.edu.backend.common.event.payload;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 import lombok.Getter;
 
 import java.util.Set;
 
 @Getter
+// Dữ liệu định tuyến luôn đứng trước payload để subscriber quyết định bỏ qua mà không cần đọc payload
+@JsonPropertyOrder({"targetMemberIds", "domainEventType", "conversationId", "payload"})
 public class RedisEnvelope {
     // Dữ liệu Định tuyến (Để Server biết gửi cho ai)
     private final Set<Long> targetMemberIds;
 
     private final DomainEventType domainEventType;
+
+    // Conversation của sự kiện chỉ gửi tới /topic/conversation/{id}; node không có ai đăng ký sẽ bỏ qua
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final Long conversationId;
     
     // Nội dung lõi (Các Event thuần túy)
     private final Object payload;
 
+    public RedisEnvelope(Set<Long> targetMemberIds, DomainEventType domainEventType, Object payload) {
+        this(targetMemberIds, domainEventType, null, payload);
+    }
+
     // Đây là class DUY NHẤT cần các Annotation lằng nhằng của Jackson
     @JsonCreator
     public RedisEnvelope(
             @JsonProperty("targetMemberIds") Set<Long> targetMemberIds,
             @JsonProperty("domainEventType") DomainEventType domainEventType,
+            @JsonProperty("conversationId") Long conversationId,
             @JsonProperty("payload") Object payload) {
         this.targetMemberIds = targetMemberIds;
         this.domainEventType = domainEventType;
+        this.conversationId = conversationId;
         this.payload = payload;
     }
-}
\ No newline at end of file
+}
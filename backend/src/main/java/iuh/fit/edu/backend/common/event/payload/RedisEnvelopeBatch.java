@@ -0,0 +1,24 @@
+package iuh.fit.edu.backend.common.event.payload;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+import java.util.List;
+
+/*
+ * @description
+ * Gói nhiều RedisEnvelope vào 1 lần publish (RedisEnvelopeBatcher gom theo từng channel).
+ * Subscriber nhận ra batch qua field "batch" và tách từng envelope ra xử lý như bình thường.
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+@Getter
+public class RedisEnvelopeBatch {
+    private final List<RedisEnvelope> batch;
+
+    @JsonCreator
+    public RedisEnvelopeBatch(@JsonProperty("batch") List<RedisEnvelope> batch) {
+        this.batch = batch;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * @ (#) RedisEnvelopeBatcher.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.event.publisher;
+
+import iuh.fit.edu.backend.common.config.WebSocketBrokerProperties;
+import iuh.fit.edu.backend.common.event.payload.RedisEnvelope;
+import iuh.fit.edu.backend.common.event.payload.RedisEnvelopeBatch;
+import iuh.fit.edu.backend.common.event.subscriber.RedisChatSubscriber;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * @description
+ * Gom các RedisEnvelope theo từng channel và publish thành 1 RedisEnvelopeBatch
+ * mỗi flushIntervalMs hoặc khi đủ maxBatchSize envelope.
+ *   - Giữ đúng thứ tự phát sinh trong từng channel
+ *   - Envelope có coalesceKey (vd: typing theo conversation + user) chỉ giữ bản mới nhất trong 1 cửa sổ
+ *   - Batch chỉ có 1 envelope được publish dạng envelope thường (tương thích subscriber cũ)
+ * Tắt bằng app.realtime.batch.enabled=false -> publish ngay như trước.
+ * Chế độ broker relay (app.websocket.mode=relay): batch không lên Redis mà được xử lý ngay trên node này,
+ * broker ngoài sẽ fan-out tới session ở các node khác.
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+@Component
+@Slf4j
+public class RedisEnvelopeBatcher {
+
+    private final RedisTemplate<String, Object> pubSubRedisTemplate;
+    private final WebSocketBrokerProperties brokerProperties;
+    // Lấy lazy: subscriber -> handlers -> ... không được phụ thuộc ngược vào batcher lúc khởi tạo
+    private final ObjectProvider<RedisChatSubscriber> subscriberProvider;
+    private final Map<String, ChannelBuffer> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private ScheduledExecutorService flusher;
+
+    @Value("${app.realtime.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.realtime.batch.flush-interval-ms:5}")
+    private long flushIntervalMs;
+
+    @Value("${app.realtime.batch.max-batch-size:100}")
+    private int maxBatchSize;
+
+    public RedisEnvelopeBatcher(@Qualifier("pubSubRedisTemplate") RedisTemplate<String, Object> pubSubRedisTemplate,
+                                WebSocketBrokerProperties brokerProperties,
+                                ObjectProvider<RedisChatSubscriber> subscriberProvider) {
+        this.pubSubRedisTemplate = pubSubRedisTemplate;
+        this.brokerProperties = brokerProperties;
+        this.subscriberProvider = subscriberProvider;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        // Thread riêng, không dùng chung TaskScheduler mặc định (1 thread) với các job @Scheduled chạy lâu
+        flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("RedisEnvelope-Flusher")
+                .daemon(true)
+                .factory());
+        flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Đẩy nốt phần còn lại để không mất sự kiện khi tắt server
+        flushAll();
+    }
+
+    public void publish(String channel, RedisEnvelope envelope) {
+        publish(channel, envelope, null);
+    }
+
+    /**
+     * Publish ngay không qua cửa sổ gộp (sự kiện không cần coalesce: post, comment, page, notification...).
+     * Vẫn đi qua đây để chế độ broker relay xử lý tại node phát thay vì fan-out Redis.
+     */
+    public void publishNow(String channel, RedisEnvelope envelope) {
+        send(channel, List.of(envelope));
+    }
+
+    /**
+     * @param coalesceKey khác null -> envelope mới thay thế envelope cùng key còn nằm trong buffer
+     */
+    public void publish(String channel, RedisEnvelope envelope, String coalesceKey) {
+        if (!enabled) {
+            send(channel, List.of(envelope));
+            return;
+        }
+        ChannelBuffer buffer = buffers.computeIfAbsent(channel, ignored -> new ChannelBuffer());
+        boolean full;
+        synchronized (buffer) {
+            Object key = coalesceKey != null ? coalesceKey : sequence.incrementAndGet();
+            // remove + put để bản mới nhất nằm đúng vị trí thời gian của nó
+            buffer.pending.remove(key);
+            buffer.pending.put(key, envelope);
+            full = buffer.pending.size() == maxBatchSize;
+        }
+        if (full && flusher.isShutdown()) {
+            flush(channel, buffer);
+        } else if (full) {
+            // Mọi lần gửi đều chạy trên thread flusher duy nhất -> giữ đúng thứ tự giữa các batch
+            flusher.execute(() -> flush(channel, buffer));
+        }
+    }
+
+    private void flushAll() {
+        buffers.forEach(this::flush);
+    }
+
+    private void flush(String channel, ChannelBuffer buffer) {
+        List<RedisEnvelope> drained;
+        synchronized (buffer) {
+            drained = buffer.pending.isEmpty() ? null : buffer.drain();
+        }
+        if (drained != null) {
+            send(channel, drained);
+        }
+    }
+
+    private void send(String channel, List<RedisEnvelope> envelopes) {
+        try {
+            if (brokerProperties.isRelay()) {
+                subscriberProvider.getObject().dispatchLocal(envelopes);
+            } else if (envelopes.size() == 1) {
+                pubSubRedisTemplate.convertAndSend(channel, envelopes.getFirst());
+            } else {
+                pubSubRedisTemplate.convertAndSend(channel, new RedisEnvelopeBatch(envelopes));
+            }
+        } catch (Exception e) {
+            log.error("Failed to publish {} envelopes to {}: {}", envelopes.size(), channel, e.getMessage());
+        }
+    }
+
+    private static final class ChannelBuffer {
+        private final LinkedHashMap<Object, RedisEnvelope> pending = new LinkedHashMap<>();
+
+        private List<RedisEnvelope> drain() {
+            List<RedisEnvelope> drained = new ArrayList<>(pending.values());
+            pending.clear();
+            return drained;
+        }
+    }
+}
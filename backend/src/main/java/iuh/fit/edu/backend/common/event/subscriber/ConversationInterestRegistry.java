@@ -0,0 +1,153 @@
+/*
+ * @ (#) ConversationInterestRegistry.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.event.subscriber;
+
+import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+ * @description
+ * Theo dõi các STOMP session trên node hiện tại đang đăng ký /topic/conversation/{id}.
+ *   - Sự kiện của conversation được publish lên channel shard: chat_realtime_channel:{id mod shards}
+ *   - Node chỉ SUBSCRIBE shard khi có ít nhất 1 session local quan tâm tới conversation thuộc shard đó,
+ *     và UNSUBSCRIBE khi không còn ai
+ *   - Trong 1 shard, RedisChatSubscriber bỏ qua envelope của conversation không có ai đăng ký local
+ * app.realtime.conversation-shards=0 -> dùng chung chat_realtime_channel như trước (vẫn lọc local).
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConversationInterestRegistry {
+
+    private static final Pattern CONVERSATION_TOPIC = Pattern.compile("^/topic/conversation/(\\d+)$");
+
+    // Lấy lazy để tránh vòng phụ thuộc: container -> subscriber -> registry
+    private final ObjectProvider<RedisMessageListenerContainer> containerProvider;
+    private final ObjectProvider<RedisChatSubscriber> subscriberProvider;
+
+    // conversationId -> số subscription local
+    private final Map<Long, Integer> localInterest = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> conversationId)
+    private final Map<String, Map<String, Long>> sessionSubscriptions = new ConcurrentHashMap<>();
+    // shard -> số conversation local đang quan tâm (chỉ đọc/ghi trong synchronized)
+    private final Map<Integer, Integer> shardInterest = new HashMap<>();
+
+    @Value("${app.realtime.conversation-shards:16}")
+    private int shards;
+
+    public boolean isSharded() {
+        return shards > 0;
+    }
+
+    public String channelFor(Long conversationId) {
+        if (!isSharded() || conversationId == null) {
+            return RedisPubSubConfig.CHAT_CHANNEL;
+        }
+        return RedisPubSubConfig.CHAT_CHANNEL + ":" + shardOf(conversationId);
+    }
+
+    public boolean hasLocalInterest(Long conversationId) {
+        return localInterest.containsKey(conversationId);
+    }
+
+    @EventListener
+    public void handleSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = headers.getDestination();
+        if (destination == null || headers.getSessionId() == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        Matcher matcher = CONVERSATION_TOPIC.matcher(destination);
+        if (!matcher.matches()) {
+            return;
+        }
+        Long conversationId = Long.valueOf(matcher.group(1));
+        Long previous = sessionSubscriptions
+                .computeIfAbsent(headers.getSessionId(), ignored -> new ConcurrentHashMap<>())
+                .put(headers.getSubscriptionId(), conversationId);
+        if (previous != null) {
+            removeInterest(previous);
+        }
+        addInterest(conversationId);
+    }
+
+    @EventListener
+    public void handleUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        Map<String, Long> subscriptions = headers.getSessionId() != null
+                ? sessionSubscriptions.get(headers.getSessionId())
+                : null;
+        if (subscriptions == null || headers.getSubscriptionId() == null) {
+            return;
+        }
+        Long conversationId = subscriptions.remove(headers.getSubscriptionId());
+        if (conversationId != null) {
+            removeInterest(conversationId);
+        }
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        Map<String, Long> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::removeInterest);
+        }
+    }
+
+    private synchronized void addInterest(Long conversationId) {
+        if (localInterest.merge(conversationId, 1, Integer::sum) > 1 || !isSharded()) {
+            return;
+        }
+        int shard = shardOf(conversationId);
+        if (shardInterest.merge(shard, 1, Integer::sum) == 1) {
+            containerProvider.getObject().addMessageListener(subscriberProvider.getObject(), new ChannelTopic(channelFor(conversationId)));
+            log.info("Subscribed to realtime shard {}", shard);
+        }
+    }
+
+    private synchronized void removeInterest(Long conversationId) {
+        Integer count = localInterest.get(conversationId);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            localInterest.put(conversationId, count - 1);
+            return;
+        }
+        localInterest.remove(conversationId);
+        if (!isSharded()) {
+            return;
+        }
+        int shard = shardOf(conversationId);
+        Integer shardRemaining = shardInterest.computeIfPresent(shard, (id, shardCount) -> shardCount > 1 ? shardCount - 1 : null);
+        if (shardRemaining == null) {
+            containerProvider.getObject().removeMessageListener(subscriberProvider.getObject(), new ChannelTopic(channelFor(conversationId)));
+            log.info("Unsubscribed from realtime shard {}", shard);
+        }
+    }
+
+    private int shardOf(Long conversationId) {
+        return (int) Math.floorMod(conversationId, (long) shards);
+    }
+}
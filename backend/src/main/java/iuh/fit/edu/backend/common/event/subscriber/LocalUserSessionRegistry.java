@@ -0,0 +1,73 @@
+/*
+ * @ (#) LocalUserSessionRegistry.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.event.subscriber;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * @description
+ * Theo dõi các user đang có STOMP session trên node hiện tại (nhiều tab/thiết bị -> đếm số session)
+ * và principal name của user (phone từ header "login") để tra session qua SimpUserRegistry.
+ *   - register() được gọi khi SessionConnectedEvent đã resolve được userId (UserStatusEventPublisher)
+ *   - SessionDisconnectEvent gỡ session tương ứng
+ * Handler nhận envelope có danh sách người nhận dùng registry để chỉ gửi cho user đang kết nối ở node này,
+ * thay vì convertAndSend cho mọi người nhận trên mọi node.
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+@Component
+public class LocalUserSessionRegistry {
+
+    // sessionId -> userId
+    private final Map<String, Long> sessionUsers = new ConcurrentHashMap<>();
+    // userId -> principal name + số session local
+    private final Map<Long, LocalUser> userSessions = new ConcurrentHashMap<>();
+
+    private record LocalUser(String principalName, int sessions) {}
+
+    public void register(String sessionId, Long userId, String principalName) {
+        if (sessionId == null || userId == null) {
+            return;
+        }
+        Long previous = sessionUsers.put(sessionId, userId);
+        if (userId.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            decrement(previous);
+        }
+        userSessions.merge(userId, new LocalUser(principalName, 1),
+                (current, added) -> new LocalUser(added.principalName(), current.sessions() + 1));
+    }
+
+    public boolean isConnectedLocally(Long userId) {
+        return userId != null && userSessions.containsKey(userId);
+    }
+
+    // null nếu user không có session nào trên node này
+    public String getPrincipalName(Long userId) {
+        LocalUser user = userId != null ? userSessions.get(userId) : null;
+        return user != null ? user.principalName() : null;
+    }
+
+    @EventListener
+    public void handleDisconnect(SessionDisconnectEvent event) {
+        Long userId = event.getSessionId() != null ? sessionUsers.remove(event.getSessionId()) : null;
+        if (userId != null) {
+            decrement(userId);
+        }
+    }
+
+    private void decrement(Long userId) {
+        userSessions.computeIfPresent(userId, (id, user) -> user.sessions() > 1
+                ? new LocalUser(user.principalName(), user.sessions() - 1)
+                : null);
+    }
+}
@@ -4,13 +4,21 @@
  */
 package iuh.fit.edu.backend.common.event.subscriber;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import iuh.fit.edu.backend.common.event.handler.RedisEventHandler;
+import iuh.fit.edu.backend.common.event.payload.RedisEnvelope;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -24,43 +32,138 @@ import java.util.stream.Collectors;
  * @version: 1.0
  */
 // Nơi nhận dữ liệu từ spring event và là trạm trung chuyển gửi dữ liệu đi
+// Đọc thẳng từ byte[] bằng streaming parser: lấy domainEventType trước rồi bind payload
+// vào đúng class của handler bằng ObjectReader cache sẵn, không dựng Map trung gian rồi convertValue lại
 @Component
 @Slf4j
-public class RedisChatSubscriber {
+public class RedisChatSubscriber implements MessageListener {
 
     private final Map<String, RedisEventHandler> handlerMap;
+    private final Map<String, ObjectReader> payloadReaders;
+    private final ObjectReader targetIdsReader;
     private final ObjectMapper pubSubObjectMapper;
+    private final ConversationInterestRegistry interestRegistry;
 
-    public RedisChatSubscriber(List<RedisEventHandler> handlers, @Qualifier("pubSubObjectMapper") ObjectMapper pubSubObjectMapper) {
+    public RedisChatSubscriber(List<RedisEventHandler> handlers,
+                               @Qualifier("pubSubObjectMapper") ObjectMapper pubSubObjectMapper,
+                               ConversationInterestRegistry interestRegistry) {
         this.pubSubObjectMapper = pubSubObjectMapper;
+        this.interestRegistry = interestRegistry;
         this.handlerMap = handlers.stream()
                 .collect(Collectors.toMap(RedisEventHandler::getSupportedEventType, Function.identity()));
+        this.payloadReaders = handlers.stream()
+                .collect(Collectors.toMap(RedisEventHandler::getSupportedEventType,
+                        handler -> pubSubObjectMapper.readerFor(handler.getSupportedClass())));
+        this.targetIdsReader = pubSubObjectMapper.readerFor(new TypeReference<Set<Long>>() {});
     }
 
-    public void onMessageReceived(Object incomingData) {
-        if (incomingData instanceof java.util.LinkedHashMap) {
-            Map<String, Object> mapPayload = (Map<String, Object>) incomingData;
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try (JsonParser parser = pubSubObjectMapper.getFactory().createParser(message.getBody())) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                readEnvelope(parser);
+            }
+        } catch (Exception e) {
+            log.error("Không đọc được sự kiện từ Redis: {}", e.getMessage());
+        }
+    }
 
-            String eventTypeStr = (String) mapPayload.get("domainEventType");
-            if (eventTypeStr == null) return;
+    /**
+     * Parser đang đứng ở START_OBJECT của 1 RedisEnvelope hoặc RedisEnvelopeBatch
+     */
+    private void readEnvelope(JsonParser parser) throws IOException {
+        String eventType = null;
+        Long conversationId = null;
+        Set<Long> targetIds = null;
+        Object event = null;
+        // Chỉ dùng khi payload đứng trước domainEventType (publisher luôn ghi type trước)
+        TokenBuffer bufferedPayload = null;
 
-            RedisEventHandler handler = handlerMap.get(eventTypeStr);
-            if (handler != null) {
-                Set<Long> targetIds = null;
-                if (mapPayload.get("targetMemberIds") != null) {
-                    targetIds = pubSubObjectMapper.convertValue(
-                            mapPayload.get("targetMemberIds"),
-                            new TypeReference<Set<Long>>() {}
-                    );
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken valueToken = parser.nextToken();
+            switch (field) {
+                case "batch" -> {
+                    // RedisEnvelopeBatch: xử lý từng envelope theo đúng thứ tự publish
+                    if (valueToken == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            readBatchItem(parser);
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                case "domainEventType" -> eventType = valueToken == JsonToken.VALUE_NULL ? null : parser.getText();
+                case "targetMemberIds" -> targetIds = valueToken == JsonToken.VALUE_NULL
+                        ? null
+                        : targetIdsReader.readValue(parser);
+                case "conversationId" -> conversationId = valueToken == JsonToken.VALUE_NULL ? null : parser.getLongValue();
+                case "payload" -> {
+                    ObjectReader reader = eventType != null ? payloadReaders.get(eventType) : null;
+                    if (conversationId != null && !interestRegistry.hasLocalInterest(conversationId)) {
+                        // Không có session nào trên node này đăng ký conversation -> không cần bind payload
+                        parser.skipChildren();
+                    } else if (reader != null) {
+                        event = valueToken == JsonToken.VALUE_NULL ? null : reader.readValue(parser);
+                    } else if (eventType == null) {
+                        bufferedPayload = TokenBuffer.asCopyOfValue(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
                 }
+                default -> parser.skipChildren();
+            }
+        }
 
-                Object rawPayload = mapPayload.get("payload");
-                Object realEvent = pubSubObjectMapper.convertValue(rawPayload, handler.getSupportedClass());
+        if (eventType == null || (conversationId != null && !interestRegistry.hasLocalInterest(conversationId))) {
+            return;
+        }
+        RedisEventHandler handler = handlerMap.get(eventType);
+        if (handler == null) {
+            log.warn("Không tìm thấy Handler cho Sự kiện: {}", eventType);
+            return;
+        }
+        if (bufferedPayload != null) {
+            try (JsonParser payloadParser = bufferedPayload.asParser(parser.getCodec())) {
+                payloadParser.nextToken();
+                event = payloadReaders.get(eventType).readValue(payloadParser);
+            }
+        }
+        handler.handle(event, targetIds);
+    }
 
-                handler.handle(realEvent, targetIds);
-            } else {
-                log.warn("Không tìm thấy Handler cho Sự kiện: {}", eventTypeStr);
+    /**
+     * Chế độ broker relay: node phát xử lý envelope ngay tại chỗ, không qua Redis.
+     * Broker ngoài giữ subscription của mọi node nên không lọc theo interest local.
+     */
+    public void dispatchLocal(List<RedisEnvelope> envelopes) {
+        for (RedisEnvelope envelope : envelopes) {
+            try {
+                String eventType = envelope.getDomainEventType() != null ? envelope.getDomainEventType().toString() : null;
+                RedisEventHandler handler = eventType != null ? handlerMap.get(eventType) : null;
+                if (handler == null) {
+                    log.warn("Không tìm thấy Handler cho Sự kiện: {}", eventType);
+                    continue;
+                }
+                Object payload = envelope.getPayload();
+                if (payload != null && !handler.getSupportedClass().isInstance(payload)) {
+                    payload = pubSubObjectMapper.convertValue(payload, handler.getSupportedClass());
+                }
+                handler.handle(payload, envelope.getTargetMemberIds());
+            } catch (Exception e) {
+                log.error("Lỗi xử lý envelope local: {}", e.getMessage());
             }
         }
     }
+
+    // Lỗi ở 1 envelope không làm mất các envelope còn lại trong batch
+    private void readBatchItem(JsonParser parser) throws IOException {
+        try {
+            readEnvelope(parser);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Lỗi xử lý envelope trong batch: {}", e.getMessage());
+        }
+    }
 }
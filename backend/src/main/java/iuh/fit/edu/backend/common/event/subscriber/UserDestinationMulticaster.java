@@ -0,0 +1,114 @@
+/*
+ * @ (#) UserDestinationMulticaster.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.event.subscriber;
+
+import iuh.fit.edu.backend.common.config.WebSocketBrokerProperties;
+import iuh.fit.edu.backend.modules.user.service.UserPresenceService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * @description
+ * Gửi 1 payload tới nhiều user: serialize đúng 1 lần thành Message dùng chung,
+ * rồi chỉ định tuyến tới các session đang kết nối ở node này.
+ *   - Kênh mới: client SUBSCRIBE /user/queue/{channel}; Spring dịch subscription đó thành /queue/{channel}-user{sessionId},
+ *     nên ở đây tra session của user qua SimpUserRegistry và gửi thẳng tới destination của từng session
+ *   - Kênh cũ /topic/user/{id}/{channel} chỉ được gửi (cùng payload đã serialize) khi app.realtime.legacy-user-topics=true.
+ *     Web và mobile đã subscribe /user/queue/{conversations,presence,notifications} khi kết nối có header login,
+ *     nên mặc định tắt; bật lại trong lúc còn app mobile bản cũ hoặc client kết nối không có header login,
+ *     rồi tắt khi các bản đó không còn được dùng
+ * Chế độ broker relay: sự kiện chỉ được xử lý ở node phát, nên session của user lấy từ presence (mọi node)
+ * thay vì SimpUserRegistry local; broker ngoài chuyển tới đúng node đang giữ session.
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+@Component
+@Slf4j
+public class UserDestinationMulticaster {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry simpUserRegistry;
+    private final LocalUserSessionRegistry localUserSessionRegistry;
+    private final WebSocketBrokerProperties brokerProperties;
+    private final UserPresenceService userPresenceService;
+
+    @Value("${app.realtime.legacy-user-topics:false}")
+    private boolean legacyUserTopics;
+
+    public UserDestinationMulticaster(SimpMessagingTemplate messagingTemplate,
+                                      SimpUserRegistry simpUserRegistry,
+                                      LocalUserSessionRegistry localUserSessionRegistry,
+                                      WebSocketBrokerProperties brokerProperties,
+                                      UserPresenceService userPresenceService) {
+        this.messagingTemplate = messagingTemplate;
+        this.simpUserRegistry = simpUserRegistry;
+        this.localUserSessionRegistry = localUserSessionRegistry;
+        this.brokerProperties = brokerProperties;
+        this.userPresenceService = userPresenceService;
+    }
+
+    /** true nếu mỗi node chỉ cần gửi cho session của chính nó (simple broker). */
+    public boolean isNodeLocalDelivery() {
+        return !brokerProperties.isRelay();
+    }
+
+    /**
+     * Gửi payload tới /user/queue/{channel} của từng user (và /topic/user/{id}/{channel} nếu bật kênh cũ).
+     * @return số session đã được gửi qua kênh /user/queue
+     */
+    public int sendToUsers(Collection<Long> userIds, String channel, Object payload) {
+        if (userIds == null || userIds.isEmpty() || payload == null) {
+            return 0;
+        }
+        Message<?> message = messagingTemplate.getMessageConverter().toMessage(payload, null);
+        if (message == null) {
+            log.warn("Không serialize được payload {} cho kênh {}", payload.getClass().getSimpleName(), channel);
+            return 0;
+        }
+
+        String queuePrefix = "/queue/" + channel + "-user";
+        // Relay: 1 round trip lấy session của cả nhóm người nhận trên mọi node
+        Map<Long, List<String>> clusterSessions = isNodeLocalDelivery()
+                ? Map.of()
+                : userPresenceService.getActiveSessionIds(userIds);
+        int delivered = 0;
+        for (Long userId : userIds) {
+            if (userId == null) {
+                continue;
+            }
+            // SimpMessagingTemplate.send chỉ thay header destination, payload byte[] được dùng lại
+            if (legacyUserTopics) {
+                messagingTemplate.send("/topic/user/" + userId + "/" + channel, message);
+            }
+            if (!isNodeLocalDelivery()) {
+                for (String sessionId : clusterSessions.getOrDefault(userId, List.of())) {
+                    messagingTemplate.send(queuePrefix + sessionId, message);
+                    delivered++;
+                }
+                continue;
+            }
+            String principalName = localUserSessionRegistry.getPrincipalName(userId);
+            SimpUser user = principalName != null ? simpUserRegistry.getUser(principalName) : null;
+            if (user == null) {
+                continue;
+            }
+            for (SimpSession session : user.getSessions()) {
+                messagingTemplate.send(queuePrefix + session.getId(), message);
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * @ (#) MongoQueryDeadline.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.util;
+
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/*
+ * @description
+ * Hạn chót (deadline) cho các truy vấn Mongo chạy trong 1 lượt call(), lưu theo thread;
+ * truy vấn bên trong lấy maxTime = thời gian còn lại qua applyTo/aggregationOptions.
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+public class MongoQueryDeadline {
+
+    private static final ThreadLocal<Long> DEADLINE_NANOS = new ThreadLocal<>();
+
+    private MongoQueryDeadline() {
+        // Ẩn constructor vì đây là class chứa static methods
+    }
+
+    /**
+     * Chạy query trong hạn timeout: các truy vấn Mongo bên trong gọi applyTo/aggregationOptions sẽ mang maxTime
+     * bằng thời gian còn lại, để server tự huỷ truy vấn chậm thay vì chạy tiếp sau khi future phía Java đã timeout.
+     */
+    public static <T> T call(Duration timeout, Supplier<T> query) {
+        Long previous = DEADLINE_NANOS.get();
+        DEADLINE_NANOS.set(System.nanoTime() + timeout.toNanos());
+        try {
+            return query.get();
+        } finally {
+            if (previous != null) {
+                DEADLINE_NANOS.set(previous);
+            } else {
+                DEADLINE_NANOS.remove();
+            }
+        }
+    }
+
+    /**
+     * Gắn maxTime vào query nếu thread hiện tại đang chạy trong call(), ngoài ra giữ nguyên.
+     */
+    public static Query applyTo(Query query) {
+        Duration remaining = remaining();
+        return remaining != null ? query.maxTime(remaining) : query;
+    }
+
+    /**
+     * AggregationOptions có maxTime nếu thread hiện tại đang chạy trong call(), ngoài ra là option mặc định.
+     */
+    public static AggregationOptions aggregationOptions() {
+        Duration remaining = remaining();
+        AggregationOptions.Builder builder = AggregationOptions.builder();
+        return remaining != null ? builder.maxTime(remaining).build() : builder.build();
+    }
+
+    private static Duration remaining() {
+        Long deadline = DEADLINE_NANOS.get();
+        if (deadline == null) {
+            return null;
+        }
+        // Hết hạn rồi vẫn để 1ms: server trả lỗi MaxTimeMSExpired ngay thay vì bỏ qua giới hạn
+        return Duration.ofNanos(Math.max(deadline - System.nanoTime(), 1_000_000));
+    }
+}
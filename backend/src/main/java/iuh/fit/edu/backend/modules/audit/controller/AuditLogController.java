@@ -8,6 +8,7 @@ import iuh.fit.edu.backend.common.dto.response.ApiResponse;
 import iuh.fit.edu.backend.modules.audit.entity.AuditLog;
 import iuh.fit.edu.backend.modules.audit.service.AuditLogService;
 import iuh.fit.edu.backend.modules.audit.service.AuditLogStream;
+import iuh.fit.edu.backend.modules.audit.service.AuditLogWriter;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -46,6 +47,12 @@ public class AuditLogController {
         return auditLogStream.subscribe();
     }
 
+    /** Số liệu hàng đợi ghi nhật ký để theo dõi back-pressure. */
+    @GetMapping("/pipeline-stats")
+    public ResponseEntity<ApiResponse<AuditLogWriter.Stats>> pipelineStats() {
+        return ResponseEntity.ok(ApiResponse.success(200, "Audit pipeline stats", auditLogService.getPipelineStats()));
+    }
+
     /** Xoá toàn bộ lịch sử nhật ký. */
     @DeleteMapping
     public ResponseEntity<ApiResponse<String>> clear() {
@@ -0,0 +1,333 @@
+/*
+ * @ (#) AuditLogWriter.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.audit.service;
+
+import iuh.fit.edu.backend.modules.audit.entity.AuditLog;
+import iuh.fit.edu.backend.modules.page.entity.Page;
+import iuh.fit.edu.backend.modules.page.repository.PageRepository;
+import iuh.fit.edu.backend.modules.user.dto.response.UserSummaryResponse;
+import iuh.fit.edu.backend.modules.user.service.UserSummaryLoader;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * @description
+ * Hàng đợi ghi nhật ký: request chỉ tốn 1 lần offer vào hàng đợi có giới hạn (không khóa),
+ * 1 thread riêng gom mỗi flushIntervalMs rồi:
+ *   - tra tên actor / đối tượng qua UserSummaryLoader (cache) và 1 findAllById cho Page
+ *   - INSERT cả lô bằng JDBC batch (IDENTITY làm Hibernate không batch được saveAll)
+ *   - đẩy các bản ghi đã có id qua SSE
+ * Hàng đợi đầy -> bỏ bản ghi và đếm vào dropped, không bao giờ chặn request.
+ * @author: Audit Log
+ * @version: 1.0
+ */
+@Component
+@Slf4j
+public class AuditLogWriter {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO audit_logs (timestamp, actor_type, actor_id, actor_name, action, description, category,
+                                    target_type, target_id, target_name, method, endpoint, status, status_code, meta)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    /** Dữ liệu thô của 1 request, phần tra cứu tên để thread ghi làm. */
+    public record Entry(OffsetDateTime timestamp, AuditLogService.ActionInfo info, String method, String path,
+                        int statusCode, String actorPhone, boolean fromAdminConsole, String errorMessage) {}
+
+    /** Số liệu back-pressure của hàng đợi. */
+    public record Stats(int queued, int capacity, long accepted, long dropped, long sampledOut,
+                        long written, long failed) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserSummaryLoader userSummaryLoader;
+    private final PageRepository pageRepository;
+    private final AuditLogStream auditLogStream;
+
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    // Giới hạn hàng đợi: giữ chỗ bằng CAS trước khi offer
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampledOut = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private long reportedDropped;
+    private ScheduledExecutorService drainer;
+
+    @Value("${app.audit.queue-capacity:10000}")
+    private int capacity;
+
+    @Value("${app.audit.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.audit.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          UserSummaryLoader userSummaryLoader,
+                          PageRepository pageRepository,
+                          AuditLogStream auditLogStream) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userSummaryLoader = userSummaryLoader;
+        this.pageRepository = pageRepository;
+        this.auditLogStream = auditLogStream;
+    }
+
+    @PostConstruct
+    void start() {
+        drainer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("AuditLog-Writer")
+                .daemon(true)
+                .factory());
+        drainer.scheduleWithFixedDelay(this::drain, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (drainer == null) {
+            return;
+        }
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Ghi nốt phần còn lại khi tắt server
+        drain();
+    }
+
+    /** Trả về false nếu hàng đợi đầy (bản ghi bị bỏ). */
+    public boolean offer(Entry entry) {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        queue.offer(entry);
+        accepted.incrementAndGet();
+        return true;
+    }
+
+    public void markSampledOut() {
+        sampledOut.incrementAndGet();
+    }
+
+    public Stats getStats() {
+        return new Stats(size.get(), capacity, accepted.get(), dropped.get(), sampledOut.get(),
+                written.get(), failed.get());
+    }
+
+    // Chỉ chạy trên thread AuditLog-Writer (và 1 lần lúc tắt sau khi thread đã dừng)
+    private void drain() {
+        try {
+            List<Entry> batch = new ArrayList<>(batchSize);
+            Entry entry;
+            while ((entry = queue.poll()) != null) {
+                size.decrementAndGet();
+                batch.add(entry);
+                if (batch.size() == batchSize) {
+                    write(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            reportDrops();
+        } catch (Exception e) {
+            log.error("Audit log drain failed: {}", e.getMessage());
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        List<AuditLog> logs = resolve(batch);
+        try {
+            insertBatch(logs);
+            written.addAndGet(logs.size());
+        } catch (Exception e) {
+            failed.addAndGet(logs.size());
+            log.error("Failed to write {} audit logs: {}", logs.size(), e.getMessage());
+            return;
+        }
+        // Đẩy realtime tới các trang quản trị đang mở
+        for (AuditLog auditLog : logs) {
+            auditLogStream.broadcast(auditLog);
+        }
+    }
+
+    private List<AuditLog> resolve(List<Entry> batch) {
+        // Tên đối tượng USER/PAGE: gom id của cả lô rồi tra 1 lần
+        Set<Long> userTargetIds = new HashSet<>();
+        Set<Long> pageTargetIds = new HashSet<>();
+        for (Entry entry : batch) {
+            Long targetId = numericTargetId(entry.info());
+            if (targetId == null) continue;
+            switch (entry.info().targetType().toUpperCase()) {
+                case "USER" -> userTargetIds.add(targetId);
+                case "PAGE" -> pageTargetIds.add(targetId);
+                default -> { }
+            }
+        }
+        Map<Long, UserSummaryResponse> userTargets = userSummaryLoader.loadAll(userTargetIds);
+        Map<Long, String> pageNames = new HashMap<>();
+        if (!pageTargetIds.isEmpty()) {
+            for (Page page : pageRepository.findAllById(pageTargetIds)) {
+                pageNames.put(page.getId(), page.getName());
+            }
+        }
+
+        Map<String, UserSummaryResponse> actors = new HashMap<>();
+        List<AuditLog> logs = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            AuditLogService.ActionInfo info = entry.info();
+            String actorPhone = entry.actorPhone();
+
+            Long actorId = null;
+            String actorName;
+            UserSummaryResponse actor = actorPhone != null
+                    ? actors.computeIfAbsent(actorPhone, userSummaryLoader::loadByPhone)
+                    : null;
+            if (actor != null) {
+                actorId = actor.getId();
+                actorName = actor.displayName() != null ? actor.displayName() : actor.getPhone();
+            } else {
+                actorName = actorPhone != null ? actorPhone : "(ẩn danh)";
+            }
+
+            String actorType;
+            if (entry.fromAdminConsole()) {
+                actorType = "ADMIN";
+            } else if (actorPhone != null) {
+                actorType = "USER";
+            } else {
+                actorType = "SYSTEM";
+            }
+
+            String targetName = null;
+            Long targetId = numericTargetId(info);
+            if (targetId != null) {
+                switch (info.targetType().toUpperCase()) {
+                    case "USER" -> {
+                        UserSummaryResponse target = userTargets.get(targetId);
+                        targetName = target != null ? target.displayName() : null;
+                    }
+                    case "PAGE" -> targetName = pageNames.get(targetId);
+                    default -> { }
+                }
+            }
+
+            String errorMessage = entry.errorMessage();
+            logs.add(AuditLog.builder()
+                    .timestamp(entry.timestamp())
+                    .actorType(actorType)
+                    .actorId(actorId)
+                    .actorName(actorName)
+                    .action(info.action())
+                    .description(info.description())
+                    .category(info.category())
+                    .targetType(info.targetType())
+                    .targetId(info.targetId())
+                    .targetName(targetName)
+                    .method(entry.method().toUpperCase())
+                    .endpoint(entry.path())
+                    .status(entry.statusCode() >= 400 ? "FAILED" : "SUCCESS")
+                    .statusCode(entry.statusCode())
+                    .meta(errorMessage != null ? "{\"error\":\"" + errorMessage.replace("\"", "'") + "\"}" : null)
+                    .build());
+        }
+        return logs;
+    }
+
+    private void insertBatch(List<AuditLog> logs) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                for (AuditLog auditLog : logs) {
+                    statement.setTimestamp(1, Timestamp.from(auditLog.getTimestamp().toInstant()));
+                    statement.setString(2, auditLog.getActorType());
+                    if (auditLog.getActorId() != null) {
+                        statement.setLong(3, auditLog.getActorId());
+                    } else {
+                        statement.setNull(3, Types.BIGINT);
+                    }
+                    statement.setString(4, truncate(auditLog.getActorName(), 255));
+                    statement.setString(5, auditLog.getAction());
+                    statement.setString(6, truncate(auditLog.getDescription(), 512));
+                    statement.setString(7, auditLog.getCategory());
+                    statement.setString(8, truncate(auditLog.getTargetType(), 32));
+                    statement.setString(9, truncate(auditLog.getTargetId(), 64));
+                    statement.setString(10, truncate(auditLog.getTargetName(), 255));
+                    statement.setString(11, auditLog.getMethod());
+                    statement.setString(12, truncate(auditLog.getEndpoint(), 512));
+                    statement.setString(13, auditLog.getStatus());
+                    statement.setInt(14, auditLog.getStatusCode());
+                    statement.setString(15, truncate(auditLog.getMeta(), 1024));
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                // Gán id theo đúng thứ tự để SSE/frontend dùng làm khóa
+                try (ResultSet keys = statement.getGeneratedKeys()) {
+                    int i = 0;
+                    while (keys.next() && i < logs.size()) {
+                        logs.get(i++).setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    private void reportDrops() {
+        long currentDropped = dropped.get();
+        if (currentDropped > reportedDropped) {
+            log.warn("Audit log queue full: dropped {} entries (total {}), capacity {}",
+                    currentDropped - reportedDropped, currentDropped, capacity);
+            reportedDropped = currentDropped;
+        }
+    }
+
+    private static Long numericTargetId(AuditLogService.ActionInfo info) {
+        if (info.targetType() == null || info.targetId() == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(info.targetId());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String truncate(String value, int max) {
+        return value != null && value.length() > max ? value.substring(0, max) : value;
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * @ (#) AuditRouteTable.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.audit.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * @description
+ * Bảng tra method + path -> ActionInfo, biên dịch 1 lần thành cây phân đoạn (trie) theo từng method.
+ * Giữ đúng ngữ nghĩa Pattern.find() của bảng regex cũ nhưng không tạo Matcher/chuỗi trên đường tra:
+ *   - mẫu có thể khớp bắt đầu ở bất kỳ dấu '/' nào trong path
+ *   - '$' ở cuối = phải khớp tới hết path; không có '$' thì phân đoạn cuối chỉ cần khớp phần đầu
+ *     ("/friends/request" khớp cả "/friends/requests")
+ *   - {word} = \w+, {slug} = [\w-]+, {num} = \d+ (mỗi mẫu tối đa 1 tham số, là targetId)
+ *   - nhiều mẫu cùng khớp -> lấy mẫu khai báo trước, mẫu ignore luôn đứng trước mọi rule
+ * @author: Audit Log
+ * @version: 1.0
+ */
+final class AuditRouteTable {
+
+    /** Kết quả của mẫu ignore: request không cần ghi log. */
+    static final AuditLogService.ActionInfo IGNORED = new AuditLogService.ActionInfo(null, null, null, null, null);
+
+    interface Action {
+        AuditLogService.ActionInfo build(String id);
+    }
+
+    private enum Kind { LITERAL, WORD, SLUG, NUM }
+
+    private record Element(Kind kind, String literal) {}
+
+    private record Route(int priority, Action action) {}
+
+    // Phân đoạn cuối của mẫu không có '$': chỉ cần khớp phần đầu phân đoạn
+    private record PrefixLeaf(Element element, Route route) {}
+
+    private static final class Node {
+        private Element[] keys = new Element[0];
+        private Node[] children = new Node[0];
+        private final List<Route> ends = new ArrayList<>();
+        private final List<PrefixLeaf> prefixLeaves = new ArrayList<>();
+
+        private Node child(Element element) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i].equals(element)) return children[i];
+            }
+            Node node = new Node();
+            int n = keys.length;
+            keys = Arrays.copyOf(keys, n + 1);
+            children = Arrays.copyOf(children, n + 1);
+            keys[n] = element;
+            children[n] = node;
+            return node;
+        }
+    }
+
+    // Trạng thái 1 lượt tra (cục bộ trong lookup, không chia sẻ giữa thread)
+    private static final class Best {
+        private Route route;
+        private int captureStart = -1;
+        private int captureEnd = -1;
+
+        private void offer(Route candidate, int start, int end) {
+            if (route == null || candidate.priority() < route.priority()) {
+                route = candidate;
+                captureStart = start;
+                captureEnd = end;
+            }
+        }
+    }
+
+    private final Map<String, Node> roots;
+    private final Node anyMethodRoot;
+
+    private AuditRouteTable(Map<String, Node> roots, Node anyMethodRoot) {
+        this.roots = roots;
+        this.anyMethodRoot = anyMethodRoot;
+    }
+
+    /**
+     * Tra path theo method (đã viết hoa).
+     * Trả về IGNORED nếu khớp mẫu ignore, null nếu không rule nào khớp.
+     */
+    AuditLogService.ActionInfo lookup(String method, String path) {
+        Node root = roots.getOrDefault(method, anyMethodRoot);
+        Best best = new Best();
+        int length = path.length();
+        for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+            walk(root, path, i + 1, length, -1, -1, best);
+        }
+        if (best.route == null) {
+            return null;
+        }
+        String id = best.captureStart >= 0 ? path.substring(best.captureStart, best.captureEnd) : null;
+        return best.route.action().build(id);
+    }
+
+    // start = đầu phân đoạn hiện tại (ngay sau '/')
+    private static void walk(Node node, String path, int start, int length,
+                             int captureStart, int captureEnd, Best best) {
+        for (PrefixLeaf leaf : node.prefixLeaves) {
+            Element element = leaf.element();
+            if (element.kind() == Kind.LITERAL) {
+                if (path.startsWith(element.literal(), start)) {
+                    best.offer(leaf.route(), captureStart, captureEnd);
+                }
+            } else {
+                int end = scan(element.kind(), path, start, length);
+                if (end > start) {
+                    best.offer(leaf.route(), start, end);
+                }
+            }
+        }
+
+        int slash = path.indexOf('/', start);
+        int end = slash >= 0 ? slash : length;
+        Element[] keys = node.keys;
+        for (int i = 0; i < keys.length; i++) {
+            Element key = keys[i];
+            int childCaptureStart = captureStart;
+            int childCaptureEnd = captureEnd;
+            if (key.kind() == Kind.LITERAL) {
+                if (end - start != key.literal().length() || !path.startsWith(key.literal(), start)) continue;
+            } else {
+                if (end == start || scan(key.kind(), path, start, end) != end) continue;
+                childCaptureStart = start;
+                childCaptureEnd = end;
+            }
+            Node child = node.children[i];
+            if (end == length) {
+                for (Route route : child.ends) {
+                    best.offer(route, childCaptureStart, childCaptureEnd);
+                }
+            } else {
+                walk(child, path, end + 1, length, childCaptureStart, childCaptureEnd, best);
+            }
+        }
+    }
+
+    // Vị trí đầu tiên (từ start, không quá limit) có ký tự không thuộc lớp ký tự của tham số
+    private static int scan(Kind kind, String path, int start, int limit) {
+        int i = start;
+        while (i < limit && accepts(kind, path.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean accepts(Kind kind, char c) {
+        boolean digit = c >= '0' && c <= '9';
+        return switch (kind) {
+            case NUM -> digit;
+            case WORD -> digit || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+            case SLUG -> accepts(Kind.WORD, c) || c == '-';
+            case LITERAL -> false;
+        };
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+
+        private record Definition(String method, List<Element> elements, boolean anchored, Route route) {}
+
+        private final List<Definition> ignores = new ArrayList<>();
+        private final List<Definition> rules = new ArrayList<>();
+        // Mẫu ignore mang priority âm để luôn thắng rule, dù khai báo theo thứ tự nào
+        private int ignorePriority = Integer.MIN_VALUE;
+        private int rulePriority;
+
+        private Builder() {
+        }
+
+        Builder ignore(String template) {
+            ignores.add(define(null, template, ignorePriority++, id -> IGNORED));
+            return this;
+        }
+
+        Builder rule(String method, String template, Action action) {
+            rules.add(define(method, template, rulePriority++, action));
+            return this;
+        }
+
+        AuditRouteTable build() {
+            Map<String, Node> roots = new HashMap<>();
+            Node anyMethodRoot = new Node();
+            for (Definition ignore : ignores) {
+                insert(anyMethodRoot, ignore);
+            }
+            for (Definition rule : rules) {
+                Node root = roots.computeIfAbsent(rule.method(), method -> {
+                    Node node = new Node();
+                    ignores.forEach(ignore -> insert(node, ignore));
+                    return node;
+                });
+                insert(root, rule);
+            }
+            return new AuditRouteTable(Map.copyOf(roots), anyMethodRoot);
+        }
+
+        private static Definition define(String method, String template, int priority, Action action) {
+            boolean anchored = template.endsWith("$");
+            String body = anchored ? template.substring(0, template.length() - 1) : template;
+            if (!body.startsWith("/") || body.length() < 2) {
+                throw new IllegalArgumentException("Invalid audit route: " + template);
+            }
+            List<Element> elements = new ArrayList<>();
+            int params = 0;
+            for (String segment : body.substring(1).split("/", -1)) {
+                Element element = switch (segment) {
+                    case "{word}" -> new Element(Kind.WORD, null);
+                    case "{slug}" -> new Element(Kind.SLUG, null);
+                    case "{num}" -> new Element(Kind.NUM, null);
+                    default -> {
+                        if (segment.isEmpty() || segment.indexOf('{') >= 0) {
+                            throw new IllegalArgumentException("Invalid audit route: " + template);
+                        }
+                        yield new Element(Kind.LITERAL, segment);
+                    }
+                };
+                if (element.kind() != Kind.LITERAL && ++params > 1) {
+                    throw new IllegalArgumentException("Audit route supports one parameter: " + template);
+                }
+                elements.add(element);
+            }
+            return new Definition(method, elements, anchored, new Route(priority, action));
+        }
+
+        private static void insert(Node root, Definition definition) {
+            List<Element> elements = definition.elements();
+            Node node = root;
+            for (int i = 0; i < elements.size() - 1; i++) {
+                node = node.child(elements.get(i));
+            }
+            Element last = elements.get(elements.size() - 1);
+            if (definition.anchored()) {
+                node.child(last).ends.add(definition.route());
+            } else {
+                node.prefixLeaves.add(new PrefixLeaf(last, definition.route()));
+            }
+        }
+    }
+}
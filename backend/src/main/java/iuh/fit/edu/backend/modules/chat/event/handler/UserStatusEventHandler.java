@@ -1,15 +1,18 @@
 package iuh.fit.edu.backend.modules.chat.event.handler;
 
 import iuh.fit.edu.backend.common.event.handler.RedisEventHandler;
+import iuh.fit.edu.backend.common.event.subscriber.LocalUserSessionRegistry;
+import iuh.fit.edu.backend.common.event.subscriber.UserDestinationMulticaster;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 import iuh.fit.edu.backend.modules.chat.event.payload.UserStatusEvent;
 import iuh.fit.edu.backend.modules.user.dto.response.UserStatusResponse;
 import iuh.fit.edu.backend.modules.user.service.UserPresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 @Slf4j
@@ -17,8 +20,9 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class UserStatusEventHandler implements RedisEventHandler {
 
-    private final SimpMessagingTemplate messagingTemplate;
     private final UserPresenceService userPresenceService;
+    private final LocalUserSessionRegistry localUserSessionRegistry;
+    private final UserDestinationMulticaster userDestinationMulticaster;
 
     @Override
     public Class<?> getSupportedClass() {
@@ -34,14 +38,26 @@ public class UserStatusEventHandler implements RedisEventHandler {
     public void handle(Object eventPayload, Set<Long> targetMemberIds) {
         UserStatusEvent event = (UserStatusEvent) eventPayload;
         UserStatusResponse status = event.getPayload();
+        // Publisher đã tính người nhận 1 lần; chỉ tự tính lại với envelope cũ không mang danh sách
         Set<Long> recipients = targetMemberIds == null || targetMemberIds.isEmpty()
                 ? userPresenceService.getPresenceRecipientIds(status.getUserId())
                 : targetMemberIds;
 
         // Mỗi client chỉ nghe kênh presence của chính mình; backend lọc người nhận để tránh lộ trạng thái rộng.
+        // Simple broker: chỉ gửi cho người nhận có session trên node này, node khác sẽ tự gửi cho session của nó.
+        // Broker relay: chỉ node phát xử lý sự kiện, broker chuyển tới mọi node.
+        if (!userDestinationMulticaster.isNodeLocalDelivery()) {
+            userDestinationMulticaster.sendToUsers(recipients, "presence", event);
+            return;
+        }
+        List<Long> localRecipients = new ArrayList<>();
         for (Long recipientId : recipients) {
-            messagingTemplate.convertAndSend("/topic/user/" + recipientId + "/presence", event);
+            if (localUserSessionRegistry.isConnectedLocally(recipientId)) {
+                localRecipients.add(recipientId);
+            }
         }
-        log.info("Published UserStatusEvent of user {} to {} recipients", status.getUserId(), recipients.size());
+        userDestinationMulticaster.sendToUsers(localRecipients, "presence", event);
+        log.debug("Delivered UserStatusEvent of user {} to {}/{} local recipients",
+                status.getUserId(), localRecipients.size(), recipients.size());
     }
 }
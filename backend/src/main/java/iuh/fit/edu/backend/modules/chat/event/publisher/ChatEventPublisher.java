@@ -6,12 +6,13 @@ package iuh.fit.edu.backend.modules.chat.event.publisher;
 
 import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
 import iuh.fit.edu.backend.common.event.payload.RedisEnvelope;
+import iuh.fit.edu.backend.common.event.publisher.RedisEnvelopeBatcher;
+import iuh.fit.edu.backend.common.event.subscriber.ConversationInterestRegistry;
 import iuh.fit.edu.backend.modules.chat.event.payload.*;
 import iuh.fit.edu.backend.modules.conversation.event.payload.PinUpdatedEvent;
+import iuh.fit.edu.backend.modules.user.service.UserPresenceService;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.event.EventListener;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionPhase;
@@ -28,10 +29,22 @@ import java.util.Collections;
 @Component
 @Slf4j
 public class ChatEventPublisher {
-    private final RedisTemplate<String, Object> pubSubRedisTemplate;
+    // Gom envelope theo cửa sổ vài ms rồi publish 1 lần cho cả batch
+    private final RedisEnvelopeBatcher envelopeBatcher;
+    // Chọn channel shard theo conversation cho các sự kiện chỉ gửi tới /topic/conversation/{id}
+    private final ConversationInterestRegistry interestRegistry;
+    private final UserPresenceService userPresenceService;
+
+    public ChatEventPublisher(RedisEnvelopeBatcher envelopeBatcher,
+                              ConversationInterestRegistry interestRegistry,
+                              UserPresenceService userPresenceService) {
+        this.envelopeBatcher = envelopeBatcher;
+        this.interestRegistry = interestRegistry;
+        this.userPresenceService = userPresenceService;
+    }
 
-    public ChatEventPublisher(@Qualifier("pubSubRedisTemplate") RedisTemplate<String, Object> pubSubRedisTemplate) {
-        this.pubSubRedisTemplate = pubSubRedisTemplate;
+    private void publishToConversation(Long conversationId, RedisEnvelope envelope, String coalesceKey) {
+        envelopeBatcher.publish(interestRegistry.channelFor(conversationId), envelope, coalesceKey);
     }
 
 
@@ -43,9 +56,10 @@ public class ChatEventPublisher {
         RedisEnvelope envelope = new RedisEnvelope(
                 Collections.emptySet(),
                 event.getDomainEventType(),
+                event.getMessageResponse().getConversationId(),
                 event
         );
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        publishToConversation(event.getMessageResponse().getConversationId(), envelope, null);
     }
 
     // Hàm xử lý gửi sự kiện thu hồi tin nhắn cho redis pub/sub
@@ -56,9 +70,10 @@ public class ChatEventPublisher {
         RedisEnvelope envelope = new RedisEnvelope(
                 Collections.emptySet(),
                 event.getDomainEventType(),
+                event.getMessageRecalledResponse().getConversationId(),
                 event
         );
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        publishToConversation(event.getMessageRecalledResponse().getConversationId(), envelope, null);
     }
 
     // Hàm xử lý gửi sự kiện cập nhật reaction cho redis pub/sub
@@ -68,9 +83,10 @@ public class ChatEventPublisher {
         RedisEnvelope envelope = new RedisEnvelope(
                 Collections.emptySet(),
                 event.getDomainEventType(),
+                event.getMessageResponse().getConversationId(),
                 event
         );
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        publishToConversation(event.getMessageResponse().getConversationId(), envelope, null);
     }
 
     // Hàm xử lý gửi sự kiện xem tin nhắn cho redis pub/sub
@@ -80,9 +96,10 @@ public class ChatEventPublisher {
         RedisEnvelope envelope = new RedisEnvelope(
                 Collections.emptySet(),
                 event.getDomainEventType(),
+                event.getPoll().getConversationId(),
                 event
         );
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        publishToConversation(event.getPoll().getConversationId(), envelope, null);
     }
 
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
@@ -91,9 +108,10 @@ public class ChatEventPublisher {
         RedisEnvelope envelope = new RedisEnvelope(
                 event.getReceiverIds(),
                 event.getDomainEventType(),
+                event.getMessageSeenResponse().getConversationId(),
                 event
         );
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        publishToConversation(event.getMessageSeenResponse().getConversationId(), envelope, null);
     }
     // Hàm xử lý gửi sự kiện ghim tin nhắn cho redis pub/sub
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
@@ -104,31 +122,40 @@ public class ChatEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publish(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     // Hàm xử lý gửi sự kiện đang gõ tin nhắn cho redis pub/sub
     @EventListener
     public void handleTypingEvent(TypingEvent event) {
-        log.info("Publishing typing message to redis pub/sub for conversation: {}", event.getTypingResponse().getConversationId());
+        log.debug("Publishing typing message to redis pub/sub for conversation: {}", event.getTypingResponse().getConversationId());
         RedisEnvelope envelope = new RedisEnvelope(
                 Collections.emptySet(),
                 event.getDomainEventType(),
+                event.getTypingResponse().getConversationId(),
                 event
         );
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        // Trong 1 cửa sổ batch chỉ giữ trạng thái gõ mới nhất của mỗi user trong mỗi conversation
+        String coalesceKey = "typing:" + event.getTypingResponse().getConversationId()
+                + ":" + event.getTypingResponse().getUserId();
+        publishToConversation(event.getTypingResponse().getConversationId(), envelope, coalesceKey);
     }
 
 
     @EventListener
     public void handleUserStatusEvent(UserStatusEvent event) {
         log.info("Publishing user status to redis pub/sub");
+        // Tính người nhận (bạn bè + chính user) 1 lần ở node phát, các node nhận chỉ lọc theo session local
         RedisEnvelope envelope = new RedisEnvelope(
-                Collections.emptySet(),
+                event.getPayload() != null
+                        ? userPresenceService.getPresenceRecipientIds(event.getPayload().getUserId())
+                        : Collections.emptySet(),
                 event.getDomainEventType(),
                 event
         );
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        // Online/offline liên tục trong 1 cửa sổ batch -> chỉ gửi trạng thái cuối cùng
+        String coalesceKey = event.getPayload() != null ? "status:" + event.getPayload().getUserId() : null;
+        envelopeBatcher.publish(RedisPubSubConfig.CHAT_CHANNEL, envelope, coalesceKey);
     }
 
 
@@ -1,5 +1,6 @@
 package iuh.fit.edu.backend.modules.chat.event.publisher;
 
+import iuh.fit.edu.backend.common.event.subscriber.LocalUserSessionRegistry;
 import iuh.fit.edu.backend.modules.chat.event.payload.UserStatusEvent;
 import iuh.fit.edu.backend.modules.user.dto.response.UserStatusResponse;
 import iuh.fit.edu.backend.modules.user.entity.User;
@@ -26,12 +27,15 @@ public class UserStatusEventPublisher {
     private final UserPresenceService userPresenceService;
     private final UserService userService;
     private final ApplicationEventPublisher eventPublisher;
+    private final LocalUserSessionRegistry localUserSessionRegistry;
 
     @EventListener
     public void handleUserConnect(SessionConnectedEvent event) {
         SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
         String sessionId = headers.getSessionId();
         resolveUser(event.getUser()).ifPresent(user -> {
+            // Ghi nhận user đang kết nối ở node này để presence chỉ fan-out tới session local
+            localUserSessionRegistry.register(sessionId, user.getId(), event.getUser().getName());
             boolean newlyOnline = userPresenceService.registerSession(user.getId(), sessionId);
             if (newlyOnline) {
                 publishStatus(user.getId(), true, null);
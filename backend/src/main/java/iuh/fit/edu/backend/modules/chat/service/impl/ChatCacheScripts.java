@@ -0,0 +1,153 @@
+/*
+ * @ (#) ChatCacheScripts.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.chat.service.impl;
+
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+
+/*
+ * @description
+ * Lua script cho các thao tác ghi nhiều bước của cache chat (MessageCacheService, PollCacheService).
+ * Mỗi script chạy nguyên tử trên Redis trong 1 round trip (EVALSHA); thao tác read-modify-write
+ * (thu hồi, xóa phía tôi) vẫn đọc trước rồi mới gọi COMPARE_AND_SET, xem MessageCacheServiceImpl.
+ * DefaultRedisScript tự tính SHA1 và RedisTemplate gọi EVALSHA (fallback EVAL khi NOSCRIPT);
+ * preload() nạp sẵn script lúc khởi động để request đầu tiên cũng chỉ cần EVALSHA.
+ *
+ * Member/payload được truyền vào dưới dạng JSON đã serialize sẵn (giống hệt giá trị RedisTemplate ghi),
+ * các tham số điều khiển (mode, score, ttl) là chuỗi thường.
+ * Mọi key script đụng tới đều truyền qua KEYS (không ghép key từ ARGV), và các key của 1 lần gọi dùng chung
+ * hash tag ({conversationId} với tin nhắn, {pollId} với poll) nên rơi vào cùng 1 slot trên Redis Cluster.
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+final class ChatCacheScripts {
+
+    private ChatCacheScripts() {
+    }
+
+    /*
+     * Ghi tin nhắn vào index + hash dữ liệu, cắt index về cacheSize và xóa luôn dữ liệu của tin bị cắt/bỏ.
+     * KEYS[1] = index ZSET, KEYS[2] = hash dữ liệu (field = member),
+     * KEYS[3..] = key replies của tin được reply (theo thứ tự các tin có reply)
+     * ARGV[1] = mode: new | replace | append
+     * ARGV[2] = score của cursor (chỉ dùng cho append)
+     * ARGV[3] = cacheSize, ARGV[4] = ttl (giây)
+     * ARGV[5..] = từng nhóm 4 phần tử: member, score, payload, '1' nếu là tin reply ('' nếu không)
+     * Trả về -1 nếu append bị từ chối (cursor không khớp), ngược lại là số tin trong index.
+     */
+    static final RedisScript<Long> CACHE_MESSAGES = new DefaultRedisScript<>("""
+            local index = KEYS[1]
+            local data = KEYS[2]
+            local mode = ARGV[1]
+            local size = tonumber(ARGV[3])
+            local ttl = tonumber(ARGV[4])
+            local first = 5
+            local last = #ARGV
+
+            if mode == 'append' then
+                local oldest = redis.call('ZRANGE', index, 0, 0, 'WITHSCORES')
+                if #oldest == 0 or tonumber(oldest[2]) ~= tonumber(ARGV[2]) then
+                    return -1
+                end
+                if tonumber(ARGV[first + 1]) >= tonumber(oldest[2]) or ARGV[first] == oldest[1] then
+                    return -1
+                end
+                local room = size - redis.call('ZCARD', index)
+                if room <= 0 then
+                    return size - room
+                end
+                last = math.min(last, first + room * 4 - 1)
+            elseif mode == 'replace' then
+                -- Chỉ bỏ phần cũ hơn trang vừa load, giữ tin mới được push song song
+                local oldestScore = '(' .. ARGV[last - 2]
+                local dropped = redis.call('ZRANGEBYSCORE', index, '-inf', oldestScore)
+                if #dropped > 0 then
+                    redis.call('ZREMRANGEBYSCORE', index, '-inf', oldestScore)
+                    redis.call('HDEL', data, unpack(dropped))
+                end
+            end
+
+            local repliesKey = 3
+            for i = first, last, 4 do
+                local member = ARGV[i]
+                redis.call('ZADD', index, ARGV[i + 1], member)
+                redis.call('HSET', data, member, ARGV[i + 2])
+                if ARGV[i + 3] ~= '' then
+                    redis.call('SADD', KEYS[repliesKey], member)
+                    redis.call('EXPIRE', KEYS[repliesKey], ttl)
+                    repliesKey = repliesKey + 1
+                end
+            end
+            redis.call('EXPIRE', index, ttl)
+            redis.call('EXPIRE', data, ttl)
+
+            local evicted = redis.call('ZRANGE', index, 0, -(size + 1))
+            if #evicted > 0 then
+                redis.call('ZREM', index, unpack(evicted))
+                redis.call('HDEL', data, unpack(evicted))
+            end
+            return redis.call('ZCARD', index)
+            """, Long.class);
+
+    /*
+     * Ghi đè 1 tin nếu nó vẫn còn trong index (TTL của hash giữ nguyên).
+     * KEYS[1] = index ZSET, KEYS[2] = hash dữ liệu
+     * ARGV[1] = member, ARGV[2] = payload
+     */
+    static final RedisScript<Long> REPLACE_IF_INDEXED = new DefaultRedisScript<>("""
+            if not redis.call('ZSCORE', KEYS[1], ARGV[1]) then
+                return 0
+            end
+            redis.call('HSET', KEYS[2], ARGV[1], ARGV[2])
+            return 1
+            """, Long.class);
+
+    /*
+     * Compare-and-set cho read-modify-write (thu hồi, xóa phía tôi).
+     * KEYS[1] = hash dữ liệu, ARGV[3i - 2] = member, ARGV[3i - 1] = giá trị đã đọc, ARGV[3i] = giá trị mới
+     * Trả về số tin bị ghi đè bởi luồng khác trong lúc sửa (cần đọc lại và thử lại); tin đã bị xóa thì bỏ qua.
+     */
+    static final RedisScript<Long> COMPARE_AND_SET = new DefaultRedisScript<>("""
+            local conflicts = 0
+            for i = 1, #ARGV, 3 do
+                local current = redis.call('HGET', KEYS[1], ARGV[i])
+                if current == ARGV[i + 1] then
+                    redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 2])
+                elseif current then
+                    conflicts = conflicts + 1
+                end
+            end
+            return conflicts
+            """, Long.class);
+
+    /*
+     * Ghi poll nếu không cũ hơn bản đang cache (tránh getPoll ghi đè kết quả vote mới hơn).
+     * KEYS[1] = key poll, KEYS[2] = key version
+     * ARGV[1] = payload, ARGV[2] = version (updatedAt millis), ARGV[3] = ttl (giây)
+     */
+    static final RedisScript<Long> CACHE_POLL = new DefaultRedisScript<>("""
+            local current = redis.call('GET', KEYS[2])
+            if current and tonumber(current) > tonumber(ARGV[2]) then
+                return 0
+            end
+            redis.call('SET', KEYS[1], ARGV[1], 'EX', ARGV[3])
+            redis.call('SET', KEYS[2], ARGV[2], 'EX', ARGV[3])
+            return 1
+            """, Long.class);
+
+    // Nạp sẵn script vào Redis script cache, lỗi ở đây không ảnh hưởng vì EVALSHA sẽ tự fallback
+    static void preload(RedisTemplate<String, ?> redisTemplate, RedisScript<?>... scripts) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            for (RedisScript<?> script : scripts) {
+                connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+    }
+}
@@ -4,15 +4,27 @@
  */
 package iuh.fit.edu.backend.modules.chat.service.impl;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
 import iuh.fit.edu.backend.modules.chat.dto.response.MessageRecalledResponse;
@@ -23,6 +35,17 @@ import lombok.extern.slf4j.Slf4j;
 
 /*
  * @description
+ * Cache 60 tin nhắn mới nhất của mỗi phòng chat:
+ *   - chat:messages:idx:{conversationId}                ZSET, member = messageId, score = createdAt (epoch millis)
+ *   - chat:messages:data:{conversationId}               HASH, field = member của index, value = tin nhắn (MessageResponse)
+ *   - chat:messages:replies:{conversationId}:messageId  SET id các tin đang reply tin này (để cập nhật khi thu hồi)
+ * Mọi key của 1 phòng có chung hash tag {conversationId} nên nằm cùng 1 slot trên Redis Cluster.
+ * Cập nhật 1 tin (thu hồi, reaction, xóa phía tôi) chỉ đọc/ghi đúng field của tin đó,
+ * đọc theo cursor dùng ZREVRANGEBYSCORE + HMGET thay vì kéo cả danh sách về RAM.
+ * Số round trip:
+ *   - Ghi tin mới/ghi trang (kể cả xóa dữ liệu tin bị cắt khỏi index), reaction: 1 script CACHE_MESSAGES / REPLACE_IF_INDEXED
+ *   - Xóa phía tôi: HMGET + COMPARE_AND_SET; thu hồi thêm 1 SMEMBERS lấy các tin reply
+ *     (mỗi lần bị luồng khác ghi chen thì đọc lại và chạy CAS thêm 1 lần)
  * @author: Huu Thai
  * @date:
  * @version: 1.0
@@ -40,30 +63,151 @@ public class MessageCacheServiceImpl implements MessageCacheService {
     // Tin nhắn sẽ tự hủy sau 1 ngày
     private static final Duration TTL = Duration.ofDays(1);
 
+    // Số lần đọc lại khi compare-and-set bị luồng khác ghi đè
+    private static final int MAX_CAS_ATTEMPTS = 3;
+
+    private static final RedisSerializer<Long> LONG_RESULT = new GenericToStringSerializer<>(Long.class);
+
     private String getKey(Long conversationId) {
-        return "chat:messages:" + conversationId;
+        return "chat:messages:idx:{" + conversationId + "}";
+    }
+
+    private String getDataKey(Long conversationId) {
+        return "chat:messages:data:{" + conversationId + "}";
+    }
+
+    private String getRepliesKey(Long conversationId, String messageId) {
+        return "chat:messages:replies:{" + conversationId + "}:" + messageId;
+    }
+
+    private static double score(Instant createdAt) {
+        return createdAt.toEpochMilli();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        try {
+            ChatCacheScripts.preload(redisTemplate,
+                    ChatCacheScripts.CACHE_MESSAGES,
+                    ChatCacheScripts.REPLACE_IF_INDEXED,
+                    ChatCacheScripts.COMPARE_AND_SET);
+        } catch (Exception e) {
+            log.warn("Không nạp sẵn được Lua script cho message cache: {}", e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private String toJson(Object value) {
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        return new String(serializer.serialize(value), StandardCharsets.UTF_8);
+    }
+
+    private MessageResponse fromJson(byte[] raw) {
+        Object value = redisTemplate.getValueSerializer().deserialize(raw);
+        return value instanceof MessageResponse messageResponse ? messageResponse : null;
+    }
+
+    private Long runScript(RedisScript<Long> script, List<String> keys, List<String> args) {
+        return redisTemplate.execute(script, RedisSerializer.string(), LONG_RESULT, keys, args.toArray());
+    }
+
+    /**
+     * Đọc nhiều tin nhắn bằng 1 lệnh HMGET, giữ nguyên thứ tự ids.
+     * @return null nếu có tin đã hết hạn (index và dữ liệu lệch nhau) -> coi như cache miss
+     */
+    private List<MessageResponse> loadMessages(Long conversationId, Collection<Object> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<byte[]> raws = getRawMessages(conversationId, ids.stream().map(this::toJson).toList());
+        if (raws == null) {
+            return null;
+        }
+        List<MessageResponse> messages = new ArrayList<>(raws.size());
+        for (byte[] raw : raws) {
+            MessageResponse messageResponse = raw != null ? fromJson(raw) : null;
+            if (messageResponse == null) {
+                return null;
+            }
+            messages.add(messageResponse);
+        }
+        return messages;
+    }
+
+    // Field của hash là member JSON (giống index) nên đọc thẳng bằng HMGET thay vì qua hash key serializer (String)
+    private List<byte[]> getRawMessages(Long conversationId, List<String> fields) {
+        byte[] dataKey = getDataKey(conversationId).getBytes(StandardCharsets.UTF_8);
+        return redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.hashCommands().hMGet(dataKey, fields.stream()
+                        .map(f -> f.getBytes(StandardCharsets.UTF_8))
+                        .toArray(byte[][]::new)));
     }
 
     /**
-     * Kéo toàn bộ danh sách Object từ Redis về RAM
+     * Ghi index + dữ liệu + reply index của nhiều tin (thứ tự mới -> cũ) trong 1 script;
+     * script tự xóa dữ liệu của các tin vừa bị cắt/bỏ khỏi index
+     * @return -1 nếu append bị từ chối, ngược lại là số tin trong index
      */
-    private List<Object> getFullListFromCache(String key) {
-        return redisTemplate.opsForList().range(key, 0, -1);
+    private Long writeMessages(Long conversationId, String mode, Instant cursor, List<MessageResponse> messages) {
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>(4 + messages.size() * 4);
+        keys.add(getKey(conversationId));
+        keys.add(getDataKey(conversationId));
+        args.add(mode);
+        args.add(cursor != null ? String.valueOf(cursor.toEpochMilli()) : "");
+        args.add(String.valueOf(CACHE_SIZE));
+        args.add(String.valueOf(TTL.toSeconds()));
+        for (MessageResponse message : messages) {
+            args.add(toJson(message.getId()));
+            args.add(String.valueOf(message.getCreatedAt().toEpochMilli()));
+            args.add(toJson(message));
+            boolean isReply = message.getReplyInfo() != null && message.getReplyInfo().getMessageId() != null;
+            if (isReply) {
+                keys.add(getRepliesKey(conversationId, message.getReplyInfo().getMessageId()));
+            }
+            args.add(isReply ? "1" : "");
+        }
+        return runScript(ChatCacheScripts.CACHE_MESSAGES, keys, args);
     }
 
     /**
-     * Tìm vị trí (index) của 1 tin nhắn cụ thể trong mảng Cache
-     * @return index (từ 0 trở đi), hoặc -1 nếu không tìm thấy
+     * Read-modify-write nhiều tin cùng phòng: đọc raw JSON bằng 1 HMGET, sửa trên RAM,
+     * ghi lại bằng compare-and-set; nếu có luồng khác ghi chen vào thì đọc lại và thử lại.
+     * Tin không còn trong cache bị bỏ qua.
      */
-    private int findMessageIndex(List<Object> cachedObjects, String messageId) {
-        if (cachedObjects == null || cachedObjects.isEmpty()) return -1;
-        for (int i = 0; i < cachedObjects.size(); i++) {
-            MessageResponse cachedMsg = (MessageResponse) cachedObjects.get(i);
-            if (cachedMsg.getId().equals(messageId)) {
-                return i;
+    private void mutateMessages(Long conversationId, Map<String, Consumer<MessageResponse>> mutations) {
+        List<String> fields = mutations.keySet().stream().map(this::toJson).toList();
+        List<Consumer<MessageResponse>> mutators = new ArrayList<>(mutations.values());
+
+        for (int attempt = 1; attempt <= MAX_CAS_ATTEMPTS; attempt++) {
+            List<byte[]> raws = getRawMessages(conversationId, fields);
+            if (raws == null) {
+                return;
+            }
+
+            List<String> casArgs = new ArrayList<>();
+            for (int i = 0; i < fields.size(); i++) {
+                byte[] raw = raws.get(i);
+                MessageResponse cachedMsg = raw != null ? fromJson(raw) : null;
+                if (cachedMsg == null) {
+                    continue;
+                }
+                mutators.get(i).accept(cachedMsg);
+                casArgs.add(fields.get(i));
+                casArgs.add(new String(raw, StandardCharsets.UTF_8));
+                casArgs.add(toJson(cachedMsg));
             }
+            if (casArgs.isEmpty()) {
+                return;
+            }
+
+            Long conflicts = runScript(ChatCacheScripts.COMPARE_AND_SET, List.of(getDataKey(conversationId)), casArgs);
+            if (conflicts == null || conflicts == 0) {
+                return;
+            }
+            log.info("Tin nhắn bị cập nhật song song, thử lại lần {}", attempt + 1);
         }
-        return -1;
+        log.warn("Không cập nhật được cache cho {} sau {} lần thử", mutations.keySet(), MAX_CAS_ATTEMPTS);
     }
 
     private MessageResponse withoutPollDetail(MessageResponse source) {
@@ -92,118 +236,67 @@ public class MessageCacheServiceImpl implements MessageCacheService {
      */
     @Override
     public void cacheNewMessage(MessageResponse message) {
-        String key = getKey(message.getConversationId());
         log.info("Push message to cache {}", message);
 
-        // Push tin nhắn mới nhất vào đầu danh sách
-        redisTemplate.opsForList().leftPush(key, withoutPollDetail(message));
-
-        // Cắt bớt nếu dài quá 50 tin nhắn (chỉ giữ index từ 0 đến 49)
-        redisTemplate.opsForList().trim(key, 0, CACHE_SIZE - 1);
-
-        // Gian hạn thời gian sống của cache
-        redisTemplate.expire(key, TTL);
+        // Thêm tin, cắt bớt nếu vượt quá 60 tin nhắn và gia hạn TTL trong cùng 1 script
+        writeMessages(message.getConversationId(), "new", null, List.of(withoutPollDetail(message)));
     }
 
     public void updateMessage(MessageRecalledResponse message) {
-        String key = getKey(message.getConversationId());
-        // Kiểm tra xem cache của phòng chat này có đang tồn tại không
-        if (Boolean.FALSE.equals(redisTemplate.hasKey(key))) {
-            return; // Cache trống hoặc đã hết hạn -> Bỏ qua
-        }
-        // Lấy phần tử cuối cùng trong Redis (Tin nhắn cũ nhất của Cache)
-        MessageResponse lastObj = (MessageResponse) redisTemplate.opsForList().index(key, -1);
-        if (lastObj != null) {
-            // Nếu tin nhắn bị thu hồi có thời gian CŨ HƠN tin cũ nhất trong Cache
-            // => Chắc chắn nó không nằm trong Cache. Dừng luôn, không cần lấy List về!
-            if (message.getCreatedAt().isBefore(lastObj.getCreatedAt())) {
-                log.info("Tin nhắn thu hồi quá cũ, không nằm trong Cache. Bỏ qua tìm kiếm.");
-                return;
+        String messageId = message.getMessageId();
+        Map<String, Consumer<MessageResponse>> mutations = new LinkedHashMap<>();
+
+        // Cập nhật dữ liệu tin nhắn: Xóa nội dung, bật cờ isRecalled
+        mutations.put(messageId, cachedMsg -> {
+            cachedMsg.setContent("");
+            cachedMsg.setRecalled(true);
+            if (cachedMsg.getAttachments() != null) {
+                cachedMsg.setAttachments(new ArrayList<>());
             }
-            // Lấy toàn bộ List từ Redis về RAM
-            List<Object> objects = getFullListFromCache(key);
-            if (objects == null || objects.isEmpty()) return;
-
-            // Tìm vị trí (index) của tin nhắn cần thu hồi
-            for (int i = 0; i < objects.size(); i++) {
-                MessageResponse cachedMsg = (MessageResponse) objects.get(i);
-                boolean isModified = false;
-
-                // So sánh ID để tìm đúng tin nhắn
-                if (cachedMsg.getId().equals(message.getMessageId())) {
-                    // Cập nhật dữ liệu tin nhắn: Xóa nội dung, bật cờ isRecalled
-                    cachedMsg.setContent("");
-                    cachedMsg.setRecalled(true);
-                    if (cachedMsg.getAttachments() != null) {
-                        cachedMsg.setAttachments(new ArrayList<>());
+        });
+
+        // Xử lý các tin nhắn khác đang Reply lại tin nhắn vừa được thu hồi
+        Set<Object> replyIds = redisTemplate.opsForSet().members(getRepliesKey(message.getConversationId(), messageId));
+        if (replyIds != null) {
+            for (Object replyId : replyIds) {
+                mutations.put(replyId.toString(), reply -> {
+                    if (reply.getReplyInfo() != null) {
+                        reply.getReplyInfo().setContent("");
                     }
-                    isModified = true;
-                }
-
-                // Xử lý các tin nhắn khác đang Reply lại tin nhắn vừa được thu hồi
-                if(cachedMsg.getReplyInfo() != null && cachedMsg.getReplyInfo().getMessageId().equals(message.getMessageId())){
-                    cachedMsg.getReplyInfo().setContent("");
-                    isModified = true;
-                }
-
-                // Lưu lại vị trí đã sửa
-                if(isModified){
-                    redisTemplate.opsForList().set(key, i, cachedMsg);
-                    log.info("Đã cập nhật tin nhắn thu hồi trong Redis tại index: {}", i);
-                }
+                });
             }
         }
+
+        mutateMessages(message.getConversationId(), mutations);
+        log.info("Đã cập nhật tin nhắn thu hồi {} trong Redis", messageId);
     }
 
     @Override
     public void updateMessage(MessageResponse message) {
-        String key = getKey(message.getConversationId());
-        if (Boolean.FALSE.equals(redisTemplate.hasKey(key))) {
-            return;
-        }
-
-        List<Object> objects = getFullListFromCache(key);
-        int targetIndex = findMessageIndex(objects, message.getId());
-        if (targetIndex == -1) {
-            return;
+        Long updated = runScript(ChatCacheScripts.REPLACE_IF_INDEXED,
+                List.of(getKey(message.getConversationId()), getDataKey(message.getConversationId())),
+                List.of(toJson(message.getId()), toJson(message)));
+        if (updated != null && updated == 1) {
+            log.info("Đã cập nhật tin nhắn {} trong Redis", message.getId());
         }
-
-        redisTemplate.opsForList().set(key, targetIndex, message);
-        log.info("Đã cập nhật tin nhắn {} trong Redis tại index: {}", message.getId(), targetIndex);
     }
 
     @Override
     public void addDeletedUserToMessage(String messageId, Long conversationId, Long userId) {
-        String key = getKey(conversationId);
-
-        // Kiểm tra xem cache của phòng chat này có đang tồn tại không
-        if (Boolean.FALSE.equals(redisTemplate.hasKey(key))) {
-            return;
-        }
-
-        // Lấy danh sách 60 tin nhắn từ RAM về
-        List<Object> objects = getFullListFromCache(key);
-        int targetIndex = findMessageIndex(objects, messageId);
-
-        // Tìm vị trí của tin nhắn cần đánh dấu xóa
-        if (targetIndex != -1) {
-            MessageResponse cachedMsg = (MessageResponse) objects.get(targetIndex);
-
+        mutateMessages(conversationId, Map.of(messageId, cachedMsg -> {
             if (cachedMsg.getDeletedFor() == null) {
                 cachedMsg.setDeletedFor(new HashSet<>());
             }
             cachedMsg.getDeletedFor().add(userId);
-
-            redisTemplate.opsForList().set(key, targetIndex, cachedMsg);
-            log.info("Đã cập nhật deletedFor cho tin nhắn {} trong Redis tại index: {}", messageId, targetIndex);
-        }
+        }));
+        log.info("Đã cập nhật deletedFor cho tin nhắn {} trong Redis", messageId);
     }
 
     @Override
     public void clearCache(Long conversationId) {
-        String key = getKey(conversationId);
-        redisTemplate.delete(key);
-        log.info("Đã xóa hoàn toàn List cache của phòng chat {}", conversationId);
+        // Xóa index và hash dữ liệu bằng 1 lệnh DEL (cùng slot); SET replies tự hết hạn theo TTL
+        redisTemplate.delete(List.of(getKey(conversationId), getDataKey(conversationId)));
+        log.info("Đã xóa hoàn toàn cache của phòng chat {}", conversationId);
     }
 
     /**
@@ -213,139 +306,74 @@ public class MessageCacheServiceImpl implements MessageCacheService {
     @Override
     public List<MessageResponse> getListMessage(Long conversationId, Instant cursor, int limit) {
         String key = getKey(conversationId);
-        List<Object> objects;
+        ZSetOperations<String, Object> zSet = redisTemplate.opsForZSet();
+        Set<Object> ids;
         // Case 1: Lấy trang đầu từ 0 đến limit - 1
         if (cursor == null) {
-            objects = redisTemplate.opsForList().range(key, 0, limit - 1);
-
-            if (objects == null || objects.isEmpty()) {
-                return Collections.emptyList();
-            }
-
-            return objects.stream()
-                    .map(object -> (MessageResponse) object)
-                    .toList();
+            ids = zSet.reverseRange(key, 0, limit - 1);
         } else {
-            // Case 2: Load lịch sử tin nhắn trong trường hợp vẫn chứa lấy hết 60 tin từ cache
-            objects = getFullListFromCache(key);
-            List<MessageResponse> allCached = objects == null
-                    ? Collections.emptyList()
-                    : objects.stream()
-                    .map(object -> (MessageResponse) object)
-                    .toList();
-
-            // Tìm vị trí của Cursor trong danh sách
-            int cursorIndex = -1;
-            for (int i = 0; i < allCached.size(); i++) {
-                // So sánh createdAt để tìm điểm cắt
-                if (allCached.get(i).getCreatedAt().equals(cursor)) {
-                    cursorIndex = i;
-                    break;
-                }
+            // Case 2: Load lịch sử khi cursor vẫn nằm trong khoảng thời gian mà cache bao phủ
+            // Cache luôn liên tục từ tin mới nhất trở về, nên chỉ cần cursor >= tin cũ nhất
+            Set<ZSetOperations.TypedTuple<Object>> oldest = zSet.rangeWithScores(key, 0, 0);
+            if (oldest == null || oldest.isEmpty()) {
+                return Collections.emptyList();
             }
-            if (cursorIndex == -1) {
+            Double oldestScore = oldest.iterator().next().getScore();
+            if (oldestScore == null || score(cursor) < oldestScore) {
                 // Cursor không nằm trong Redis (Tin nhắn quá cũ) -> Cache Miss
                 return Collections.emptyList();
             }
-            // Tìm thấy Cursor, cần lấy các tin sau vị trí đó (Cũ hơn)
-            int startIndex = cursorIndex + 1;
-            int endIndex = startIndex + limit;
-
-            // Chỉ trả về nếu Redis CÓ ĐỦ số lượng tin yêu cầu
-            if (endIndex <= allCached.size()) {
-                // HIT CACHE: Redis có đủ 20 tin tiếp theo
-                return allCached.subList(startIndex, endIndex);
+            // Các tin CŨ HƠN cursor (score là millis nguyên nên cursor - 1 tương đương "<")
+            ids = zSet.reverseRangeByScore(key, Double.NEGATIVE_INFINITY, score(cursor) - 1, 0, limit);
+
+            // Chỉ trả về nếu Redis CÓ ĐỦ số lượng tin yêu cầu, nếu không fallback về MongoDB lấy cho đủ bộ
+            if (ids == null || ids.size() < limit) {
+                return Collections.emptyList();
             }
+        }
 
-            // Redis có cursor, nhưng không còn đủ số lượng tin yêu cầu (VD: Còn 5 tin, mà cần 20)
-            // Return rỗng để fallback về MongoDB lấy cho đủ bộ
+        if (ids == null || ids.isEmpty()) {
             return Collections.emptyList();
         }
-
+        List<MessageResponse> messages = loadMessages(conversationId, ids);
+        return messages != null ? messages : Collections.emptyList();
     }
 
     /**
      * Lưu danh sách tin nhắn vào cache
      * Dùng khi cache miss - lần đầu tiên load từ db
-     * Tiếp tục lưu tin nhắn vào cache khi scroll cho dến khi đặt đến gới hạn (size = 50)
+     * Tiếp tục lưu tin nhắn vào cache khi scroll cho dến khi đặt đến gới hạn (size = 60)
      * Giúp tăng tốc độ thay vì cứ phải truy vấn xuống db
      */
     @Override
     public void cacheListMessage(Long conversationId, List<MessageResponse> messageResponses, Instant cursor) {
         if (messageResponses.isEmpty()) return;
-        String key = getKey(conversationId);
-        // Case 1: Load trang lần đầu
-        if (cursor == null) {
-            // Xóa cũ để đảm bảo không bị dư thừa hay trùng lặp dữ liệu không mong muốn
-            redisTemplate.delete(key);
-            redisTemplate.opsForList().rightPushAll(key, messageResponses.toArray());
-
-            // Dù có bao nhiêu luồng push vào cùng lúc, chỉ giữ lại đúng số lượng message response
-            redisTemplate.opsForList().trim(key, 0, messageResponses.size() - 1);
-            redisTemplate.expire(key, TTL);
-            log.info("Push messages (First Load), size redis: {} ", redisTemplate.opsForList().size(key));
-        }
-        // Case 2: Lưu thêm dữ liệu khi scroll
-        else {
-            // Chỉ append nếu key còn tồn tại để tránh sai lệch data
-            if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
-                MessageResponse lastObj = (MessageResponse) redisTemplate.opsForList().index(key, -1);
-                if (lastObj != null) {
-                    if (!cursor.equals(lastObj.getCreatedAt())) {
-                        log.warn("Cursor không khớp dòng thời gian liên tục (có thể do Jump). Bỏ qua Append để tránh tạo hố đen dữ liệu. ConvId: {}", conversationId);
-                        return;
-                    }
-                    MessageResponse lastCachedMsg = lastObj;
-                    MessageResponse firstNewMsg = messageResponses.getFirst();
-
-                    //  FirstNewMsg phải CŨ HƠN (nhỏ hơn) lastCachedMsg
-                    // Nếu firstNewMsg >= lastCachedMsg -> Nghĩa là dữ liệu bị trùng hoặc lộn xộn -> KHÔNG PUSH
-                    if (!firstNewMsg.getCreatedAt().isBefore(lastCachedMsg.getCreatedAt())) {
-                        log.warn("Phát hiện dữ liệu trùng lặp hoặc không khớp cursor. Bỏ qua Append. ConvId: {}", conversationId);
-                        return;
-                    }
-
-                    // Check ID cho chắc chắn (trường hợp cùng millisecond)
-                    if (firstNewMsg.getId().equals(lastCachedMsg.getId())) {
-                        log.warn("Phát hiện trùng ID tin nhắn cuối. Bỏ qua Append.");
-                        return;
-                    }
-                }
-                Long currentSize = redisTemplate.opsForList().size(key);
-                // Nếu trong redis đã đủ 60 dữ liệu rồi thì không push thêm vào nữa
-                if (currentSize != null && currentSize < CACHE_SIZE) {
-                    redisTemplate.opsForList().rightPushAll(key, messageResponses.toArray());
-
-                    // Sau khi push, nếu tổng vượt quá 60 thì mới trim
-                    if (currentSize + messageResponses.size() > CACHE_SIZE) {
-                        redisTemplate.opsForList().trim(key, 0, CACHE_SIZE - 1);
-                    }
-                    redisTemplate.expire(key, TTL);
-                    log.info("Append messages, size redis: {} ", Optional.ofNullable(redisTemplate.opsForList().size(key)).orElse(0L));
-                }
-            }
+        // Case 1: Load trang lần đầu -> thay phần cũ hơn trang vừa load, giữ các tin mới được push song song
+        // Case 2: Lưu thêm dữ liệu khi scroll -> script chỉ append khi cursor khớp tin cũ nhất trong cache
+        //         và tin đầu tiên của trang mới CŨ HƠN tin đó, tránh tạo hố đen dữ liệu (vd: sau Jump)
+        Long size = writeMessages(conversationId, cursor == null ? "replace" : "append", cursor, messageResponses);
+        if (size != null && size < 0) {
+            log.warn("Cursor không khớp dòng thời gian liên tục hoặc dữ liệu trùng lặp. Bỏ qua Append. ConvId: {}", conversationId);
+            return;
         }
+        log.info("Cache messages ({}), size redis: {} ", cursor == null ? "First Load" : "Append", size);
     }
 
     @Override
     public List<MessageResponse> getJumpMessagesFromCache(Long conversationId, String targetMessageId) {
         String key = getKey(conversationId);
 
-        // Kéo toàn bộ 60 tin nhắn từ Redis về RAM (Tối đa 60 nên rất nhanh)
-        List<Object> objects = getFullListFromCache(key);
-        int targetIndex = findMessageIndex(objects, targetMessageId);
-
-        // Nếu tìm thấy (Redis Hit)
-        if (targetIndex != -1) {
-            List<MessageResponse> cachedMessages = objects.stream().map(obj -> (MessageResponse) obj).toList();
-            // Lấy từ tin mới nhất (index 0) đến tin mục tiêu + 10 tin cũ hơn làm ngữ cảnh
-            int endIndex = Math.min(targetIndex + 11, cachedMessages.size());
+        // Vị trí của tin mục tiêu tính từ tin mới nhất (O(log N))
+        Long targetRank = redisTemplate.opsForZSet().reverseRank(key, targetMessageId);
 
-            // Cắt mảng và tạo bản sao mới để tránh lỗi SubList của Jackson khi trả về
-            return new ArrayList<>(cachedMessages.subList(0, endIndex));
+        // Không tìm thấy trong 60 tin đầu (Redis Miss)
+        if (targetRank == null) {
+            return Collections.emptyList();
         }
 
-        // Không tìm thấy trong 60 tin đầu (Redis Miss)
-        return Collections.emptyList();
+        // Lấy từ tin mới nhất (rank 0) đến tin mục tiêu + 10 tin cũ hơn làm ngữ cảnh
+        Set<Object> ids = redisTemplate.opsForZSet().reverseRange(key, 0, targetRank + 10);
+        List<MessageResponse> messages = loadMessages(conversationId, ids);
+        return messages != null ? new ArrayList<>(messages) : Collections.emptyList();
     }
 }
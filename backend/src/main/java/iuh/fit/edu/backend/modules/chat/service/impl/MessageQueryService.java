@@ -19,8 +19,8 @@ import iuh.fit.edu.backend.modules.chat.repository.MessageRepository;
 import iuh.fit.edu.backend.modules.conversation.service.ConversationMemberService;
 import iuh.fit.edu.backend.modules.chat.service.MessageCacheService;
 import iuh.fit.edu.backend.modules.chat.service.PollService;
-import iuh.fit.edu.backend.modules.user.entity.User;
-import iuh.fit.edu.backend.modules.user.service.UserService;
+import iuh.fit.edu.backend.modules.user.dto.response.UserSummaryResponse;
+import iuh.fit.edu.backend.modules.user.service.UserSummaryLoader;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
@@ -35,8 +35,10 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -56,7 +58,7 @@ public class MessageQueryService {
     private final MessageMapper messageMapper;
     private final PollService pollService;
     private final MongoTemplate mongoTemplate;
-    private final UserService userService;
+    private final UserSummaryLoader userSummaryLoader;
     private final MediaUrlBuilder mediaUrlBuilder;
     private static final Pattern URL_PATTERN = Pattern.compile("(https?://\\S+|www\\.\\S+)", Pattern.CASE_INSENSITIVE);
 
@@ -351,8 +353,19 @@ public class MessageQueryService {
         }
 
         Map<Long, ConversationMemberResponse> membersMap = conversationMemberService.getMembersMap(conversationId);
+        // Người gửi không có nickname trong nhóm -> nạp tên của tất cả trong 1 lần
+        Set<Long> unnamedSenderIds = new HashSet<>();
+        for (Message message : messages) {
+            Long messageSenderId = message.getSenderId();
+            ConversationMemberResponse member = messageSenderId == null ? null : membersMap.get(messageSenderId);
+            if (messageSenderId != null
+                    && (member == null || member.getNickname() == null || member.getNickname().isBlank())) {
+                unnamedSenderIds.add(messageSenderId);
+            }
+        }
+        Map<Long, UserSummaryResponse> senders = userSummaryLoader.loadAll(unnamedSenderIds);
         List<MessageSearchResult> items = messages.stream()
-                .map(message -> toSearchResult(message, membersMap))
+                .map(message -> toSearchResult(message, membersMap, senders))
                 .toList();
 
         String nextCursor = items.isEmpty() ? null : items.getLast().getCreatedAt().toString();
@@ -381,20 +394,15 @@ public class MessageQueryService {
 
     private MessageSearchResult toSearchResult(
             Message message,
-            Map<Long, ConversationMemberResponse> membersMap
+            Map<Long, ConversationMemberResponse> membersMap,
+            Map<Long, UserSummaryResponse> senders
     ) {
         Long senderId = message.getSenderId();
         ConversationMemberResponse member = senderId == null ? null : membersMap.get(senderId);
         String senderName = member == null ? null : member.getNickname();
         if ((senderName == null || senderName.isBlank()) && senderId != null) {
-            try {
-                User user = userService.findUserById(senderId);
-                senderName = user.getName() != null && !user.getName().isBlank()
-                        ? user.getName()
-                        : user.getUsername();
-            } catch (RuntimeException ignored) {
-                senderName = null;
-            }
+            UserSummaryResponse sender = senders.get(senderId);
+            senderName = sender != null ? sender.displayName() : null;
         }
 
         return MessageSearchResult.builder()
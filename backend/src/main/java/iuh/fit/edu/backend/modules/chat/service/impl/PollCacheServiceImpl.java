@@ -3,17 +3,36 @@ package iuh.fit.edu.backend.modules.chat.service.impl;
 import iuh.fit.edu.backend.modules.chat.dto.response.poll.PollResponse;
 import iuh.fit.edu.backend.modules.chat.service.PollCacheService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class PollCacheServiceImpl implements PollCacheService {
     private static final Duration TTL = Duration.ofHours(6);
+    private static final RedisSerializer<Long> LONG_RESULT = new GenericToStringSerializer<>(Long.class);
     private final RedisTemplate<String, Object> redisTemplate;
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void preloadScripts() {
+        try {
+            ChatCacheScripts.preload(redisTemplate, ChatCacheScripts.CACHE_POLL);
+        } catch (Exception e) {
+            log.warn("Không nạp sẵn được Lua script cho poll cache: {}", e.getMessage());
+        }
+    }
+
     @Override
     public PollResponse getPoll(String pollId) {
         Object value = redisTemplate.opsForValue().get(getKey(pollId));
@@ -24,21 +43,38 @@ public class PollCacheServiceImpl implements PollCacheService {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void cachePoll(PollResponse pollResponse) {
         if (pollResponse == null || pollResponse.getId() == null) {
             return;
         }
-        redisTemplate.opsForValue().set(getKey(pollResponse.getId()), pollResponse, TTL);
+        // Version = updatedAt: bản đọc cũ (getPoll) không được ghi đè kết quả vote mới hơn
+        Instant version = pollResponse.getUpdatedAt() != null ? pollResponse.getUpdatedAt() : pollResponse.getCreatedAt();
+        RedisSerializer<Object> serializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        String payload = new String(serializer.serialize(pollResponse), StandardCharsets.UTF_8);
+        redisTemplate.execute(
+                ChatCacheScripts.CACHE_POLL,
+                RedisSerializer.string(),
+                LONG_RESULT,
+                List.of(getKey(pollResponse.getId()), getVersionKey(pollResponse.getId())),
+                payload,
+                String.valueOf(version != null ? version.toEpochMilli() : 0L),
+                String.valueOf(TTL.toSeconds())
+        );
     }
 
     @Override
     public void evictPoll(String pollId) {
         if (pollId != null) {
-            redisTemplate.delete(getKey(pollId));
+            redisTemplate.delete(List.of(getKey(pollId), getVersionKey(pollId)));
         }
     }
 
     private String getKey(String pollId) {
-        return "chat:poll:" + pollId;
+        return "chat:poll:{" + pollId + "}";
+    }
+
+    private String getVersionKey(String pollId) {
+        return "chat:poll:version:{" + pollId + "}";
     }
 }
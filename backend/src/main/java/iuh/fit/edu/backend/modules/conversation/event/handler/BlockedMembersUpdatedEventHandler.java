@@ -1,11 +1,11 @@
 package iuh.fit.edu.backend.modules.conversation.event.handler;
 
 import iuh.fit.edu.backend.common.event.handler.RedisEventHandler;
+import iuh.fit.edu.backend.common.event.subscriber.UserDestinationMulticaster;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 import iuh.fit.edu.backend.modules.conversation.event.payload.BlockedMembersUpdatedEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
@@ -14,7 +14,7 @@ import java.util.Set;
 @Component
 @RequiredArgsConstructor
 public class BlockedMembersUpdatedEventHandler implements RedisEventHandler {
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserDestinationMulticaster userDestinationMulticaster;
 
     @Override
     public Class<?> getSupportedClass() {
@@ -31,10 +31,7 @@ public class BlockedMembersUpdatedEventHandler implements RedisEventHandler {
         BlockedMembersUpdatedEvent event = (BlockedMembersUpdatedEvent) eventPayload;
         if (targetMemberIds == null || targetMemberIds.isEmpty()) return;
 
-        for (Long memberId : targetMemberIds) {
-            String destination = "/topic/user/" + memberId + "/conversations";
-            messagingTemplate.convertAndSend(destination, event);
-        }
+        userDestinationMulticaster.sendToUsers(targetMemberIds, "conversations", event);
         log.info("Broadcast blocked members update to {} admins", targetMemberIds);
     }
 }
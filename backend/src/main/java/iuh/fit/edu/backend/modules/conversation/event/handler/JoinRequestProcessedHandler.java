@@ -1,11 +1,11 @@
 package iuh.fit.edu.backend.modules.conversation.event.handler;
 
 import iuh.fit.edu.backend.common.event.handler.RedisEventHandler;
+import iuh.fit.edu.backend.common.event.subscriber.UserDestinationMulticaster;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 import iuh.fit.edu.backend.modules.conversation.event.payload.JoinRequestProcessedEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
@@ -14,7 +14,7 @@ import java.util.Set;
 @Component
 @RequiredArgsConstructor
 public class JoinRequestProcessedHandler implements RedisEventHandler {
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserDestinationMulticaster userDestinationMulticaster;
 
     @Override
     public Class<?> getSupportedClass() { return JoinRequestProcessedEvent.class; }
@@ -28,10 +28,7 @@ public class JoinRequestProcessedHandler implements RedisEventHandler {
 
         if (targetMemberIds == null || targetMemberIds.isEmpty()) return;
 
-        for (Long memberId : targetMemberIds) {
-            // Gửi tín hiệu về để FE biết mà xóa item này khỏi list
-            String destination = "/topic/user/" + memberId + "/conversations";
-            messagingTemplate.convertAndSend(destination, event);
-        }
+        // Gửi tín hiệu về để FE biết mà xóa item này khỏi list
+        userDestinationMulticaster.sendToUsers(targetMemberIds, "conversations", event);
     }
 }
\ No newline at end of file
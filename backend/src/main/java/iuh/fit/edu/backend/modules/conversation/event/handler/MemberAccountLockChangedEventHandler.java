@@ -5,6 +5,7 @@
 package iuh.fit.edu.backend.modules.conversation.event.handler;
 
 import iuh.fit.edu.backend.common.event.handler.RedisEventHandler;
+import iuh.fit.edu.backend.common.event.subscriber.UserDestinationMulticaster;
 import iuh.fit.edu.backend.modules.conversation.event.payload.MemberAccountLockChangedEvent;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +29,7 @@ import java.util.Set;
 public class MemberAccountLockChangedEventHandler implements RedisEventHandler {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final UserDestinationMulticaster userDestinationMulticaster;
 
     @Override
     public Class<?> getSupportedClass() {
@@ -49,12 +51,7 @@ public class MemberAccountLockChangedEventHandler implements RedisEventHandler {
 
         // 2) Kênh conversations của từng thành viên khác: cập nhật SIDEBAR realtime
         //    (kể cả khi họ KHÔNG mở hội thoại đó). FE chuyển thành window event.
-        if (targetMemberIds != null) {
-            for (Long memberId : targetMemberIds) {
-                messagingTemplate.convertAndSend(
-                        "/topic/user/" + memberId + "/conversations", event);
-            }
-        }
+        userDestinationMulticaster.sendToUsers(targetMemberIds, "conversations", event);
         log.info("Send account lock change to {} and {} sidebar recipient(s)",
                 membersDestination, targetMemberIds == null ? 0 : targetMemberIds.size());
     }
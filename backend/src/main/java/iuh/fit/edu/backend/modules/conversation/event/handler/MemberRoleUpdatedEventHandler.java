@@ -1,11 +1,11 @@
 package iuh.fit.edu.backend.modules.conversation.event.handler;
 
 import iuh.fit.edu.backend.common.event.handler.RedisEventHandler;
+import iuh.fit.edu.backend.common.event.subscriber.UserDestinationMulticaster;
 import iuh.fit.edu.backend.modules.conversation.event.payload.MemberRoleUpdatedEvent;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
@@ -15,7 +15,7 @@ import java.util.Set;
 @Slf4j
 public class MemberRoleUpdatedEventHandler implements RedisEventHandler {
     
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserDestinationMulticaster userDestinationMulticaster;
 
     @Override
     public Class<?> getSupportedClass() { return MemberRoleUpdatedEvent.class; }
@@ -30,10 +30,7 @@ public class MemberRoleUpdatedEventHandler implements RedisEventHandler {
         if (targetMemberIds == null || targetMemberIds.isEmpty())
             return;
 
-        for(Long memberId : targetMemberIds){
-            String destination = "/topic/user/" + memberId + "/conversations";
-            messagingTemplate.convertAndSend(destination, event);
-        }
+        userDestinationMulticaster.sendToUsers(targetMemberIds, "conversations", event);
         log.info("Broadcast update roloe member to {} members", event.getMemberIds());
     }
 }
\ No newline at end of file
@@ -5,12 +5,12 @@
 package iuh.fit.edu.backend.modules.conversation.event.handler;
 
 import iuh.fit.edu.backend.common.event.handler.RedisEventHandler;
+import iuh.fit.edu.backend.common.event.subscriber.UserDestinationMulticaster;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 import iuh.fit.edu.backend.modules.conversation.event.payload.MemberRoleUpdatedEvent;
 import iuh.fit.edu.backend.modules.conversation.event.payload.NewJoinRequestEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 import java.util.Set;
@@ -25,7 +25,7 @@ import java.util.Set;
 @Component
 @RequiredArgsConstructor
 public class NewJoinRequestReventHandler implements RedisEventHandler {
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserDestinationMulticaster userDestinationMulticaster;
 
     @Override
     public Class<?> getSupportedClass() { return NewJoinRequestEvent.class; }
@@ -40,10 +40,7 @@ public class NewJoinRequestReventHandler implements RedisEventHandler {
         if (targetMemberIds == null || targetMemberIds.isEmpty())
             return;
 
-        for(Long memberId : targetMemberIds){
-            String destination = "/topic/user/" + memberId + "/conversations";
-            messagingTemplate.convertAndSend(destination, event);
-        }
+        userDestinationMulticaster.sendToUsers(targetMemberIds, "conversations", event);
         log.info("Broadcast new join request to {} members",targetMemberIds);
     }
 }
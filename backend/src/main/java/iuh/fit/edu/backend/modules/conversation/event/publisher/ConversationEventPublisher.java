@@ -6,10 +6,9 @@ package iuh.fit.edu.backend.modules.conversation.event.publisher;
 
 import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
 import iuh.fit.edu.backend.common.event.payload.RedisEnvelope;
+import iuh.fit.edu.backend.common.event.publisher.RedisEnvelopeBatcher;
 import iuh.fit.edu.backend.modules.conversation.event.payload.*;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionPhase;
@@ -25,10 +24,10 @@ import org.springframework.transaction.event.TransactionalEventListener;
 @Slf4j
 
 public class ConversationEventPublisher {
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisEnvelopeBatcher envelopeBatcher;
 
-    public ConversationEventPublisher(@Qualifier("pubSubRedisTemplate") RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public ConversationEventPublisher(RedisEnvelopeBatcher envelopeBatcher) {
+        this.envelopeBatcher = envelopeBatcher;
     }
 
     // Hàm xử lý gửi sự kiện tạo nhóm cho redis pub/sub
@@ -40,7 +39,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     // Hàm xử lý gửi cập nhật side bar cho redis pub/sub
@@ -52,7 +51,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     // Hàm xử lý gửi sự kiện tạo yêu cầu tham gia cho redis pub/sub
@@ -65,7 +64,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     @Async
@@ -77,7 +76,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     // Hàm xử lý gửi sự kiện thêm thành viên cho redis pub/sub
@@ -90,7 +89,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
@@ -101,7 +100,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     // Hàm xử lý gửi sự kiên remove hoặc kick member cho redis pub/sub
@@ -113,7 +112,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
@@ -124,7 +123,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
@@ -135,7 +134,7 @@ public class ConversationEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
 
@@ -8,10 +8,9 @@ import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
 import iuh.fit.edu.backend.modules.conversation.event.payload.MemberUpdatedEvent;
 import iuh.fit.edu.backend.modules.conversation.event.payload.MemberAccountLockChangedEvent;
 import iuh.fit.edu.backend.common.event.payload.RedisEnvelope;
+import iuh.fit.edu.backend.common.event.publisher.RedisEnvelopeBatcher;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.event.EventListener;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import java.util.Collections;
 
@@ -25,10 +24,10 @@ import java.util.Collections;
 @Component
 public class MemberEventPublisher {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisEnvelopeBatcher envelopeBatcher;
 
-    public MemberEventPublisher(@Qualifier("pubSubRedisTemplate") RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public MemberEventPublisher(RedisEnvelopeBatcher envelopeBatcher) {
+        this.envelopeBatcher = envelopeBatcher;
     }
 
     // Hàm xử lý gửi thông tin cập nhật cho redis pub/sub
@@ -40,7 +39,7 @@ public class MemberEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 
     // Đẩy sự kiện khóa/mở khóa tài khoản của 1 thành viên xuống Redis pub/sub.
@@ -56,6 +55,6 @@ public class MemberEventPublisher {
                 event.getDomainEventType(),
                 event
         );
-        redisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
     }
 }
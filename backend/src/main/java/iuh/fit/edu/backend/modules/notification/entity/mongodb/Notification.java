@@ -53,6 +53,8 @@ public class Notification {
 
     // Người thực hiện hành động (có thể có nhiều người cùng react 1 post)
     private List<String> actorIds;
+    // Tổng số người đã thực hiện (actorIds chỉ giữ vài người gần nhất của thông báo gộp)
+    private Integer actorCount;
 
     // Loại thông báo
     private NotificationType type;
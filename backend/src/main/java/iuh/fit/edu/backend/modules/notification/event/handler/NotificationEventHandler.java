@@ -1,12 +1,13 @@
 package iuh.fit.edu.backend.modules.notification.event.handler;
 
 import iuh.fit.edu.backend.common.event.handler.RedisEventHandler;
+import iuh.fit.edu.backend.common.event.subscriber.UserDestinationMulticaster;
 import iuh.fit.edu.backend.modules.notification.entity.mongodb.Notification;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Set;
 
 @Component
@@ -14,7 +15,7 @@ import java.util.Set;
 @Slf4j
 public class NotificationEventHandler implements RedisEventHandler {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private final UserDestinationMulticaster userDestinationMulticaster;
 
     @Override
     public Class<?> getSupportedClass() {
@@ -37,18 +38,17 @@ public class NotificationEventHandler implements RedisEventHandler {
         // Use targetMemberIds if provided, otherwise fallback to notification.recipientId
         if (targetMemberIds != null && !targetMemberIds.isEmpty()) {
             log.info("📡 [DEBUG-NOTI] 3a. Handler processing via targetMemberIds: {}", targetMemberIds);
-            targetMemberIds.forEach(userId -> sendToUser(userId.toString(), notification));
+            userDestinationMulticaster.sendToUsers(targetMemberIds, "notifications", notification);
         } else if (notification.getRecipientId() != null) {
             log.info("📡 [DEBUG-NOTI] 3b. Handler processing via fallback recipientId: {}", notification.getRecipientId());
-            sendToUser(notification.getRecipientId(), notification);
+            try {
+                userDestinationMulticaster.sendToUsers(
+                        List.of(Long.valueOf(notification.getRecipientId())), "notifications", notification);
+            } catch (NumberFormatException e) {
+                log.warn("❌ [DEBUG-NOTI] Handler failed: invalid recipientId {}", notification.getRecipientId());
+            }
         } else {
             log.warn("❌ [DEBUG-NOTI] Handler failed: No recipient found in payload");
         }
     }
-
-    private void sendToUser(String userId, Notification notification) {
-        String destination = "/topic/user/" + userId + "/notifications";
-        log.info("📡 [DEBUG-NOTI] 4. Sending to WebSocket destination: {}", destination);
-        messagingTemplate.convertAndSend(destination, notification);
-    }
 }
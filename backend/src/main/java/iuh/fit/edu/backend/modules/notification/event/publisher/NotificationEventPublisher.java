@@ -2,49 +2,89 @@ package iuh.fit.edu.backend.modules.notification.event.publisher;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
+import iuh.fit.edu.backend.common.event.publisher.RedisEnvelopeBatcher;
 import iuh.fit.edu.backend.modules.notification.entity.mongodb.Notification;
 import iuh.fit.edu.backend.modules.notification.constant.NotificationType;
 import iuh.fit.edu.backend.modules.notification.constant.TargetType;
 import iuh.fit.edu.backend.modules.notification.repository.NotificationRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import iuh.fit.edu.backend.modules.notification.event.payload.NotificationEvent;
 import iuh.fit.edu.backend.common.event.payload.RedisEnvelope;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 
-import iuh.fit.edu.backend.modules.user.service.UserService;
+import iuh.fit.edu.backend.modules.user.service.UserSummaryLoader;
 import iuh.fit.edu.backend.modules.notification.entity.mongodb.NotificationMetadata;
-import iuh.fit.edu.backend.modules.user.entity.User;
+import iuh.fit.edu.backend.modules.user.dto.response.UserSummaryResponse;
 
+/*
+ * @description
+ * Ghi thông báo xuống MongoDB + Redis cache và đẩy realtime qua Redis Pub/Sub.
+ * Các loại "nhiều người cùng làm 1 việc" (react, comment, share bài; like/follow page) được gom
+ * theo (recipientId, type, targetId) trong windowMs rồi upsert thành 1 thông báo duy nhất
+ * ("A, B và 98 người khác đã thích bài viết của bạn"), nên bài viral chỉ tốn
+ * O(người nhận x số cửa sổ) lần ghi Mongo/Redis/Pub-Sub thay vì O(số reaction).
+ * Các loại còn lại (kết bạn, mention, page...) vẫn ghi ngay từng thông báo như trước.
+ * @author: The Bao
+ * @version: 1.0
+ */
 @Component
 @Slf4j
 public class NotificationEventPublisher {
 
     private final NotificationRepository notificationRepository;
-    private final UserService userService;
-    private final RedisTemplate<String, Object> pubSubRedisTemplate;
+    private final UserSummaryLoader userSummaryLoader;
+    private final RedisEnvelopeBatcher envelopeBatcher;
     private final StringRedisTemplate stringRedisTemplate;
     private final ObjectMapper objectMapper;
 
+    // Thông báo đang chờ gộp, mỗi key được flush đúng 1 lần sau windowMs kể từ event đầu tiên
+    private final Map<AggregationKey, PendingNotification> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService aggregator;
+
+    @Value("${app.notification.aggregation.enabled:true}")
+    private boolean aggregationEnabled;
+
+    @Value("${app.notification.aggregation.window-ms:2000}")
+    private long windowMs;
+
+    // Chỉ gộp vào thông báo chưa đọc tạo trong khoảng này, cũ hơn thì tạo thông báo mới
+    @Value("${app.notification.aggregation.merge-hours:24}")
+    private long mergeHours;
+
     public NotificationEventPublisher(
             NotificationRepository notificationRepository,
-            UserService userService,
-            @Qualifier("pubSubRedisTemplate") RedisTemplate<String, Object> pubSubRedisTemplate,
+            UserSummaryLoader userSummaryLoader,
+            RedisEnvelopeBatcher envelopeBatcher,
             StringRedisTemplate stringRedisTemplate,
             @Qualifier("pubSubObjectMapper") ObjectMapper objectMapper) {
         this.notificationRepository = notificationRepository;
-        this.userService = userService;
-        this.pubSubRedisTemplate = pubSubRedisTemplate;
+        this.userSummaryLoader = userSummaryLoader;
+        this.envelopeBatcher = envelopeBatcher;
         this.stringRedisTemplate = stringRedisTemplate;
         this.objectMapper = objectMapper;
     }
@@ -52,121 +92,319 @@ public class NotificationEventPublisher {
     private static final String UNREAD_COUNT_KEY = "notification:unread:%s";
     private static final String RECENT_NOTIFICATIONS_KEY = "notification:recent:%s";
     private static final int MAX_RECENT_NOTIFICATIONS = 50;
+    // Số actor gần nhất lưu/cache/publish cho 1 thông báo gộp, tổng số nằm ở actorCount
+    private static final int MAX_RECENT_ACTORS = 10;
+    private static final long TTL_SECONDS = 90L * 24 * 60 * 60; // 90 days TTL
+
+    private static final Set<NotificationType> AGGREGATABLE_TYPES = EnumSet.of(
+            NotificationType.REACTION_POST,
+            NotificationType.REACTION_COMMENT,
+            NotificationType.REACTION_STORY,
+            NotificationType.COMMENT_POST,
+            NotificationType.SHARE_POST,
+            NotificationType.PAGE_LIKE,
+            NotificationType.PAGE_FOLLOW
+    );
+
+    @PostConstruct
+    void start() {
+        if (!aggregationEnabled) {
+            return;
+        }
+        // Thread riêng: flush là I/O Mongo + Redis, không chiếm TaskScheduler mặc định
+        aggregator = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("Notification-Aggregator")
+                .daemon(true)
+                .factory());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (aggregator == null) {
+            return;
+        }
+        aggregator.shutdownNow();
+        // Ghi nốt các thông báo đang chờ để không mất khi tắt server
+        for (AggregationKey key : List.copyOf(pending.keySet())) {
+            flush(key);
+        }
+    }
 
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     // @Async - Temporarily disabled to debug sync issues
     public void handleNotificationEvent(NotificationEvent event) {
         log.info("🔔 [DEBUG-NOTI] 1. Received Event for recipient: {}, type: {}", event.getRecipientId(), event.getType());
 
+        if (isAggregatable(event)) {
+            enqueue(event);
+            return;
+        }
+
         try {
             // 1. Build metadata with imageUrl, actorName and deepLink
-            String imageUrl = event.getImageUrl();
-            String actorName = null;
-            if (event.getActorIds() != null && !event.getActorIds().isEmpty()) {
-                try {
-                    String firstActorId = event.getActorIds().get(0);
-                    User actor = userService.findUserById(Long.parseLong(firstActorId));
-                    if (actor != null) {
-                        actorName = actor.getName();
-                        if (imageUrl == null) {
-                            imageUrl = actor.getAvatarUrl();
-                        }
-                    }
-                } catch (Exception e) {
-                    log.warn("⚠️ Could not fetch actor info for notification: {}", e.getMessage());
-                }
-            }
-
-            // Generate deepLink and extraData
-            String deepLink = null;
-            String extraData = null;
-            
-            if (event.getRootTargetId() != null) {
-                deepLink = "/post/" + event.getRootTargetId();
-
-                // Add extra info for comments/replies
-                if (event.getTargetType() == TargetType.COMMENT) {
-                    extraData = "{\"commentId\": \"" + event.getTargetId() + "\"}";
-                }
-            } else if (event.getTargetType() == TargetType.PAGE && event.getTargetId() != null) {
-                // For page notifications, navigate to the page detail
-                deepLink = "/pages/" + event.getTargetId();
-            } else if (event.getType() == NotificationType.FRIEND_REQUEST ||
-                       event.getType() == NotificationType.FRIEND_ACCEPT) {
-                // For friend notifications, navigate to the actor's profile
-                if (event.getActorIds() != null && !event.getActorIds().isEmpty()) {
-                    try {
-                        String firstActorId = event.getActorIds().get(0);
-                        User actor = userService.findUserById(Long.parseLong(firstActorId));
-                        if (actor != null && actor.getUsername() != null) {
-                            deepLink = "/profile/" + actor.getUsername();
-                        }
-                    } catch (Exception e) {
-                        log.warn("⚠️ Could not fetch actor username for deepLink: {}", e.getMessage());
-                    }
-                }
-            }
-
-            NotificationMetadata metadata = NotificationMetadata.builder()
-                    .imageUrl(imageUrl)
-                    .actorName(actorName)
-                    .deepLink(deepLink)
-                    .extraData(extraData)
-                    .build();
+            UserSummaryResponse actor = findActor(event.getActorIds() != null && !event.getActorIds().isEmpty()
+                    ? event.getActorIds().get(0)
+                    : null);
+            NotificationMetadata metadata = buildMetadata(event, actor,
+                    actor != null ? actor.getName() : null, null);
 
             // 2. Persist to MongoDB (Source of Truth)
+            Instant now = Instant.now();
             Notification notification = Notification.builder()
                     .recipientId(event.getRecipientId())
                     .actorIds(event.getActorIds())
+                    .actorCount(event.getActorIds() != null ? event.getActorIds().size() : 0)
                     .type(event.getType())
                     .targetType(event.getTargetType())
                     .targetId(event.getTargetId())
                     .content(event.getContent())
                     .metadata(metadata)
                     .isRead(false)
-                    .createdAt(Instant.now())
-                    .expireAt(Instant.now().plusSeconds(90L * 24 * 60 * 60)) // 90 days TTL
+                    .createdAt(now)
+                    .expireAt(now.plusSeconds(TTL_SECONDS))
                     .build();
             
             notification = notificationRepository.save(notification);
             log.info("✅ [MONGODB] Notification saved. ID: {}, Recipient: {}", notification.getId(), notification.getRecipientId());
 
             // 3. Update Redis Cache
-            String userId = event.getRecipientId();
-            String countKey = String.format(UNREAD_COUNT_KEY, userId);
-            String zsetKey = String.format(RECENT_NOTIFICATIONS_KEY, userId);
-            
-            // Increment unread count
-            stringRedisTemplate.opsForValue().increment(countKey);
-
-            // Add to recent notifications (ZSET)
-            String notificationJson = objectMapper.writeValueAsString(notification);
-            double score = Instant.now().toEpochMilli();
-            stringRedisTemplate.opsForZSet().add(zsetKey, notificationJson, score);
-            
-            // Trim ZSET
-            stringRedisTemplate.opsForZSet().removeRange(zsetKey, 0, -(MAX_RECENT_NOTIFICATIONS + 1));
-            log.info("🚀 [REDIS] Cache updated for user: {}", userId);
+            updateCache(notification, true, false);
 
             // 4. Publish to Redis Pub/Sub for Real-time WebSockets
-            Set<Long> targetMemberIds = Collections.emptySet();
-            try {
-                targetMemberIds = Set.of(Long.valueOf(userId));
-            } catch (Exception e) {
-                log.warn("⚠️ [WEBSOCKET] Recipient ID {} is not numeric, subscriber will fallback to payload.recipientId", userId);
+            publish(notification);
+
+        } catch (Exception e) {
+            log.error("❌ [ERROR] Processing notification event: {}", e.getMessage(), e);
+        }
+    }
+
+    private boolean isAggregatable(NotificationEvent event) {
+        return aggregationEnabled
+                && aggregator != null
+                && !aggregator.isShutdown()
+                && AGGREGATABLE_TYPES.contains(event.getType())
+                && event.getRecipientId() != null
+                && event.getTargetId() != null
+                && event.getActorIds() != null
+                && !event.getActorIds().isEmpty();
+    }
+
+    private void enqueue(NotificationEvent event) {
+        AggregationKey key = new AggregationKey(event.getRecipientId(), event.getType(), event.getTargetId());
+        pending.compute(key, (ignored, current) -> {
+            if (current == null) {
+                aggregator.schedule(() -> flush(key), windowMs, TimeUnit.MILLISECONDS);
+                return new PendingNotification(event);
             }
-            
-            RedisEnvelope envelope = new RedisEnvelope(
-                    targetMemberIds,
-                    DomainEventType.NOTIFICATION,
-                    notification
-            );
+            current.merge(event);
+            return current;
+        });
+    }
+
+    private void flush(AggregationKey key) {
+        PendingNotification batch = pending.remove(key);
+        if (batch == null) {
+            return;
+        }
+        try {
+            deliverAggregated(batch);
+        } catch (Exception e) {
+            log.error("❌ [ERROR] Flushing aggregated notification {}: {}", key, e.getMessage(), e);
+        }
+    }
+
+    /*
+     * 1 lần flush = 2 findAndModify + 1 lần cập nhật Redis + 1 envelope, bất kể bao nhiêu actor trong cửa sổ.
+     */
+    private void deliverAggregated(PendingNotification batch) throws Exception {
+        NotificationEvent event = batch.latest;
+        Instant now = Instant.now();
+
+        Notification incoming = Notification.builder()
+                .recipientId(event.getRecipientId())
+                .actorIds(new ArrayList<>(batch.actorIds))
+                .type(event.getType())
+                .targetType(event.getTargetType())
+                .targetId(event.getTargetId())
+                .content(event.getContent())
+                .createdAt(now)
+                .expireAt(now.plusSeconds(TTL_SECONDS))
+                .build();
+
+        // 1. Upsert: gộp actor vào thông báo chưa đọc gần đây
+        Notification previous = notificationRepository.mergeIntoUnread(
+                incoming, now.minus(Duration.ofHours(mergeHours)), MAX_RECENT_ACTORS);
+        boolean inserted = previous == null;
+
+        // Tính lại đúng như update trên Mongo: actor cũ (bỏ người vừa làm lại) + actor mới, giữ MAX_RECENT_ACTORS người cuối
+        List<String> recent = previous != null && previous.getActorIds() != null ? previous.getActorIds() : List.of();
+        LinkedHashSet<String> merged = new LinkedHashSet<>(recent);
+        merged.removeAll(batch.actorIds);
+        merged.addAll(batch.actorIds);
+        List<String> actorIds = new ArrayList<>(merged);
+        if (actorIds.size() > MAX_RECENT_ACTORS) {
+            actorIds = new ArrayList<>(actorIds.subList(actorIds.size() - MAX_RECENT_ACTORS, actorIds.size()));
+        }
+        int previousCount = previous == null ? 0
+                : previous.getActorCount() != null ? previous.getActorCount() : recent.size();
+        int actorCount = previousCount + (int) batch.actorIds.stream().filter(id -> !recent.contains(id)).count();
 
-            pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.NOTIFICATION_CHANNEL, envelope);
-            log.info("📡 [DEBUG-NOTI] 2. Published to Redis channel for user: {}", userId);
+        // 2. Chỉ tra tên 2 actor mới nhất, phần còn lại hiển thị dạng "và N người khác"
+        UserSummaryResponse newest = findActor(actorIds.getLast());
+        UserSummaryResponse second = actorIds.size() > 1 ? findActor(actorIds.get(actorIds.size() - 2)) : null;
+        NotificationMetadata metadata = buildMetadata(event, newest,
+                formatActorNames(newest, second, actorCount), actorCount);
 
+        Notification notification = notificationRepository.updateUnreadMetadata(
+                event.getRecipientId(), event.getType(), event.getTargetId(), metadata);
+        if (notification == null) {
+            // Người nhận vừa đánh dấu đã đọc giữa 2 lệnh, lần gộp sau sẽ tạo thông báo mới
+            log.warn("⚠️ Aggregated notification for {} was read before metadata update", event.getRecipientId());
+            return;
+        }
+        log.info("✅ [MONGODB] Aggregated notification {} ({} actors, {} new). Recipient: {}",
+                notification.getId(), actorCount, batch.actorIds.size(), notification.getRecipientId());
+
+        // 3. Thông báo mới -> tăng unread; đã có -> chỉ thay bản trong danh sách gần đây
+        updateCache(notification, inserted, !inserted);
+
+        // 4. Publish 1 envelope cho cả cửa sổ
+        publish(notification);
+    }
+
+    private UserSummaryResponse findActor(String actorId) {
+        if (actorId == null) {
+            return null;
+        }
+        try {
+            return userSummaryLoader.load(Long.parseLong(actorId));
         } catch (Exception e) {
-            log.error("❌ [ERROR] Processing notification event: {}", e.getMessage(), e);
+            log.warn("⚠️ Could not fetch actor info for notification: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // "A", "A và B", "A, B và N người khác"
+    private String formatActorNames(UserSummaryResponse newest, UserSummaryResponse second, int total) {
+        if (newest == null) {
+            return null;
+        }
+        if (total == 1 || second == null) {
+            return total <= 1 ? newest.getName() : newest.getName() + " và " + (total - 1) + " người khác";
+        }
+        if (total == 2) {
+            return newest.getName() + " và " + second.getName();
+        }
+        return newest.getName() + ", " + second.getName() + " và " + (total - 2) + " người khác";
+    }
+
+    private NotificationMetadata buildMetadata(NotificationEvent event, UserSummaryResponse actor, String actorName, Integer count) {
+        String imageUrl = event.getImageUrl();
+        if (imageUrl == null && actor != null) {
+            imageUrl = actor.getAvatarUrl();
+        }
+
+        // Generate deepLink and extraData
+        String deepLink = null;
+        String extraData = null;
+
+        if (event.getRootTargetId() != null) {
+            deepLink = "/post/" + event.getRootTargetId();
+
+            // Add extra info for comments/replies
+            if (event.getTargetType() == TargetType.COMMENT) {
+                extraData = "{\"commentId\": \"" + event.getTargetId() + "\"}";
+            }
+        } else if (event.getTargetType() == TargetType.PAGE && event.getTargetId() != null) {
+            // For page notifications, navigate to the page detail
+            deepLink = "/pages/" + event.getTargetId();
+        } else if (event.getType() == NotificationType.FRIEND_REQUEST ||
+                   event.getType() == NotificationType.FRIEND_ACCEPT) {
+            // For friend notifications, navigate to the actor's profile
+            if (actor != null && actor.getUsername() != null) {
+                deepLink = "/profile/" + actor.getUsername();
+            }
+        }
+
+        return NotificationMetadata.builder()
+                .imageUrl(imageUrl)
+                .actorName(actorName)
+                .count(count)
+                .deepLink(deepLink)
+                .extraData(extraData)
+                .build();
+    }
+
+    private void updateCache(Notification notification, boolean newUnread, boolean replaceExisting) throws Exception {
+        String userId = notification.getRecipientId();
+        String countKey = String.format(UNREAD_COUNT_KEY, userId);
+        String zsetKey = String.format(RECENT_NOTIFICATIONS_KEY, userId);
+
+        // Increment unread count
+        if (newUnread) {
+            stringRedisTemplate.opsForValue().increment(countKey);
+        }
+
+        // Bản cũ của thông báo gộp là JSON khác, tìm theo id trong tối đa MAX_RECENT_NOTIFICATIONS phần tử
+        if (replaceExisting) {
+            Set<String> recent = stringRedisTemplate.opsForZSet().range(zsetKey, 0, -1);
+            if (recent != null) {
+                for (String json : recent) {
+                    if (Objects.equals(notification.getId(), objectMapper.readTree(json).path("id").asText(null))) {
+                        stringRedisTemplate.opsForZSet().remove(zsetKey, json);
+                    }
+                }
+            }
+        }
+
+        // Add to recent notifications (ZSET)
+        String notificationJson = objectMapper.writeValueAsString(notification);
+        double score = notification.getCreatedAt().toEpochMilli();
+        stringRedisTemplate.opsForZSet().add(zsetKey, notificationJson, score);
+
+        // Trim ZSET
+        stringRedisTemplate.opsForZSet().removeRange(zsetKey, 0, -(MAX_RECENT_NOTIFICATIONS + 1));
+        log.info("🚀 [REDIS] Cache updated for user: {}", userId);
+    }
+
+    private void publish(Notification notification) {
+        String userId = notification.getRecipientId();
+        Set<Long> targetMemberIds = Collections.emptySet();
+        try {
+            targetMemberIds = Set.of(Long.valueOf(userId));
+        } catch (Exception e) {
+            log.warn("⚠️ [WEBSOCKET] Recipient ID {} is not numeric, subscriber will fallback to payload.recipientId", userId);
+        }
+
+        RedisEnvelope envelope = new RedisEnvelope(
+                targetMemberIds,
+                DomainEventType.NOTIFICATION,
+                notification
+        );
+
+        envelopeBatcher.publishNow(RedisPubSubConfig.NOTIFICATION_CHANNEL, envelope);
+        log.info("📡 [DEBUG-NOTI] 2. Published to Redis channel for user: {}", userId);
+    }
+
+    private record AggregationKey(String recipientId, NotificationType type, String targetId) {
+    }
+
+    // Chỉ được sửa bên trong pending.compute(...) nên không cần khóa riêng
+    private static final class PendingNotification {
+        private final LinkedHashSet<String> actorIds = new LinkedHashSet<>();
+        private NotificationEvent latest;
+
+        private PendingNotification(NotificationEvent event) {
+            merge(event);
+        }
+
+        private void merge(NotificationEvent event) {
+            // Actor react lại trong cùng cửa sổ được đưa xuống cuối (mới nhất)
+            for (String actorId : event.getActorIds()) {
+                actorIds.remove(actorId);
+                actorIds.add(actorId);
+            }
+            latest = event;
         }
     }
 }
@@ -0,0 +1,27 @@
+/*
+ * @ (#) NotificationRepositoryCustom.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.notification.repository;
+
+import iuh.fit.edu.backend.modules.notification.constant.NotificationType;
+import iuh.fit.edu.backend.modules.notification.entity.mongodb.Notification;
+import iuh.fit.edu.backend.modules.notification.entity.mongodb.NotificationMetadata;
+
+import java.time.Instant;
+
+public interface NotificationRepositoryCustom {
+
+    // Gộp actorIds của incoming vào thông báo CHƯA ĐỌC cùng (recipientId, type, targetId) tạo sau since,
+    // chưa có thì tạo mới. actorIds chỉ giữ maxRecentActors người gần nhất, tổng số nằm ở actorCount.
+    // Trả về bản TRƯỚC khi gộp, null nếu vừa tạo mới.
+    Notification mergeIntoUnread(Notification incoming, Instant since, int maxRecentActors);
+
+    // Ghi metadata cho thông báo chưa đọc mới nhất của (recipientId, type, targetId), trả về bản sau khi ghi
+    Notification updateUnreadMetadata(
+            String recipientId,
+            NotificationType type,
+            String targetId,
+            NotificationMetadata metadata
+    );
+}
@@ -0,0 +1,102 @@
+/*
+ * @ (#) NotificationRepositoryCustomImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.notification.repository;
+
+import iuh.fit.edu.backend.modules.notification.constant.NotificationType;
+import iuh.fit.edu.backend.modules.notification.entity.mongodb.Notification;
+import iuh.fit.edu.backend.modules.notification.entity.mongodb.NotificationMetadata;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+/*
+ * @description
+ * Upsert thông báo gộp (nhiều người cùng react/comment/share 1 đối tượng).
+ * Query đi theo index user_type_idx (recipientId, type, createdAt).
+ * @author: The Bao
+ * @version: 1.0
+ */
+@Repository
+@RequiredArgsConstructor
+public class NotificationRepositoryCustomImpl implements NotificationRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Notification mergeIntoUnread(Notification incoming, Instant since, int maxRecentActors) {
+        Query query = unreadQuery(incoming.getRecipientId(), incoming.getType(), incoming.getTargetId());
+        query.addCriteria(Criteria.where("createdAt").gte(since));
+
+        // Pipeline update để vừa bỏ trùng vừa cắt mảng trong 1 lệnh ($push + $slice không bỏ được actor đã có):
+        //   actorIds   = (actor cũ không nằm trong lần gộp này + actor mới) giữ tối đa maxRecentActors phần tử cuối
+        //   actorCount = số cũ (bản cũ chưa có field thì lấy size mảng) + số actor mới chưa có trong danh sách gần đây
+        // Mảng luôn bị chặn nên mỗi lần gộp là O(maxRecentActors) dù bài có bao nhiêu lượt like.
+        // recipientId/type/targetId/isRead lấy từ điều kiện bằng của query khi upsert
+        List<String> actors = incoming.getActorIds();
+        Document existing = new Document("$ifNull", List.of("$actorIds", List.of()));
+        Document older = new Document("$filter", new Document("input", existing)
+                .append("as", "actor")
+                .append("cond", new Document("$not", List.of(
+                        new Document("$in", List.of("$$actor", literal(actors)))))));
+        Document set = new Document()
+                .append("actorCount", new Document("$add", List.of(
+                        new Document("$ifNull", List.of("$actorCount", new Document("$size", existing))),
+                        new Document("$size", new Document("$setDifference", List.of(literal(actors), existing))))))
+                .append("actorIds", new Document("$slice", List.of(
+                        new Document("$concatArrays", List.of(older, literal(actors))), -maxRecentActors)))
+                .append("targetType", literal(incoming.getTargetType()))
+                .append("content", literal(incoming.getContent()))
+                .append("createdAt", literal(incoming.getCreatedAt()))
+                .append("expireAt", new Document("$ifNull", List.of("$expireAt", literal(incoming.getExpireAt()))));
+        AggregationOperation stage = context -> new Document("$set", set);
+
+        return mongoTemplate.findAndModify(
+                query,
+                AggregationUpdate.from(List.of(stage)),
+                FindAndModifyOptions.options().upsert(true).returnNew(false),
+                Notification.class
+        );
+    }
+
+    // Giá trị hằng trong pipeline: bọc $literal để chuỗi bắt đầu bằng '$' (nội dung comment) không bị hiểu là field
+    private Document literal(Object value) {
+        return new Document("$literal", mongoTemplate.getConverter().convertToMongoType(value));
+    }
+
+    @Override
+    public Notification updateUnreadMetadata(
+            String recipientId,
+            NotificationType type,
+            String targetId,
+            NotificationMetadata metadata
+    ) {
+        return mongoTemplate.findAndModify(
+                unreadQuery(recipientId, type, targetId),
+                new Update().set("metadata", metadata),
+                FindAndModifyOptions.options().returnNew(true),
+                Notification.class
+        );
+    }
+
+    private Query unreadQuery(String recipientId, NotificationType type, String targetId) {
+        Query query = new Query(Criteria.where("recipientId").is(recipientId)
+                .and("type").is(type)
+                .and("targetId").is(targetId)
+                .and("isRead").is(false));
+        query.with(Sort.by(Sort.Direction.DESC, "createdAt"));
+        return query;
+    }
+}
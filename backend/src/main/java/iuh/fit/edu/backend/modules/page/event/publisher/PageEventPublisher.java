@@ -1,14 +1,13 @@
 package iuh.fit.edu.backend.modules.page.event.publisher;
 
 import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
+import iuh.fit.edu.backend.common.event.publisher.RedisEnvelopeBatcher;
 import iuh.fit.edu.backend.modules.page.event.payload.PageEvent;
 import iuh.fit.edu.backend.modules.page.event.payload.PageListEvent;
 import iuh.fit.edu.backend.modules.page.event.payload.PagePostEvent;
 import iuh.fit.edu.backend.common.event.payload.RedisEnvelope;
 import iuh.fit.edu.backend.common.event.type.DomainEventType;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.Instant;
@@ -22,10 +21,10 @@ import java.util.Collections;
 @Slf4j
 public class PageEventPublisher {
 
-    private final RedisTemplate<String, Object> pubSubRedisTemplate;
+    private final RedisEnvelopeBatcher envelopeBatcher;
 
-    public PageEventPublisher(@Qualifier("pubSubRedisTemplate") RedisTemplate<String, Object> pubSubRedisTemplate) {
-        this.pubSubRedisTemplate = pubSubRedisTemplate;
+    public PageEventPublisher(RedisEnvelopeBatcher envelopeBatcher) {
+        this.envelopeBatcher = envelopeBatcher;
     }
 
     // ── Member Events ─────────────────────────────────────────────────────
@@ -47,7 +46,7 @@ public class PageEventPublisher {
                 event
         );
 
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
         log.info("Published {} to Redis for Page {} and User {}", type, pageId, userId);
     }
 
@@ -100,7 +99,7 @@ public class PageEventPublisher {
                 .build();
 
         RedisEnvelope envelope = new RedisEnvelope(Collections.emptySet(), type, event);
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
         log.info("Published {} to Redis for Page {} Post {}", type, pageId, postId);
     }
 
@@ -131,7 +130,7 @@ public class PageEventPublisher {
                 .build();
 
         RedisEnvelope envelope = new RedisEnvelope(Collections.emptySet(), type, event);
-        pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.CHAT_CHANNEL, envelope);
+        envelopeBatcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, envelope);
         log.info("Published {} to Redis for Page {}", type, pageId);
     }
 
@@ -0,0 +1,83 @@
+/*
+ * @ (#) FeedProperties.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/*
+ * @description: Cấu hình cho newsfeed (app.feed.*)
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "app.feed")
+public class FeedProperties {
+
+    private Timeline timeline = new Timeline();
+    private Discovery discovery = new Discovery();
+    private Seen seen = new Seen();
+    private FirstPageCache firstPageCache = new FirstPageCache();
+    private Parallel parallel = new Parallel();
+
+    @Getter
+    @Setter
+    public static class Timeline {
+        // Bật home timeline dựng sẵn (fan-out-on-write). Tắt = query trực tiếp như cũ
+        private boolean enabled = false;
+        // Tác giả có nhiều bạn hơn ngưỡng này sẽ không fan-out, viewer tự kéo bài lúc đọc
+        private int maxFanoutFriends = 1000;
+        // Số bài tối đa giữ trong timeline của mỗi viewer
+        private int maxEntries = 500;
+        private Duration ttl = Duration.ofDays(2);
+    }
+
+    @Getter
+    @Setter
+    public static class Discovery {
+        // Bật pool bài khám phá dựng sẵn thay cho $sample trên toàn bộ collection posts
+        private boolean enabled = false;
+        // Chỉ xét bài PUBLIC tạo trong khoảng thời gian này
+        private Duration window = Duration.ofDays(7);
+        // Số bài có tương tác cao nhất giữ lại cho mỗi khung 1 giờ
+        private int postsPerHourBucket = 20;
+    }
+
+    @Getter
+    @Setter
+    public static class Seen {
+        // Bloom filter "đã xem" cho bài khám phá/ngẫu nhiên, tránh lặp lại giữa các lần mở app
+        private boolean enabled = true;
+        // Mỗi khung thời gian dùng một filter mới, luôn kiểm tra khung hiện tại + khung trước
+        private Duration window = Duration.ofHours(12);
+        // 65536 bit = 8KB/user/khung, ~0.5% false positive với 5000 bài
+        private int bits = 65536;
+        private int hashes = 4;
+    }
+
+    @Getter
+    @Setter
+    public static class FirstPageCache {
+        // Cache trang đầu (lastRankingTime == null) theo viewer cho các lần mở app liên tiếp
+        private boolean enabled = true;
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Parallel {
+        // Chạy song song các truy vấn con của feed trên virtual thread thay vì tuần tự
+        private boolean enabled = false;
+        // Thời gian chờ tối đa cho mỗi truy vấn con; quá hạn thì feed dùng kết quả rỗng cho nguồn đó
+        private Duration timeout = Duration.ofMillis(800);
+    }
+}
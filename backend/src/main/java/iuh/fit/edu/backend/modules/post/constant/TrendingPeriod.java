@@ -0,0 +1,47 @@
+/*
+ * @ (#) TrendingPeriod.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.constant;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/*
+ * @description
+ * Khung xếp hạng hashtag thịnh hành.
+ *   window   : khoảng thời gian tính postCount/engagementCount/velocity
+ *   bucket   : độ rộng mỗi bucket đếm trên Redis (HOURLY đọc 12 bucket 5 phút, DAILY/WEEKLY đọc bucket 1 giờ)
+ *   halfLife : sau mỗi halfLife, đóng góp của 1 bài/1 tương tác vào trendingScore giảm còn một nửa
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+@Getter
+public enum TrendingPeriod {
+    HOURLY("hourly", Duration.ofHours(1), Duration.ofMinutes(5), Duration.ofMinutes(15)),
+    DAILY("daily", Duration.ofDays(1), Duration.ofHours(1), Duration.ofHours(4)),
+    WEEKLY("weekly", Duration.ofDays(7), Duration.ofHours(1), Duration.ofDays(1));
+
+    private final String value;
+    private final Duration window;
+    private final Duration bucket;
+    private final Duration halfLife;
+
+    TrendingPeriod(String value, Duration window, Duration bucket, Duration halfLife) {
+        this.value = value;
+        this.window = window;
+        this.bucket = bucket;
+        this.halfLife = halfLife;
+    }
+
+    public static TrendingPeriod fromValue(String value) {
+        for (TrendingPeriod period : values()) {
+            if (period.value.equalsIgnoreCase(value) || period.name().equalsIgnoreCase(value)) {
+                return period;
+            }
+        }
+        return DAILY;
+    }
+}
@@ -1,6 +1,7 @@
 package iuh.fit.edu.backend.modules.post.controller;
 
 import iuh.fit.edu.backend.common.dto.response.ApiResponse;
+import iuh.fit.edu.backend.modules.post.constant.TrendingPeriod;
 import iuh.fit.edu.backend.modules.post.entity.HashtagTrending;
 import iuh.fit.edu.backend.modules.post.entity.Post;
 import iuh.fit.edu.backend.modules.post.service.HashtagTrendingService;
@@ -27,17 +28,20 @@ public class HashtagController {
 
     /**
      * Get trending hashtags with pagination
+     * @param period hourly | daily | weekly
      * @param page page number (0-based)
      * @param size page size
      * @return page of HashtagTrending
      */
     @GetMapping("/trending")
     public ResponseEntity<ApiResponse<Page<HashtagTrending>>> getTrendingHashtags(
+            @RequestParam(defaultValue = "daily") String period,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size) {
         try {
-            log.info("Fetching trending hashtags: page={}, size={}", page, size);
-            Page<HashtagTrending> trending = hashtagTrendingService.getTrendingHashtags(page, size);
+            log.info("Fetching trending hashtags: period={}, page={}, size={}", period, page, size);
+            Page<HashtagTrending> trending = hashtagTrendingService.getTrendingHashtags(
+                    TrendingPeriod.fromValue(period), page, size);
             return ResponseEntity.ok(ApiResponse.success(200, "Lấy bảng xếp hạng hashtag thịnh hành thành công", trending));
         } catch (Exception e) {
             log.error("Error fetching trending hashtags", e);
@@ -9,10 +9,12 @@ import iuh.fit.edu.backend.common.constant.UploadModule;
 import iuh.fit.edu.backend.modules.post.entity.Post;
 import iuh.fit.edu.backend.modules.post.dto.request.CreatePostRequest;
 import iuh.fit.edu.backend.modules.post.dto.response.FeedSliceResponse;
+import iuh.fit.edu.backend.modules.post.dto.response.StatsReconciliationResponse;
 import iuh.fit.edu.backend.common.dto.response.ApiResponse;
 import iuh.fit.edu.backend.common.dto.response.PresignedUrlResponse;
 import iuh.fit.edu.backend.modules.post.service.FeedService;
 import iuh.fit.edu.backend.modules.post.service.PostService;
+import iuh.fit.edu.backend.modules.post.service.PostStatsReconciliationService;
 import iuh.fit.edu.backend.common.service.s3.S3Service;
 import iuh.fit.edu.backend.modules.user.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -39,6 +41,7 @@ public class PostController {
 
     private final PostService postService;
     private final FeedService feedService;
+    private final PostStatsReconciliationService postStatsReconciliationService;
     private final ObjectMapper objectMapper;
     private final UserService userService;
     private final S3Service s3Service;
@@ -320,19 +323,35 @@ public class PostController {
     }
 
     /**
-     * Sync stats for all posts from reactions and comments
-     * @return Success message
+     * Đối soát stats của posts với reactions/comments (chạy nền, theo batch)
+     * @param since Chỉ đối soát bài có hoạt động từ thời điểm này (bỏ trống = toàn bộ)
+     * @param resume Tiếp tục từ checkpoint của lần chạy dở
+     * @return Tiến độ hiện tại
      */
     @PostMapping("/sync-stats")
-    public ResponseEntity<ApiResponse<String>> syncAllPostsStats() {
+    public ResponseEntity<ApiResponse<StatsReconciliationResponse>> syncAllPostsStats(
+            @RequestParam(required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            Instant since,
+            @RequestParam(defaultValue = "false") boolean resume) {
         try {
-            log.info("Syncing stats for all posts");
-            postService.syncAllPostsStats();
-            return ResponseEntity.ok(ApiResponse.success(200, "Đồng bộ thống kê cho tất cả posts thành công", "OK"));
+            log.info("Starting stats reconciliation (since: {}, resume: {})", since, resume);
+            StatsReconciliationResponse progress = postStatsReconciliationService.start(since, resume);
+            return ResponseEntity.ok(ApiResponse.success(200, "Đã bắt đầu đồng bộ thống kê posts", progress));
         } catch (Exception e) {
             log.error("Error syncing posts stats", e);
             return ResponseEntity.badRequest()
                     .body(ApiResponse.error(400, "Lỗi khi đồng bộ thống kê: " + e.getMessage(), null));
         }
     }
+
+    /**
+     * Tiến độ đối soát stats
+     * @return Số bài đã quét/cập nhật, checkpoint, tốc độ
+     */
+    @GetMapping("/sync-stats")
+    public ResponseEntity<ApiResponse<StatsReconciliationResponse>> getSyncStatsProgress() {
+        return ResponseEntity.ok(ApiResponse.success(200, "Tiến độ đồng bộ thống kê",
+                postStatsReconciliationService.getProgress()));
+    }
 }
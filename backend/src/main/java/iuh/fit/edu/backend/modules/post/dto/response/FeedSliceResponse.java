@@ -1,14 +1,20 @@
 package iuh.fit.edu.backend.modules.post.dto.response;
 
 import iuh.fit.edu.backend.modules.post.entity.Post;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
 
 import java.time.Instant;
 import java.util.List;
 
 @Getter
+@Setter
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class FeedSliceResponse {
 
     private List<Post> posts;
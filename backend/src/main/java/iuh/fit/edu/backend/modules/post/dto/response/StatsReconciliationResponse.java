@@ -0,0 +1,34 @@
+package iuh.fit.edu.backend.modules.post.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsReconciliationResponse {
+
+    // IDLE | RUNNING | COMPLETED | FAILED
+    private String status;
+    // null = đối soát toàn bộ, khác null = chỉ bài có hoạt động từ thời điểm này
+    private Instant touchedSince;
+    private Instant startedAt;
+    private Instant finishedAt;
+    // Checkpoint: _id (và lastActivityAt ở chế độ incremental) của bài cuối cùng đã xử lý xong
+    private String lastPostId;
+    private Instant lastActivityAt;
+    private long scannedPosts;
+    private long updatedPosts;
+    // Bài vừa có tương tác trong khoảng settle, để lần chạy sau xử lý
+    private long skippedPosts;
+    private long batches;
+    private double postsPerSecond;
+    private String error;
+}
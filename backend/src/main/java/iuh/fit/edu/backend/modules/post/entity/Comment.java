@@ -23,6 +23,8 @@ import java.util.List;
  * @description: Comment entity with nested replies support
  * Tối ưu: Compound index cho query comments của post/target
  * Hỗ trợ thread replies với parentId
+ * Materialized path: rootPostId + ancestorIds (root comment -> cha trực tiếp) để tìm bài gốc
+ * và xóa cả nhánh con bằng 1 query, không phải đi ngược/duyệt từng cấp
  * @author: Huu Thai
  * @date: 2026-01-20
  * @version: 1.0
@@ -40,6 +42,10 @@ import java.util.List;
         @CompoundIndex(
                 name = "parent_created_idx",
                 def = "{'parentId': 1, 'createdAt': 1}"
+        ),
+        @CompoundIndex(
+                name = "ancestors_idx",
+                def = "{'ancestorIds': 1}"
         )
 })
 public class Comment {
@@ -59,6 +65,13 @@ public class Comment {
     @Indexed
     private String parentId;
 
+    // Bài viết gốc của cả thread (null nếu target không phải POST)
+    private String rootPostId;
+
+    // Id các comment tổ tiên theo thứ tự root -> cha trực tiếp, rỗng với root comment.
+    // null = comment cũ tạo trước khi có trường này
+    private List<String> ancestorIds;
+
     private String content;
     
     // Mentions trong comment
@@ -46,6 +46,11 @@ import java.util.List;
         @CompoundIndex(
                 name = "author_status_ranking_idx",
                 def = "{'authorId': 1, 'status': 1, 'rankingTime': -1}"
+        ),
+        // Keyset (lastActivityAt, _id) cho đối soát stats incremental
+        @CompoundIndex(
+                name = "activity_id_idx",
+                def = "{'lastActivityAt': 1, '_id': 1}"
         )
 })
 public class Post {
@@ -0,0 +1,50 @@
+/*
+ * @ (#) ReactionCounter.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.entity;
+
+import iuh.fit.edu.backend.modules.notification.constant.TargetType;
+import iuh.fit.edu.backend.modules.post.constant.ReactionType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/*
+ * @description: Bộ đếm reaction đã denormalize cho từng target (POST, COMMENT...)
+ * Mỗi target 1 document, _id = "{targetType}:{targetId}", cập nhật bằng $inc nguyên tử
+ * nên getReactionSummary chỉ đọc 1 document thay vì load toàn bộ reactions.
+ * @author: The Bao
+ * @version: 1.0
+ */
+@Document(collection = "reaction_counters")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReactionCounter {
+
+    @Id
+    private String id;
+
+    private TargetType targetType;
+    private String targetId;
+
+    // Tổng số reaction và số lượng theo từng loại (LIKE, LOVE...)
+    private long totalCount;
+    @Builder.Default
+    private Map<ReactionType, Long> counts = new EnumMap<>(ReactionType.class);
+
+    private Instant updatedAt;
+
+    public static String idOf(TargetType targetType, String targetId) {
+        return targetType + ":" + targetId;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * @ (#) FeedCacheInvalidationListener.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.event.handler;
+
+import iuh.fit.edu.backend.modules.post.event.payload.PostEvent;
+import iuh.fit.edu.backend.modules.post.service.FeedCacheService;
+import iuh.fit.edu.backend.modules.post.service.HomeTimelineService;
+import iuh.fit.edu.backend.modules.user.event.payload.FriendshipChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Set;
+
+/*
+ * @description
+ * Invalidate cache trang đầu feed khi dữ liệu nguồn thay đổi:
+ *   1) PostEvent CREATE/UPDATE/DELETE (PostServiceImpl bắn sau commit) -> xóa cache của tác giả + bạn bè.
+ *      BUMP (reaction/comment) không invalidate, chỉ chờ TTL ngắn hết hạn.
+ *   2) FriendshipChangedEvent -> xóa cache và dựng lại home timeline của cả hai user,
+ *      vì danh sách bạn bè quyết định bài nào được thấy.
+ * @author: The Bao
+ * @version: 1.0
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FeedCacheInvalidationListener {
+
+    private static final Set<String> INVALIDATING_ACTIONS = Set.of("CREATE", "UPDATE", "DELETE");
+
+    private final FeedCacheService feedCacheService;
+    private final HomeTimelineService homeTimelineService;
+
+    @Async
+    @EventListener
+    public void onPostChanged(PostEvent event) {
+        if (event.getAuthorId() == null || !INVALIDATING_ACTIONS.contains(event.getAction())) {
+            return;
+        }
+        try {
+            feedCacheService.evictPostAudience(event.getAuthorId());
+        } catch (Exception e) {
+            log.warn("Failed to evict feed cache for post {}: {}", event.getPostId(), e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        for (Long userId : new Long[]{event.getUserId(), event.getFriendId()}) {
+            feedCacheService.evict(userId);
+            homeTimelineService.resetTimeline(userId);
+        }
+    }
+}
@@ -1,10 +1,9 @@
 package iuh.fit.edu.backend.modules.post.event.publisher;
 
 import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
+import iuh.fit.edu.backend.common.event.publisher.RedisEnvelopeBatcher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
@@ -20,8 +19,7 @@ import java.util.Collections;
 @Slf4j
 public class PostEventPublisher {
 
-    @Qualifier("pubSubRedisTemplate")
-    private final RedisTemplate<String, Object> pubSubRedisTemplate;
+    private final RedisEnvelopeBatcher envelopeBatcher;
 
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void handlePostRealtimeEvent(PostEvent event) {
@@ -35,7 +33,7 @@ public class PostEventPublisher {
                     event
             );
 
-            pubSubRedisTemplate.convertAndSend(RedisPubSubConfig.POST_CHANNEL, envelope);
+            envelopeBatcher.publishNow(RedisPubSubConfig.POST_CHANNEL, envelope);
             log.info("✅ Successfully published post event to Redis channel: {}", RedisPubSubConfig.POST_CHANNEL);
         } catch (Exception e) {
             log.error("❌ Error publishing post event to Redis", e);
@@ -9,6 +9,7 @@ import iuh.fit.edu.backend.modules.post.entity.Comment;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.Update;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
@@ -21,7 +22,7 @@ import java.util.List;
  * @version: 1.0
  */
 @Repository
-public interface CommentRepository extends MongoRepository<Comment, String> {
+public interface CommentRepository extends MongoRepository<Comment, String>, CommentRepositoryCustom {
     
     // Get root comments (cấp 1) của target - sắp xếp mới → cũ
     List<Comment> findByTargetTypeAndTargetIdAndParentIdIsNullOrderByCreatedAtDesc(
@@ -49,6 +50,16 @@ public interface CommentRepository extends MongoRepository<Comment, String> {
     
     // Count replies
     long countByParentId(String parentId);
+
+    // Cộng/trừ replyCount nguyên tử, không đọc - ghi lại cả document cha
+    @Query("{ '_id': ?0 }")
+    @Update("{ '$inc': { 'replyCount': ?1 } }")
+    void incrementReplyCount(String commentId, long delta);
+
+    // Trừ 1 replyCount nhưng không xuống dưới 0 (bộ đếm đã lệch từ trước thì bỏ qua thay vì ra số âm)
+    @Query("{ '_id': ?0, 'replyCount': { '$gt': 0 } }")
+    @Update("{ '$inc': { 'replyCount': -1 } }")
+    void decrementReplyCount(String commentId);
     
     // Legacy methods (keep for backward compatibility)
     List<Comment> findByTargetTypeAndTargetIdOrderByCreatedAtDesc(TargetType targetType, String targetId);
@@ -0,0 +1,39 @@
+/*
+ * @ (#) CommentRepositoryCustom.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.repository;
+
+import iuh.fit.edu.backend.modules.notification.constant.TargetType;
+import iuh.fit.edu.backend.modules.post.entity.Comment;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface CommentRepositoryCustom {
+
+    // Root comments của target (mới -> cũ) kèm tối đa replyLimit reply mới nhất của mỗi comment, trong 1 aggregation
+    List<CommentThread> findRootCommentsWithReplies(
+            TargetType targetType,
+            String targetId,
+            int page,
+            int size,
+            int replyLimit
+    );
+
+    // Bài viết gốc của comment: đọc rootPostId, comment cũ chưa có path thì đi ngược parentId
+    String findRootPostId(String commentId);
+
+    // Xóa comment và toàn bộ nhánh con, trả về số document đã xóa
+    long deleteSubtree(Comment comment);
+
+    // Đếm comment cấp 1 và reply của nhiều bài trong 1 aggregation $group
+    Map<String, CommentCounts> countByPosts(Collection<String> postIds);
+
+    record CommentCounts(long comments, long replies) {
+    }
+
+    record CommentThread(Comment comment, List<Comment> latestReplies) {
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * @ (#) CommentRepositoryCustomImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.repository;
+
+import iuh.fit.edu.backend.modules.notification.constant.TargetType;
+import iuh.fit.edu.backend.modules.post.entity.Comment;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Repository
+@RequiredArgsConstructor
+public class CommentRepositoryCustomImpl implements CommentRepositoryCustom {
+
+    // Giới hạn độ sâu khi đi ngược parentId của comment cũ (tránh vòng lặp vô hạn)
+    private static final int MAX_LEGACY_DEPTH = 10;
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<CommentThread> findRootCommentsWithReplies(
+            TargetType targetType,
+            String targetId,
+            int page,
+            int size,
+            int replyLimit
+    ) {
+        // Lấy reply mới nhất của từng root comment ngay trong $lookup, đi theo index parent_created_idx.
+        // _id là ObjectId còn parentId lưu dạng chuỗi nên phải so sánh qua $toString
+        AggregationOperation latestReplies = context -> new Document("$lookup", new Document()
+                .append("from", mongoTemplate.getCollectionName(Comment.class))
+                .append("let", new Document("rootId", new Document("$toString", "$_id")))
+                .append("pipeline", List.of(
+                        new Document("$match", new Document("$expr",
+                                new Document("$eq", List.of("$parentId", "$$rootId")))),
+                        new Document("$sort", new Document("createdAt", -1)),
+                        new Document("$limit", replyLimit)
+                ))
+                .append("as", "latestReplies"));
+
+        TypedAggregation<Comment> aggregation = Aggregation.newAggregation(
+                Comment.class,
+                Aggregation.match(Criteria.where("targetType").is(targetType)
+                        .and("targetId").is(targetId)
+                        .and("parentId").is(null)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt")),
+                Aggregation.skip((long) page * size),
+                Aggregation.limit(size),
+                latestReplies
+        );
+
+        List<CommentThread> threads = new ArrayList<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, Document.class).getMappedResults()) {
+            List<Comment> replies = new ArrayList<>();
+            for (Document reply : row.getList("latestReplies", Document.class, List.of())) {
+                replies.add(mongoTemplate.getConverter().read(Comment.class, reply));
+            }
+            row.remove("latestReplies");
+            threads.add(new CommentThread(mongoTemplate.getConverter().read(Comment.class, row), replies));
+        }
+        return threads;
+    }
+
+    @Override
+    public Map<String, CommentCounts> countByPosts(Collection<String> postIds) {
+        // Reply cũng lưu targetId = postId, phân biệt với comment cấp 1 qua parentId
+        // parentId thiếu hoặc null đều là comment cấp 1 ($eq với null không khớp field thiếu nên dùng $ifNull)
+        AggregationExpression isRoot = ComparisonOperators
+                .valueOf(ConditionalOperators.ifNull("parentId").then(""))
+                .equalToValue("");
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("targetType").is(TargetType.POST).and("targetId").in(postIds)),
+                Aggregation.group("targetId")
+                        .sum(ConditionalOperators.when(isRoot).then(1).otherwise(0)).as("comments")
+                        .sum(ConditionalOperators.when(isRoot).then(0).otherwise(1)).as("replies")
+        );
+
+        Map<String, CommentCounts> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, Comment.class, Document.class).getMappedResults()) {
+            counts.put(row.getString("_id"), new CommentCounts(
+                    ((Number) row.get("comments")).longValue(),
+                    ((Number) row.get("replies")).longValue()
+            ));
+        }
+        return counts;
+    }
+
+    @Override
+    public String findRootPostId(String commentId) {
+        String currentId = commentId;
+        for (int depth = 0; currentId != null && depth < MAX_LEGACY_DEPTH; depth++) {
+            Query query = Query.query(Criteria.where("_id").is(currentId));
+            query.fields().include("rootPostId").include("targetType").include("targetId").include("parentId");
+            Comment comment = mongoTemplate.findOne(query, Comment.class);
+            if (comment == null) {
+                return null;
+            }
+            if (comment.getRootPostId() != null) {
+                return comment.getRootPostId();
+            }
+            if (comment.getTargetType() == TargetType.POST) {
+                return comment.getTargetId();
+            }
+            currentId = comment.getParentId();
+        }
+        return null;
+    }
+
+    @Override
+    public long deleteSubtree(Comment comment) {
+        if (comment.getAncestorIds() != null) {
+            // Mọi con cháu đều chứa id của comment trong ancestorIds -> 1 lệnh xóa
+            Query query = Query.query(new Criteria().orOperator(
+                    Criteria.where("_id").is(comment.getId()),
+                    Criteria.where("ancestorIds").is(comment.getId())
+            ));
+            return mongoTemplate.remove(query, Comment.class).getDeletedCount();
+        }
+
+        // Comment cũ chưa có path: duyệt theo từng tầng, mỗi tầng 1 query $in thay vì 1 query mỗi node
+        Set<String> ids = new LinkedHashSet<>();
+        List<String> frontier = List.of(comment.getId());
+        while (!frontier.isEmpty()) {
+            ids.addAll(frontier);
+            Query children = Query.query(Criteria.where("parentId").in(frontier));
+            children.fields().include("_id");
+            frontier = mongoTemplate.find(children, Comment.class).stream()
+                    .map(Comment::getId)
+                    .filter(id -> !ids.contains(id))
+                    .toList();
+        }
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").in(ids)), Comment.class).getDeletedCount();
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,4 +16,6 @@ public interface HashtagTrendingRepository extends MongoRepository<HashtagTrendi
     Optional<HashtagTrending> findByHashtagAndPeriod(String hashtag, String period);
     Page<HashtagTrending> findByPeriod(String period, Pageable pageable);
     List<HashtagTrending> findTop10ByOrderByTrendingScoreDesc();
+    List<HashtagTrending> findByPeriodAndHashtagIn(String period, Collection<String> hashtags);
+    void deleteByPeriodAndHashtagNotIn(String period, Collection<String> hashtags);
 }
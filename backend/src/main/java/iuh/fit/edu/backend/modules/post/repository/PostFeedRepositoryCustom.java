@@ -1,9 +1,13 @@
 package iuh.fit.edu.backend.modules.post.repository;
 
 import iuh.fit.edu.backend.modules.post.entity.Post;
+import org.springframework.data.mongodb.core.query.Update;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface PostFeedRepositoryCustom {
 
@@ -22,10 +26,12 @@ public interface PostFeedRepositoryCustom {
         Instant lastRankingTime,
         String lastPostId,
         Instant olderThan,
-        List<String> excludePostIds,
             int size
     );
 
+    // Bài PUBLIC đang ACTIVE tạo sau createdAfter, chỉ lấy các field cần để chấm điểm khám phá
+    Stream<Post> streamDiscoveryCandidates(Instant createdAfter);
+
     List<Post> findProfilePosts(
             String targetUserId,
             String currentUserId,
@@ -58,4 +64,33 @@ public interface PostFeedRepositoryCustom {
             String currentUserId,
             List<String> friendIds
     );
+
+    // Cộng dồn reactCount cho nhiều bài trong 1 bulk write
+    void incrementReactCounts(Map<String, Long> deltas, Instant lastActivityAt);
+
+    // $set các field vừa sửa của 1 bài (không đụng tới stats)
+    void applyEdit(String postId, Update update);
+
+    // Tính lại rankingTime từ stats hiện tại của các bài
+    void refreshRankingTimes(Collection<String> postIds);
+
+    // $inc commentCount hoặc replyCount (+ friendCommentCount) và $max lastActivityAt trong 1 update nguyên tử,
+    // bộ đếm không xuống dưới 0 khi delta âm
+    void incrementCommentCounts(String postId, long delta, boolean isReply, boolean isFriend, Instant lastActivityAt);
+
+    // Chỉ lấy các field cần để đối soát stats.
+    // touchedSince null -> keyset theo _id tăng dần (quét toàn bộ)
+    // touchedSince khác null -> chỉ bài có lastActivityAt >= touchedSince, keyset (lastActivityAt, _id) theo index activity_id_idx
+    List<Post> findStatsBatch(String afterPostId, Instant afterActivityAt, Instant touchedSince, int size);
+
+    // Ghi reactCount/commentCount/replyCount + rankingTime đã tính sẵn trên từng bài trong 1 bulk write.
+    // Chỉ ghi khi bộ đếm trên Mongo vẫn bằng giá trị đã đọc, bài vừa được $inc giữa lúc đọc và ghi giữ nguyên.
+    // Trả về số bài đã ghi.
+    long updateStatsBatch(List<StatsCorrection> corrections);
+
+    record StatsCorrection(Post post, long readReactCount, long readCommentCount, long readReplyCount) {
+    }
+
+    // postId -> hashtags, bỏ qua bài không có hashtag
+    Map<String, List<String>> findHashtagsByIds(Collection<String> postIds);
 }
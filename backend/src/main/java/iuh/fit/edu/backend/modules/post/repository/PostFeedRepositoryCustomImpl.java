@@ -1,20 +1,27 @@
 package iuh.fit.edu.backend.modules.post.repository;
 
+import iuh.fit.edu.backend.common.util.MongoQueryDeadline;
 import iuh.fit.edu.backend.modules.post.constant.PrivacyType;
 import iuh.fit.edu.backend.modules.post.constant.StatusType;
 import iuh.fit.edu.backend.modules.post.entity.Post;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationResults;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Repository
 @RequiredArgsConstructor
@@ -48,7 +55,7 @@ public class PostFeedRepositoryCustomImpl implements PostFeedRepositoryCustom {
         query.with(Sort.by(Sort.Order.desc("rankingTime"), Sort.Order.desc("_id")));
         query.limit(size);
 
-        return mongoTemplate.find(query, Post.class);
+        return mongoTemplate.find(MongoQueryDeadline.applyTo(query), Post.class);
     }
 
     @Override
@@ -70,7 +77,7 @@ public class PostFeedRepositoryCustomImpl implements PostFeedRepositoryCustom {
         query.with(Sort.by(Sort.Order.desc("createdAt")));
         query.limit(size);
 
-        return mongoTemplate.find(query, Post.class);
+        return mongoTemplate.find(MongoQueryDeadline.applyTo(query), Post.class);
     }
 
     @Override
@@ -80,7 +87,6 @@ public class PostFeedRepositoryCustomImpl implements PostFeedRepositoryCustom {
             Instant lastRankingTime,
             String lastPostId,
             Instant olderThan,
-            List<String> excludePostIds,
             int size
     ) {
         if (size <= 0) {
@@ -94,16 +100,12 @@ public class PostFeedRepositoryCustomImpl implements PostFeedRepositoryCustom {
         andCriteria.add(buildPrivacyCriteria(currentUserId, friendIds));
         andCriteria.add(buildCursorCriteria(lastRankingTime, lastPostId));
 
-        if (excludePostIds != null && !excludePostIds.isEmpty()) {
-            andCriteria.add(Criteria.where("_id").nin(excludePostIds));
-        }
-
         Criteria matchCriteria = new Criteria().andOperator(andCriteria);
 
         Aggregation aggregation = Aggregation.newAggregation(
                 Aggregation.match(matchCriteria),
                 Aggregation.sample(size)
-        );
+        ).withOptions(MongoQueryDeadline.aggregationOptions());
 
         AggregationResults<Post> aggregationResults = mongoTemplate.aggregate(
                 aggregation,
@@ -113,6 +115,18 @@ public class PostFeedRepositoryCustomImpl implements PostFeedRepositoryCustom {
 
         return aggregationResults.getMappedResults();
         }
+
+    @Override
+    public Stream<Post> streamDiscoveryCandidates(Instant createdAfter) {
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("status").is(StatusType.ACTIVE),
+                Criteria.where("privacy").is(PrivacyType.PUBLIC),
+                Criteria.where("createdAt").gte(createdAfter)
+        ));
+        query.fields().include("authorId", "createdAt", "rankingTime", "stats");
+
+        return mongoTemplate.stream(query, Post.class);
+    }
     
     @Override
     public List<Post> findProfilePosts(
@@ -244,4 +258,153 @@ public class PostFeedRepositoryCustomImpl implements PostFeedRepositoryCustom {
         Query query = new Query(new Criteria().andOperator(andCriteria));
         return mongoTemplate.count(query, Post.class);
     }
+
+    @Override
+    public void incrementReactCounts(Map<String, Long> deltas, Instant lastActivityAt) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        // 1 round trip cho mọi bài trong lần flush, chỉ $inc field cần đổi thay vì save cả document
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+        deltas.forEach((postId, delta) -> bulk.updateOne(
+                Query.query(Criteria.where("_id").is(postId)),
+                new Update()
+                        .inc("stats.reactCount", delta)
+                        .max("lastActivityAt", lastActivityAt)
+        ));
+        bulk.execute();
+    }
+
+    @Override
+    public void applyEdit(String postId, Update update) {
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(postId)), update, Post.class);
+    }
+
+    @Override
+    public void incrementCommentCounts(String postId, long delta, boolean isReply, boolean isFriend,
+                                       Instant lastActivityAt) {
+        List<String> fields = new ArrayList<>();
+        fields.add(isReply ? "stats.replyCount" : "stats.commentCount");
+        if (isFriend) {
+            fields.add("stats.friendCommentCount");
+        }
+        Criteria filter = Criteria.where("_id").is(postId);
+        Update update = new Update().max("lastActivityAt", lastActivityAt);
+        for (String field : fields) {
+            update.inc(field, delta);
+            if (delta < 0) {
+                // Chặn dưới 0 ngay trong filter: chỉ trừ khi bộ đếm còn đủ
+                filter.and(field).gte(-delta);
+            }
+        }
+        if (mongoTemplate.updateFirst(Query.query(filter), update, Post.class).getMatchedCount() > 0 || delta >= 0) {
+            return;
+        }
+        // Bộ đếm đã lệch (nhỏ hơn số cần trừ): xử lý riêng từng field, field nào không đủ thì về 0
+        for (String field : fields) {
+            Query enough = Query.query(Criteria.where("_id").is(postId).and(field).gte(-delta));
+            if (mongoTemplate.updateFirst(enough, new Update().inc(field, delta), Post.class).getMatchedCount() == 0) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(postId).and(field).lt(-delta)),
+                        new Update().set(field, 0L), Post.class);
+            }
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(postId)),
+                new Update().max("lastActivityAt", lastActivityAt), Post.class);
+    }
+
+    @Override
+    public void refreshRankingTimes(Collection<String> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        Query query = Query.query(Criteria.where("_id").in(postIds));
+        query.fields().include("stats").include("createdAt");
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+        for (Post post : mongoTemplate.find(query, Post.class)) {
+            if (post.getStats() == null) {
+                continue;
+            }
+            Update update = new Update();
+            // $inc không chặn dưới 0 như code cũ, sửa lại nếu bộ đếm bị lệch
+            if (post.getStats().getReactCount() < 0) {
+                post.getStats().setReactCount(0);
+                update.set("stats.reactCount", 0L);
+            }
+            post.recalculateRankingTime();
+            update.set("rankingTime", post.getRankingTime());
+            bulk.updateOne(Query.query(Criteria.where("_id").is(post.getId())), update);
+        }
+        bulk.execute();
+    }
+
+    @Override
+    public List<Post> findStatsBatch(String afterPostId, Instant afterActivityAt, Instant touchedSince, int size) {
+        Query query = new Query();
+        if (touchedSince == null) {
+            if (afterPostId != null) {
+                query.addCriteria(Criteria.where("_id").gt(afterPostId));
+            }
+            query.with(Sort.by(Sort.Direction.ASC, "_id"));
+        } else {
+            // lastActivityAt chỉ tăng ($max), bài được chạm trong lúc quét dời ra sau cursor nên không bị sót.
+            // Cursor lấy từ bài đã thỏa lastActivityAt >= touchedSince nên điều kiện keyset đã bao hàm mốc đó
+            if (afterActivityAt != null && afterPostId != null) {
+                query.addCriteria(new Criteria().orOperator(
+                        Criteria.where("lastActivityAt").gt(afterActivityAt),
+                        Criteria.where("lastActivityAt").is(afterActivityAt).and("_id").gt(afterPostId)));
+            } else {
+                query.addCriteria(Criteria.where("lastActivityAt").gte(touchedSince));
+            }
+            query.with(Sort.by(Sort.Order.asc("lastActivityAt"), Sort.Order.asc("_id")));
+        }
+        query.fields().include("stats").include("createdAt").include("lastActivityAt");
+        query.limit(size);
+        return mongoTemplate.find(query, Post.class);
+    }
+
+    @Override
+    public long updateStatsBatch(List<StatsCorrection> corrections) {
+        if (corrections.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Post.class);
+        for (StatsCorrection correction : corrections) {
+            Post post = correction.post();
+            bulk.updateOne(
+                    Query.query(new Criteria().andOperator(
+                            Criteria.where("_id").is(post.getId()),
+                            counterIs("stats.reactCount", correction.readReactCount()),
+                            counterIs("stats.commentCount", correction.readCommentCount()),
+                            counterIs("stats.replyCount", correction.readReplyCount()))),
+                    new Update()
+                            .set("stats.reactCount", post.getStats().getReactCount())
+                            .set("stats.commentCount", post.getStats().getCommentCount())
+                            .set("stats.replyCount", post.getStats().getReplyCount())
+                            .set("rankingTime", post.getRankingTime())
+            );
+        }
+        return bulk.execute().getMatchedCount();
+    }
+
+    // Bài cũ có thể chưa có field bộ đếm, lúc đọc được hiểu là 0
+    private static Criteria counterIs(String field, long value) {
+        return value == 0 ? Criteria.where(field).in(0L, null) : Criteria.where(field).is(value);
+    }
+
+    @Override
+    public Map<String, List<String>> findHashtagsByIds(Collection<String> postIds) {
+        if (postIds.isEmpty()) {
+            return Map.of();
+        }
+        Query query = Query.query(Criteria.where("_id").in(postIds)
+                .and("hashtags.0").exists(true));
+        query.fields().include("hashtags");
+
+        Map<String, List<String>> result = new HashMap<>();
+        for (Post post : mongoTemplate.find(query, Post.class)) {
+            result.put(post.getId(), post.getHashtags());
+        }
+        return result;
+    }
 }
@@ -0,0 +1,13 @@
+/*
+ * @ (#) ReactionCounterRepository.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.repository;
+
+import iuh.fit.edu.backend.modules.post.entity.ReactionCounter;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ReactionCounterRepository extends MongoRepository<ReactionCounter, String>, ReactionCounterRepositoryCustom {
+}
@@ -0,0 +1,27 @@
+/*
+ * @ (#) ReactionCounterRepositoryCustom.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.repository;
+
+import iuh.fit.edu.backend.modules.notification.constant.TargetType;
+import iuh.fit.edu.backend.modules.post.constant.ReactionType;
+import iuh.fit.edu.backend.modules.post.entity.ReactionCounter;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface ReactionCounterRepositoryCustom {
+
+    // $inc nguyên tử: added +1, removed -1 (null = bỏ qua). Trả về false nếu target chưa có bộ đếm
+    boolean increment(TargetType targetType, String targetId, ReactionType added, ReactionType removed);
+
+    // Tạo bộ đếm nếu chưa có ($setOnInsert), không đè bộ đếm đã được tạo bởi luồng khác
+    void initializeIfAbsent(ReactionCounter counter);
+
+    // Đếm reaction theo loại từ collection reactions (dùng khi khởi tạo bộ đếm cho target cũ)
+    Map<ReactionType, Long> countByType(TargetType targetType, String targetId);
+
+    // Tổng số reaction của nhiều target trong 1 aggregation $group (target không có reaction không nằm trong map)
+    Map<String, Long> countByTargets(TargetType targetType, Collection<String> targetIds);
+}
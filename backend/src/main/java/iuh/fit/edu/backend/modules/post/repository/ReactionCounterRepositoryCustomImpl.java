@@ -0,0 +1,95 @@
+/*
+ * @ (#) ReactionCounterRepositoryCustomImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.repository;
+
+import iuh.fit.edu.backend.modules.notification.constant.TargetType;
+import iuh.fit.edu.backend.modules.post.constant.ReactionType;
+import iuh.fit.edu.backend.modules.post.entity.Reaction;
+import iuh.fit.edu.backend.modules.post.entity.ReactionCounter;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class ReactionCounterRepositoryCustomImpl implements ReactionCounterRepositoryCustom {
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public boolean increment(TargetType targetType, String targetId, ReactionType added, ReactionType removed) {
+        Update update = new Update().set("updatedAt", Instant.now());
+        if (added != null) {
+            update.inc("counts." + added.name(), 1);
+        }
+        if (removed != null) {
+            update.inc("counts." + removed.name(), -1);
+        }
+        // Đổi loại reaction (LIKE -> LOVE) không làm thay đổi tổng
+        int totalDelta = (added != null ? 1 : 0) - (removed != null ? 1 : 0);
+        if (totalDelta != 0) {
+            update.inc("totalCount", totalDelta);
+        }
+
+        Query query = Query.query(Criteria.where("_id").is(ReactionCounter.idOf(targetType, targetId)));
+        return mongoTemplate.updateFirst(query, update, ReactionCounter.class).getMatchedCount() > 0;
+    }
+
+    @Override
+    public void initializeIfAbsent(ReactionCounter counter) {
+        Update update = new Update()
+                .setOnInsert("targetType", counter.getTargetType())
+                .setOnInsert("targetId", counter.getTargetId())
+                .setOnInsert("totalCount", counter.getTotalCount())
+                .setOnInsert("counts", counter.getCounts())
+                .setOnInsert("updatedAt", counter.getUpdatedAt());
+
+        Query query = Query.query(Criteria.where("_id").is(counter.getId()));
+        mongoTemplate.upsert(query, update, ReactionCounter.class);
+    }
+
+    @Override
+    public Map<ReactionType, Long> countByType(TargetType targetType, String targetId) {
+        // Đi theo index target_type_idx (targetType, targetId, type)
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("targetType").is(targetType).and("targetId").is(targetId)),
+                Aggregation.group("type").count().as("count")
+        );
+
+        Map<ReactionType, Long> counts = new EnumMap<>(ReactionType.class);
+        for (Document row : mongoTemplate.aggregate(aggregation, Reaction.class, Document.class).getMappedResults()) {
+            Object type = row.get("_id");
+            if (type != null) {
+                counts.put(ReactionType.valueOf(type.toString()), ((Number) row.get("count")).longValue());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Long> countByTargets(TargetType targetType, Collection<String> targetIds) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("targetType").is(targetType).and("targetId").in(targetIds)),
+                Aggregation.group("targetId").count().as("count")
+        );
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Document row : mongoTemplate.aggregate(aggregation, Reaction.class, Document.class).getMappedResults()) {
+            counts.put(row.getString("_id"), ((Number) row.get("count")).longValue());
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * @ (#) DiscoveryPoolService.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service;
+
+import iuh.fit.edu.backend.modules.post.entity.Post;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+/*
+ * @description: Pool bài khám phá dựng sẵn cho phần fallback của feed
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+public interface DiscoveryPoolService {
+
+    // Pool đã được bật và đã có dữ liệu
+    boolean isAvailable();
+
+    // Lấy tối đa size bài từ pool theo thứ tự rankingTime DESC, bỏ qua bài đã xem (FeedSeenService)
+    List<Post> drawPosts(
+            Long viewerId,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant olderThan,
+            Set<String> excludePostIds,
+            int size
+    );
+
+    void refreshPool();
+
+    // Gỡ bài khỏi pool ngay khi bài bị xóa hoặc không còn PUBLIC, không chờ lần refresh kế tiếp
+    void removePost(String postId);
+}
@@ -0,0 +1,28 @@
+/*
+ * @ (#) FeedCacheService.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service;
+
+import iuh.fit.edu.backend.modules.post.dto.response.FeedSliceResponse;
+
+/*
+ * @description: Cache ngắn hạn cho trang đầu của feed theo từng viewer
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+public interface FeedCacheService {
+
+    boolean isEnabled();
+
+    // Trả về null nếu cache miss
+    FeedSliceResponse getFirstPage(Long userId, int pageSize);
+
+    void putFirstPage(Long userId, int pageSize, FeedSliceResponse response);
+
+    void evict(Long userId);
+
+    // Xóa cache của tác giả và toàn bộ bạn bè (những người có thể thấy bài trên trang đầu)
+    void evictPostAudience(String authorId);
+}
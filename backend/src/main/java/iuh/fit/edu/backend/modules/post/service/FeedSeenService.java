@@ -0,0 +1,22 @@
+/*
+ * @ (#) FeedSeenService.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * @description: Theo dõi các bài đã hiển thị trên feed của từng user (rolling Bloom filter)
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+public interface FeedSeenService {
+
+    // Trả về các postId chưa xem, giữ nguyên thứ tự đầu vào (có thể loại nhầm ~0.5% do false positive)
+    List<String> filterUnseen(Long userId, List<String> postIds);
+
+    void markSeen(Long userId, Collection<String> postIds);
+}
@@ -1,12 +1,21 @@
 package iuh.fit.edu.backend.modules.post.service;
 
+import iuh.fit.edu.backend.modules.post.constant.TrendingPeriod;
 import iuh.fit.edu.backend.modules.post.entity.HashtagTrending;
 import org.springframework.data.domain.Page;
 import java.util.List;
+import java.util.Map;
 
 public interface HashtagTrendingService {
     void updateHashtagOnPostCreated(String postId, String authorId, List<String> hashtags);
     void updateHashtagOnPostUpdated(String postId, String authorId, List<String> oldHashtags, List<String> newHashtags);
     void updateHashtagOnPostDeleted(String postId, List<String> hashtags);
+    // Tương tác (comment, share...) trên bài có các hashtag này
+    void recordEngagement(List<String> hashtags, long count);
+    // Tương tác gom theo bài (postId -> số tương tác), tự tra hashtag của các bài trong 1 query
+    void recordPostEngagement(Map<String, Long> countsByPost);
     Page<HashtagTrending> getTrendingHashtags(int page, int size);
+    Page<HashtagTrending> getTrendingHashtags(TrendingPeriod period, int page, int size);
+    // Tính lại top-K của mọi khung từ bộ đếm trên Redis
+    void refreshTrending();
 }
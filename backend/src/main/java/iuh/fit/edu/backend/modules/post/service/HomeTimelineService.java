@@ -0,0 +1,40 @@
+/*
+ * @ (#) HomeTimelineService.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service;
+
+import iuh.fit.edu.backend.modules.post.entity.Post;
+
+import java.time.Instant;
+import java.util.List;
+
+/*
+ * @description: Home timeline dựng sẵn cho từng viewer (fan-out-on-write)
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+public interface HomeTimelineService {
+
+    boolean isEnabled();
+
+    // Đẩy bài viết mới vào timeline của những người bạn được phép xem
+    void fanOutPost(Post post);
+
+    // Gỡ bài viết khỏi timeline của bạn bè tác giả
+    void removePost(Post post);
+
+    // Đánh dấu timeline cần dựng lại (vd: khi danh sách bạn bè thay đổi)
+    void resetTimeline(Long userId);
+
+    // Thay thế PostRepository.findRecentFriendPosts khi timeline được bật
+    List<Post> findRecentFriendPosts(
+            Long viewerId,
+            List<String> friendIds,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant recentThreshold,
+            int size
+    );
+}
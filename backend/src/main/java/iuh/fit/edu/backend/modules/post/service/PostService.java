@@ -20,6 +20,5 @@ public interface PostService {
     void deletePost(String postId, Long userId);
     Post updatePost(String postId, CreatePostRequest request, List<String> newImageUrls, Long userId);
     List<Post> getPostsByTaggedUserId(String userId);
-    void syncAllPostsStats();
     Page<Post> getPostsByHashtag(String hashtag, Long currentUserId, int page, int size);
 }
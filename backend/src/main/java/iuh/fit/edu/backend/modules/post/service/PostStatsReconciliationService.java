@@ -0,0 +1,23 @@
+/*
+ * @ (#) PostStatsReconciliationService.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service;
+
+import iuh.fit.edu.backend.modules.post.dto.response.StatsReconciliationResponse;
+
+import java.time.Instant;
+
+/*
+ * @description: Đối soát Post.stats (reactCount, commentCount, replyCount) với reactions/comments thực tế
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+public interface PostStatsReconciliationService {
+
+    // Chạy nền; touchedSince = null -> toàn bộ bài. resume = tiếp tục từ checkpoint của lần chạy dở
+    StatsReconciliationResponse start(Instant touchedSince, boolean resume);
+
+    StatsReconciliationResponse getProgress();
+}
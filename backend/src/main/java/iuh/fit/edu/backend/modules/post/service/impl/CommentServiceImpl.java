@@ -7,15 +7,17 @@ import iuh.fit.edu.backend.modules.post.dto.request.CreateCommentRequest;
 import iuh.fit.edu.backend.modules.post.dto.response.CommentResponse;
 import iuh.fit.edu.backend.modules.post.dto.response.PaginatedCommentsResponse;
 import iuh.fit.edu.backend.modules.post.repository.CommentRepository;
+import iuh.fit.edu.backend.modules.post.repository.CommentRepositoryCustom;
 import iuh.fit.edu.backend.modules.post.repository.PostRepository;
 import iuh.fit.edu.backend.modules.user.repository.UserRepository;
 import iuh.fit.edu.backend.modules.post.service.CommentService;
+import iuh.fit.edu.backend.modules.post.service.HashtagTrendingService;
 import iuh.fit.edu.backend.modules.notification.service.NotificationService;
 import iuh.fit.edu.backend.modules.post.event.payload.CommentEvent;
 import iuh.fit.edu.backend.modules.notification.event.payload.NotificationEvent;
 import iuh.fit.edu.backend.modules.post.event.payload.PostEvent;
 import iuh.fit.edu.backend.modules.notification.constant.NotificationType;
-import iuh.fit.edu.backend.modules.user.service.FriendService;
+import iuh.fit.edu.backend.modules.user.service.SocialGraphService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
@@ -29,11 +31,9 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Instant;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -55,7 +55,8 @@ public class CommentServiceImpl implements CommentService {
     private final UserRepository userRepository;
     private final NotificationService notificationService;
     private final ApplicationEventPublisher eventPublisher;
-    private final FriendService friendService;
+    private final SocialGraphService socialGraphService;
+    private final HashtagTrendingService hashtagTrendingService;
     private static final int INITIAL_REPLY_LIMIT = 3;
 
     @Override
@@ -79,11 +80,27 @@ public class CommentServiceImpl implements CommentService {
         // Process structured mentions
         List<Comment.Mention> mentions = processMentions(request);
 
+        // Materialized path: kế thừa path của cha, chỉ 1 lần đọc cha cho cả reply count và notification
+        Comment parent = request.getParentId() != null
+                ? commentRepository.findById(request.getParentId()).orElse(null)
+                : null;
+        List<String> ancestorIds = new ArrayList<>();
+        String threadPostId = request.getTargetType() == TargetType.POST ? request.getTargetId() : null;
+        if (parent != null) {
+            if (parent.getAncestorIds() != null) {
+                ancestorIds.addAll(parent.getAncestorIds());
+            }
+            ancestorIds.add(parent.getId());
+            threadPostId = getRootPostId(parent);
+        }
+
         Comment comment = Comment.builder()
                 .userId(userId.toString())
                 .targetType(request.getTargetType())
                 .targetId(request.getTargetId())
                 .parentId(request.getParentId())
+                .rootPostId(threadPostId)
+                .ancestorIds(ancestorIds)
                 .content(request.getContent())
                 .mentions(mentions)
                 .reactCount(0L)
@@ -99,10 +116,9 @@ public class CommentServiceImpl implements CommentService {
 
         // If this is a reply, update parent's reply count
         if (request.getParentId() != null) {
-            commentRepository.findById(request.getParentId()).ifPresent(parent -> {
-                parent.setReplyCount(parent.getReplyCount() + 1);
-                commentRepository.save(parent);
-            });
+            if (parent != null) {
+                commentRepository.incrementReplyCount(parent.getId(), 1);
+            }
 
             // Replies also contribute to total post comment count.
             if (request.getTargetType() == TargetType.POST) {
@@ -120,19 +136,17 @@ public class CommentServiceImpl implements CommentService {
         try {
             if (request.getParentId() != null) {
                 // REPLY_COMMENT notification
-                commentRepository.findById(request.getParentId()).ifPresent(parent -> {
-                    if (!parent.getUserId().equals(userId.toString())) {
-                        notificationService.createNotification(NotificationEvent.builder()
-                                .recipientId(parent.getUserId())
-                                .actorIds(List.of(userId.toString()))
-                                .type(NotificationType.REPLY_COMMENT)
-                                .targetType(TargetType.COMMENT)
-                                .targetId(savedComment.getId())
-                                .rootTargetId(request.getTargetId()) // TargetId of the request is the Post ID
-                                .content("đã phản hồi bình luận của bạn: " + savedComment.getContent())
-                                .build());
-                    }
-                });
+                if (parent != null && !parent.getUserId().equals(userId.toString())) {
+                    notificationService.createNotification(NotificationEvent.builder()
+                            .recipientId(parent.getUserId())
+                            .actorIds(List.of(userId.toString()))
+                            .type(NotificationType.REPLY_COMMENT)
+                            .targetType(TargetType.COMMENT)
+                            .targetId(savedComment.getId())
+                            .rootTargetId(request.getTargetId()) // TargetId of the request is the Post ID
+                            .content("đã phản hồi bình luận của bạn: " + savedComment.getContent())
+                            .build());
+                }
             } else if (request.getTargetType() == TargetType.POST) {
                 // COMMENT_POST notification
                 postRepository.findById(request.getTargetId()).ifPresent(post -> {
@@ -200,25 +214,15 @@ public class CommentServiceImpl implements CommentService {
 
 
     private String getRootPostId(Comment comment) {
+        if (comment.getRootPostId() != null) {
+            return comment.getRootPostId();
+        }
         if (comment.getTargetType() == TargetType.POST) {
             return comment.getTargetId();
         }
         
-        // If it's a reply, trace up to root
-        int depth = 0;
-        String currentParentId = comment.getParentId();
-        
-        while (currentParentId != null && depth < 10) { // Limit depth to prevent infinite loops
-            Comment parent = commentRepository.findById(currentParentId).orElse(null);
-            if (parent == null) break;
-            
-            if (parent.getTargetType() == TargetType.POST) {
-                return parent.getTargetId();
-            }
-            currentParentId = parent.getParentId();
-            depth++;
-        }
-        return null;
+        // Comment cũ chưa có rootPostId: trace up to root
+        return comment.getParentId() != null ? commentRepository.findRootPostId(comment.getParentId()) : null;
     }
 
     @Override
@@ -226,11 +230,9 @@ public class CommentServiceImpl implements CommentService {
         log.info("Getting root comments for target: {} of type: {} (page: {}, size: {})", 
                  targetId, targetType, page, size);
         
-        Pageable pageable = PageRequest.of(page, size);
-        
-        // Get root comments only (parentId is null) - sorted mới → cũ
-        List<Comment> rootComments = commentRepository
-                .findByTargetTypeAndTargetIdAndParentIdIsNullOrderByCreatedAtDesc(targetType, targetId, pageable);
+        // Root comments (parentId is null, mới → cũ) kèm reply mới nhất của từng comment trong 1 aggregation
+        List<CommentRepositoryCustom.CommentThread> threads = commentRepository
+                .findRootCommentsWithReplies(targetType, targetId, page, size, INITIAL_REPLY_LIMIT + 1);
         
         // Root count: only for root pagination/hasMore
         long rootCount = commentRepository
@@ -242,9 +244,8 @@ public class CommentServiceImpl implements CommentService {
         
         // Convert to response and add initial replies for each
         List<CommentResponse> responses = new ArrayList<>();
-        for (Comment comment : rootComments) {
-            CommentResponse response = buildCommentWithReplies(comment, INITIAL_REPLY_LIMIT);
-            responses.add(response);
+        for (CommentRepositoryCustom.CommentThread thread : threads) {
+            responses.add(toResponseWithReplies(thread.comment(), thread.latestReplies(), INITIAL_REPLY_LIMIT));
         }
         
         // Check if there are more pages
@@ -313,12 +314,18 @@ public class CommentServiceImpl implements CommentService {
      * Build comment response with initial replies
      */
     private CommentResponse buildCommentWithReplies(Comment comment, int replyLimit) {
-        CommentResponse response = commentToResponse(comment);
-
         // Get initial latest replies (newest-first window)
         Pageable pageable = PageRequest.of(0, replyLimit + 1); // +1 to check if there's more
         List<Comment> replies = commentRepository.findByParentIdOrderByCreatedAtDesc(comment.getId(), pageable);
-        
+        return toResponseWithReplies(comment, replies, replyLimit);
+    }
+
+    /**
+     * Build comment response from already loaded latest replies (newest-first, up to replyLimit + 1)
+     */
+    private CommentResponse toResponseWithReplies(Comment comment, List<Comment> replies, int replyLimit) {
+        CommentResponse response = commentToResponse(comment);
+
         boolean hasMoreReplies = replies.size() > replyLimit;
         if (hasMoreReplies) {
             replies = replies.subList(0, replyLimit);
@@ -419,17 +426,12 @@ public class CommentServiceImpl implements CommentService {
         String rootPostId = getRootPostId(comment);
         String parentId = comment.getParentId();
 
-        List<String> descendantIds = collectDescendantIds(commentId);
-        List<String> allIdsToDelete = new ArrayList<>();
-        allIdsToDelete.add(commentId);
-        allIdsToDelete.addAll(descendantIds);
+        // Xóa comment + toàn bộ nhánh con theo ancestorIds
+        long deletedCount = commentRepository.deleteSubtree(comment);
 
         // Update parent's reply count if this is a reply
         if (comment.getParentId() != null) {
-            commentRepository.findById(comment.getParentId()).ifPresent(parent -> {
-                parent.setReplyCount(Math.max(0, parent.getReplyCount() - 1));
-                commentRepository.save(parent);
-            });
+            commentRepository.decrementReplyCount(comment.getParentId());
         }
 
         // Keep post commentCount synced for all levels (comment + descendants)
@@ -438,11 +440,10 @@ public class CommentServiceImpl implements CommentService {
             // distinguishing between replies and top-level would require more complex checking
             boolean isFriend = isUserFriendOfPostAuthor(userId.toString(), comment.getTargetId());
             boolean isReply = comment.getParentId() != null;
-            updatePostCommentCount(comment.getTargetId(), -allIdsToDelete.size(), isReply, isFriend);
+            updatePostCommentCount(comment.getTargetId(), (int) -deletedCount, isReply, isFriend);
         }
 
-        commentRepository.deleteAllById(allIdsToDelete);
-        log.info("Comment deleted successfully. Removed {} docs (including descendants)", allIdsToDelete.size());
+        log.info("Comment deleted successfully. Removed {} docs (including descendants)", deletedCount);
         
         // Publish realtime DELETE event - Post-commit
         try {
@@ -502,23 +503,6 @@ public class CommentServiceImpl implements CommentService {
         }
     }
 
-    private List<String> collectDescendantIds(String rootCommentId) {
-        List<String> descendants = new ArrayList<>();
-        Deque<String> queue = new ArrayDeque<>();
-        queue.add(rootCommentId);
-
-        while (!queue.isEmpty()) {
-            String current = queue.poll();
-            List<Comment> children = commentRepository.findByParentIdOrderByCreatedAtAsc(current);
-            for (Comment child : children) {
-                descendants.add(child.getId());
-                queue.add(child.getId());
-            }
-        }
-
-        return descendants;
-    }
-
     private List<Comment.Mention> processMentions(CreateCommentRequest request) {
         List<Comment.Mention> mentions = new ArrayList<>();
         
@@ -572,8 +556,7 @@ public class CommentServiceImpl implements CommentService {
             if (post.getAuthorId() == null || post.getAuthorId().isBlank()) return false;
             if (post.getAuthorId().equals(userId)) return false; // Self is not considered 'friend' for boost
             try {
-                return friendService.getAcceptedFriendIds(Long.parseLong(userId))
-                        .contains(Long.parseLong(post.getAuthorId()));
+                return socialGraphService.areFriends(Long.parseLong(userId), Long.parseLong(post.getAuthorId()));
             } catch (Exception e) {
                 return false;
             }
@@ -581,27 +564,19 @@ public class CommentServiceImpl implements CommentService {
     }
 
     private void updatePostCommentCount(String postId, int delta, boolean isReply, boolean isFriend) {
-        postRepository.findById(postId).ifPresent(post -> {
-            if (post.getStats() != null) {
-                if (isReply) {
-                    long newReplyCount = Math.max(0L, post.getStats().getReplyCount() + delta);
-                    post.getStats().setReplyCount(newReplyCount);
-                } else {
-                    long newCount = Math.max(0L, post.getStats().getCommentCount() + delta);
-                    post.getStats().setCommentCount(newCount);
-                }
-                
-                if (isFriend) {
-                    long newFriendCount = Math.max(0L, post.getStats().getFriendCommentCount() + delta);
-                    post.getStats().setFriendCommentCount(newFriendCount);
-                }
-                
-                post.recalculateRankingTime();
-                post.setLastActivityAt(Instant.now()); // for UI and realtime
-                postRepository.save(post);
-                log.info("Updated post {} stats and bumped rankingTime to {}", postId, post.getRankingTime());
+        // $inc nguyên tử thay vì findById + save: save cả document sẽ ghi đè stats.reactCount
+        // mà PostReactCountBuffer vừa $inc giữa lúc đọc và lúc ghi
+        postRepository.incrementCommentCounts(postId, delta, isReply, isFriend, Instant.now());
+        postRepository.refreshRankingTimes(List.of(postId));
+        log.info("Updated post {} comment stats by {}", postId, delta);
+        if (delta > 0) {
+            try {
+                List<String> hashtags = postRepository.findHashtagsByIds(List.of(postId)).get(postId);
+                hashtagTrendingService.recordEngagement(hashtags, delta);
+            } catch (Exception e) {
+                log.warn("Failed to record hashtag engagement for post {}: {}", postId, e.getMessage());
             }
-        });
+        }
     }
 
     private void updatePostLastActivityAt(String postId) {
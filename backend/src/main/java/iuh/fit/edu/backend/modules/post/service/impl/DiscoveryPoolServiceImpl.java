@@ -0,0 +1,220 @@
+/*
+ * @ (#) DiscoveryPoolServiceImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service.impl;
+
+import iuh.fit.edu.backend.modules.post.config.FeedProperties;
+import iuh.fit.edu.backend.modules.post.constant.PrivacyType;
+import iuh.fit.edu.backend.modules.post.constant.StatusType;
+import iuh.fit.edu.backend.modules.post.entity.Post;
+import iuh.fit.edu.backend.modules.post.entity.Stats;
+import iuh.fit.edu.backend.modules.post.repository.PostRepository;
+import iuh.fit.edu.backend.modules.post.service.DiscoveryPoolService;
+import iuh.fit.edu.backend.modules.post.service.FeedSeenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/*
+ * @description: Pool bài khám phá lưu trên Redis ZSET (feed:discovery:pool, score = rankingTime, member = postId).
+ * Job định kỳ chọn top-N bài PUBLIC có tương tác cao nhất trong mỗi khung 1 giờ;
+ * feed đọc theo rankingTime nên cursor phân trang vẫn giữ đúng, mỗi trang chỉ tốn O(page).
+ * Bài đã xem được lọc qua FeedSeenService.
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DiscoveryPoolServiceImpl implements DiscoveryPoolService {
+
+    private static final String POOL_KEY = "feed:discovery:pool";
+    private static final String POOL_TMP_KEY = "feed:discovery:pool:tmp";
+    private static final String REFRESH_LOCK_KEY = "feed:discovery:refresh_lock";
+
+    private static final Duration REFRESH_LOCK_TTL = Duration.ofMinutes(5);
+    private static final int MAX_DRAW_ROUNDS = 4;
+    private static final int MIN_DRAW_BATCH = 20;
+
+    private final StringRedisTemplate redisTemplate;
+    private final PostRepository postRepository;
+    private final FeedProperties feedProperties;
+    private final FeedSeenService feedSeenService;
+
+    @Override
+    public boolean isAvailable() {
+        return feedProperties.getDiscovery().isEnabled() && Boolean.TRUE.equals(redisTemplate.hasKey(POOL_KEY));
+    }
+
+    @Override
+    public List<Post> drawPosts(
+            Long viewerId,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant olderThan,
+            Set<String> excludePostIds,
+            int size
+    ) {
+        if (size <= 0) {
+            return List.of();
+        }
+
+        String viewer = viewerId.toString();
+        // Pool chỉ chứa bài ngoài cửa sổ bạn bè (rankingTime < olderThan) và trước cursor
+        long maxScore = olderThan.toEpochMilli() - 1;
+        if (lastRankingTime != null) {
+            maxScore = Math.min(maxScore, lastRankingTime.toEpochMilli());
+        }
+
+        List<Post> result = new ArrayList<>(size);
+        int batch = Math.max(size * 2, MIN_DRAW_BATCH);
+        long offset = 0;
+
+        for (int round = 0; round < MAX_DRAW_ROUNDS && result.size() < size; round++) {
+            Set<String> postIds = redisTemplate.opsForZSet().reverseRangeByScore(
+                    POOL_KEY, Double.NEGATIVE_INFINITY, maxScore, offset, batch);
+            if (postIds == null || postIds.isEmpty()) {
+                break;
+            }
+            offset += postIds.size();
+
+            List<String> unseen = feedSeenService.filterUnseen(viewerId, postIds.stream()
+                    .filter(id -> excludePostIds == null || !excludePostIds.contains(id))
+                    .toList());
+            if (unseen.isEmpty()) {
+                continue;
+            }
+
+            Map<String, Post> loaded = new HashMap<>();
+            postRepository.findAllById(unseen).forEach(post -> loaded.put(post.getId(), post));
+
+            // Giữ đúng thứ tự của pool
+            for (String postId : unseen) {
+                Post post = loaded.get(postId);
+                if (post == null || post.getStatus() != StatusType.ACTIVE || viewer.equals(post.getAuthorId())) {
+                    continue;
+                }
+                // Privacy có thể đã đổi sau lần dựng pool gần nhất
+                if (post.getPrivacy() != PrivacyType.PUBLIC) {
+                    continue;
+                }
+                if (!FeedCursors.isBeforeCursor(post, lastRankingTime, lastPostId)) {
+                    continue;
+                }
+                result.add(post);
+                if (result.size() >= size) {
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.feed.discovery.refresh-interval-ms:600000}")
+    public void refreshPool() {
+        FeedProperties.Discovery config = feedProperties.getDiscovery();
+        if (!config.isEnabled()) {
+            return;
+        }
+        // Chỉ một node dựng lại pool trong mỗi chu kỳ
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(REFRESH_LOCK_KEY, "1", REFRESH_LOCK_TTL);
+        if (!Boolean.TRUE.equals(acquired)) {
+            return;
+        }
+
+        try {
+            Instant since = Instant.now().minus(config.getWindow());
+            Map<Long, PriorityQueue<Candidate>> buckets = new HashMap<>();
+
+            try (Stream<Post> candidates = postRepository.streamDiscoveryCandidates(since)) {
+                candidates.forEach(post -> {
+                    Instant createdAt = post.getCreatedAt() != null ? post.getCreatedAt() : post.getRankingTime();
+                    if (createdAt == null) {
+                        return;
+                    }
+                    long bucket = createdAt.truncatedTo(ChronoUnit.HOURS).toEpochMilli();
+                    Instant rankingTime = post.getRankingTime() != null ? post.getRankingTime() : createdAt;
+
+                    // Min-heap giới hạn: chỉ giữ top-N theo tương tác trong mỗi giờ
+                    PriorityQueue<Candidate> top = buckets.computeIfAbsent(bucket,
+                            b -> new PriorityQueue<>(Comparator.comparingDouble(Candidate::engagement)));
+                    top.offer(new Candidate(post.getId(), rankingTime.toEpochMilli(), engagementOf(post.getStats())));
+                    if (top.size() > config.getPostsPerHourBucket()) {
+                        top.poll();
+                    }
+                });
+            }
+
+            List<Candidate> selected = buckets.values().stream()
+                    .flatMap(Collection::stream)
+                    .toList();
+
+            if (selected.isEmpty()) {
+                redisTemplate.delete(POOL_KEY);
+                log.info("Discovery pool is empty, no public posts since {}", since);
+                return;
+            }
+
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                conn.del(POOL_TMP_KEY);
+                for (Candidate candidate : selected) {
+                    conn.zAdd(POOL_TMP_KEY, candidate.rankingTimeMillis(), candidate.postId());
+                }
+                return null;
+            });
+            // RENAME để feed không bao giờ đọc phải pool dựng dở
+            redisTemplate.rename(POOL_TMP_KEY, POOL_KEY);
+            log.info("Refreshed discovery pool with {} posts from {} hour buckets", selected.size(), buckets.size());
+        } catch (Exception e) {
+            log.error("Failed to refresh discovery pool: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void removePost(String postId) {
+        if (postId == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForZSet().remove(POOL_KEY, postId);
+        } catch (Exception e) {
+            log.error("Failed to remove post {} from discovery pool: {}", postId, e.getMessage());
+        }
+    }
+
+    private double engagementOf(Stats stats) {
+        if (stats == null) {
+            return 0;
+        }
+        return stats.getReactCount()
+                + 2.0 * stats.getCommentCount()
+                + stats.getReplyCount()
+                + 3.0 * stats.getShareCount()
+                + stats.getViewCount() / 20.0;
+    }
+
+    private record Candidate(String postId, long rankingTimeMillis, double engagement) {
+    }
+}
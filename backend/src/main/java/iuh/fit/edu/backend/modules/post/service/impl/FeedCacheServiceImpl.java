@@ -0,0 +1,95 @@
+/*
+ * @ (#) FeedCacheServiceImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.edu.backend.modules.post.config.FeedProperties;
+import iuh.fit.edu.backend.modules.post.dto.response.FeedSliceResponse;
+import iuh.fit.edu.backend.modules.post.service.FeedCacheService;
+import iuh.fit.edu.backend.modules.user.service.FriendService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * @description: Cache trang đầu feed trên Redis Hash (feed:first_page:{userId}, field = pageSize).
+ * Dùng Hash để một lệnh DEL xóa được mọi kích thước trang của viewer.
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FeedCacheServiceImpl implements FeedCacheService {
+
+    private static final String FIRST_PAGE_KEY = "feed:first_page:";
+
+    // RedisTemplate đã cấu hình GenericJackson2JsonRedisSerializer để tự động ép kiểu
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final FriendService friendService;
+    private final FeedProperties feedProperties;
+
+    @Override
+    public boolean isEnabled() {
+        return feedProperties.getFirstPageCache().isEnabled();
+    }
+
+    @Override
+    public FeedSliceResponse getFirstPage(Long userId, int pageSize) {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            Object cached = redisTemplate.opsForHash().get(FIRST_PAGE_KEY + userId, String.valueOf(pageSize));
+            return cached != null ? objectMapper.convertValue(cached, FeedSliceResponse.class) : null;
+        } catch (Exception e) {
+            log.warn("Failed to read cached feed for user {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void putFirstPage(Long userId, int pageSize, FeedSliceResponse response) {
+        if (!isEnabled() || response == null) {
+            return;
+        }
+        try {
+            String key = FIRST_PAGE_KEY + userId;
+            redisTemplate.opsForHash().put(key, String.valueOf(pageSize), response);
+            redisTemplate.expire(key, feedProperties.getFirstPageCache().getTtl());
+        } catch (Exception e) {
+            log.warn("Failed to cache feed for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void evict(Long userId) {
+        if (!isEnabled() || userId == null) {
+            return;
+        }
+        redisTemplate.delete(FIRST_PAGE_KEY + userId);
+    }
+
+    @Override
+    public void evictPostAudience(String authorId) {
+        if (!isEnabled() || authorId == null) {
+            return;
+        }
+        long author = Long.parseLong(authorId);
+        List<String> keys = new ArrayList<>();
+        keys.add(FIRST_PAGE_KEY + author);
+        for (Long friendId : friendService.getAcceptedFriendIds(author)) {
+            keys.add(FIRST_PAGE_KEY + friendId);
+        }
+        // DEL nhiều key trong một lệnh
+        redisTemplate.delete(keys);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * @ (#) FeedCursors.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service.impl;
+
+import iuh.fit.edu.backend.modules.post.entity.Post;
+
+import java.time.Instant;
+import java.util.Comparator;
+
+/*
+ * @description: Thứ tự và điều kiện cursor của feed khi lọc trong bộ nhớ
+ * (cùng ngữ nghĩa với PostFeedRepositoryCustomImpl.buildCursorCriteria)
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+final class FeedCursors {
+
+    // rankingTime DESC, _id DESC - giống thứ tự sort của feed
+    static final Comparator<Post> RANKING_ORDER = Comparator
+            .comparing(Post::getRankingTime, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(Post::getId, Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private FeedCursors() {
+    }
+
+    static boolean isBeforeCursor(Post post, Instant lastRankingTime, String lastPostId) {
+        if (lastRankingTime == null) {
+            return true;
+        }
+        if (post.getRankingTime() == null) {
+            return false;
+        }
+        int cmp = post.getRankingTime().compareTo(lastRankingTime);
+        if (cmp != 0) {
+            return cmp < 0;
+        }
+        return lastPostId != null && !lastPostId.isBlank() && post.getId().compareTo(lastPostId) < 0;
+    }
+}
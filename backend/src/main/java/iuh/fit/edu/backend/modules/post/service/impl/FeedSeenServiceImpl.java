@@ -0,0 +1,153 @@
+/*
+ * @ (#) FeedSeenServiceImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service.impl;
+
+import iuh.fit.edu.backend.modules.post.config.FeedProperties;
+import iuh.fit.edu.backend.modules.post.service.FeedSeenService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/*
+ * @description: Rolling Bloom filter trên Redis bitmap (feed:seen:{userId}:{generation}).
+ * Mỗi khung thời gian (window) là một generation mới; kiểm tra generation hiện tại và trước đó,
+ * chỉ ghi vào generation hiện tại, generation cũ tự hết hạn -> filter tự reset theo thời gian.
+ * Kiểm tra/ghi N bài chỉ tốn 1 round trip (pipeline GETBIT/SETBIT).
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FeedSeenServiceImpl implements FeedSeenService {
+
+    private static final String SEEN_KEY = "feed:seen:";
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final StringRedisTemplate redisTemplate;
+    private final FeedProperties feedProperties;
+
+    @Override
+    public List<String> filterUnseen(Long userId, List<String> postIds) {
+        FeedProperties.Seen config = feedProperties.getSeen();
+        if (!config.isEnabled() || userId == null || postIds == null || postIds.isEmpty()) {
+            return postIds;
+        }
+
+        try {
+            long generation = currentGeneration(config);
+            String currentKey = buildKey(userId, generation);
+            String previousKey = buildKey(userId, generation - 1);
+            int hashes = config.getHashes();
+
+            List<long[]> offsets = new ArrayList<>(postIds.size());
+            for (String postId : postIds) {
+                offsets.add(bitOffsets(postId, config));
+            }
+
+            // Thứ tự kết quả: với mỗi bài, k bit của generation hiện tại rồi k bit của generation trước
+            List<Object> bits = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (long[] postOffsets : offsets) {
+                    for (long offset : postOffsets) {
+                        conn.getBit(currentKey, offset);
+                    }
+                    for (long offset : postOffsets) {
+                        conn.getBit(previousKey, offset);
+                    }
+                }
+                return null;
+            });
+
+            List<String> unseen = new ArrayList<>(postIds.size());
+            for (int i = 0; i < postIds.size(); i++) {
+                int base = i * hashes * 2;
+                boolean seen = allSet(bits, base, hashes) || allSet(bits, base + hashes, hashes);
+                if (!seen) {
+                    unseen.add(postIds.get(i));
+                }
+            }
+            return unseen;
+        } catch (Exception e) {
+            // Filter chỉ là tối ưu trải nghiệm, lỗi Redis không được làm hỏng feed
+            log.warn("Failed to check seen posts for user {}: {}", userId, e.getMessage());
+            return postIds;
+        }
+    }
+
+    @Override
+    public void markSeen(Long userId, Collection<String> postIds) {
+        FeedProperties.Seen config = feedProperties.getSeen();
+        if (!config.isEnabled() || userId == null || postIds == null || postIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            String key = buildKey(userId, currentGeneration(config));
+            // Giữ đủ lâu để còn được đọc như "generation trước" trong khung kế tiếp
+            long ttlSeconds = config.getWindow().multipliedBy(2).toSeconds();
+
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String postId : postIds) {
+                    for (long offset : bitOffsets(postId, config)) {
+                        conn.setBit(key, offset, true);
+                    }
+                }
+                conn.expire(key, ttlSeconds);
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to mark seen posts for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private boolean allSet(List<Object> bits, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            if (!Boolean.TRUE.equals(bits.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Double hashing (Kirsch–Mitzenmacher): vị trí thứ i = h1 + i * h2 trên một hash FNV-1a 64-bit
+    private long[] bitOffsets(String postId, FeedProperties.Seen config) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : postId.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        int h1 = (int) hash;
+        // h2 lẻ: với số bit là lũy thừa của 2, bước nhảy lẻ cho k vị trí khác nhau (h2 chẵn/0 làm các vị trí trùng nhau)
+        int h2 = (int) (hash >>> 32) | 1;
+
+        long[] offsets = new long[config.getHashes()];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = Math.floorMod(h1 + i * h2, config.getBits());
+        }
+        return offsets;
+    }
+
+    private long currentGeneration(FeedProperties.Seen config) {
+        return Instant.now().toEpochMilli() / config.getWindow().toMillis();
+    }
+
+    private String buildKey(Long userId, long generation) {
+        return SEEN_KEY + userId + ":" + generation;
+    }
+}
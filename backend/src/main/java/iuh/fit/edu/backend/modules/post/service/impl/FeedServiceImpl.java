@@ -1,13 +1,21 @@
 package iuh.fit.edu.backend.modules.post.service.impl;
 
+import iuh.fit.edu.backend.common.util.MongoQueryDeadline;
+import iuh.fit.edu.backend.modules.post.config.FeedProperties;
 import iuh.fit.edu.backend.modules.post.dto.response.FeedSliceResponse;
 import iuh.fit.edu.backend.modules.post.entity.Post;
 import iuh.fit.edu.backend.modules.post.repository.PostRepository;
+import iuh.fit.edu.backend.modules.post.service.DiscoveryPoolService;
+import iuh.fit.edu.backend.modules.post.service.FeedCacheService;
+import iuh.fit.edu.backend.modules.post.service.FeedSeenService;
 import iuh.fit.edu.backend.modules.post.service.FeedService;
+import iuh.fit.edu.backend.modules.post.service.HomeTimelineService;
 import iuh.fit.edu.backend.modules.user.service.FriendService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
@@ -16,48 +24,69 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class FeedServiceImpl implements FeedService {
 
     private static final int DEFAULT_SIZE = 20;
     private static final int MAX_SIZE = 200;
     private static final int MAX_FRIEND_RECENT_POSTS = 100;
     private static final int MAX_FEED_AUTHORS = 200;
+    private static final int RANDOM_OVERFETCH_FACTOR = 2;
 
     private final FriendService friendService;
     private final PostRepository postRepository;
+    private final HomeTimelineService homeTimelineService;
+    private final DiscoveryPoolService discoveryPoolService;
+    private final FeedSeenService feedSeenService;
+    private final FeedCacheService feedCacheService;
+    private final FeedProperties feedProperties;
+    private final ExecutorService feedQueryExecutor;
+
+    // Kết quả các truy vấn con; speculativeRandom == null nghĩa là chưa lấy (chế độ tuần tự)
+    private record FeedSources(
+            List<String> friendIds,
+            List<Post> friendRecent,
+            List<Post> selfActive,
+            Post prioritizedPost,
+            List<Post> speculativeRandom,
+            boolean degraded
+    ) {
+    }
 
     @Override
     public FeedSliceResponse getFeed(Long userId, Instant lastRankingTime, String lastPostId, int size, String prioritizePostId) {
         int pageSize = normalizePageSize(size);
-        Instant recentThreshold = Instant.now().minus(24, ChronoUnit.HOURS);
-
-        String currentUserId = userId.toString();
-        List<Long> friendIdsLong = friendService.getAcceptedFriendIds(userId);
 
-        List<String> friendIds = friendIdsLong.stream()
-                .map(String::valueOf)
-                .limit(MAX_FEED_AUTHORS)
-                .toList();
+        // Chỉ cache trang đầu không kèm bài ưu tiên; các trang sau đã rẻ nhờ cursor
+        boolean cacheable = lastRankingTime == null && (prioritizePostId == null || prioritizePostId.isBlank());
+        if (cacheable) {
+            FeedSliceResponse cached = feedCacheService.getFirstPage(userId, pageSize);
+            if (cached != null) {
+                return cached;
+            }
+        }
 
+        Instant recentThreshold = Instant.now().minus(24, ChronoUnit.HOURS);
         int friendQueryLimit = Math.min(MAX_FRIEND_RECENT_POSTS + 1, pageSize + 1);
-        List<Post> friendRecent = postRepository.findRecentFriendPosts(
-                friendIds,
-                currentUserId,
-                lastRankingTime,
-                lastPostId,
-                recentThreshold,
-                friendQueryLimit
-        );
+        String pinnedPostId = lastRankingTime == null && prioritizePostId != null && !prioritizePostId.isBlank()
+                ? prioritizePostId
+                : null;
 
-        // Fetch self's "active" posts separately to avoid cluttering with all self posts
-        // "Active" = very new (last 2h) or has interactions
-        Instant selfActiveThreshold = Instant.now().minus(2, ChronoUnit.HOURS);
-        List<Post> selfActive = (lastRankingTime == null) 
-            ? postRepository.findActiveSelfPosts(currentUserId, selfActiveThreshold, 10)
-            : new ArrayList<>();
+        FeedSources sources = feedProperties.getParallel().isEnabled()
+                ? loadSourcesParallel(userId, lastRankingTime, lastPostId, recentThreshold, friendQueryLimit, pageSize, pinnedPostId)
+                : loadSourcesSequential(userId, lastRankingTime, lastPostId, recentThreshold, friendQueryLimit, pinnedPostId);
+
+        List<String> friendIds = sources.friendIds();
+        List<Post> friendRecent = sources.friendRecent();
+        List<Post> selfActive = sources.selfActive();
 
         int friendTake = Math.min(friendRecent.size(), Math.min(pageSize, MAX_FRIEND_RECENT_POSTS));
         boolean hasMoreFriendRecent = friendRecent.size() > friendTake;
@@ -66,15 +95,10 @@ public class FeedServiceImpl implements FeedService {
         Set<String> seenPostIds = new HashSet<>();
 
         // One-time boost: pin the prioritized post on top only on the first page load.
-        Post prioritizedPost = null;
-        if (lastRankingTime == null && prioritizePostId != null && !prioritizePostId.isBlank()) {
-            prioritizedPost = postRepository.findById(prioritizePostId)
-                    .filter(post -> post.getStatus() != null && "ACTIVE".equals(post.getStatus().name()))
-                    .orElse(null);
-            if (prioritizedPost != null) {
-                merged.add(prioritizedPost);
-                seenPostIds.add(prioritizedPost.getId());
-            }
+        Post prioritizedPost = sources.prioritizedPost();
+        if (prioritizedPost != null) {
+            merged.add(prioritizedPost);
+            seenPostIds.add(prioritizedPost.getId());
         }
 
         if (friendTake > 0) {
@@ -95,15 +119,10 @@ public class FeedServiceImpl implements FeedService {
         int remaining = pageSize - merged.size();
         boolean hasMoreRandom = false;
         if (remaining > 0) {
-            List<Post> randomPosts = postRepository.findRandomFallbackPosts(
-                    friendIds,
-                    currentUserId,
-                    lastRankingTime,
-                    lastPostId,
-                    recentThreshold,
-                    new ArrayList<>(seenPostIds),
-                    remaining + 1
-            );
+            // Chế độ song song đã lấy sẵn (speculative) pageSize + 1 bài, trùng lặp được lọc bên dưới
+            List<Post> randomPosts = sources.speculativeRandom() != null
+                    ? sources.speculativeRandom()
+                    : fetchRandomPosts(userId, friendIds, lastRankingTime, lastPostId, recentThreshold, seenPostIds, remaining + 1);
 
             for (Post randomPost : randomPosts) {
                 if (merged.size() >= pageSize) {
@@ -140,6 +159,8 @@ public class FeedServiceImpl implements FeedService {
             merged = new ArrayList<>(merged.subList(0, pageSize));
         }
 
+        feedSeenService.markSeen(userId, merged.stream().map(Post::getId).toList());
+
         boolean hasNext = hasMoreFriendRecent || hasMoreRandom;
 
         Instant nextCursorRankingTime = null;
@@ -150,12 +171,197 @@ public class FeedServiceImpl implements FeedService {
             nextCursorPostId = lastPost.getId();
         }
 
-        return FeedSliceResponse.builder()
+        FeedSliceResponse response = FeedSliceResponse.builder()
                 .posts(merged)
                 .nextCursorCreatedAt(nextCursorRankingTime) // Reusing field for simplicity but populating with rankingTime
                 .nextCursorPostId(nextCursorPostId)
                 .hasNext(hasNext)
                 .build();
+
+        // Không cache kết quả thiếu nguồn do timeout/lỗi, lần sau được truy vấn lại đầy đủ
+        if (cacheable && !sources.degraded()) {
+            feedCacheService.putFirstPage(userId, pageSize, response);
+        }
+        return response;
+    }
+
+    private FeedSources loadSourcesSequential(
+            Long userId,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant recentThreshold,
+            int friendQueryLimit,
+            String pinnedPostId
+    ) {
+        List<Long> friendIdsLong = friendService.getAcceptedFriendIds(userId);
+        List<String> friendIds = limitFeedAuthors(friendIdsLong);
+        List<Post> friendRecent = fetchFriendRecent(userId, friendIdsLong, friendIds, lastRankingTime, lastPostId, recentThreshold, friendQueryLimit);
+        List<Post> selfActive = lastRankingTime == null ? fetchSelfActive(userId) : new ArrayList<>();
+        Post prioritizedPost = pinnedPostId != null ? fetchPrioritizedPost(pinnedPostId) : null;
+        return new FeedSources(friendIds, friendRecent, selfActive, prioritizedPost, null, false);
+    }
+
+    /*
+     * Song song hóa trên virtual thread:
+     *   friendIds (MariaDB) ──┬─> friendRecent (Mongo/Redis timeline)
+     *                         └─> speculative random/discovery (pageSize + 1 bài)
+     *   selfActive, prioritizedPost chạy ngay từ đầu, không phụ thuộc friendIds
+     * Mỗi nguồn có timeout riêng; quá hạn hoặc lỗi -> dùng kết quả rỗng và đánh dấu degraded.
+     * Độ trễ ~ max(friendIds + truy vấn chậm nhất) thay vì tổng tất cả truy vấn.
+     */
+    private FeedSources loadSourcesParallel(
+            Long userId,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant recentThreshold,
+            int friendQueryLimit,
+            int pageSize,
+            String pinnedPostId
+    ) {
+        Duration timeout = feedProperties.getParallel().getTimeout();
+        AtomicBoolean degraded = new AtomicBoolean(false);
+
+        CompletableFuture<List<Post>> selfActiveFuture = lastRankingTime == null
+                ? submit("selfActive", () -> fetchSelfActive(userId), new ArrayList<>(), timeout, degraded)
+                : CompletableFuture.completedFuture(new ArrayList<>());
+        CompletableFuture<Post> prioritizedFuture = pinnedPostId != null
+                ? submit("prioritizedPost", () -> fetchPrioritizedPost(pinnedPostId), null, timeout, degraded)
+                : CompletableFuture.completedFuture(null);
+
+        CompletableFuture<List<Long>> friendIdsFuture =
+                submit("friendIds", () -> friendService.getAcceptedFriendIds(userId), List.of(), timeout, degraded);
+        CompletableFuture<List<Post>> friendRecentFuture = friendIdsFuture.thenCompose(friendIdsLong ->
+                submit("friendRecent",
+                        () -> fetchFriendRecent(userId, friendIdsLong, limitFeedAuthors(friendIdsLong),
+                                lastRankingTime, lastPostId, recentThreshold, friendQueryLimit),
+                        List.of(), timeout, degraded));
+        CompletableFuture<List<Post>> randomFuture = friendIdsFuture.thenCompose(friendIdsLong ->
+                submit("random",
+                        () -> fetchRandomPosts(userId, limitFeedAuthors(friendIdsLong),
+                                lastRankingTime, lastPostId, recentThreshold, Set.of(), pageSize + 1),
+                        List.of(), timeout, degraded));
+
+        // Các future đều đã có timeout + fallback nên join() không ném lỗi và không chờ vô hạn
+        List<String> friendIds = limitFeedAuthors(friendIdsFuture.join());
+        return new FeedSources(
+                friendIds,
+                friendRecentFuture.join(),
+                selfActiveFuture.join(),
+                prioritizedFuture.join(),
+                randomFuture.join(),
+                degraded.get()
+        );
+    }
+
+    private <T> CompletableFuture<T> submit(
+            String source,
+            Supplier<T> query,
+            T fallback,
+            Duration timeout,
+            AtomicBoolean degraded
+    ) {
+        // orTimeout chỉ làm future thất bại, maxTime giúp Mongo tự huỷ truy vấn đang chạy
+        return CompletableFuture.supplyAsync(() -> MongoQueryDeadline.call(timeout, query), feedQueryExecutor)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .exceptionally(ex -> {
+                    degraded.set(true);
+                    log.warn("Feed source {} degraded: {}", source, ex.toString());
+                    return fallback;
+                });
+    }
+
+    private List<String> limitFeedAuthors(List<Long> friendIdsLong) {
+        return friendIdsLong.stream()
+                .map(String::valueOf)
+                .limit(MAX_FEED_AUTHORS)
+                .toList();
+    }
+
+    private List<Post> fetchFriendRecent(
+            Long userId,
+            List<Long> friendIdsLong,
+            List<String> friendIds,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant recentThreshold,
+            int friendQueryLimit
+    ) {
+        if (homeTimelineService.isEnabled()) {
+            // Timeline dựng sẵn bao phủ toàn bộ bạn bè, không bị giới hạn MAX_FEED_AUTHORS
+            List<String> allFriendIds = friendIdsLong.stream().map(String::valueOf).toList();
+            return homeTimelineService.findRecentFriendPosts(
+                    userId,
+                    allFriendIds,
+                    lastRankingTime,
+                    lastPostId,
+                    recentThreshold,
+                    friendQueryLimit
+            );
+        }
+        return postRepository.findRecentFriendPosts(
+                friendIds,
+                userId.toString(),
+                lastRankingTime,
+                lastPostId,
+                recentThreshold,
+                friendQueryLimit
+        );
+    }
+
+    // Fetch self's "active" posts separately to avoid cluttering with all self posts
+    // "Active" = very new (last 2h) or has interactions
+    private List<Post> fetchSelfActive(Long userId) {
+        Instant selfActiveThreshold = Instant.now().minus(2, ChronoUnit.HOURS);
+        return postRepository.findActiveSelfPosts(userId.toString(), selfActiveThreshold, 10);
+    }
+
+    private Post fetchPrioritizedPost(String prioritizePostId) {
+        return postRepository.findById(prioritizePostId)
+                .filter(post -> post.getStatus() != null && "ACTIVE".equals(post.getStatus().name()))
+                .orElse(null);
+    }
+
+    private List<Post> fetchRandomPosts(
+            Long userId,
+            List<String> friendIds,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant olderThan,
+            Set<String> excludePostIds,
+            int size
+    ) {
+        return discoveryPoolService.isAvailable()
+                ? discoveryPoolService.drawPosts(userId, lastRankingTime, lastPostId, olderThan, excludePostIds, size)
+                : findUnseenRandomPosts(userId, friendIds, lastRankingTime, lastPostId, olderThan, size);
+    }
+
+    // $sample không còn $nin: lấy dư rồi lọc bài đã xem sau khi fetch
+    private List<Post> findUnseenRandomPosts(
+            Long userId,
+            List<String> friendIds,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant olderThan,
+            int size
+    ) {
+        List<Post> sampled = postRepository.findRandomFallbackPosts(
+                friendIds,
+                userId.toString(),
+                lastRankingTime,
+                lastPostId,
+                olderThan,
+                size * RANDOM_OVERFETCH_FACTOR
+        );
+        if (sampled.isEmpty()) {
+            return sampled;
+        }
+
+        Set<String> unseen = new HashSet<>(feedSeenService.filterUnseen(
+                userId, sampled.stream().map(Post::getId).toList()));
+        return sampled.stream()
+                .filter(post -> unseen.contains(post.getId()))
+                .limit(size)
+                .toList();
     }
 
     private int normalizePageSize(int size) {
@@ -186,10 +392,14 @@ public class FeedServiceImpl implements FeedService {
  * --------------------------------------------------
  * - If not enough posts from friends, fill remaining slots
  * - Fetch random posts from ALL users (not limited to friends)
- * - Exclude:
+ * - Exclude (after fetching, no $nin in the query):
  *      + Already selected posts
  *      + Posts already seen in this page (deduplication)
+ *      + Posts seen in earlier pages/sessions (FeedSeenService rolling Bloom filter)
  * - Can include older posts (>24h)
+ * - When app.feed.discovery.enabled, DiscoveryPoolService replaces $sample:
+ *      + Pool = top-N public posts per hour bucket by engagement (refreshed on schedule)
+ *      + Read by rankingTime so the cursor stays valid, O(page) per request
  *
  * Purpose:
  * - Prevent empty feed
@@ -208,10 +418,13 @@ public class FeedServiceImpl implements FeedService {
  *
  * 4. DEDUPLICATION
  * --------------------------------------------------
- * - Use seenPostIds (Set<String>)
+ * - Use seenPostIds (Set<String>) inside one request
  * - Ensure no duplicate posts between:
  *      + friendRecent
  *      + random fallback
+ * - Across pages/sessions, served posts are recorded in FeedSeenService
+ *   and random/discovery candidates are filtered against it
+ *   (friend posts are cursor-ordered, so they cannot repeat while scrolling)
  *
  *
  * 5. SORTING STRATEGY
@@ -260,19 +473,38 @@ public class FeedServiceImpl implements FeedService {
  * - Prioritize CONTENT (posts), not authors
  *
  *
- * 9. WHY NOT FAN-OUT?
+ * 9. OPTIONAL FAN-OUT (app.feed.timeline.enabled)
  * --------------------------------------------------
- * - Fan-out increases write complexity significantly
- * - Current system is optimized for:
- *      + Simplicity
- *      + MongoDB query efficiency
+ * - Default: pull model above (simple, MongoDB query only)
+ * - When enabled, friend posts come from HomeTimelineService:
+ *      + PostServiceImpl pushes post IDs into each friend's Redis ZSET
+ *      + Feed reads one bounded range + one _id lookup per page
+ *      + Authors with more than maxFanoutFriends friends are pulled on read
+ *      + No MAX_FEED_AUTHORS cut-off for friend posts
+ *
  *
- * Suitable for:
- * - Medium-scale systems
- * - Early-stage social platforms
+ * 10. FIRST PAGE CACHE (app.feed.first-page-cache)
+ * --------------------------------------------------
+ * - First page (no cursor, no prioritized post) is cached per viewer
+ *   in Redis hash feed:first_page:{userId}, field = page size, short TTL
+ * - FeedCacheInvalidationListener evicts it:
+ *      + Post CREATE/UPDATE/DELETE -> author + all friends
+ *      + Friendship accepted/removed -> both users (timeline is rebuilt too)
+ * - Reactions/comments (BUMP) only wait for the TTL
+ * - Degraded pages (see 11) are never cached
+ *
+ *
+ * 11. PARALLEL SOURCES (app.feed.parallel.enabled)
+ * --------------------------------------------------
+ * - Sub-queries run on virtual threads (feedQueryExecutor):
+ *      + self-active and prioritized post start immediately
+ *      + friend posts and a speculative random/discovery batch start once friend IDs arrive
+ * - Each source has its own timeout; a slow or failing source contributes nothing
+ *   instead of failing the whole page
+ * - Latency ~ friend IDs + slowest sub-query, not the sum of all queries
  *
  *
- * 10. DESIGN GOAL
+ * 12. DESIGN GOAL
  * --------------------------------------------------
  * Balance between:
  *
@@ -0,0 +1,70 @@
+/*
+ * @ (#) HashtagTrendingScripts.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service.impl;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+/*
+ * @description
+ * Lua script cho điểm trending có suy giảm theo thời gian (forward decay).
+ * Thay vì giảm điểm của mọi hashtag theo thời gian, mỗi lần cộng điểm được nhân 2^((now - epoch) / halfLife):
+ * thứ hạng trong ZSET luôn đúng mà không phải đụng vào các hashtag khác.
+ * REBASE định kỳ nhân cả ZSET với 2^(-(now - epoch) / halfLife) và dời epoch về now,
+ * để điểm trong ZSET chính là điểm hiện tại và số không bị tràn.
+ * @author: The Bao
+ * @version: 1.0
+ */
+final class HashtagTrendingScripts {
+
+    private HashtagTrendingScripts() {
+    }
+
+    /*
+     * Cộng điểm cho nhiều hashtag trên mọi khung.
+     * KEYS[2i - 1] = ZSET điểm của khung i, KEYS[2i] = key epoch của khung i
+     * ARGV[1] = now (giây), ARGV[2] = điểm cộng thêm, ARGV[3] = số khung n
+     * ARGV[4..3+n] = halfLife (giây) từng khung, ARGV[4+n..] = hashtag
+     */
+    static final RedisScript<Long> RECORD = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local amount = tonumber(ARGV[2])
+            local n = tonumber(ARGV[3])
+            for i = 1, n do
+                local scores = KEYS[2 * i - 1]
+                local epochKey = KEYS[2 * i]
+                local epoch = tonumber(redis.call('GET', epochKey))
+                if not epoch then
+                    epoch = now
+                    redis.call('SET', epochKey, now)
+                end
+                local weight = amount * math.pow(2, (now - epoch) / tonumber(ARGV[3 + i]))
+                for j = 4 + n, #ARGV do
+                    redis.call('ZINCRBY', scores, weight, ARGV[j])
+                end
+            end
+            return #ARGV - 3 - n
+            """, Long.class);
+
+    /*
+     * Quy điểm về thời điểm now và bỏ các hashtag đã nguội.
+     * KEYS[1] = ZSET điểm, KEYS[2] = key epoch
+     * ARGV[1] = now (giây), ARGV[2] = halfLife (giây), ARGV[3] = điểm tối thiểu được giữ lại
+     */
+    static final RedisScript<Long> REBASE = new DefaultRedisScript<>("""
+            local epoch = tonumber(redis.call('GET', KEYS[2]))
+            local now = tonumber(ARGV[1])
+            if not epoch then
+                return 0
+            end
+            if redis.call('EXISTS', KEYS[1]) == 1 then
+                local factor = math.pow(2, -(now - epoch) / tonumber(ARGV[2]))
+                redis.call('ZUNIONSTORE', KEYS[1], 1, KEYS[1], 'WEIGHTS', factor)
+                redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', '(' .. ARGV[3])
+            end
+            redis.call('SET', KEYS[2], now)
+            return redis.call('ZCARD', KEYS[1])
+            """, Long.class);
+}
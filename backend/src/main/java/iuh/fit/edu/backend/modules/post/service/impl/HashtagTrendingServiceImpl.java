@@ -1,110 +1,154 @@
 package iuh.fit.edu.backend.modules.post.service.impl;
 
+import iuh.fit.edu.backend.modules.post.constant.TrendingPeriod;
 import iuh.fit.edu.backend.modules.post.entity.HashtagTrending;
 import iuh.fit.edu.backend.modules.post.entity.TrendingStats;
 import iuh.fit.edu.backend.modules.post.repository.HashtagTrendingRepository;
+import iuh.fit.edu.backend.modules.post.repository.PostRepository;
 import iuh.fit.edu.backend.modules.post.service.HashtagTrendingService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
+/*
+ * @description
+ * Hashtag trending dạng streaming trên Redis:
+ *   - Điểm trending mỗi khung (hourly/daily/weekly) là ZSET có suy giảm theo thời gian (HashtagTrendingScripts),
+ *     cộng bằng ZINCRBY nguyên tử nên nhiều bài cùng hashtag không còn ghi đè nhau.
+ *   - postCount/engagementCount đếm bằng HINCRBY vào bucket 5 phút và 1 giờ, hash chia shard theo hashtag;
+ *     velocity = tốc độ tương tác nửa sau của khung trừ nửa trước (lượt/giờ).
+ *   - userCount đếm user unique bằng HyperLogLog theo giờ.
+ *   - Job định kỳ tính top-K của từng khung, lưu snapshot lên Redis + MongoDB;
+ *     getTrendingHashtags chỉ đọc snapshot (cache trong bộ nhớ vài giây), không sort trên MongoDB.
+ * Xóa bài chỉ gỡ bài khỏi danh sách mẫu, phần điểm đã cộng tự nguội dần theo halfLife.
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class HashtagTrendingServiceImpl implements HashtagTrendingService {
 
+    private static final String SCORE_KEY = "hashtag:trend:%s";
+    private static final String EPOCH_KEY = "hashtag:trend:%s:epoch";
+    private static final String BUCKET_KEY = "hashtag:bucket:%d:%d:%d";
+    private static final String USERS_KEY = "hashtag:users:%d:%s";
+    private static final String SAMPLES_KEY = "hashtag:samples:%s";
+    private static final String TOP_KEY = "hashtag:trending:top:%s";
+    private static final String REFRESH_LOCK_KEY = "hashtag:trending:refresh_lock";
+
+    private static final String POST_FIELD = ":p";
+    private static final String ENGAGEMENT_FIELD = ":e";
+
+    // Trọng số giữ như công thức cũ: 1 bài = 5 điểm, 1 tương tác = 2 điểm
+    private static final double POST_WEIGHT = 5.0;
+    private static final double ENGAGEMENT_WEIGHT = 2.0;
+    // Thưởng thêm cho hashtag đang tăng tốc (điểm / lượt tương tác tăng thêm mỗi giờ)
+    private static final double VELOCITY_WEIGHT = 1.0;
+    // Hashtag có điểm hiện tại thấp hơn ngưỡng này bị bỏ khỏi ZSET khi rebase
+    private static final double MIN_SCORE = 0.01;
+
+    private static final Duration HOUR = Duration.ofHours(1);
+    private static final Duration BUCKET_TTL = TrendingPeriod.WEEKLY.getWindow().plus(Duration.ofDays(1));
+    private static final Duration REFRESH_LOCK_TTL = Duration.ofMinutes(2);
+    private static final Duration SNAPSHOT_CACHE_TTL = Duration.ofSeconds(10);
+    private static final int MAX_SAMPLES = 10;
+
+    // Chỉ xoá lock khi vẫn đúng token: lượt refresh chạy quá TTL không được xoá lock của node khác đã lấy lại
+    private static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
     private final HashtagTrendingRepository repository;
+    private final PostRepository postRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    // RedisTemplate đã cấu hình GenericJackson2JsonRedisSerializer để tự động ép kiểu snapshot
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final Map<TrendingPeriod, Snapshot> snapshots = new EnumMap<>(TrendingPeriod.class);
+
+    @Value("${app.hashtag.trending.shards:8}")
+    private int shards;
+
+    @Value("${app.hashtag.trending.top-k:50}")
+    private int topK;
+
+    public HashtagTrendingServiceImpl(
+            HashtagTrendingRepository repository,
+            PostRepository postRepository,
+            StringRedisTemplate stringRedisTemplate,
+            RedisTemplate<String, Object> redisTemplate) {
+        this.repository = repository;
+        this.postRepository = postRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTemplate = redisTemplate;
+    }
 
     @Override
     public void updateHashtagOnPostCreated(String postId, String authorId, List<String> hashtags) {
-        if (hashtags == null || hashtags.isEmpty()) {
+        List<String> tags = clean(hashtags);
+        if (tags.isEmpty()) {
             return;
         }
-        log.info("Updating hashtag trending stats for new post: {}, hashtags: {}", postId, hashtags);
+        log.info("Updating hashtag trending stats for new post: {}, hashtags: {}", postId, tags);
         Instant now = Instant.now();
-        Instant expire = now.plus(30, ChronoUnit.DAYS);
+        record(tags, POST_WEIGHT, now);
 
-        for (String hashtag : hashtags) {
-            String cleanHashtag = hashtag.trim().toLowerCase();
-            if (cleanHashtag.isEmpty()) continue;
-
-            Optional<HashtagTrending> existingOpt = repository.findByHashtagAndPeriod(cleanHashtag, "all");
-            if (existingOpt.isPresent()) {
-                HashtagTrending existing = existingOpt.get();
-                TrendingStats stats = existing.getStats();
-                if (stats == null) {
-                    stats = TrendingStats.builder().build();
-                }
-                stats.setPostCount(stats.getPostCount() + 1);
-                // Simple estimate of user count increment (we can just keep it or increment by 1)
-                stats.setUserCount(stats.getUserCount() + 1);
-                stats.setPeakTime(now);
-
-                List<String> samples = existing.getSamplePostIds();
-                if (samples == null) {
-                    samples = new ArrayList<>();
+        long hourStart = bucketStart(now, HOUR);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String tag : tags) {
+                incrementBuckets(conn, tag, POST_FIELD, 1, now);
+                if (authorId != null) {
+                    String usersKey = String.format(USERS_KEY, hourStart, tag);
+                    conn.pfAdd(usersKey, authorId);
+                    conn.expire(usersKey, BUCKET_TTL.toSeconds());
                 }
-                if (!samples.contains(postId)) {
-                    samples.add(0, postId);
-                    if (samples.size() > 10) {
-                        samples = new ArrayList<>(samples.subList(0, 10));
-                    }
-                    existing.setSamplePostIds(samples);
-                }
-
-                existing.setUpdatedAt(now);
-                existing.setExpireAt(expire);
-
-                double score = stats.getPostCount() * 5.0 + stats.getEngagementCount() * 2.0;
-                existing.setTrendingScore(score);
-
-                repository.save(existing);
-            } else {
-                TrendingStats stats = TrendingStats.builder()
-                        .postCount(1)
-                        .userCount(1)
-                        .viewCount(0)
-                        .engagementCount(0)
-                        .velocity(0.0)
-                        .peakTime(now)
-                        .build();
-
-                List<String> samples = new ArrayList<>();
-                samples.add(postId);
-
-                HashtagTrending trending = HashtagTrending.builder()
-                        .hashtag(cleanHashtag)
-                        .period("all")
-                        .stats(stats)
-                        .trendingScore(5.0)
-                        .samplePostIds(samples)
-                        .startTime(now)
-                        .endTime(expire)
-                        .updatedAt(now)
-                        .expireAt(expire)
-                        .build();
-
-                repository.save(trending);
+                String samplesKey = String.format(SAMPLES_KEY, tag);
+                conn.lRem(samplesKey, 0, postId);
+                conn.lPush(samplesKey, postId);
+                conn.lTrim(samplesKey, 0, MAX_SAMPLES - 1);
+                conn.expire(samplesKey, BUCKET_TTL.toSeconds());
             }
-        }
+            return null;
+        });
     }
 
     @Override
     public void updateHashtagOnPostUpdated(String postId, String authorId, List<String> oldHashtags, List<String> newHashtags) {
         log.info("Updating hashtag trending stats for updated post: {}", postId);
         
-        List<String> oldClean = oldHashtags != null ? oldHashtags.stream().map(h -> h.trim().toLowerCase()).toList() : List.of();
-        List<String> newClean = newHashtags != null ? newHashtags.stream().map(h -> h.trim().toLowerCase()).toList() : List.of();
+        List<String> oldClean = clean(oldHashtags);
+        List<String> newClean = clean(newHashtags);
 
         List<String> added = newClean.stream().filter(h -> !oldClean.contains(h)).toList();
         List<String> removed = oldClean.stream().filter(h -> !newClean.contains(h)).toList();
@@ -119,48 +163,313 @@ public class HashtagTrendingServiceImpl implements HashtagTrendingService {
 
     @Override
     public void updateHashtagOnPostDeleted(String postId, List<String> hashtags) {
-        if (hashtags == null || hashtags.isEmpty()) {
+        List<String> tags = clean(hashtags);
+        if (tags.isEmpty()) {
+            return;
+        }
+        log.info("Updating hashtag trending stats for deleted post: {}, hashtags: {}", postId, tags);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String tag : tags) {
+                conn.lRem(String.format(SAMPLES_KEY, tag), 0, postId);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void recordEngagement(List<String> hashtags, long count) {
+        List<String> tags = clean(hashtags);
+        if (tags.isEmpty() || count <= 0) {
             return;
         }
-        log.info("Updating hashtag trending stats for deleted post: {}, hashtags: {}", postId, hashtags);
         Instant now = Instant.now();
+        record(tags, ENGAGEMENT_WEIGHT * count, now);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String tag : tags) {
+                incrementBuckets(conn, tag, ENGAGEMENT_FIELD, count, now);
+            }
+            return null;
+        });
+    }
 
-        for (String hashtag : hashtags) {
-            String cleanHashtag = hashtag.trim().toLowerCase();
-            if (cleanHashtag.isEmpty()) continue;
-
-            Optional<HashtagTrending> existingOpt = repository.findByHashtagAndPeriod(cleanHashtag, "all");
-            if (existingOpt.isPresent()) {
-                HashtagTrending existing = existingOpt.get();
-                TrendingStats stats = existing.getStats();
-                if (stats != null) {
-                    long newPostCount = Math.max(0, stats.getPostCount() - 1);
-                    stats.setPostCount(newPostCount);
-                    long newUserCount = Math.max(0, stats.getUserCount() - 1);
-                    stats.setUserCount(newUserCount);
+    @Override
+    public void recordPostEngagement(Map<String, Long> countsByPost) {
+        Map<String, Long> positive = new HashMap<>();
+        countsByPost.forEach((postId, count) -> {
+            if (count != null && count > 0) {
+                positive.put(postId, count);
+            }
+        });
+        if (positive.isEmpty()) {
+            return;
+        }
+        postRepository.findHashtagsByIds(positive.keySet())
+                .forEach((postId, hashtags) -> recordEngagement(hashtags, positive.get(postId)));
+    }
+
+    @Override
+    public Page<HashtagTrending> getTrendingHashtags(int page, int size) {
+        return getTrendingHashtags(TrendingPeriod.DAILY, page, size);
+    }
+
+    @Override
+    public Page<HashtagTrending> getTrendingHashtags(TrendingPeriod period, int page, int size) {
+        List<HashtagTrending> top = loadSnapshot(period);
+        PageRequest pageable = PageRequest.of(page, size);
+        int from = (int) Math.min(pageable.getOffset(), top.size());
+        int to = Math.min(from + size, top.size());
+        return new PageImpl<>(top.subList(from, to), pageable, top.size());
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.hashtag.trending.refresh-interval-ms:60000}")
+    public void refreshTrending() {
+        String lockToken = UUID.randomUUID().toString();
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(REFRESH_LOCK_KEY, lockToken, REFRESH_LOCK_TTL);
+        if (!Boolean.TRUE.equals(acquired)) {
+            return;
+        }
+        try {
+            Instant now = Instant.now();
+            for (TrendingPeriod period : TrendingPeriod.values()) {
+                List<HashtagTrending> top = computeTop(period, now);
+                persist(period, top);
+                redisTemplate.opsForValue().set(String.format(TOP_KEY, period.getValue()), top);
+                synchronized (snapshots) {
+                    snapshots.put(period, new Snapshot(top, now));
                 }
+            }
+        } catch (Exception e) {
+            log.error("Failed to refresh trending hashtags: {}", e.getMessage());
+        } finally {
+            stringRedisTemplate.execute(RELEASE_LOCK, List.of(REFRESH_LOCK_KEY), lockToken);
+        }
+    }
+
+    private void record(List<String> tags, double amount, Instant now) {
+        TrendingPeriod[] periods = TrendingPeriod.values();
+        List<String> keys = new ArrayList<>();
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(now.getEpochSecond()));
+        args.add(String.valueOf(amount));
+        args.add(String.valueOf(periods.length));
+        for (TrendingPeriod period : periods) {
+            keys.add(String.format(SCORE_KEY, period.getValue()));
+            keys.add(String.format(EPOCH_KEY, period.getValue()));
+            args.add(String.valueOf(period.getHalfLife().toSeconds()));
+        }
+        args.addAll(tags);
+        stringRedisTemplate.execute(HashtagTrendingScripts.RECORD, keys, args.toArray());
+    }
 
-                List<String> samples = existing.getSamplePostIds();
-                if (samples != null) {
-                    samples.remove(postId);
-                    existing.setSamplePostIds(samples);
+    // Ghi vào cả bucket 5 phút (khung hourly) và bucket 1 giờ (khung daily/weekly)
+    private void incrementBuckets(StringRedisConnection conn, String tag, String field, long count, Instant now) {
+        for (Duration bucket : bucketSizes()) {
+            String key = bucketKey(bucket, bucketStart(now, bucket), shardOf(tag));
+            conn.hIncrBy(key, tag + field, count);
+            conn.expire(key, BUCKET_TTL.toSeconds());
+        }
+    }
+
+    private List<HashtagTrending> computeTop(TrendingPeriod period, Instant now) {
+        String scoreKey = String.format(SCORE_KEY, period.getValue());
+        stringRedisTemplate.execute(HashtagTrendingScripts.REBASE,
+                List.of(scoreKey, String.format(EPOCH_KEY, period.getValue())),
+                String.valueOf(now.getEpochSecond()),
+                String.valueOf(period.getHalfLife().toSeconds()),
+                String.valueOf(MIN_SCORE));
+
+        Set<ZSetOperations.TypedTuple<String>> ranked =
+                stringRedisTemplate.opsForZSet().reverseRangeWithScores(scoreKey, 0, topK - 1);
+        if (ranked == null || ranked.isEmpty()) {
+            return List.of();
+        }
+        Map<String, Double> decayed = new LinkedHashMap<>();
+        for (ZSetOperations.TypedTuple<String> tuple : ranked) {
+            decayed.put(tuple.getValue(), tuple.getScore() != null ? tuple.getScore() : 0.0);
+        }
+        List<String> tags = new ArrayList<>(decayed.keySet());
+
+        // Bucket mới nhất trước; nửa đầu danh sách là nửa sau của khung thời gian
+        long bucketSeconds = period.getBucket().toSeconds();
+        int bucketCount = (int) (period.getWindow().toSeconds() / bucketSeconds);
+        long current = bucketStart(now, period.getBucket());
+        Map<Integer, List<String>> tagsByShard = new HashMap<>();
+        for (String tag : tags) {
+            tagsByShard.computeIfAbsent(shardOf(tag), ignored -> new ArrayList<>()).add(tag);
+        }
+
+        List<Object> rows = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (int i = 0; i < bucketCount; i++) {
+                long start = current - i * bucketSeconds;
+                for (Map.Entry<Integer, List<String>> shard : tagsByShard.entrySet()) {
+                    conn.hMGet(bucketKey(period.getBucket(), start, shard.getKey()), fieldsOf(shard.getValue()));
                 }
+            }
+            for (String tag : tags) {
+                conn.pfCount(usersKeys(tag, now, period));
+                conn.lRange(String.format(SAMPLES_KEY, tag), 0, MAX_SAMPLES - 1);
+            }
+            return null;
+        });
 
-                existing.setUpdatedAt(now);
-                double score = 0.0;
-                if (stats != null) {
-                    score = stats.getPostCount() * 5.0 + stats.getEngagementCount() * 2.0;
+        Map<String, long[]> counts = new HashMap<>(); // [posts, engagement, recent, older]
+        int row = 0;
+        for (int i = 0; i < bucketCount; i++) {
+            boolean recentHalf = i < bucketCount / 2;
+            for (Map.Entry<Integer, List<String>> shard : tagsByShard.entrySet()) {
+                List<?> values = (List<?>) rows.get(row++);
+                List<String> shardTags = shard.getValue();
+                for (int t = 0; t < shardTags.size(); t++) {
+                    long posts = parseLong(values.get(2 * t));
+                    long engagement = parseLong(values.get(2 * t + 1));
+                    long[] total = counts.computeIfAbsent(shardTags.get(t), ignored -> new long[4]);
+                    total[0] += posts;
+                    total[1] += engagement;
+                    total[recentHalf ? 2 : 3] += posts + engagement;
                 }
-                existing.setTrendingScore(score);
+            }
+        }
+
+        double halfWindowHours = period.getWindow().toSeconds() / 3600.0 / 2;
+        List<HashtagTrending> top = new ArrayList<>();
+        for (String tag : tags) {
+            long[] total = counts.getOrDefault(tag, new long[4]);
+            Long users = (Long) rows.get(row++);
+            @SuppressWarnings("unchecked")
+            List<String> samples = (List<String>) rows.get(row++);
+
+            double velocity = (total[2] - total[3]) / halfWindowHours;
+            double score = decayed.get(tag) + VELOCITY_WEIGHT * Math.max(0, velocity);
 
-                repository.save(existing);
+            top.add(HashtagTrending.builder()
+                    .hashtag(tag)
+                    .period(period.getValue())
+                    .stats(TrendingStats.builder()
+                            .postCount(total[0])
+                            .userCount(users != null ? users : 0)
+                            .engagementCount(total[1])
+                            .velocity(velocity)
+                            .build())
+                    .trendingScore(score)
+                    .samplePostIds(samples != null ? samples : List.of())
+                    .startTime(now.minus(period.getWindow()))
+                    .endTime(now)
+                    .updatedAt(now)
+                    .expireAt(now.plus(period.getWindow()))
+                    .build());
+        }
+        top.sort(Comparator.comparing(HashtagTrending::getTrendingScore).reversed());
+        return top;
+    }
+
+    // Bản sao top-K trên MongoDB, dùng khi snapshot trên Redis bị mất
+    private void persist(TrendingPeriod period, List<HashtagTrending> top) {
+        try {
+            Set<String> hashtags = new LinkedHashSet<>();
+            top.forEach(item -> hashtags.add(item.getHashtag()));
+            repository.deleteByPeriodAndHashtagNotIn(period.getValue(), hashtags);
+            // Giữ id của document cũ để không vi phạm unique index (hashtag, period)
+            Map<String, String> existingIds = new HashMap<>();
+            repository.findByPeriodAndHashtagIn(period.getValue(), hashtags)
+                    .forEach(document -> existingIds.put(document.getHashtag(), document.getId()));
+            top.forEach(item -> item.setId(existingIds.get(item.getHashtag())));
+            repository.saveAll(top);
+        } catch (Exception e) {
+            log.warn("Failed to persist {} trending hashtags: {}", period.getValue(), e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<HashtagTrending> loadSnapshot(TrendingPeriod period) {
+        Instant now = Instant.now();
+        synchronized (snapshots) {
+            Snapshot cached = snapshots.get(period);
+            if (cached != null && cached.loadedAt().plus(SNAPSHOT_CACHE_TTL).isAfter(now)) {
+                return cached.items();
             }
         }
+        List<HashtagTrending> items;
+        try {
+            Object stored = redisTemplate.opsForValue().get(String.format(TOP_KEY, period.getValue()));
+            items = stored instanceof List<?> ? (List<HashtagTrending>) stored : null;
+        } catch (Exception e) {
+            log.warn("Failed to read trending snapshot {}: {}", period.getValue(), e.getMessage());
+            items = null;
+        }
+        if (items == null) {
+            // Snapshot chưa được tính (vừa khởi động) hoặc Redis bị mất dữ liệu -> đọc bản sao top-K
+            items = repository.findByPeriod(period.getValue(),
+                    PageRequest.of(0, topK, Sort.by(Sort.Direction.DESC, "trendingScore"))).getContent();
+        }
+        synchronized (snapshots) {
+            snapshots.put(period, new Snapshot(items, now));
+        }
+        return items;
     }
 
-    @Override
-    public Page<HashtagTrending> getTrendingHashtags(int page, int size) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "trendingScore", "updatedAt"));
-        return repository.findByPeriod("all", pageable);
+    private List<String> clean(Collection<String> hashtags) {
+        if (hashtags == null) {
+            return List.of();
+        }
+        Set<String> tags = new LinkedHashSet<>();
+        for (String hashtag : hashtags) {
+            if (hashtag == null) continue;
+            String cleanHashtag = hashtag.trim().toLowerCase();
+            if (!cleanHashtag.isEmpty()) {
+                tags.add(cleanHashtag);
+            }
+        }
+        return new ArrayList<>(tags);
+    }
+
+    private String[] fieldsOf(List<String> tags) {
+        String[] fields = new String[tags.size() * 2];
+        for (int i = 0; i < tags.size(); i++) {
+            fields[2 * i] = tags.get(i) + POST_FIELD;
+            fields[2 * i + 1] = tags.get(i) + ENGAGEMENT_FIELD;
+        }
+        return fields;
+    }
+
+    private String[] usersKeys(String tag, Instant now, TrendingPeriod period) {
+        long hours = Math.max(1, period.getWindow().toHours());
+        long current = bucketStart(now, HOUR);
+        String[] keys = new String[(int) hours];
+        for (int i = 0; i < hours; i++) {
+            keys[i] = String.format(USERS_KEY, current - i * HOUR.toSeconds(), tag);
+        }
+        return keys;
+    }
+
+    private int shardOf(String tag) {
+        return Math.floorMod(tag.hashCode(), Math.max(1, shards));
+    }
+
+    private static List<Duration> bucketSizes() {
+        Set<Duration> sizes = new LinkedHashSet<>();
+        for (TrendingPeriod period : TrendingPeriod.values()) {
+            sizes.add(period.getBucket());
+        }
+        return new ArrayList<>(sizes);
+    }
+
+    private static String bucketKey(Duration bucket, long bucketStart, int shard) {
+        return String.format(BUCKET_KEY, bucket.toSeconds(), bucketStart, shard);
+    }
+
+    private static long bucketStart(Instant now, Duration bucket) {
+        long size = bucket.toSeconds();
+        return now.getEpochSecond() / size * size;
+    }
+
+    private static long parseLong(Object value) {
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+
+    private record Snapshot(List<HashtagTrending> items, Instant loadedAt) {
     }
 }
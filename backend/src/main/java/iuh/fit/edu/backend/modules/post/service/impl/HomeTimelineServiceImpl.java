@@ -0,0 +1,315 @@
+/*
+ * @ (#) HomeTimelineServiceImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service.impl;
+
+import iuh.fit.edu.backend.modules.post.config.FeedProperties;
+import iuh.fit.edu.backend.modules.post.constant.PrivacyType;
+import iuh.fit.edu.backend.modules.post.constant.StatusType;
+import iuh.fit.edu.backend.modules.post.entity.Post;
+import iuh.fit.edu.backend.modules.post.repository.PostRepository;
+import iuh.fit.edu.backend.modules.post.service.HomeTimelineService;
+import iuh.fit.edu.backend.modules.user.service.FriendService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/*
+ * @description: Home timeline lưu trên Redis ZSET (feed:timeline:{viewerId}, score = createdAt, member = postId).
+ * Tác giả có quá nhiều bạn (> maxFanoutFriends) không fan-out mà được đánh dấu "pull author",
+ * viewer sẽ kéo bài của họ lúc đọc (hybrid fan-out-on-read).
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HomeTimelineServiceImpl implements HomeTimelineService {
+
+    private static final String TIMELINE_KEY = "feed:timeline:";
+    private static final String TIMELINE_READY_KEY = "feed:timeline:ready:";
+    private static final String PULL_AUTHORS_KEY = "feed:timeline:pull_authors";
+
+    // rankingTime được boost tối đa 6h so với createdAt (xem Post.recalculateRankingTime)
+    private static final Duration MAX_RANKING_BOOST = Duration.ofHours(6);
+    // Chia nhỏ $in khi dựng lại timeline cho viewer có rất nhiều bạn
+    private static final int REBUILD_AUTHOR_CHUNK = 200;
+    // Mỗi lát đọc từ ZSET = size x hệ số, bù cho bài bị lọc (quyền xem, quá 24h) và chênh lệch boost
+    private static final int TIMELINE_SLICE_FACTOR = 3;
+
+    private final StringRedisTemplate redisTemplate;
+    private final PostRepository postRepository;
+    private final FriendService friendService;
+    private final FeedProperties feedProperties;
+
+    @Override
+    public boolean isEnabled() {
+        return feedProperties.getTimeline().isEnabled();
+    }
+
+    @Override
+    @Async
+    public void fanOutPost(Post post) {
+        if (!isEnabled() || post == null || post.getId() == null || post.getAuthorId() == null) {
+            return;
+        }
+        if (post.getStatus() != StatusType.ACTIVE) {
+            return;
+        }
+
+        try {
+            List<Long> friendIds = friendService.getAcceptedFriendIds(Long.parseLong(post.getAuthorId()));
+            FeedProperties.Timeline config = feedProperties.getTimeline();
+
+            if (friendIds.size() > config.getMaxFanoutFriends()) {
+                // Quá nhiều bạn -> không fan-out, viewer tự kéo lúc đọc
+                redisTemplate.opsForSet().add(PULL_AUTHORS_KEY, post.getAuthorId());
+                log.info("Author {} has {} friends, post {} served by fan-out-on-read",
+                        post.getAuthorId(), friendIds.size(), post.getId());
+                return;
+            }
+            redisTemplate.opsForSet().remove(PULL_AUTHORS_KEY, post.getAuthorId());
+
+            Set<String> recipients = resolveRecipients(post, friendIds);
+            if (recipients.isEmpty()) {
+                return;
+            }
+
+            double score = scoreOf(post);
+            long ttlSeconds = config.getTtl().toSeconds();
+            int maxEntries = config.getMaxEntries();
+
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String recipientId : recipients) {
+                    String key = TIMELINE_KEY + recipientId;
+                    conn.zAdd(key, score, post.getId());
+                    conn.zRemRange(key, 0, -(maxEntries + 1));
+                    conn.expire(key, ttlSeconds);
+                }
+                return null;
+            });
+            log.info("Fanned out post {} to {} timelines", post.getId(), recipients.size());
+        } catch (Exception e) {
+            log.error("Failed to fan out post {}: {}", post.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    @Async
+    public void removePost(Post post) {
+        if (!isEnabled() || post == null || post.getId() == null || post.getAuthorId() == null) {
+            return;
+        }
+
+        try {
+            List<Long> friendIds = friendService.getAcceptedFriendIds(Long.parseLong(post.getAuthorId()));
+            if (friendIds.isEmpty()) {
+                return;
+            }
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (Long friendId : friendIds) {
+                    conn.zRem(TIMELINE_KEY + friendId, post.getId());
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Failed to remove post {} from timelines: {}", post.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void resetTimeline(Long userId) {
+        if (!isEnabled() || userId == null) {
+            return;
+        }
+        // Xóa cả timeline lẫn marker, lần đọc kế tiếp ensureTimeline sẽ dựng lại từ Mongo
+        redisTemplate.delete(List.of(TIMELINE_KEY + userId, TIMELINE_READY_KEY + userId));
+    }
+
+    @Override
+    public List<Post> findRecentFriendPosts(
+            Long viewerId,
+            List<String> friendIds,
+            Instant lastRankingTime,
+            String lastPostId,
+            Instant recentThreshold,
+            int size
+    ) {
+        if (friendIds == null || friendIds.isEmpty() || size <= 0) {
+            return List.of();
+        }
+
+        String viewer = viewerId.toString();
+        Set<String> friendIdSet = new HashSet<>(friendIds);
+        ensureTimeline(viewer, friendIds, recentThreshold);
+
+        // 1. Keyset trên ZSET: score = createdAt <= rankingTime <= createdAt + MAX_RANKING_BOOST,
+        // nên bài đứng sau cursor luôn có score <= lastRankingTime. Đọc từng lát nhỏ theo score giảm dần
+        // và chỉ tra Mongo các id trong lát đó; dừng khi bài chưa đọc (score <= lát cuối) không thể vượt
+        // bài thứ size đã chọn. Trùng rankingTime với cursor thì tie-break theo id trong isBeforeCursor.
+        String key = TIMELINE_KEY + viewer;
+        double minScore = recentThreshold.minus(MAX_RANKING_BOOST).toEpochMilli();
+        double maxScore = lastRankingTime != null ? lastRankingTime.toEpochMilli() : Double.POSITIVE_INFINITY;
+        int sliceSize = size * TIMELINE_SLICE_FACTOR;
+        int maxEntries = feedProperties.getTimeline().getMaxEntries();
+        List<Post> fromTimeline = new ArrayList<>();
+        for (int offset = 0; offset < maxEntries; offset += sliceSize) {
+            Set<ZSetOperations.TypedTuple<String>> slice = redisTemplate.opsForZSet()
+                    .reverseRangeByScoreWithScores(key, minScore, maxScore, offset, sliceSize);
+            if (slice == null || slice.isEmpty()) {
+                break;
+            }
+            List<String> ids = new ArrayList<>(slice.size());
+            double lowestScore = maxScore;
+            for (ZSetOperations.TypedTuple<String> tuple : slice) {
+                ids.add(tuple.getValue());
+                if (tuple.getScore() != null) {
+                    lowestScore = Math.min(lowestScore, tuple.getScore());
+                }
+            }
+            for (Post post : postRepository.findAllById(ids)) {
+                if (post.getRankingTime() == null || post.getRankingTime().isBefore(recentThreshold)) {
+                    continue;
+                }
+                if (isVisibleTo(post, viewer, friendIdSet) && FeedCursors.isBeforeCursor(post, lastRankingTime, lastPostId)) {
+                    fromTimeline.add(post);
+                }
+            }
+            if (slice.size() < sliceSize) {
+                break;
+            }
+            if (fromTimeline.size() >= size) {
+                fromTimeline.sort(FeedCursors.RANKING_ORDER);
+                Instant sizeth = fromTimeline.get(size - 1).getRankingTime();
+                Instant unreadCeiling = Instant.ofEpochMilli((long) lowestScore).plus(MAX_RANKING_BOOST);
+                if (sizeth.isAfter(unreadCeiling)) {
+                    break;
+                }
+            }
+        }
+        Map<String, Post> candidates = new LinkedHashMap<>();
+        for (Post post : fromTimeline) {
+            candidates.put(post.getId(), post);
+        }
+
+        // 2. Hybrid: bài của "pull author" không được fan-out, kéo trực tiếp với $in nhỏ
+        List<String> pullAuthorIds = resolvePullAuthors(friendIdSet);
+        if (!pullAuthorIds.isEmpty()) {
+            List<Post> pulled = postRepository.findRecentFriendPosts(
+                    pullAuthorIds, viewer, lastRankingTime, lastPostId, recentThreshold, size);
+            for (Post post : pulled) {
+                candidates.putIfAbsent(post.getId(), post);
+            }
+        }
+
+        List<Post> result = new ArrayList<>(candidates.values());
+        result.sort(FeedCursors.RANKING_ORDER);
+        return result.size() > size ? new ArrayList<>(result.subList(0, size)) : result;
+    }
+
+    /**
+     * Dựng lại timeline khi viewer chưa có (lần đầu bật tính năng hoặc đã hết TTL).
+     * Chạy tối đa 1 lần mỗi TTL cho mỗi viewer.
+     */
+    private void ensureTimeline(String viewerId, List<String> friendIds, Instant recentThreshold) {
+        String readyKey = TIMELINE_READY_KEY + viewerId;
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(readyKey))) {
+            return;
+        }
+
+        FeedProperties.Timeline config = feedProperties.getTimeline();
+        String key = TIMELINE_KEY + viewerId;
+        List<Post> recentPosts = new ArrayList<>();
+        for (int i = 0; i < friendIds.size(); i += REBUILD_AUTHOR_CHUNK) {
+            List<String> chunk = friendIds.subList(i, Math.min(i + REBUILD_AUTHOR_CHUNK, friendIds.size()));
+            recentPosts.addAll(postRepository.findRecentFriendPosts(
+                    chunk, viewerId, null, null, recentThreshold, config.getMaxEntries()));
+        }
+
+        long ttlSeconds = config.getTtl().toSeconds();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.del(key);
+            for (Post post : recentPosts) {
+                conn.zAdd(key, scoreOf(post), post.getId());
+            }
+            conn.zRemRange(key, 0, -(config.getMaxEntries() + 1));
+            conn.expire(key, ttlSeconds);
+            conn.setEx(readyKey, ttlSeconds, "1");
+            return null;
+        });
+        log.info("Rebuilt home timeline for viewer {} with {} posts", viewerId, recentPosts.size());
+    }
+
+    private List<String> resolvePullAuthors(Set<String> friendIdSet) {
+        Set<String> pullAuthors = redisTemplate.opsForSet().members(PULL_AUTHORS_KEY);
+        if (pullAuthors == null || pullAuthors.isEmpty()) {
+            return List.of();
+        }
+        return pullAuthors.stream().filter(friendIdSet::contains).toList();
+    }
+
+    // Cùng quy tắc với PostFeedRepositoryCustomImpl.buildPrivacyCriteria, áp dụng cho danh sách bạn hiện tại
+    private Set<String> resolveRecipients(Post post, Collection<Long> friendIds) {
+        Set<String> recipients = new HashSet<>();
+        PrivacyType privacy = post.getPrivacy();
+        if (privacy == null || privacy == PrivacyType.ONLY_ME) {
+            return recipients;
+        }
+        for (Long friendId : friendIds) {
+            String id = friendId.toString();
+            if (isAllowedByPrivacy(post, id)) {
+                recipients.add(id);
+            }
+        }
+        return recipients;
+    }
+
+    private boolean isVisibleTo(Post post, String viewerId, Set<String> friendIdSet) {
+        if (post.getStatus() != StatusType.ACTIVE) {
+            return false;
+        }
+        if (post.getPrivacy() == PrivacyType.FRIENDS) {
+            return friendIdSet.contains(post.getAuthorId());
+        }
+        return isAllowedByPrivacy(post, viewerId);
+    }
+
+    private boolean isAllowedByPrivacy(Post post, String viewerId) {
+        if (post.getPrivacy() == null) {
+            return false;
+        }
+        return switch (post.getPrivacy()) {
+            case PUBLIC, FRIENDS -> true;
+            case SPECIFIC -> post.getSpecificViewerUserIds() != null
+                    && post.getSpecificViewerUserIds().contains(viewerId);
+            case EXCEPT -> post.getExcludedUserIds() == null
+                    || !post.getExcludedUserIds().contains(viewerId);
+            case ONLY_ME -> false;
+        };
+    }
+
+    private double scoreOf(Post post) {
+        Instant createdAt = post.getCreatedAt() != null ? post.getCreatedAt() : post.getRankingTime();
+        return createdAt != null ? createdAt.toEpochMilli() : Instant.now().toEpochMilli();
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * @ (#) PostReactCountBuffer.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service.impl;
+
+import iuh.fit.edu.backend.modules.post.repository.PostRepository;
+import iuh.fit.edu.backend.modules.post.service.HashtagTrendingService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * @description
+ * Write-behind cho Post.stats.reactCount: cộng dồn delta trong bộ nhớ và flush mỗi flushIntervalMs
+ * bằng 1 bulk $inc + 1 lần tính lại rankingTime cho mọi bài thay đổi.
+ * Bài hot nhận hàng nghìn like/giây chỉ tốn vài lần ghi mỗi giây, không còn findById + save cả document.
+ * Số liệu chính xác theo từng loại nằm ở ReactionCounter (ghi ngay), đây chỉ là bản denormalize cho feed.
+ * Bài có delta đang chờ được đánh dấu trên ZSET dùng chung (postId -> thời điểm), để job đối soát ở bất kỳ node nào
+ * bỏ qua bài còn delta chưa flush (ghi đè reactCount rồi flush $inc lại sẽ bị cộng 2 lần).
+ * @author: The Bao
+ * @version: 1.0
+ */
+@Component
+@Slf4j
+public class PostReactCountBuffer {
+
+    private static final String BUFFERED_KEY = "post:react:buffered";
+
+    private final PostRepository postRepository;
+    private final HashtagTrendingService hashtagTrendingService;
+    private final StringRedisTemplate redisTemplate;
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    @Value("${app.post.react-count.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.post.react-count.write-behind.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    public PostReactCountBuffer(PostRepository postRepository, HashtagTrendingService hashtagTrendingService,
+                                StringRedisTemplate redisTemplate) {
+        this.postRepository = postRepository;
+        this.hashtagTrendingService = hashtagTrendingService;
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform()
+                .name("PostReactCount-Flusher")
+                .daemon(true)
+                .factory());
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Ghi nốt phần còn lại để không mất lượt react khi tắt server
+        flush();
+    }
+
+    public void add(String postId, long delta) {
+        if (!enabled) {
+            write(Map.of(postId, delta));
+            return;
+        }
+        // Chỉ đánh dấu khi bài bắt đầu có delta chờ, không tốn thêm lệnh Redis cho mỗi lượt react
+        if (pending.putIfAbsent(postId, delta) == null) {
+            markBuffered(List.of(postId));
+        } else {
+            pending.merge(postId, delta, Long::sum);
+        }
+    }
+
+    /**
+     * Các bài trong postIds có delta được buffer (ở bất kỳ node nào) từ since trở lại đây.
+     * since phải cách hiện tại nhiều hơn flushIntervalMs để delta đánh dấu trước đó chắc chắn đã flush.
+     */
+    public Set<String> findRecentlyBuffered(List<String> postIds, Instant since) {
+        Set<String> buffered = new HashSet<>();
+        if (postIds.isEmpty()) {
+            return buffered;
+        }
+        double minScore = since.toEpochMilli();
+        // Dọn luôn dấu đã quá mốc để ZSET chỉ chứa bài vừa có react
+        redisTemplate.opsForZSet().removeRangeByScore(BUFFERED_KEY, Double.NEGATIVE_INFINITY, minScore);
+        List<Double> scores = redisTemplate.opsForZSet().score(BUFFERED_KEY, postIds.toArray());
+        for (int i = 0; i < postIds.size(); i++) {
+            Double score = scores != null ? scores.get(i) : null;
+            if (score != null && score >= minScore) {
+                buffered.add(postIds.get(i));
+            }
+        }
+        return buffered;
+    }
+
+    private void markBuffered(Collection<String> postIds) {
+        try {
+            double now = System.currentTimeMillis();
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String postId : postIds) {
+                    conn.zAdd(BUFFERED_KEY, now, postId);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to mark buffered reactCount for {} posts: {}", postIds.size(), e.getMessage());
+        }
+    }
+
+    private void flush() {
+        Map<String, Long> drained = new HashMap<>();
+        for (String postId : List.copyOf(pending.keySet())) {
+            Long delta = pending.remove(postId);
+            if (delta != null && delta != 0) {
+                drained.put(postId, delta);
+            }
+        }
+        if (!drained.isEmpty()) {
+            write(drained);
+        }
+    }
+
+    private void write(Map<String, Long> deltas) {
+        try {
+            postRepository.incrementReactCounts(deltas, Instant.now());
+        } catch (Exception e) {
+            // Trả delta lại buffer để lần flush sau thử lại
+            log.error("Failed to flush reactCount for {} posts: {}", deltas.size(), e.getMessage());
+            if (enabled) {
+                deltas.forEach((postId, delta) -> pending.merge(postId, delta, Long::sum));
+                // Delta còn chờ lâu hơn dự kiến: gia hạn dấu để đối soát tiếp tục bỏ qua
+                markBuffered(deltas.keySet());
+            }
+            return;
+        }
+        try {
+            postRepository.refreshRankingTimes(deltas.keySet());
+        } catch (Exception e) {
+            log.warn("Failed to refresh rankingTime for {} posts: {}", deltas.size(), e.getMessage());
+        }
+        try {
+            // Lượt react mới cũng là tương tác cho hashtag của bài (delta âm bị bỏ qua)
+            hashtagTrendingService.recordPostEngagement(deltas);
+        } catch (Exception e) {
+            log.warn("Failed to record hashtag engagement for {} posts: {}", deltas.size(), e.getMessage());
+        }
+    }
+}
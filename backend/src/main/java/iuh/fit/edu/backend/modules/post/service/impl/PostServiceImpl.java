@@ -4,7 +4,6 @@
  */
 package iuh.fit.edu.backend.modules.post.service.impl;
 
-import iuh.fit.edu.backend.modules.notification.constant.TargetType;
 import iuh.fit.edu.backend.common.constant.UploadModule;
 import iuh.fit.edu.backend.modules.media.entity.Media;
 import iuh.fit.edu.backend.modules.media.entity.MediaMetadata;
@@ -14,14 +13,15 @@ import iuh.fit.edu.backend.modules.post.entity.Location;
 import iuh.fit.edu.backend.modules.post.dto.request.CreatePostRequest;
 import iuh.fit.edu.backend.modules.post.dto.request.MediaUploadMetadataRequest;
 import iuh.fit.edu.backend.modules.post.event.payload.PostEvent;
+import iuh.fit.edu.backend.modules.post.constant.PrivacyType;
 import iuh.fit.edu.backend.modules.post.constant.StatusType;
 import iuh.fit.edu.backend.modules.user.repository.UserRepository;
-import iuh.fit.edu.backend.modules.post.repository.CommentRepository;
 import iuh.fit.edu.backend.modules.post.repository.PostRepository;
-import iuh.fit.edu.backend.modules.post.repository.ReactionRepository;
 import iuh.fit.edu.backend.common.service.s3.S3Service;
 import iuh.fit.edu.backend.modules.post.service.PostService;
+import iuh.fit.edu.backend.modules.post.service.DiscoveryPoolService;
 import iuh.fit.edu.backend.modules.post.service.HashtagTrendingService;
+import iuh.fit.edu.backend.modules.post.service.HomeTimelineService;
 import iuh.fit.edu.backend.modules.user.service.FriendService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -32,6 +32,7 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionSynchronization;
@@ -62,10 +63,10 @@ public class PostServiceImpl implements PostService {
     private final PostRepository postRepository;
     private final UserRepository userRepository;
     private final S3Service s3Service;
-    private final ReactionRepository reactionRepository;
-    private final CommentRepository commentRepository;
     private final FriendService friendService;
     private final HashtagTrendingService hashtagTrendingService;
+    private final HomeTimelineService homeTimelineService;
+    private final DiscoveryPoolService discoveryPoolService;
     
     @Override
     @Transactional
@@ -202,6 +203,7 @@ public class PostServiceImpl implements PostService {
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
                 @Override
                 public void afterCommit() {
+                    homeTimelineService.fanOutPost(finalPost);
                     eventPublisher.publishEvent(PostEvent.builder()
                             .action("CREATE")
                             .post(finalPost)
@@ -211,6 +213,7 @@ public class PostServiceImpl implements PostService {
                 }
             });
         } else {
+            homeTimelineService.fanOutPost(finalPost);
             eventPublisher.publishEvent(PostEvent.builder()
                     .action("CREATE")
                     .post(finalPost)
@@ -363,6 +366,8 @@ public class PostServiceImpl implements PostService {
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
                 @Override
                 public void afterCommit() {
+                    homeTimelineService.removePost(post);
+                    discoveryPoolService.removePost(postId);
                     eventPublisher.publishEvent(PostEvent.builder()
                             .action("DELETE")
                             .postId(postId)
@@ -371,6 +376,8 @@ public class PostServiceImpl implements PostService {
                 }
             });
         } else {
+            homeTimelineService.removePost(post);
+            discoveryPoolService.removePost(postId);
             eventPublisher.publishEvent(PostEvent.builder()
                     .action("DELETE")
                     .postId(postId)
@@ -399,6 +406,9 @@ public class PostServiceImpl implements PostService {
         
         // Capture old hashtags for trending updates
         List<String> oldHashtags = post.getHashtags() != null ? new ArrayList<>(post.getHashtags()) : new ArrayList<>();
+        PrivacyType oldPrivacy = post.getPrivacy();
+        // Chỉ $set các field được sửa: save cả document sẽ ghi đè stats mà bộ đếm like/comment vừa $inc
+        Update edit = new Update();
 
         // Update post fields only if provided (not null)
         if (request.getContent() != null) {
@@ -406,9 +416,13 @@ public class PostServiceImpl implements PostService {
             // Extract hashtags and mentions only when content changes
             post.setHashtags(extractHashtags(request.getContent()));
             post.setMentions(extractMentions(request.getContent()));
+            edit.set("content", post.getContent())
+                    .set("hashtags", post.getHashtags())
+                    .set("mentions", post.getMentions());
         }
         if (request.getPrivacy() != null) {
             post.setPrivacy(request.getPrivacy());
+            edit.set("privacy", post.getPrivacy());
         }
         
         // Update location if provided
@@ -421,23 +435,28 @@ public class PostServiceImpl implements PostService {
                         .build();
                 post.setLocation(location);
             }
+            edit.set("location", post.getLocation());
         }
         
         // Update tagged users - convert usernames to IDs if provided
         if (request.getTaggedUsernames() != null) {
             post.setTaggedUserIds(convertUsernamesToIds(request.getTaggedUsernames()));
+            edit.set("taggedUserIds", post.getTaggedUserIds());
         } else if (request.getTaggedUserIds() != null) {
             post.setTaggedUserIds(request.getTaggedUserIds());
+            edit.set("taggedUserIds", post.getTaggedUserIds());
         }
         
         // Update specific viewer usernames to IDs (for SPECIFIC privacy)
         if (request.getSpecificViewerUsernames() != null) {
             post.setSpecificViewerUserIds(convertUsernamesToIds(request.getSpecificViewerUsernames()));
+            edit.set("specificViewerUserIds", post.getSpecificViewerUserIds());
         }
         
         // Update excluded usernames to IDs (for EXCEPT privacy)
         if (request.getExcludedUsernames() != null) {
             post.setExcludedUserIds(convertUsernamesToIds(request.getExcludedUsernames()));
+            edit.set("excludedUserIds", post.getExcludedUserIds());
         }
         
         // ====================================================================
@@ -570,24 +589,31 @@ public class PostServiceImpl implements PostService {
             }
             
             post.setMedia(updatedMediaList);
+            edit.set("media", post.getMedia());
         }
         
         // Update interaction settings
         if (request.getAllowComments() != null) {
             post.setAllowComments(request.getAllowComments());
+            edit.set("allowComments", post.isAllowComments());
         }
         if (request.getAllowShares() != null) {
             post.setAllowShares(request.getAllowShares());
+            edit.set("allowShares", post.isAllowShares());
         }
         
         if (request.getMusic() != null) {
             post.setMusic(request.getMusic());
+            edit.set("music", post.getMusic());
         }
         
         post.setUpdatedAt(Instant.now());
         post.setLastActivityAt(Instant.now());
-        
-        Post updated = postRepository.save(post);
+        edit.set("updatedAt", post.getUpdatedAt())
+                .max("lastActivityAt", post.getLastActivityAt());
+
+        postRepository.applyEdit(postId, edit);
+        Post updated = post;
         log.info("✅ Post {} updated successfully with {} media items", postId, updated.getMedia().size());
         
         // Update hashtag trending stats
@@ -597,11 +623,24 @@ public class PostServiceImpl implements PostService {
             log.error("Failed to update hashtag trending on post update {}: {}", updated.getId(), e.getMessage());
         }
 
+        // Privacy đổi -> đẩy lại vào timeline (người không còn quyền xem bị lọc lúc đọc)
+        boolean privacyChanged = oldPrivacy != updated.getPrivacy()
+                || request.getSpecificViewerUsernames() != null
+                || request.getExcludedUsernames() != null;
+        // Pool khám phá chỉ chứa bài PUBLIC
+        boolean leftPublic = oldPrivacy == PrivacyType.PUBLIC && updated.getPrivacy() != PrivacyType.PUBLIC;
+
         // Broadcast UPDATE event - Post-commit
         if (TransactionSynchronizationManager.isActualTransactionActive()) {
             TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
                 @Override
                 public void afterCommit() {
+                    if (privacyChanged) {
+                        homeTimelineService.fanOutPost(updated);
+                    }
+                    if (leftPublic) {
+                        discoveryPoolService.removePost(updated.getId());
+                    }
                     eventPublisher.publishEvent(PostEvent.builder()
                             .action("UPDATE")
                             .post(updated)
@@ -612,6 +651,12 @@ public class PostServiceImpl implements PostService {
                 }
             });
         } else {
+            if (privacyChanged) {
+                homeTimelineService.fanOutPost(updated);
+            }
+            if (leftPublic) {
+                discoveryPoolService.removePost(updated.getId());
+            }
             eventPublisher.publishEvent(PostEvent.builder()
                     .action("UPDATE")
                     .post(updated)
@@ -632,46 +677,6 @@ public class PostServiceImpl implements PostService {
         return posts;
     }
 
-    @Override
-    @Transactional
-    public void syncAllPostsStats() {
-        log.info("Starting to sync stats for all posts");
-        List<Post> allPosts = postRepository.findAll();
-        
-        for (Post post : allPosts) {
-            try {
-                // Count reactions for this post
-                long reactCount = reactionRepository.findByTargetTypeAndTargetId(
-                    TargetType.POST, 
-                    post.getId()
-                ).size();
-                
-                // Count top-level comments for this post (parentId == null)
-                long commentCount = commentRepository.findByTargetTypeAndTargetIdOrderByCreatedAtDesc(
-                    TargetType.POST, 
-                    post.getId()
-                ).stream()
-                .filter(comment -> comment.getParentId() == null)
-                .count();
-                
-                // Update stats
-                if (post.getStats() == null) {
-                    post.setStats(new Stats());
-                }
-                post.getStats().setReactCount(reactCount);
-                post.getStats().setCommentCount(commentCount);
-                
-                postRepository.save(post);
-                log.info("Updated stats for post {}: {} reactions, {} comments", 
-                    post.getId(), reactCount, commentCount);
-            } catch (Exception e) {
-                log.error("Error syncing stats for post {}: {}", post.getId(), e.getMessage());
-            }
-        }
-        
-        log.info("Finished syncing stats for {} posts", allPosts.size());
-    }
-
     private String extractS3Key(String input) {
         if (input == null) return null;
         String value = input.trim();
@@ -6,6 +6,7 @@ import iuh.fit.edu.backend.modules.post.entity.Post;
 import iuh.fit.edu.backend.modules.post.entity.PostShare;
 import iuh.fit.edu.backend.modules.post.repository.PostShareRepository;
 import iuh.fit.edu.backend.modules.post.repository.PostRepository;
+import iuh.fit.edu.backend.modules.post.service.HashtagTrendingService;
 import iuh.fit.edu.backend.modules.post.service.PostShareService;
 import iuh.fit.edu.backend.modules.notification.constant.NotificationType;
 import iuh.fit.edu.backend.modules.notification.constant.TargetType;
@@ -29,6 +30,7 @@ public class PostShareServiceImpl implements PostShareService {
     private final PostShareRepository postShareRepository;
     private final PostRepository postRepository;
     private final NotificationService notificationService;
+    private final HashtagTrendingService hashtagTrendingService;
 
     @Override
     @Transactional
@@ -57,6 +59,14 @@ public class PostShareServiceImpl implements PostShareService {
 
         PostShare saved = postShareRepository.save(share);
 
+        if (post != null) {
+            try {
+                hashtagTrendingService.recordEngagement(post.getHashtags(), 1);
+            } catch (Exception e) {
+                log.warn("Failed to record hashtag engagement for shared post {}: {}", postId, e.getMessage());
+            }
+        }
+
         // Notify the post author that their post was shared (skip self-share)
         try {
             if (post != null && post.getAuthorId() != null
@@ -0,0 +1,315 @@
+/*
+ * @ (#) PostStatsReconciliationServiceImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.post.service.impl;
+
+import iuh.fit.edu.backend.modules.notification.constant.TargetType;
+import iuh.fit.edu.backend.modules.post.dto.response.StatsReconciliationResponse;
+import iuh.fit.edu.backend.modules.post.entity.Post;
+import iuh.fit.edu.backend.modules.post.entity.Stats;
+import iuh.fit.edu.backend.modules.post.repository.CommentRepository;
+import iuh.fit.edu.backend.modules.post.repository.CommentRepositoryCustom.CommentCounts;
+import iuh.fit.edu.backend.modules.post.repository.PostFeedRepositoryCustom.StatsCorrection;
+import iuh.fit.edu.backend.modules.post.repository.PostRepository;
+import iuh.fit.edu.backend.modules.post.repository.ReactionCounterRepository;
+import iuh.fit.edu.backend.modules.post.service.PostStatsReconciliationService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * @description: Đối soát stats của bài viết theo kiểu streaming, thay cho syncAllPostsStats cũ
+ * (findAll + load toàn bộ reactions/comments của từng bài + save từng bài).
+ *   - Duyệt posts theo keyset _id (incremental: keyset (lastActivityAt, _id)), mỗi batch chỉ lấy stats/createdAt/lastActivityAt
+ *   - Đếm reactions và comments của cả batch bằng 2 aggregation $group
+ *   - Chỉ ghi bài bị lệch, bằng 1 bulk $set mỗi batch
+ *   - Checkpoint + tiến độ lưu trên Redis hash sau mỗi batch -> chạy tiếp được khi server restart
+ *   - Chế độ incremental: chỉ bài có lastActivityAt >= touchedSince; job đêm tự lấy mốc từ lần chạy xong gần nhất
+ * Bài vừa có tương tác trong khoảng settle, hoặc còn delta reactCount đang buffer (PostReactCountBuffer), bị bỏ qua;
+ * $set chỉ ghi khi bộ đếm vẫn bằng giá trị đã đọc nên $inc chen giữa lúc đọc và ghi không bị ghi đè.
+ * Lock giữ bằng token: chỉ node đang giữ lock mới gia hạn/xoá được.
+ * @author: The Bao
+ * @date:
+ * @version: 1.0
+ */
+@Service
+@Slf4j
+public class PostStatsReconciliationServiceImpl implements PostStatsReconciliationService {
+
+    private static final String CHECKPOINT_KEY = "post:stats:reconcile:checkpoint";
+    private static final String LOCK_KEY = "post:stats:reconcile:lock";
+    private static final String LAST_COMPLETED_KEY = "post:stats:reconcile:last_completed";
+
+    private static final Duration LOCK_TTL = Duration.ofMinutes(5);
+    // Lùi mốc incremental một chút để không sót bài được ghi đúng lúc lần trước bắt đầu
+    private static final Duration INCREMENTAL_OVERLAP = Duration.ofMinutes(10);
+
+    // Gia hạn / xoá lock chỉ khi vẫn đúng token (lock có thể đã hết hạn và bị node khác lấy)
+    private static final RedisScript<Long> RENEW_LOCK = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            end
+            return 0
+            """, Long.class);
+    private static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final PostRepository postRepository;
+    private final ReactionCounterRepository reactionCounterRepository;
+    private final CommentRepository commentRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final PostReactCountBuffer postReactCountBuffer;
+
+    @Value("${app.post.stats-reconcile.batch-size:500}")
+    private int batchSize;
+
+    // Nghỉ giữa các batch để không chiếm hết tài nguyên Mongo khi chạy trong giờ có traffic
+    @Value("${app.post.stats-reconcile.pause-ms:50}")
+    private long pauseMs;
+
+    @Value("${app.post.stats-reconcile.settle-seconds:60}")
+    private long settleSeconds;
+
+    @Value("${app.post.stats-reconcile.nightly.enabled:true}")
+    private boolean nightlyEnabled;
+
+    private volatile StatsReconciliationResponse progress = StatsReconciliationResponse.builder()
+            .status("IDLE")
+            .build();
+
+    public PostStatsReconciliationServiceImpl(
+            PostRepository postRepository,
+            ReactionCounterRepository reactionCounterRepository,
+            CommentRepository commentRepository,
+            StringRedisTemplate redisTemplate,
+            PostReactCountBuffer postReactCountBuffer) {
+        this.postRepository = postRepository;
+        this.reactionCounterRepository = reactionCounterRepository;
+        this.commentRepository = commentRepository;
+        this.redisTemplate = redisTemplate;
+        this.postReactCountBuffer = postReactCountBuffer;
+    }
+
+    @Override
+    public StatsReconciliationResponse start(Instant touchedSince, boolean resume) {
+        String lockToken = UUID.randomUUID().toString();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, lockToken, LOCK_TTL);
+        if (!Boolean.TRUE.equals(acquired)) {
+            log.info("Stats reconciliation is already running");
+            return getProgress();
+        }
+
+        StatsReconciliationResponse checkpoint = resume ? loadCheckpoint() : null;
+        StatsReconciliationResponse initial;
+        if (checkpoint != null && !"COMPLETED".equals(checkpoint.getStatus())) {
+            // Tiếp tục đúng chế độ và bộ đếm của lần chạy dở
+            initial = checkpoint.toBuilder().status("RUNNING").error(null).finishedAt(null).build();
+            log.info("Resuming stats reconciliation after post {}", checkpoint.getLastPostId());
+        } else {
+            initial = StatsReconciliationResponse.builder()
+                    .status("RUNNING")
+                    .touchedSince(touchedSince)
+                    .startedAt(Instant.now())
+                    .build();
+        }
+        progress = initial;
+        saveCheckpoint(initial);
+
+        Thread.ofVirtual().name("Stats-Reconcile").start(() -> run(initial, lockToken));
+        return initial;
+    }
+
+    @Override
+    public StatsReconciliationResponse getProgress() {
+        // Job có thể đang chạy trên node khác, đọc checkpoint chung
+        StatsReconciliationResponse checkpoint = loadCheckpoint();
+        return checkpoint != null ? checkpoint : progress;
+    }
+
+    @Scheduled(cron = "${app.post.stats-reconcile.nightly.cron:0 30 2 * * *}")
+    public void reconcileNightly() {
+        if (!nightlyEnabled) {
+            return;
+        }
+        String lastCompleted = redisTemplate.opsForValue().get(LAST_COMPLETED_KEY);
+        Instant since = lastCompleted != null
+                ? Instant.ofEpochMilli(Long.parseLong(lastCompleted)).minus(INCREMENTAL_OVERLAP)
+                : null;
+        start(since, true);
+    }
+
+    private void run(StatsReconciliationResponse state, String lockToken) {
+        long startedNanos = System.nanoTime();
+        long scannedAtStart = state.getScannedPosts();
+        try {
+            while (true) {
+                List<Post> batch = postRepository.findStatsBatch(
+                        state.getLastPostId(), state.getLastActivityAt(), state.getTouchedSince(), batchSize);
+                if (batch.isEmpty()) {
+                    break;
+                }
+                reconcileBatch(batch, state);
+
+                double seconds = (System.nanoTime() - startedNanos) / 1_000_000_000.0;
+                state.setPostsPerSecond(seconds > 0 ? (state.getScannedPosts() - scannedAtStart) / seconds : 0);
+                saveCheckpoint(state);
+                Long renewed = redisTemplate.execute(RENEW_LOCK, List.of(LOCK_KEY),
+                        lockToken, String.valueOf(LOCK_TTL.toMillis()));
+                if (renewed == null || renewed == 0) {
+                    // Lock đã hết hạn, có thể node khác đang chạy: dừng, lần sau chạy tiếp từ checkpoint
+                    throw new IllegalStateException("Stats reconciliation lock lost");
+                }
+
+                if (state.getBatches() % 20 == 0) {
+                    log.info("Stats reconciliation progress: scanned={}, updated={}, skipped={}, {} posts/s",
+                            state.getScannedPosts(), state.getUpdatedPosts(), state.getSkippedPosts(),
+                            Math.round(state.getPostsPerSecond()));
+                }
+                if (batch.size() < batchSize) {
+                    break;
+                }
+                if (pauseMs > 0) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+
+            state.setStatus("COMPLETED");
+            state.setFinishedAt(Instant.now());
+            redisTemplate.opsForValue().set(LAST_COMPLETED_KEY, String.valueOf(state.getStartedAt().toEpochMilli()));
+            log.info("Finished stats reconciliation: scanned={}, updated={}, skipped={} in {} batches",
+                    state.getScannedPosts(), state.getUpdatedPosts(), state.getSkippedPosts(), state.getBatches());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            state.setStatus("FAILED");
+            state.setFinishedAt(Instant.now());
+            state.setError(e.getMessage());
+            log.error("Stats reconciliation failed after post {}: {}", state.getLastPostId(), e.getMessage(), e);
+        } finally {
+            progress = state;
+            saveCheckpoint(state);
+            redisTemplate.execute(RELEASE_LOCK, List.of(LOCK_KEY), lockToken);
+        }
+    }
+
+    private void reconcileBatch(List<Post> batch, StatsReconciliationResponse state) {
+        List<String> postIds = batch.stream().map(Post::getId).toList();
+        Map<String, Long> reactCounts = reactionCounterRepository.countByTargets(TargetType.POST, postIds);
+        Map<String, CommentCounts> commentCounts = commentRepository.countByPosts(postIds);
+
+        Instant settledBefore = Instant.now().minusSeconds(settleSeconds);
+        // Like còn nằm trong buffer chưa làm tăng lastActivityAt, phải tra riêng
+        Set<String> buffered = postReactCountBuffer.findRecentlyBuffered(postIds, settledBefore);
+        List<StatsCorrection> changed = new ArrayList<>();
+        for (Post post : batch) {
+            if ((post.getLastActivityAt() != null && post.getLastActivityAt().isAfter(settledBefore))
+                    || buffered.contains(post.getId())) {
+                state.setSkippedPosts(state.getSkippedPosts() + 1);
+                continue;
+            }
+            Stats stats = post.getStats() != null ? post.getStats() : new Stats();
+            long reactCount = reactCounts.getOrDefault(post.getId(), 0L);
+            CommentCounts comments = commentCounts.getOrDefault(post.getId(), new CommentCounts(0, 0));
+
+            if (stats.getReactCount() == reactCount
+                    && stats.getCommentCount() == comments.comments()
+                    && stats.getReplyCount() == comments.replies()) {
+                continue;
+            }
+            StatsCorrection correction = new StatsCorrection(post,
+                    stats.getReactCount(), stats.getCommentCount(), stats.getReplyCount());
+            stats.setReactCount(reactCount);
+            stats.setCommentCount(comments.comments());
+            stats.setReplyCount(comments.replies());
+            post.setStats(stats);
+            post.recalculateRankingTime();
+            changed.add(correction);
+        }
+
+        long written = postRepository.updateStatsBatch(changed);
+        // Bài bị $inc chen giữa lúc đọc và ghi thì không ghi, tính là bỏ qua để lần chạy sau đối soát lại
+        state.setSkippedPosts(state.getSkippedPosts() + changed.size() - written);
+
+        state.setLastPostId(batch.getLast().getId());
+        state.setLastActivityAt(batch.getLast().getLastActivityAt());
+        state.setScannedPosts(state.getScannedPosts() + batch.size());
+        state.setUpdatedPosts(state.getUpdatedPosts() + written);
+        state.setBatches(state.getBatches() + 1);
+    }
+
+    private void saveCheckpoint(StatsReconciliationResponse state) {
+        try {
+            Map<String, String> fields = new HashMap<>();
+            fields.put("status", state.getStatus());
+            fields.put("scannedPosts", String.valueOf(state.getScannedPosts()));
+            fields.put("updatedPosts", String.valueOf(state.getUpdatedPosts()));
+            fields.put("skippedPosts", String.valueOf(state.getSkippedPosts()));
+            fields.put("batches", String.valueOf(state.getBatches()));
+            fields.put("postsPerSecond", String.valueOf(state.getPostsPerSecond()));
+            fields.put("lastPostId", state.getLastPostId() != null ? state.getLastPostId() : "");
+            fields.put("lastActivityAt", state.getLastActivityAt() != null ? state.getLastActivityAt().toString() : "");
+            fields.put("touchedSince", state.getTouchedSince() != null ? state.getTouchedSince().toString() : "");
+            fields.put("startedAt", state.getStartedAt() != null ? state.getStartedAt().toString() : "");
+            fields.put("finishedAt", state.getFinishedAt() != null ? state.getFinishedAt().toString() : "");
+            fields.put("error", state.getError() != null ? state.getError() : "");
+            redisTemplate.opsForHash().putAll(CHECKPOINT_KEY, fields);
+        } catch (Exception e) {
+            log.warn("Failed to save stats reconciliation checkpoint: {}", e.getMessage());
+        }
+    }
+
+    private StatsReconciliationResponse loadCheckpoint() {
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(CHECKPOINT_KEY);
+        if (fields.isEmpty()) {
+            return null;
+        }
+        return StatsReconciliationResponse.builder()
+                .status(text(fields, "status"))
+                .scannedPosts(number(fields, "scannedPosts"))
+                .updatedPosts(number(fields, "updatedPosts"))
+                .skippedPosts(number(fields, "skippedPosts"))
+                .batches(number(fields, "batches"))
+                .postsPerSecond(text(fields, "postsPerSecond") != null ? Double.parseDouble(text(fields, "postsPerSecond")) : 0)
+                .lastPostId(text(fields, "lastPostId"))
+                .lastActivityAt(instant(fields, "lastActivityAt"))
+                .touchedSince(instant(fields, "touchedSince"))
+                .startedAt(instant(fields, "startedAt"))
+                .finishedAt(instant(fields, "finishedAt"))
+                .error(text(fields, "error"))
+                .build();
+    }
+
+    private static String text(Map<Object, Object> fields, String name) {
+        Object value = fields.get(name);
+        return value == null || value.toString().isEmpty() ? null : value.toString();
+    }
+
+    private static long number(Map<Object, Object> fields, String name) {
+        String value = text(fields, name);
+        return value != null ? Long.parseLong(value) : 0L;
+    }
+
+    private static Instant instant(Map<Object, Object> fields, String name) {
+        String value = text(fields, name);
+        return value != null ? Instant.parse(value) : null;
+    }
+}
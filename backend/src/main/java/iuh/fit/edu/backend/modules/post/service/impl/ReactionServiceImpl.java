@@ -8,7 +8,9 @@ import iuh.fit.edu.backend.modules.post.constant.ReactionType;
 import iuh.fit.edu.backend.modules.notification.constant.TargetType;
 import iuh.fit.edu.backend.modules.post.entity.Comment;
 import iuh.fit.edu.backend.modules.post.entity.Reaction;
+import iuh.fit.edu.backend.modules.post.entity.ReactionCounter;
 import iuh.fit.edu.backend.modules.post.dto.response.ReactionSummaryResponse;
+import iuh.fit.edu.backend.modules.post.repository.ReactionCounterRepository;
 import iuh.fit.edu.backend.modules.post.repository.ReactionRepository;
 import iuh.fit.edu.backend.modules.post.service.ReactionService;
 import iuh.fit.edu.backend.modules.post.repository.PostRepository;
@@ -27,7 +29,6 @@ import org.springframework.transaction.support.TransactionSynchronization;
 import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
-import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -45,6 +46,8 @@ import java.util.stream.Collectors;
 public class ReactionServiceImpl implements ReactionService {
 
     private final ReactionRepository reactionRepository;
+    private final ReactionCounterRepository reactionCounterRepository;
+    private final PostReactCountBuffer postReactCountBuffer;
     private final PostRepository postRepository;
     private final CommentRepository commentRepository;
     private final NotificationService notificationService;
@@ -66,10 +69,11 @@ public class ReactionServiceImpl implements ReactionService {
             if (reaction.getType() == reactionType) {
                 reactionRepository.delete(reaction);
                 log.info("Removed reaction: {}", reaction.getId());
+                updateReactionCounter(targetType, targetId, null, reaction.getType());
                 
                 // Update post stats if target is POST
                 if (targetType == TargetType.POST) {
-                    updatePostReactCount(targetId, -1);
+                    postReactCountBuffer.add(targetId, -1);
                 }
                 
                 publishRealtimeReaction("UNREACT", targetType, targetId, reaction.getType(), userId);
@@ -78,10 +82,12 @@ public class ReactionServiceImpl implements ReactionService {
             }
             
             // If different type, update reaction
+            ReactionType previousType = reaction.getType();
             reaction.setType(reactionType);
             reaction.setUpdatedAt(Instant.now());
             Reaction updated = reactionRepository.save(reaction);
             log.info("Updated reaction: {}", updated.getId());
+            updateReactionCounter(targetType, targetId, reactionType, previousType);
             
             publishRealtimeReaction("REACT", targetType, targetId, reactionType, userId);
             
@@ -103,10 +109,11 @@ public class ReactionServiceImpl implements ReactionService {
 
         Reaction saved = reactionRepository.save(newReaction);
         log.info("Created new reaction: {}", saved.getId());
+        updateReactionCounter(targetType, targetId, reactionType, null);
         
         // Update post stats if target is POST
         if (targetType == TargetType.POST) {
-            updatePostReactCount(targetId, 1);
+            postReactCountBuffer.add(targetId, 1);
         }
 
         // Trigger Notification
@@ -233,33 +240,36 @@ public class ReactionServiceImpl implements ReactionService {
         if (targetType == TargetType.POST) {
             return targetId;
         }
-        
-        int depth = 0;
-        String currentParentId = targetId;
-        
-        while (currentParentId != null && depth < 10) {
-            Comment parent = commentRepository.findById(currentParentId).orElse(null);
-            if (parent == null) break;
-            
-            if (parent.getTargetType() == TargetType.POST) {
-                return parent.getTargetId();
+        // Đọc rootPostId đã lưu sẵn trên comment (1 query)
+        return commentRepository.findRootPostId(targetId);
+    }
+
+    // $inc bộ đếm theo loại; target cũ chưa có bộ đếm thì đếm lại 1 lần từ reactions (đã gồm thay đổi vừa ghi)
+    private void updateReactionCounter(TargetType targetType, String targetId, ReactionType added, ReactionType removed) {
+        try {
+            if (!reactionCounterRepository.increment(targetType, targetId, added, removed)) {
+                loadReactionCounter(targetType, targetId);
             }
-            currentParentId = parent.getParentId();
-            depth++;
+        } catch (Exception e) {
+            log.error("Failed to update reaction counter for {} {}: {}", targetType, targetId, e.getMessage());
         }
-        return null;
     }
 
-    private void updatePostReactCount(String postId, int delta) {
-        postRepository.findById(postId).ifPresent(post -> {
-            if (post.getStats() != null) {
-                long newCount = Math.max(0L, post.getStats().getReactCount() + delta);
-                post.getStats().setReactCount(newCount);
-                post.recalculateRankingTime();
-                post.setLastActivityAt(Instant.now());
-                postRepository.save(post);
-                log.info("Updated post {} reactCount to: {} and recalculated ranking time", postId, newCount);
-            }
+    private ReactionCounter loadReactionCounter(TargetType targetType, String targetId) {
+        String counterId = ReactionCounter.idOf(targetType, targetId);
+        return reactionCounterRepository.findById(counterId).orElseGet(() -> {
+            Map<ReactionType, Long> counts = reactionCounterRepository.countByType(targetType, targetId);
+            ReactionCounter counter = ReactionCounter.builder()
+                    .id(counterId)
+                    .targetType(targetType)
+                    .targetId(targetId)
+                    .totalCount(counts.values().stream().mapToLong(Long::longValue).sum())
+                    .counts(counts)
+                    .updatedAt(Instant.now())
+                    .build();
+            reactionCounterRepository.initializeIfAbsent(counter);
+            log.info("Initialized reaction counter for {} {}: {}", targetType, targetId, counts);
+            return counter;
         });
     }
 
@@ -285,8 +295,8 @@ public class ReactionServiceImpl implements ReactionService {
     public ReactionSummaryResponse getReactionSummary(TargetType targetType, String targetId, int topLimit) {
         log.info("Get reaction summary: targetType={}, targetId={}, topLimit={}", targetType, targetId, topLimit);
 
-        List<Reaction> reactions = reactionRepository.findByTargetTypeAndTargetId(targetType, targetId);
-        long totalCount = reactions.size();
+        ReactionCounter counter = loadReactionCounter(targetType, targetId);
+        long totalCount = Math.max(0L, counter.getTotalCount());
 
         if (totalCount == 0) {
             return ReactionSummaryResponse.builder()
@@ -295,14 +305,12 @@ public class ReactionServiceImpl implements ReactionService {
                     .build();
         }
 
-        Map<ReactionType, Long> counts = new EnumMap<>(ReactionType.class);
-        for (Reaction reaction : reactions) {
-            counts.merge(reaction.getType(), 1L, Long::sum);
-        }
+        Map<ReactionType, Long> counts = counter.getCounts() != null ? counter.getCounts() : Map.of();
 
         int safeTopLimit = Math.max(1, topLimit);
 
         List<ReactionSummaryResponse.ReactionCountItem> topReactions = counts.entrySet().stream()
+                .filter(entry -> entry.getValue() != null && entry.getValue() > 0)
                 .sorted((a, b) -> {
                     int byCount = Long.compare(b.getValue(), a.getValue());
                     if (byCount != 0) {
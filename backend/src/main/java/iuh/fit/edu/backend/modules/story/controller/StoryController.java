@@ -22,7 +22,9 @@ import iuh.fit.edu.backend.modules.music.entity.MusicMetadata;
 import iuh.fit.edu.backend.modules.music.entity.Music;
 import iuh.fit.edu.backend.modules.note.service.NotePermissionService;
 import iuh.fit.edu.backend.modules.user.repository.UserRepository;
-import iuh.fit.edu.backend.modules.user.repository.FriendRepository;
+import iuh.fit.edu.backend.modules.user.dto.response.UserSummaryResponse;
+import iuh.fit.edu.backend.modules.user.service.SocialGraphService;
+import iuh.fit.edu.backend.modules.user.service.UserSummaryLoader;
 import iuh.fit.edu.backend.modules.post.repository.ReactionRepository;
 import iuh.fit.edu.backend.modules.post.entity.Reaction;
 import iuh.fit.edu.backend.modules.post.constant.ReactionType;
@@ -65,7 +67,8 @@ public class StoryController {
     private final S3Service s3Service;
     private final MusicService musicService;
     private final StoryRepository storyRepository;
-    private final FriendRepository friendRepository;
+    private final SocialGraphService socialGraphService;
+    private final UserSummaryLoader userSummaryLoader;
     private final StoryViewRepository storyViewRepository;
     private final ReactionRepository reactionRepository;
     private final StoryHighlightRepository storyHighlightRepository;
@@ -380,11 +383,8 @@ public class StoryController {
             List<String> userIds = new ArrayList<>();
             userIds.add(currentUserId);
             
-            List<Long> friendIds = friendRepository.findAcceptedFriendIds(Long.parseLong(currentUserId), 1);
-            if (friendIds != null) {
-                for (Long friendId : friendIds) {
-                    userIds.add(friendId.toString());
-                }
+            for (long friendId : socialGraphService.getFriendIds(Long.parseLong(currentUserId))) {
+                userIds.add(String.valueOf(friendId));
             }
 
             Page<Story> stories = storyService.getFeedStories(userIds, currentUserId, pageable);
@@ -401,6 +401,7 @@ public class StoryController {
             }
 
             final Set<String> finalViewedIds = viewedStoryIds;
+            preloadUsers(stories.getContent().stream().map(Story::getUserId).toList());
             Page<StoryResponse> responses = stories.map(story -> {
                 StoryResponse resp = mapToResponse(story);
                 resp.setViewed(finalViewedIds.contains(story.getId()));
@@ -441,6 +442,7 @@ public class StoryController {
             }
 
             final Set<String> finalViewedIds = viewedStoryIds;
+            preloadUsers(stories.stream().map(Story::getUserId).toList());
             List<StoryResponse> responses = stories.stream()
                     .map(story -> {
                         StoryResponse resp = mapToResponse(story);
@@ -645,6 +647,7 @@ public class StoryController {
                 }
             }
 
+            preloadUsers(uniqueViews.values().stream().map(StoryView::getViewerId).toList());
             List<Map<String, Object>> response = uniqueViews.values().stream()
                     .map(view -> {
                         Map<String, Object> map = new HashMap<>();
@@ -654,10 +657,8 @@ public class StoryController {
 
                         // Fetch user details for the viewer
                         try {
-                            Long uid = Long.parseLong(view.getViewerId());
-                            Optional<User> uOpt = userRepository.findById(uid);
-                            if (uOpt.isPresent()) {
-                                User u = uOpt.get();
+                            UserSummaryResponse u = userSummaryLoader.load(Long.parseLong(view.getViewerId()));
+                            if (u != null) {
                                 map.put("username", u.getUsername() != null ? u.getUsername() : u.getName());
                                 map.put("avatarUrl", u.getAvatarUrl());
                             }
@@ -1401,6 +1402,8 @@ public class StoryController {
     private StoryHighlightResponse mapToHighlightResponse(StoryHighlight highlight) {
         List<StoryResponse> storyResponses = new ArrayList<>();
         if (highlight.getStoryIds() != null) {
+            // Highlight chỉ chứa story của 1 user -> nạp trước 1 lần
+            preloadUsers(List.of(highlight.getUserId()));
             for (String storyId : highlight.getStoryIds()) {
                 Optional<Story> storyOpt = storyRepository.findById(storyId);
                 storyOpt.ifPresent(story -> storyResponses.add(mapToResponse(story)));
@@ -1423,14 +1426,27 @@ public class StoryController {
     /**
      * Map Story entity to response DTO
      */
+    // Nạp thông tin user của cả trang trong 1 lần, mapToResponse sau đó chỉ đọc từ cache của request
+    private void preloadUsers(Collection<String> userIds) {
+        List<Long> ids = new ArrayList<>();
+        for (String userId : userIds) {
+            try {
+                if (userId != null) {
+                    ids.add(Long.parseLong(userId));
+                }
+            } catch (NumberFormatException ignored) {
+                // userId không phải số -> mapToResponse tự bỏ qua
+            }
+        }
+        userSummaryLoader.loadAll(ids);
+    }
+
     private StoryResponse mapToResponse(Story story) {
         StoryResponse.UserSummary userSummary = null;
         try {
             if (story.getUserId() != null) {
-                Long uid = Long.parseLong(story.getUserId());
-                Optional<User> uOpt = userRepository.findById(uid);
-                if (uOpt.isPresent()) {
-                    User u = uOpt.get();
+                UserSummaryResponse u = userSummaryLoader.load(Long.parseLong(story.getUserId()));
+                if (u != null) {
                     userSummary = StoryResponse.UserSummary.builder()
                             .username(u.getUsername() != null ? u.getUsername() : u.getName())
                             .avatarUrl(u.getAvatarUrl())
@@ -1,5 +1,7 @@
 package iuh.fit.edu.backend.modules.user.controller;
 
+import iuh.fit.edu.backend.common.config.WebSocketChannelExecutor;
+import iuh.fit.edu.backend.common.config.WebSocketChannelMonitor;
 import iuh.fit.edu.backend.common.dto.response.ApiResponse;
 import iuh.fit.edu.backend.common.service.security.AccountLockService;
 import iuh.fit.edu.backend.modules.story.repository.StoryRepository;
@@ -11,6 +13,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -23,6 +26,7 @@ public class AdminController {
     private final StoryRepository storyRepository;
     private final UserService userService;
     private final UserRepository userRepository;
+    private final WebSocketChannelMonitor webSocketChannelMonitor;
 
     @PostMapping("/lock/{userId}")
     public ResponseEntity<String> lockUser(@PathVariable Long userId,
@@ -51,6 +55,12 @@ public class AdminController {
         return ResponseEntity.ok(ApiResponse.success(200, "Admin stats", stats));
     }
 
+    // Độ sâu hàng đợi, số frame bị bỏ và độ trễ của từng channel STOMP (inbound, outbound, broker)
+    @GetMapping("/websocket/channels")
+    public ResponseEntity<ApiResponse<List<WebSocketChannelExecutor.Stats>>> getWebSocketChannelStats() {
+        return ResponseEntity.ok(ApiResponse.success(200, "WebSocket channel stats", webSocketChannelMonitor.getStats()));
+    }
+
     @DeleteMapping("/stories/{storyId}")
     public ResponseEntity<ApiResponse<String>> deleteStory(@PathVariable String storyId) {
         storyRepository.deleteById(storyId);
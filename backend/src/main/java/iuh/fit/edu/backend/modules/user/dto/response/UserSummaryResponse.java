@@ -0,0 +1,24 @@
+package iuh.fit.edu.backend.modules.user.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Thông tin hiển thị tối thiểu của 1 user (tên, avatar...) dùng chung cho các response mapper
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummaryResponse {
+    private Long id;
+    private String name;
+    private String username;
+    private String phone;
+    private String avatarUrl;
+
+    // Tên nếu có, không thì username
+    public String displayName() {
+        return name != null && !name.isBlank() ? name : username;
+    }
+}
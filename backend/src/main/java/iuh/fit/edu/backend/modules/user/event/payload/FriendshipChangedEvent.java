@@ -0,0 +1,29 @@
+/*
+ * @ (#) FriendshipChangedEvent.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.event.payload;
+
+import lombok.Getter;
+
+/*
+ * @description
+ * Spring application event bắn ra khi hai user trở thành bạn bè hoặc hủy kết bạn.
+ * Các module khác (vd: post/feed) lắng nghe để invalidate cache phụ thuộc danh sách bạn bè.
+ *
+ * Đây là event nội bộ trong tiến trình (in-process), KHÔNG phải Redis envelope.
+ * @author: Ngoc Hai
+ * @version: 1.0
+ */
+@Getter
+public class FriendshipChangedEvent {
+    private final Long userId;
+    private final Long friendId;
+    private final boolean friends;
+
+    public FriendshipChangedEvent(Long userId, Long friendId, boolean friends) {
+        this.userId = userId;
+        this.friendId = friendId;
+        this.friends = friends;
+    }
+}
@@ -3,6 +3,8 @@ package iuh.fit.edu.backend.modules.user.repository;
 import iuh.fit.edu.backend.modules.user.entity.BlockedUser;
 import iuh.fit.edu.backend.modules.user.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,4 +20,13 @@ public interface BlockUserRepository extends JpaRepository<BlockedUser,Long> {
     List<BlockedUser> findBlockedUsersByBlocked(User blocked);
 
     boolean existsByBlocker_IdAndBlocked_Id(Long blockerId, Long blockedId);
+
+    // Id các user đã chặn hoặc bị chặn bởi userId (bỏ qua chặn từ Page)
+    @Query("""
+        SELECT CASE WHEN b.blocker.id = :userId THEN b.blocked.id ELSE b.blocker.id END
+        FROM BlockedUser b
+        WHERE (b.blocker.id = :userId AND b.blocked IS NOT NULL)
+           OR (b.blocked.id = :userId AND b.blocker IS NOT NULL)
+        """)
+    List<Long> findBlockRelatedUserIds(@Param("userId") Long userId);
 }
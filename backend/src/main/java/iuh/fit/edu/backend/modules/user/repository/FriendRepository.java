@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -30,6 +31,23 @@ public interface FriendRepository extends JpaRepository<Friend,Long> {
         return findAcceptedFriendIdsQuery(userId);
     }
 
+    // Cặp (user_id, friend_id) ACCEPTED chạm tới bất kỳ user nào trong danh sách, dùng để nạp danh sách bạn bè theo lô
+    @Query("""
+        SELECT f.user.id, f.friend.id
+        FROM Friend f
+        WHERE (f.user.id IN :userIds OR f.friend.id IN :userIds)
+          AND f.status = iuh.fit.edu.backend.modules.user.constant.FriendStatus.ACCEPTED
+        """)
+    List<Object[]> findAcceptedPairsByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    @Query("""
+        SELECT CASE WHEN f.user.id = :userId THEN f.friend.id ELSE f.user.id END
+        FROM Friend f
+        WHERE (f.user.id = :userId OR f.friend.id = :userId)
+          AND f.status = iuh.fit.edu.backend.modules.user.constant.FriendStatus.PENDING
+        """)
+    List<Long> findPendingPartnerIds(@Param("userId") Long userId);
+
     @Query("""
         SELECT COUNT(f) FROM Friend f
         WHERE ((f.user.id = :userId1 AND f.friend.id = :userId2) OR (f.user.id = :userId2 AND f.friend.id = :userId1))
@@ -14,6 +14,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -41,6 +42,9 @@ public interface UserRepository extends JpaRepository<User,Long> {
     long countByCreatedAtAfter(OffsetDateTime since);
     List<User> findByCreatedAtAfter(OffsetDateTime since);
 
+    // User đang hoạt động ngoài tập loại trừ, dùng để bù gợi ý kết bạn khi thiếu bạn chung
+    List<User> findByIdNotInAndLockedFalseAndDeletionScheduledForIsNull(Collection<Long> excludedIds, Pageable pageable);
+
     // Lấy id các user đang bị khóa trong tập id cho trước. Dùng để overlay trạng
     // thái khóa TƯƠI lên dữ liệu members (vốn có thể đến từ Redis cache cũ).
     @Query("SELECT u.id FROM User u WHERE u.id IN :ids AND u.locked = true")
@@ -0,0 +1,25 @@
+/*
+ * @ (#) FriendSuggestionService.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.service;
+
+import iuh.fit.edu.backend.modules.user.dto.response.FriendSuggestionResponse;
+
+import java.util.List;
+
+/*
+ * @description: Gợi ý kết bạn theo số bạn chung, tính sẵn và cache theo từng user
+ * @author: Ngoc Hai
+ * @version: 1.0
+ */
+public interface FriendSuggestionService {
+
+    List<FriendSuggestionResponse> getSuggestions(long userId, int limit);
+
+    // Xóa danh sách đã tính của các user (lần đọc sau sẽ tính lại)
+    void evict(long... userIds);
+
+    // Tính lại danh sách của các user bị đánh dấu thay đổi
+    void refreshDirtySuggestions();
+}
@@ -0,0 +1,34 @@
+/*
+ * @ (#) SocialGraphService.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.service;
+
+import java.util.List;
+
+/*
+ * @description: Tra cứu quan hệ bạn bè (ACCEPTED) từ cache trong bộ nhớ, thay cho query MariaDB mỗi request
+ * @author: Ngoc Hai
+ * @version: 1.0
+ */
+public interface SocialGraphService {
+
+    boolean areFriends(long userId, long otherUserId);
+
+    // Bản sao danh sách bạn bè, tăng dần theo id
+    long[] getFriendIds(long userId);
+
+    // Giống getFriendIds nhưng dạng List<Long> cho code cũ
+    List<Long> getFriendIdList(long userId);
+
+    // Bạn chung của 2 user, tăng dần theo id
+    long[] getMutualFriendIds(long userId, long otherUserId);
+
+    int countMutualFriends(long userId, long otherUserId);
+
+    // Nạp trước danh sách bạn bè của nhiều user bằng vài query theo lô (bỏ qua user đã có trong cache)
+    void preload(long[] userIds);
+
+    // Xóa cache của các user trên mọi node (gọi sau khi kết bạn / hủy kết bạn / chặn)
+    void invalidate(long... userIds);
+}
@@ -5,6 +5,7 @@ import iuh.fit.edu.backend.modules.user.entity.User;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
@@ -26,4 +27,7 @@ public interface UserPresenceService {
     Set<Long> getPresenceRecipientIds(Long userId);
 
     List<Long> cleanupExpiredSessions();
+
+    // STOMP session còn hạn của từng user trên mọi node (user không có session thì không có trong map)
+    Map<Long, List<String>> getActiveSessionIds(Collection<Long> userIds);
 }
@@ -0,0 +1,29 @@
+/*
+ * @ (#) UserSummaryLoader.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.service;
+
+import iuh.fit.edu.backend.modules.user.dto.response.UserSummaryResponse;
+
+import java.util.Collection;
+import java.util.Map;
+
+/*
+ * @description: Nạp thông tin hiển thị của user theo lô (request -> bộ nhớ -> Redis -> DB)
+ * @author: Ngoc Hai
+ * @version: 1.0
+ */
+public interface UserSummaryLoader {
+
+    // id -> summary, user không tồn tại thì không có trong map
+    Map<Long, UserSummaryResponse> loadAll(Collection<Long> userIds);
+
+    // null nếu user không tồn tại
+    UserSummaryResponse load(Long userId);
+
+    UserSummaryResponse loadByPhone(String phone);
+
+    // Gọi sau khi thông tin hiển thị của user thay đổi, xóa cache trên mọi node
+    void evict(Long userId);
+}
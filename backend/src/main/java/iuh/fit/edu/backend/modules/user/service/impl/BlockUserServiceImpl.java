@@ -5,6 +5,8 @@ import iuh.fit.edu.backend.modules.user.entity.User;
 import iuh.fit.edu.backend.modules.user.dto.request.FriendRequest;
 import iuh.fit.edu.backend.modules.user.repository.BlockUserRepository;
 import iuh.fit.edu.backend.modules.user.service.BlockUserService;
+import iuh.fit.edu.backend.modules.user.service.FriendSuggestionService;
+import iuh.fit.edu.backend.modules.user.service.SocialGraphService;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,9 +14,14 @@ import java.util.List;
 @Service
 public class BlockUserServiceImpl implements BlockUserService {
     BlockUserRepository blockUserRepository;
+    SocialGraphService socialGraphService;
+    FriendSuggestionService friendSuggestionService;
 
-    public BlockUserServiceImpl(BlockUserRepository blockUserRepository) {
+    public BlockUserServiceImpl(BlockUserRepository blockUserRepository, SocialGraphService socialGraphService,
+                                FriendSuggestionService friendSuggestionService) {
         this.blockUserRepository = blockUserRepository;
+        this.socialGraphService = socialGraphService;
+        this.friendSuggestionService = friendSuggestionService;
     }
 
     @Override
@@ -31,6 +38,7 @@ public class BlockUserServiceImpl implements BlockUserService {
     public boolean blockUser(BlockedUser blockedUser) {
         if(blockedUser!=null) {
             blockUserRepository.save(blockedUser);
+            invalidateGraph(blockedUser);
             return true;
         }
         return false;
@@ -40,6 +48,7 @@ public class BlockUserServiceImpl implements BlockUserService {
     public boolean cancelBlockUser(BlockedUser blockedUser) {
         if(blockedUser!=null) {
             blockUserRepository.deleteById(blockedUser.getId());
+            invalidateGraph(blockedUser);
             return true;
         }
         return false;
@@ -50,4 +59,13 @@ public class BlockUserServiceImpl implements BlockUserService {
         return blockUserRepository.findBlockedUserByBlocker_IdAndBlocked_Id(
                 friendRequest.getSenderId(),friendRequest.getReceivedId());
     }
+
+    // Chặn / bỏ chặn có thể đi kèm thay đổi quan hệ bạn bè -> làm mới cache social graph và gợi ý kết bạn của cả 2 phía
+    private void invalidateGraph(BlockedUser blockedUser) {
+        if (blockedUser.getBlocker() != null && blockedUser.getBlocked() != null
+                && blockedUser.getBlocker().getId() != null && blockedUser.getBlocked().getId() != null) {
+            socialGraphService.invalidate(blockedUser.getBlocker().getId(), blockedUser.getBlocked().getId());
+            friendSuggestionService.evict(blockedUser.getBlocker().getId(), blockedUser.getBlocked().getId());
+        }
+    }
 }
@@ -0,0 +1,137 @@
+/*
+ * @ (#) FriendAdjacency.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.service.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/*
+ * @description
+ * Danh sách bạn bè (ACCEPTED) của 1 user dưới dạng mảng long đã sort, bất biến sau khi tạo.
+ *   - ids: long[] tăng dần, không trùng -> snapshot chỉ là 1 lần arraycopy, không boxing
+ *   - table: bảng băm open addressing (0 = ô trống, userId luôn > 0) cho contains O(1);
+ *     danh sách ngắn thì quét thẳng mảng, không cần bảng
+ * @author: Ngoc Hai
+ * @version: 1.0
+ */
+final class FriendAdjacency {
+
+    private static final int LINEAR_SCAN_LIMIT = 8;
+    private static final long[] NO_IDS = new long[0];
+
+    private final long[] ids;
+    private final long[] table;
+    private final int shift;
+    private final long loadedAt;
+
+    private FriendAdjacency(long[] ids, long loadedAt) {
+        this.ids = ids;
+        this.loadedAt = loadedAt;
+        if (ids.length <= LINEAR_SCAN_LIMIT) {
+            this.table = null;
+            this.shift = 0;
+            return;
+        }
+        // Load factor <= 0.5 để dãy probe ngắn
+        int bits = 64 - Long.numberOfLeadingZeros((long) ids.length * 2 - 1);
+        this.table = new long[1 << bits];
+        this.shift = 64 - bits;
+        for (long id : ids) {
+            int slot = slotOf(id);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (table.length - 1);
+            }
+            table[slot] = id;
+        }
+    }
+
+    static FriendAdjacency of(Collection<Long> friendIds, long loadedAt) {
+        if (friendIds == null || friendIds.isEmpty()) {
+            return new FriendAdjacency(NO_IDS, loadedAt);
+        }
+        long[] ids = new long[friendIds.size()];
+        int size = 0;
+        for (Long id : friendIds) {
+            if (id != null && id > 0) {
+                ids[size++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, size);
+        // Bỏ trùng (dữ liệu cũ có thể có cả 2 chiều A->B và B->A)
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (unique == 0 || ids[unique - 1] != ids[i]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return new FriendAdjacency(unique == ids.length ? ids : Arrays.copyOf(ids, unique), loadedAt);
+    }
+
+    boolean contains(long id) {
+        if (id <= 0) {
+            return false;
+        }
+        if (table == null) {
+            for (long friendId : ids) {
+                if (friendId == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        int slot = slotOf(id);
+        long current;
+        while ((current = table[slot]) != 0) {
+            if (current == id) {
+                return true;
+            }
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return false;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    long loadedAt() {
+        return loadedAt;
+    }
+
+    long[] toArray() {
+        return ids.clone();
+    }
+
+    // Duyệt danh sách nhỏ hơn, tra bảng băm của danh sách lớn hơn -> O(min(n, m)), kết quả vẫn tăng dần
+    long[] intersect(FriendAdjacency other) {
+        FriendAdjacency small = size() <= other.size() ? this : other;
+        FriendAdjacency large = small == this ? other : this;
+        long[] result = new long[small.size()];
+        int count = 0;
+        for (long id : small.ids) {
+            if (large.contains(id)) {
+                result[count++] = id;
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    int countIntersection(FriendAdjacency other) {
+        FriendAdjacency small = size() <= other.size() ? this : other;
+        FriendAdjacency large = small == this ? other : this;
+        int count = 0;
+        for (long id : small.ids) {
+            if (large.contains(id)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int slotOf(long id) {
+        // Fibonacci hashing: nhân với 2^64 / phi rồi lấy các bit cao
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+}
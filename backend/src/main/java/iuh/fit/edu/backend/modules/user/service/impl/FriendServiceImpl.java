@@ -1,20 +1,22 @@
 package iuh.fit.edu.backend.modules.user.service.impl;
 
 import iuh.fit.edu.backend.modules.user.constant.FriendStatus;
-import iuh.fit.edu.backend.modules.user.entity.BlockedUser;
 import iuh.fit.edu.backend.modules.user.entity.Friend;
 import iuh.fit.edu.backend.modules.user.entity.User;
 import iuh.fit.edu.backend.modules.user.dto.response.FriendEventPayload;
 import iuh.fit.edu.backend.modules.user.dto.response.FriendSuggestionResponse;
-import iuh.fit.edu.backend.modules.user.repository.BlockUserRepository;
+import iuh.fit.edu.backend.modules.user.event.payload.FriendshipChangedEvent;
 import iuh.fit.edu.backend.modules.user.repository.FriendRepository;
 import iuh.fit.edu.backend.modules.user.repository.UserRepository;
 import iuh.fit.edu.backend.modules.user.service.FriendService;
+import iuh.fit.edu.backend.modules.user.service.FriendSuggestionService;
+import iuh.fit.edu.backend.modules.user.service.SocialGraphService;
 import iuh.fit.edu.backend.modules.user.service.UserService;
 import iuh.fit.edu.backend.modules.notification.constant.NotificationType;
 import iuh.fit.edu.backend.modules.notification.constant.TargetType;
 import iuh.fit.edu.backend.modules.notification.event.payload.NotificationEvent;
 import iuh.fit.edu.backend.modules.notification.service.NotificationService;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -24,14 +26,13 @@ import org.springframework.stereotype.Service;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /*
  * @description
@@ -47,21 +48,27 @@ public class FriendServiceImpl implements FriendService {
     FriendRepository friendRepository;
     UserService userService;
     UserRepository userRepository;
-    BlockUserRepository blockUserRepository;
     NotificationService notificationService;
+    ApplicationEventPublisher eventPublisher;
+    SocialGraphService socialGraphService;
+    FriendSuggestionService friendSuggestionService;
 
     public FriendServiceImpl(FriendRepository friendRepository,
                              SimpMessagingTemplate messagingTemplate, StringRedisTemplate redisTemplate,
                              UserService userService, UserRepository userRepository,
-                             BlockUserRepository blockUserRepository,
-                             NotificationService notificationService) {
+                             NotificationService notificationService,
+                             ApplicationEventPublisher eventPublisher,
+                             SocialGraphService socialGraphService,
+                             FriendSuggestionService friendSuggestionService) {
         this.friendRepository = friendRepository;
         this.messagingTemplate = messagingTemplate;
         this.redisTemplate = redisTemplate;
         this.userService = userService;
         this.userRepository = userRepository;
-        this.blockUserRepository = blockUserRepository;
         this.notificationService = notificationService;
+        this.eventPublisher = eventPublisher;
+        this.socialGraphService = socialGraphService;
+        this.friendSuggestionService = friendSuggestionService;
     }
 
     @Override
@@ -79,6 +86,7 @@ public class FriendServiceImpl implements FriendService {
             redisTemplate.opsForSet().add(sentKey, String.valueOf(receiverId));
             redisTemplate.opsForSet().add(recievedKey, String.valueOf(senderId));
             redisTemplate.opsForValue().set(requestKey,FriendStatus.PENDING.toString(), Duration.ofDays(7));
+            friendSuggestionService.evict(senderId, receiverId);
             
             //push websocket to receiver
             if(receiver != null && receiver.getPhone() != null) {
@@ -150,6 +158,7 @@ public class FriendServiceImpl implements FriendService {
                 existingFriend.setFriendAt(OffsetDateTime.now().toLocalDateTime());
                 friendRepository.save(existingFriend);
             }
+            eventPublisher.publishEvent(new FriendshipChangedEvent(senderId, receiverId, true));
 
             // 3. Push realtime cho sender
             if(sender != null && sender.getPhone() != null) {
@@ -208,7 +217,11 @@ public class FriendServiceImpl implements FriendService {
                    friend.getStatus().equals(FriendStatus.ACCEPTED)){
                     friendRepository.deleteById(friend.getId());
                 }
+                if(friend.getStatus().equals(FriendStatus.ACCEPTED)){
+                    eventPublisher.publishEvent(new FriendshipChangedEvent(senderId, receiverId, false));
+                }
             }
+            friendSuggestionService.evict(senderId, receiverId);
 
             // Push notification to receiver about cancellation
             User receiver = userService.findUserById(receiverId);
@@ -256,6 +269,7 @@ public class FriendServiceImpl implements FriendService {
                     friendRepository.deleteById(friend.getId());
                 }
             }
+            friendSuggestionService.evict(senderId, receiverId);
 
             if(senderUser != null && senderUser.getPhone() != null) {
                 String senderPhone = convertToInternationalFormat(senderUser.getPhone());
@@ -310,39 +324,22 @@ public class FriendServiceImpl implements FriendService {
     public List<User> getFriendRequestOfUser(long userId) {
         User user = userService.findUserById(userId);
         if (user != null) {
-            List<User> listUser = new ArrayList<>();
-            Set<Long> addedUserIds = new HashSet<>();
-            
-            String receivedKey = buildReceivedRequestKey(userId);
-            Set<String> senderIds = redisTemplate.opsForSet().members(receivedKey);
-            
-            if (senderIds != null) {
-                for (String senderIdStr : senderIds) {
-
-                        long senderId = Long.parseLong(senderIdStr);
-                        User sender = userService.findUserById(senderId);
-                        if (sender != null) {
-                            listUser.add(sender);
-                            addedUserIds.add(senderId);
-                        }
+            Set<Long> senderIds = new LinkedHashSet<>();
+
+            Set<String> redisSenderIds = redisTemplate.opsForSet().members(buildReceivedRequestKey(userId));
+            if (redisSenderIds != null) {
+                for (String senderIdStr : redisSenderIds) {
+                    senderIds.add(Long.parseLong(senderIdStr));
                 }
             }
 
-            List<Friend> friends = friendRepository.findFriendsByFriend(user);
-            for (Friend friend : friends) {
-                if (FriendStatus.PENDING.equals(friend.getStatus())) {
-                    long senderId = friend.getUser().getId();
-                    if (!addedUserIds.contains(senderId)) {
-                        User sender = userService.findUserById(senderId);
-                        if (sender != null) {
-                            listUser.add(sender);
-                            addedUserIds.add(senderId);
-                        }
-                    }
+            for (Friend friend : friendRepository.findFriendsByFriend(user)) {
+                if (FriendStatus.PENDING.equals(friend.getStatus()) && friend.getUser() != null) {
+                    senderIds.add(friend.getUser().getId());
                 }
             }
-            
-            return listUser;
+
+            return findUsersInOrder(senderIds);
         }
         return new ArrayList<>();
     }
@@ -351,40 +348,24 @@ public class FriendServiceImpl implements FriendService {
     public List<User> getSentRequestsOfUser(long userId) {
         User user = userService.findUserById(userId);
         if (user != null) {
-            List<User> listUser = new ArrayList<>();
-            Set<Long> addedUserIds = new HashSet<>();
-            
+            Set<Long> receiverIds = new LinkedHashSet<>();
+
             // Get from Redis first (faster)
-            String sentKey = buildSentRequestKey(userId);
-            Set<String> receiverIds = redisTemplate.opsForSet().members(sentKey);
-            
-            if (receiverIds != null) {
-                for (String receiverIdStr : receiverIds) {
-                    long receiverId = Long.parseLong(receiverIdStr);
-                    User receiver = userService.findUserById(receiverId);
-                    if (receiver != null) {
-                        listUser.add(receiver);
-                        addedUserIds.add(receiverId);
-                    }
+            Set<String> redisReceiverIds = redisTemplate.opsForSet().members(buildSentRequestKey(userId));
+            if (redisReceiverIds != null) {
+                for (String receiverIdStr : redisReceiverIds) {
+                    receiverIds.add(Long.parseLong(receiverIdStr));
                 }
             }
 
             // Also check database for any pending requests where user is the sender
-            List<Friend> friends = friendRepository.findFriendsByUser(user);
-            for (Friend friend : friends) {
-                if (FriendStatus.PENDING.equals(friend.getStatus())) {
-                    long receiverId = friend.getFriend().getId();
-                    if (!addedUserIds.contains(receiverId)) {
-                        User receiver = userService.findUserById(receiverId);
-                        if (receiver != null) {
-                            listUser.add(receiver);
-                            addedUserIds.add(receiverId);
-                        }
-                    }
+            for (Friend friend : friendRepository.findFriendsByUser(user)) {
+                if (FriendStatus.PENDING.equals(friend.getStatus()) && friend.getFriend() != null) {
+                    receiverIds.add(friend.getFriend().getId());
                 }
             }
-            
-            return listUser;
+
+            return findUsersInOrder(receiverIds);
         }
         return new ArrayList<>();
     }
@@ -392,81 +373,15 @@ public class FriendServiceImpl implements FriendService {
     @Override
     public List<User> getFriendsOfUser(long userId) {
         User user=userService.findUserById(userId);
-        List<User> listUser=new ArrayList<>();
         if(user!=null){
-            List<Friend> friends= friendRepository.findFriendsByUser(user);
-            if (!friends.isEmpty()){
-                for (Friend friend:friends){
-                    if(FriendStatus.ACCEPTED.equals(friend.getStatus())){
-                        User temp=userService.findUserById(friend.getFriend().getId());
-                        listUser.add(temp);
-                    }
-                }
-
-            }
-
-            List<Friend> friendsMy= friendRepository.findFriendsByFriend(user);
-            if (!friendsMy.isEmpty()){
-                for (Friend friend:friendsMy){
-                    if(FriendStatus.ACCEPTED.equals(friend.getStatus())){
-                        User temp=userService.findUserById(friend.getUser().getId());
-                        listUser.add(temp);
-                    }
-                }
-            }
-
-            return listUser;
+            return findUsersInOrder(socialGraphService.getFriendIdList(userId));
         }
         return null;
     }
 
     @Override
     public List<FriendSuggestionResponse> getFriendSuggestions(long userId, int limit) {
-        User me = userService.findUserById(userId);
-        if (me == null) return new ArrayList<>();
-        int safeLimit = limit <= 0 ? 20 : Math.min(limit, 100);
-
-        Set<Long> myFriendIds = collectFriendIds(me);
-
-        Set<Long> exclude = new HashSet<>();
-        exclude.add(userId);
-        exclude.addAll(myFriendIds);
-        exclude.addAll(collectPendingPartnerIds(me));
-        exclude.addAll(collectBlockRelatedIds(me));
-
-        Map<Long, Integer> mutualCount = new HashMap<>();
-        for (Long friendId : myFriendIds) {
-            User friend = userService.findUserById(friendId);
-            if (friend == null) continue;
-            for (Long candidateId : collectFriendIds(friend)) {
-                if (exclude.contains(candidateId)) continue;
-                mutualCount.merge(candidateId, 1, Integer::sum);
-            }
-        }
-
-        List<FriendSuggestionResponse> result = mutualCount.entrySet().stream()
-                .sorted(Comparator.<Map.Entry<Long, Integer>>comparingInt(Map.Entry::getValue).reversed())
-                .limit(safeLimit)
-                .map(e -> toSuggestion(userService.findUserById(e.getKey()), e.getValue()))
-                .filter(s -> s != null && isCandidateActive(s.getId()))
-                .collect(Collectors.toList());
-
-        if (result.size() < safeLimit) {
-            Set<Long> alreadyIn = result.stream().map(FriendSuggestionResponse::getId).collect(Collectors.toSet());
-            int need = safeLimit - result.size();
-            List<FriendSuggestionResponse> fillers = userRepository.findAll().stream()
-                    .filter(u -> u.getId() != null
-                            && !exclude.contains(u.getId())
-                            && !alreadyIn.contains(u.getId())
-                            && isUserActive(u))
-                    .limit(need)
-                    .map(u -> toSuggestion(u, 0))
-                    .filter(s -> s != null)
-                    .collect(Collectors.toList());
-            result.addAll(fillers);
-        }
-
-        return result;
+        return friendSuggestionService.getSuggestions(userId, limit);
     }
 
     @Override
@@ -474,77 +389,26 @@ public class FriendServiceImpl implements FriendService {
         if (userId <= 0) {
             return Collections.emptyList();
         }
-        return friendRepository.findAcceptedFriendIds(userId, FriendStatus.ACCEPTED.ordinal());
+        return socialGraphService.getFriendIdList(userId);
     }
 
-    private Set<Long> collectFriendIds(User user) {
-        Set<Long> ids = new HashSet<>();
-        for (Friend f : friendRepository.findFriendsByUser(user)) {
-            if (FriendStatus.ACCEPTED.equals(f.getStatus()) && f.getFriend() != null) {
-                ids.add(f.getFriend().getId());
-            }
+    // 1 query cho cả danh sách thay vì findUserById từng người, giữ nguyên thứ tự id truyền vào
+    private List<User> findUsersInOrder(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
         }
-        for (Friend f : friendRepository.findFriendsByFriend(user)) {
-            if (FriendStatus.ACCEPTED.equals(f.getStatus()) && f.getUser() != null) {
-                ids.add(f.getUser().getId());
-            }
-        }
-        return ids;
-    }
-
-    private Set<Long> collectPendingPartnerIds(User user) {
-        Set<Long> ids = new HashSet<>();
-        for (Friend f : friendRepository.findFriendsByUser(user)) {
-            if (FriendStatus.PENDING.equals(f.getStatus()) && f.getFriend() != null) {
-                ids.add(f.getFriend().getId());
-            }
+        Map<Long, User> usersById = new HashMap<>();
+        for (User found : userRepository.findAllById(userIds)) {
+            usersById.put(found.getId(), found);
         }
-        for (Friend f : friendRepository.findFriendsByFriend(user)) {
-            if (FriendStatus.PENDING.equals(f.getStatus()) && f.getUser() != null) {
-                ids.add(f.getUser().getId());
+        List<User> users = new ArrayList<>(usersById.size());
+        for (Long userId : userIds) {
+            User found = usersById.get(userId);
+            if (found != null) {
+                users.add(found);
             }
         }
-        Set<String> sent = redisTemplate.opsForSet().members(buildSentRequestKey(user.getId()));
-        if (sent != null) sent.forEach(s -> ids.add(Long.parseLong(s)));
-        Set<String> received = redisTemplate.opsForSet().members(buildReceivedRequestKey(user.getId()));
-        if (received != null) received.forEach(s -> ids.add(Long.parseLong(s)));
-        return ids;
-    }
-
-    private Set<Long> collectBlockRelatedIds(User user) {
-        Set<Long> ids = new HashSet<>();
-        for (BlockedUser b : blockUserRepository.findBlockedUsersByBlocker(user)) {
-            if (b.getBlocked() != null) ids.add(b.getBlocked().getId());
-        }
-        for (BlockedUser b : blockUserRepository.findBlockedUsersByBlocked(user)) {
-            if (b.getBlocker() != null) ids.add(b.getBlocker().getId());
-        }
-        return ids;
-    }
-
-    private boolean isCandidateActive(Long id) {
-        if (id == null) return false;
-        User u = userService.findUserById(id);
-        return isUserActive(u);
-    }
-
-    private boolean isUserActive(User u) {
-        if (u == null) return false;
-        if (u.isLocked()) return false;
-        return u.getDeletionScheduledFor() == null;
-    }
-
-    private FriendSuggestionResponse toSuggestion(User u, int mutual) {
-        if (u == null) return null;
-        return FriendSuggestionResponse.builder()
-                .id(u.getId())
-                .name(u.getName())
-                .username(u.getUsername())
-                .phone(u.getPhone())
-                .avatarUrl(u.getAvatarUrl())
-                .bio(u.getBio())
-                .mutualFriendsCount(mutual)
-                .build();
+        return users;
     }
 
     private String buildSentRequestKey(long userId){
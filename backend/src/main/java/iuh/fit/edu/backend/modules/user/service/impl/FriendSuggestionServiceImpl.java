@@ -0,0 +1,288 @@
+/*
+ * @ (#) FriendSuggestionServiceImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.edu.backend.modules.user.dto.response.FriendSuggestionResponse;
+import iuh.fit.edu.backend.modules.user.entity.User;
+import iuh.fit.edu.backend.modules.user.event.payload.FriendshipChangedEvent;
+import iuh.fit.edu.backend.modules.user.repository.BlockUserRepository;
+import iuh.fit.edu.backend.modules.user.repository.FriendRepository;
+import iuh.fit.edu.backend.modules.user.repository.UserRepository;
+import iuh.fit.edu.backend.modules.user.service.FriendSuggestionService;
+import iuh.fit.edu.backend.modules.user.service.SocialGraphService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/*
+ * @description
+ * Gợi ý kết bạn (friends-of-friends) không còn N+1:
+ *   - Danh sách bạn của mình và của từng người bạn lấy từ SocialGraphService (nạp theo lô nếu chưa có),
+ *     số bạn chung đếm trong bộ nhớ
+ *   - Loại trừ: bản thân, bạn bè, lời mời đang chờ (DB + Redis), chặn 2 chiều -> mỗi loại 1 query
+ *   - Thông tin user của ứng viên lấy bằng 1 findAllById; thiếu thì bù bằng 1 query user mới nhất (có limit)
+ * Kết quả (tối đa MAX_SUGGESTIONS) được cache ở friend:suggestions:{userId}, endpoint chỉ đọc 1 key.
+ * Khi A và B kết bạn / hủy kết bạn: xóa cache của A, B và đánh dấu bạn bè của họ vào friend:suggestions:dirty,
+ * job định kỳ tính lại các user bị đánh dấu (chỉ những ai đang có cache).
+ * @author: Ngoc Hai
+ * @version: 1.0
+ */
+@Service
+@Slf4j
+public class FriendSuggestionServiceImpl implements FriendSuggestionService {
+
+    private static final String SUGGESTIONS_KEY = "friend:suggestions:";
+    private static final String DIRTY_KEY = "friend:suggestions:dirty";
+    private static final String REFRESH_LOCK_KEY = "friend:suggestions:refresh_lock";
+    private static final Duration REFRESH_LOCK_TTL = Duration.ofMinutes(2);
+    // Chỉ xoá lock khi vẫn đúng token (lượt refresh chạy quá TTL thì lock có thể đã thuộc node khác)
+    private static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private static final int MAX_SUGGESTIONS = 100;
+    private static final int DEFAULT_LIMIT = 20;
+    // Số bạn tối đa được đánh dấu dirty mỗi phía cho 1 lần thay đổi quan hệ
+    private static final int MAX_DIRTY_FAN_OUT = 1000;
+
+    private final SocialGraphService socialGraphService;
+    private final FriendRepository friendRepository;
+    private final BlockUserRepository blockUserRepository;
+    private final UserRepository userRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    // RedisTemplate đã cấu hình GenericJackson2JsonRedisSerializer để tự động ép kiểu
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${app.friend.suggestions.ttl-hours:6}")
+    private long ttlHours;
+
+    @Value("${app.friend.suggestions.refresh-batch:200}")
+    private int refreshBatch;
+
+    public FriendSuggestionServiceImpl(SocialGraphService socialGraphService,
+                                       FriendRepository friendRepository,
+                                       BlockUserRepository blockUserRepository,
+                                       UserRepository userRepository,
+                                       StringRedisTemplate stringRedisTemplate,
+                                       RedisTemplate<String, Object> redisTemplate,
+                                       ObjectMapper objectMapper) {
+        this.socialGraphService = socialGraphService;
+        this.friendRepository = friendRepository;
+        this.blockUserRepository = blockUserRepository;
+        this.userRepository = userRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public List<FriendSuggestionResponse> getSuggestions(long userId, int limit) {
+        if (userId <= 0) {
+            return new ArrayList<>();
+        }
+        int safeLimit = limit <= 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_SUGGESTIONS);
+
+        List<FriendSuggestionResponse> suggestions = readCached(userId);
+        if (suggestions == null) {
+            suggestions = compute(userId);
+            store(userId, suggestions);
+        }
+        return new ArrayList<>(suggestions.subList(0, Math.min(safeLimit, suggestions.size())));
+    }
+
+    @Override
+    public void evict(long... userIds) {
+        List<String> keys = new ArrayList<>(userIds.length);
+        for (long userId : userIds) {
+            keys.add(SUGGESTIONS_KEY + userId);
+        }
+        redisTemplate.delete(keys);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        evict(event.getUserId(), event.getFriendId());
+        try {
+            // Bạn của A có thêm/bớt 1 bạn chung với B (và ngược lại)
+            List<String> dirty = new ArrayList<>();
+            addDirty(dirty, event.getUserId(), event.getFriendId());
+            addDirty(dirty, event.getFriendId(), event.getUserId());
+            if (!dirty.isEmpty()) {
+                stringRedisTemplate.opsForSet().add(DIRTY_KEY, dirty.toArray(new String[0]));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to mark friend suggestions dirty for {} / {}: {}",
+                    event.getUserId(), event.getFriendId(), e.getMessage());
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.friend.suggestions.refresh-interval-ms:60000}")
+    public void refreshDirtySuggestions() {
+        String lockToken = UUID.randomUUID().toString();
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(REFRESH_LOCK_KEY, lockToken, REFRESH_LOCK_TTL);
+        if (!Boolean.TRUE.equals(acquired)) {
+            return;
+        }
+        try {
+            List<String> userIds = stringRedisTemplate.opsForSet().pop(DIRTY_KEY, refreshBatch);
+            if (userIds == null || userIds.isEmpty()) {
+                return;
+            }
+            int refreshed = 0;
+            for (String rawUserId : userIds) {
+                long userId = Long.parseLong(rawUserId);
+                // User không có cache thì để lần đọc sau tự tính
+                if (!Boolean.TRUE.equals(redisTemplate.hasKey(SUGGESTIONS_KEY + userId))) {
+                    continue;
+                }
+                store(userId, compute(userId));
+                refreshed++;
+            }
+            log.info("Refreshed friend suggestions for {}/{} dirty users", refreshed, userIds.size());
+        } catch (Exception e) {
+            log.error("Failed to refresh friend suggestions: {}", e.getMessage());
+        } finally {
+            stringRedisTemplate.execute(RELEASE_LOCK, List.of(REFRESH_LOCK_KEY), lockToken);
+        }
+    }
+
+    private List<FriendSuggestionResponse> compute(long userId) {
+        long[] myFriendIds = socialGraphService.getFriendIds(userId);
+
+        Set<Long> exclude = new HashSet<>();
+        exclude.add(userId);
+        for (long friendId : myFriendIds) {
+            exclude.add(friendId);
+        }
+        exclude.addAll(friendRepository.findPendingPartnerIds(userId));
+        addRequestIds(exclude, "user:" + userId + ":sent_request");
+        addRequestIds(exclude, "user:" + userId + ":received_request");
+        exclude.addAll(blockUserRepository.findBlockRelatedUserIds(userId));
+
+        // Danh sách bạn của bạn bè: nạp theo lô những ai chưa có trong cache
+        socialGraphService.preload(myFriendIds);
+        Map<Long, Integer> mutualCount = new HashMap<>();
+        for (long friendId : myFriendIds) {
+            for (long candidateId : socialGraphService.getFriendIds(friendId)) {
+                if (!exclude.contains(candidateId)) {
+                    mutualCount.merge(candidateId, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Long> ranked = mutualCount.entrySet().stream()
+                .sorted(Map.Entry.<Long, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .limit(MAX_SUGGESTIONS * 2L)
+                .map(Map.Entry::getKey)
+                .toList();
+
+        Map<Long, User> users = new HashMap<>();
+        if (!ranked.isEmpty()) {
+            userRepository.findAllById(ranked).forEach(user -> users.put(user.getId(), user));
+        }
+
+        List<FriendSuggestionResponse> result = new ArrayList<>();
+        for (Long candidateId : ranked) {
+            User candidate = users.get(candidateId);
+            if (isUserActive(candidate)) {
+                result.add(toSuggestion(candidate, mutualCount.get(candidateId)));
+                if (result.size() == MAX_SUGGESTIONS) {
+                    break;
+                }
+            }
+        }
+
+        if (result.size() < MAX_SUGGESTIONS) {
+            Set<Long> excluded = new HashSet<>(exclude);
+            result.forEach(suggestion -> excluded.add(suggestion.getId()));
+            userRepository.findByIdNotInAndLockedFalseAndDeletionScheduledForIsNull(
+                            excluded,
+                            PageRequest.of(0, MAX_SUGGESTIONS - result.size(), Sort.by(Sort.Direction.DESC, "id")))
+                    .forEach(user -> result.add(toSuggestion(user, 0)));
+        }
+        return result;
+    }
+
+    private List<FriendSuggestionResponse> readCached(long userId) {
+        try {
+            Object cached = redisTemplate.opsForValue().get(SUGGESTIONS_KEY + userId);
+            return cached != null
+                    ? objectMapper.convertValue(cached, new TypeReference<List<FriendSuggestionResponse>>() {})
+                    : null;
+        } catch (Exception e) {
+            log.warn("Failed to read cached friend suggestions for user {}: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void store(long userId, List<FriendSuggestionResponse> suggestions) {
+        try {
+            redisTemplate.opsForValue().set(SUGGESTIONS_KEY + userId, suggestions, Duration.ofHours(ttlHours));
+        } catch (Exception e) {
+            log.warn("Failed to cache friend suggestions for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private void addDirty(List<String> dirty, long userId, long changedFriendId) {
+        long[] friendIds = socialGraphService.getFriendIds(userId);
+        int limit = Math.min(friendIds.length, MAX_DIRTY_FAN_OUT);
+        for (int i = 0; i < limit; i++) {
+            if (friendIds[i] != changedFriendId) {
+                dirty.add(String.valueOf(friendIds[i]));
+            }
+        }
+    }
+
+    private void addRequestIds(Set<Long> ids, String key) {
+        Set<String> members = stringRedisTemplate.opsForSet().members(key);
+        if (members != null) {
+            members.forEach(member -> ids.add(Long.parseLong(member)));
+        }
+    }
+
+    private boolean isUserActive(User u) {
+        if (u == null) return false;
+        if (u.isLocked()) return false;
+        return u.getDeletionScheduledFor() == null;
+    }
+
+    private FriendSuggestionResponse toSuggestion(User u, int mutual) {
+        return FriendSuggestionResponse.builder()
+                .id(u.getId())
+                .name(u.getName())
+                .username(u.getUsername())
+                .phone(u.getPhone())
+                .avatarUrl(u.getAvatarUrl())
+                .bio(u.getBio())
+                .mutualFriendsCount(mutual)
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * @ (#) PresenceScripts.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.service.impl;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/*
+ * @description
+ * Lua script cho presence: mỗi user 1 ZSET (sessionId -> thời điểm hết hạn, millis),
+ * và 1 ZSET tổng (userId -> thời điểm hết hạn muộn nhất trong các session của user).
+ * Session hết hạn được dọn ngay trong script (ZREMRANGEBYSCORE) nên không cần key TTL riêng cho từng session
+ * để biết còn sống hay không; key session -> user chỉ giữ lại để tra user khi DISCONNECT không có principal.
+ * Mọi key đều truyền qua KEYS, nhưng mỗi script đụng tới key của nhiều slot (ZSET session của user,
+ * key session -> user và ZSET tổng dùng chung cho mọi user; SWEEP_EXPIRED còn gộp nhiều user), nên chỉ chạy được
+ * trên Redis đơn node/Sentinel. Lên Redis Cluster sẽ bị CROSSSLOT: khi đó cần gắn hash tag {userId} cho 2 key
+ * theo user và tách ZSET tổng ra khỏi script (cập nhật bằng lệnh riêng hoặc chia theo slot).
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+final class PresenceScripts {
+
+    private PresenceScripts() {
+    }
+
+    /*
+     * Đăng ký mới hoặc gia hạn 1 session (CONNECT + heartbeat).
+     * KEYS[1] = ZSET session của user, KEYS[2] = ZSET tổng, KEYS[3] = key session -> user
+     * ARGV[1] = now, ARGV[2] = ttl (millis), ARGV[3] = sessionId, ARGV[4] = userId
+     * Trả về 1 nếu trước đó user không còn session sống nào (vừa online).
+     */
+    static final RedisScript<Long> TOUCH_SESSION = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local ttl = tonumber(ARGV[2])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now)
+            -- Session còn sống hoặc user còn session khác thì không phải vừa online
+            local before = redis.call('ZCARD', KEYS[1])
+            redis.call('ZADD', KEYS[1], now + ttl, ARGV[3])
+            redis.call('PEXPIRE', KEYS[1], ttl)
+            redis.call('SET', KEYS[3], ARGV[4], 'PX', ttl)
+            local latest = redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')
+            redis.call('ZADD', KEYS[2], latest[2], ARGV[4])
+            if before == 0 then
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    /*
+     * Gỡ 1 session (DISCONNECT).
+     * KEYS giống TOUCH_SESSION, ARGV[1] = now, ARGV[2] = sessionId, ARGV[3] = userId
+     * Trả về 1 nếu user không còn session sống nào (đã offline hoàn toàn).
+     */
+    static final RedisScript<Long> REMOVE_SESSION = new DefaultRedisScript<>("""
+            redis.call('ZREM', KEYS[1], ARGV[2])
+            redis.call('DEL', KEYS[3])
+            redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1])
+            local latest = redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')
+            if #latest == 0 then
+                redis.call('DEL', KEYS[1])
+                redis.call('ZREM', KEYS[2], ARGV[3])
+                return 1
+            end
+            redis.call('ZADD', KEYS[2], latest[2], ARGV[3])
+            return 0
+            """, Long.class);
+
+    /*
+     * Dọn các user ứng viên (đọc trước từ ZSET tổng) có session muộn nhất đã hết hạn (mất mạng/app crash).
+     * KEYS[1] = ZSET tổng, KEYS[i + 1] = ZSET session của user thứ i
+     * ARGV[1] = now, ARGV[i + 1] = userId thứ i
+     * User đã bị gỡ khỏi ZSET tổng sau lúc đọc (DISCONNECT vừa xử lý) được bỏ qua để không báo offline 2 lần.
+     * Trả về danh sách userId vừa offline.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static final RedisScript<List<String>> SWEEP_EXPIRED = (RedisScript) new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local offline = {}
+            for i = 2, #KEYS do
+                local sessions = KEYS[i]
+                local userId = ARGV[i]
+                if redis.call('ZSCORE', KEYS[1], userId) then
+                    redis.call('ZREMRANGEBYSCORE', sessions, '-inf', now)
+                    local latest = redis.call('ZRANGE', sessions, -1, -1, 'WITHSCORES')
+                    if #latest == 0 then
+                        redis.call('DEL', sessions)
+                        redis.call('ZREM', KEYS[1], userId)
+                        table.insert(offline, userId)
+                    else
+                        redis.call('ZADD', KEYS[1], latest[2], userId)
+                    end
+                end
+            end
+            return offline
+            """, List.class);
+}
@@ -0,0 +1,237 @@
+/*
+ * @ (#) SocialGraphServiceImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.service.impl;
+
+import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
+import iuh.fit.edu.backend.modules.user.constant.FriendStatus;
+import iuh.fit.edu.backend.modules.user.event.payload.FriendshipChangedEvent;
+import iuh.fit.edu.backend.modules.user.repository.FriendRepository;
+import iuh.fit.edu.backend.modules.user.service.SocialGraphService;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * @description
+ * Cache danh sách bạn bè theo từng node (FriendAdjacency: long[] đã sort + bảng băm primitive).
+ *   - Miss -> 1 query findAcceptedFriendIds rồi giữ trong bộ nhớ tối đa ttl, tối đa maxEntries user
+ *   - Kết bạn / hủy kết bạn / chặn -> xóa local ngay và publish id lên SOCIAL_GRAPH_CHANNEL
+ *     để mọi node khác cùng xóa; ttl là lưới an toàn nếu lỡ mất message pub/sub
+ *   - generation tăng mỗi lần invalidate: kết quả query bắt đầu trước lần invalidate không được ghi vào cache
+ * @author: Ngoc Hai
+ * @version: 1.0
+ */
+@Service
+@Slf4j
+public class SocialGraphServiceImpl implements SocialGraphService, MessageListener {
+
+    private static final int PRELOAD_BATCH_SIZE = 500;
+
+    private final FriendRepository friendRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectProvider<RedisMessageListenerContainer> containerProvider;
+
+    private final Map<Long, FriendAdjacency> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    @Value("${app.social-graph.cache.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${app.social-graph.cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    public SocialGraphServiceImpl(FriendRepository friendRepository,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  ObjectProvider<RedisMessageListenerContainer> containerProvider) {
+        this.friendRepository = friendRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.containerProvider = containerProvider;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        RedisMessageListenerContainer container = containerProvider.getIfAvailable();
+        if (container != null) {
+            container.addMessageListener(this, new ChannelTopic(RedisPubSubConfig.SOCIAL_GRAPH_CHANNEL));
+        }
+    }
+
+    @Override
+    public boolean areFriends(long userId, long otherUserId) {
+        if (userId <= 0 || otherUserId <= 0 || userId == otherUserId) {
+            return false;
+        }
+        return adjacency(userId).contains(otherUserId);
+    }
+
+    @Override
+    public long[] getFriendIds(long userId) {
+        return adjacency(userId).toArray();
+    }
+
+    @Override
+    public List<Long> getFriendIdList(long userId) {
+        long[] ids = getFriendIds(userId);
+        List<Long> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    @Override
+    public long[] getMutualFriendIds(long userId, long otherUserId) {
+        return adjacency(userId).intersect(adjacency(otherUserId));
+    }
+
+    @Override
+    public int countMutualFriends(long userId, long otherUserId) {
+        return adjacency(userId).countIntersection(adjacency(otherUserId));
+    }
+
+    @Override
+    public void preload(long[] userIds) {
+        long now = System.currentTimeMillis();
+        List<Long> missing = new ArrayList<>();
+        for (long userId : userIds) {
+            FriendAdjacency cached = cache.get(userId);
+            if (userId > 0 && (cached == null || now - cached.loadedAt() >= ttlSeconds * 1000)) {
+                missing.add(userId);
+            }
+        }
+        for (int from = 0; from < missing.size(); from += PRELOAD_BATCH_SIZE) {
+            List<Long> batch = missing.subList(from, Math.min(from + PRELOAD_BATCH_SIZE, missing.size()));
+            long startGeneration = generation.get();
+            Map<Long, List<Long>> friendsByUser = new HashMap<>();
+            batch.forEach(userId -> friendsByUser.put(userId, new ArrayList<>()));
+            for (Object[] pair : friendRepository.findAcceptedPairsByUserIds(batch)) {
+                Long user = (Long) pair[0];
+                Long friend = (Long) pair[1];
+                List<Long> ofUser = friendsByUser.get(user);
+                if (ofUser != null) {
+                    ofUser.add(friend);
+                }
+                List<Long> ofFriend = friendsByUser.get(friend);
+                if (ofFriend != null) {
+                    ofFriend.add(user);
+                }
+            }
+            if (generation.get() != startGeneration) {
+                // Có invalidate trong lúc query -> để các user này tự nạp lại khi được dùng
+                continue;
+            }
+            friendsByUser.forEach((userId, friendIds) -> cache.put(userId, FriendAdjacency.of(friendIds, now)));
+            if (cache.size() > maxEntries) {
+                evictOldest(now);
+            }
+        }
+    }
+
+    @Override
+    public void invalidate(long... userIds) {
+        if (userIds.length == 0) {
+            return;
+        }
+        evictLocal(userIds);
+        StringJoiner payload = new StringJoiner(",");
+        for (long userId : userIds) {
+            payload.add(String.valueOf(userId));
+        }
+        try {
+            stringRedisTemplate.convertAndSend(RedisPubSubConfig.SOCIAL_GRAPH_CHANNEL, payload.toString());
+        } catch (Exception e) {
+            // Node khác sẽ tự làm mới khi hết ttl
+            log.warn("Failed to publish social graph invalidation for {}: {}", payload, e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFriendshipChanged(FriendshipChangedEvent event) {
+        invalidate(event.getUserId(), event.getFriendId());
+    }
+
+    // Message invalidate từ node khác (và của chính node này, xóa lại lần nữa cũng không sao)
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            long[] userIds = Arrays.stream(payload.split(","))
+                    .map(String::trim)
+                    .filter(s -> !s.isEmpty())
+                    .mapToLong(Long::parseLong)
+                    .toArray();
+            evictLocal(userIds);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid social graph invalidation: {}", payload);
+        }
+    }
+
+    private FriendAdjacency adjacency(long userId) {
+        if (userId <= 0) {
+            return FriendAdjacency.of(List.of(), 0);
+        }
+        long now = System.currentTimeMillis();
+        FriendAdjacency cached = cache.get(userId);
+        if (cached != null && now - cached.loadedAt() < ttlSeconds * 1000) {
+            return cached;
+        }
+
+        long startGeneration = generation.get();
+        FriendAdjacency loaded = FriendAdjacency.of(
+                friendRepository.findAcceptedFriendIds(userId, FriendStatus.ACCEPTED.ordinal()), now);
+        if (generation.get() == startGeneration) {
+            cache.put(userId, loaded);
+            if (cache.size() > maxEntries) {
+                evictOldest(now);
+            }
+        }
+        return loaded;
+    }
+
+    private void evictLocal(long... userIds) {
+        generation.incrementAndGet();
+        for (long userId : userIds) {
+            cache.remove(userId);
+        }
+    }
+
+    // Vượt giới hạn -> bỏ các entry hết hạn, nếu vẫn đầy thì bỏ ~10% entry nạp sớm nhất
+    private synchronized void evictOldest(long now) {
+        if (cache.size() <= maxEntries) {
+            return;
+        }
+        long ttlMillis = ttlSeconds * 1000;
+        cache.values().removeIf(adjacency -> now - adjacency.loadedAt() >= ttlMillis);
+        int excess = cache.size() - maxEntries * 9 / 10;
+        if (excess <= 0) {
+            return;
+        }
+        cache.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(a.loadedAt(), b.loadedAt())))
+                .limit(excess)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(cache::remove);
+    }
+}
@@ -1,13 +1,14 @@
 package iuh.fit.edu.backend.modules.user.service.impl;
 
-import iuh.fit.edu.backend.modules.user.constant.FriendStatus;
 import iuh.fit.edu.backend.modules.user.dto.response.UserStatusResponse;
 import iuh.fit.edu.backend.modules.user.entity.User;
-import iuh.fit.edu.backend.modules.user.repository.FriendRepository;
 import iuh.fit.edu.backend.modules.user.repository.UserRepository;
+import iuh.fit.edu.backend.modules.user.service.SocialGraphService;
 import iuh.fit.edu.backend.modules.user.service.UserPresenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -16,8 +17,10 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -27,17 +30,19 @@ import java.util.Set;
 @RequiredArgsConstructor
 public class UserPresenceServiceImpl implements UserPresenceService {
 
-    // Set tổng để scheduler biết user nào đang có session cần kiểm tra.
-    private static final String ONLINE_USERS_KEY = "user:online:users";
-    // Set theo từng user để xử lý nhiều tab/thiết bị: chỉ offline khi set này rỗng.
-    private static final String USER_SESSIONS_KEY_PREFIX = "user:online:sessions:";
-    // Key TTL theo từng session; heartbeat sẽ gia hạn key này, mất heartbeat thì key tự hết hạn.
-    private static final String SESSION_USER_KEY_PREFIX = "user:online:session:";
+    // ZSET tổng userId -> hạn muộn nhất của các session, scheduler chỉ quét phần đã quá hạn.
+    private static final String PRESENCE_EXPIRY_KEY = "user:presence:expiry";
+    // ZSET theo từng user (sessionId -> hạn, millis) để xử lý nhiều tab/thiết bị: chỉ offline khi không còn session sống.
+    private static final String USER_SESSIONS_KEY_PREFIX = "user:presence:sessions:";
+    // Key session -> user để DISCONNECT không có principal vẫn tìm được user; heartbeat gia hạn cùng ZSET.
+    private static final String SESSION_USER_KEY_PREFIX = "user:presence:session:";
     private static final Duration SESSION_TTL = Duration.ofSeconds(90);
+    // Số user tối đa mỗi lần chạy script dọn, tránh 1 script chặn Redis quá lâu
+    private static final int SWEEP_BATCH_SIZE = 500;
 
     private final StringRedisTemplate redisTemplate;
     private final UserRepository userRepository;
-    private final FriendRepository friendRepository;
+    private final SocialGraphService socialGraphService;
 
     @Override
     public Optional<User> findUserByPrincipalName(String principalName) {
@@ -68,15 +73,7 @@ public class UserPresenceServiceImpl implements UserPresenceService {
         if (userId == null || !StringUtils.hasText(sessionId)) {
             return false;
         }
-
-        String userKey = userSessionsKey(userId);
-        Long activeBefore = pruneExpiredSessions(userId);
-        // Ghi cả set user->sessions và key session->user để disconnect có thể dọn chính xác.
-        redisTemplate.opsForSet().add(userKey, sessionId);
-        redisTemplate.opsForValue().set(sessionUserKey(sessionId), String.valueOf(userId), SESSION_TTL);
-        redisTemplate.opsForSet().add(ONLINE_USERS_KEY, String.valueOf(userId));
-
-        return activeBefore == null || activeBefore == 0;
+        return touchSession(userId, sessionId);
     }
 
     @Override
@@ -84,16 +81,9 @@ public class UserPresenceServiceImpl implements UserPresenceService {
         if (userId == null || !StringUtils.hasText(sessionId)) {
             return false;
         }
-
-        String sessionKey = sessionUserKey(sessionId);
-        Boolean exists = redisTemplate.hasKey(sessionKey);
-        if (!Boolean.TRUE.equals(exists)) {
-            return registerSession(userId, sessionId);
-        }
-
-        // Heartbeat chỉ gia hạn TTL, không publish event để tránh spam WebSocket.
-        redisTemplate.expire(sessionKey, SESSION_TTL);
-        return false;
+        // Heartbeat chỉ gia hạn hạn của session; nếu session đã hết hạn thì script coi như đăng ký lại
+        // và trả về true để caller publish online (không spam event với heartbeat bình thường).
+        return touchSession(userId, sessionId);
     }
 
     @Override
@@ -102,17 +92,12 @@ public class UserPresenceServiceImpl implements UserPresenceService {
             return false;
         }
 
-        String userKey = userSessionsKey(userId);
-        redisTemplate.opsForSet().remove(userKey, sessionId);
-        redisTemplate.delete(sessionUserKey(sessionId));
-
-        Long activeSessions = pruneExpiredSessions(userId);
-        if (activeSessions == null || activeSessions == 0) {
-            redisTemplate.delete(userKey);
-            redisTemplate.opsForSet().remove(ONLINE_USERS_KEY, String.valueOf(userId));
-            return true;
-        }
-        return false;
+        Long fullyOffline = redisTemplate.execute(PresenceScripts.REMOVE_SESSION,
+                sessionKeys(userId, sessionId),
+                String.valueOf(System.currentTimeMillis()),
+                sessionId,
+                String.valueOf(userId));
+        return Long.valueOf(1L).equals(fullyOffline);
     }
 
     @Override
@@ -125,10 +110,14 @@ public class UserPresenceServiceImpl implements UserPresenceService {
                 .filter(Objects::nonNull)
                 .distinct()
                 .toList();
+        if (distinctIds.isEmpty()) {
+            return Collections.emptyList();
+        }
 
+        Set<Long> onlineIds = findOnlineIds(distinctIds);
         return userRepository.findAllById(distinctIds).stream()
                 .map(user -> {
-                    boolean online = isOnline(user.getId());
+                    boolean online = onlineIds.contains(user.getId());
                     return UserStatusResponse.builder()
                             .userId(user.getId())
                             .isOnline(online)
@@ -180,43 +169,108 @@ public class UserPresenceServiceImpl implements UserPresenceService {
             return Collections.emptySet();
         }
 
-        Set<Long> recipientIds = new HashSet<>(
-                friendRepository.findAcceptedFriendIds(userId, FriendStatus.ACCEPTED.ordinal())
-        );
+        long[] friendIds = socialGraphService.getFriendIds(userId);
+        Set<Long> recipientIds = new HashSet<>(friendIds.length * 2);
+        for (long friendId : friendIds) {
+            recipientIds.add(friendId);
+        }
         recipientIds.add(userId);
         return recipientIds;
     }
 
     @Override
     public List<Long> cleanupExpiredSessions() {
+        // Scheduler là lớp dự phòng cho mất mạng/app crash: session hết hạn nhưng DISCONNECT không tới.
+        // Chỉ đụng tới user có session muộn nhất đã quá hạn; mỗi lô đọc ứng viên rồi chạy script với đủ key trong KEYS.
         List<Long> offlineUserIds = new ArrayList<>();
-        Set<String> userIds = redisTemplate.opsForSet().members(ONLINE_USERS_KEY);
+        Set<String> candidates;
+        do {
+            long now = System.currentTimeMillis();
+            candidates = redisTemplate.opsForZSet().rangeByScore(PRESENCE_EXPIRY_KEY, Double.NEGATIVE_INFINITY, now, 0, SWEEP_BATCH_SIZE);
+            if (candidates == null || candidates.isEmpty()) {
+                break;
+            }
+            List<String> keys = new ArrayList<>(candidates.size() + 1);
+            List<String> args = new ArrayList<>(candidates.size() + 1);
+            keys.add(PRESENCE_EXPIRY_KEY);
+            args.add(String.valueOf(now));
+            for (String candidate : candidates) {
+                keys.add(USER_SESSIONS_KEY_PREFIX + candidate);
+                args.add(candidate);
+            }
+            List<String> batch = redisTemplate.execute(PresenceScripts.SWEEP_EXPIRED, keys, args.toArray());
+            if (batch == null) {
+                break;
+            }
+            for (String rawUserId : batch) {
+                try {
+                    offlineUserIds.add(Long.valueOf(rawUserId));
+                } catch (NumberFormatException ex) {
+                    log.warn("Bỏ qua userId presence không hợp lệ trong Redis: {}", rawUserId);
+                }
+            }
+        } while (candidates.size() == SWEEP_BATCH_SIZE);
+
+        return offlineUserIds;
+    }
+
+    @Override
+    public Map<Long, List<String>> getActiveSessionIds(Collection<Long> userIds) {
         if (userIds == null || userIds.isEmpty()) {
-            return offlineUserIds;
+            return Collections.emptyMap();
         }
+        List<Long> ids = userIds.stream().filter(Objects::nonNull).distinct().toList();
+        double minExpiry = System.currentTimeMillis() + 1;
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Long userId : ids) {
+                conn.zRangeByScore(userSessionsKey(userId), minExpiry, Double.POSITIVE_INFINITY);
+            }
+            return null;
+        });
 
-        for (String rawUserId : userIds) {
-            try {
-                Long userId = Long.valueOf(rawUserId);
-                // Scheduler là lớp dự phòng cho mất mạng/app crash: session TTL hết nhưng DISCONNECT không tới.
-                Long activeSessions = pruneExpiredSessions(userId);
-                if (activeSessions == null || activeSessions == 0) {
-                    redisTemplate.delete(userSessionsKey(userId));
-                    redisTemplate.opsForSet().remove(ONLINE_USERS_KEY, rawUserId);
-                    offlineUserIds.add(userId);
-                }
-            } catch (NumberFormatException ex) {
-                log.warn("Bỏ qua userId presence không hợp lệ trong Redis: {}", rawUserId);
-                redisTemplate.opsForSet().remove(ONLINE_USERS_KEY, rawUserId);
+        Map<Long, List<String>> sessionIds = new HashMap<>();
+        for (int i = 0; i < ids.size() && i < results.size(); i++) {
+            if (results.get(i) instanceof Collection<?> sessions && !sessions.isEmpty()) {
+                sessionIds.put(ids.get(i), sessions.stream().map(String::valueOf).toList());
             }
         }
+        return sessionIds;
+    }
 
-        return offlineUserIds;
+    // Trạng thái nhiều user trong 1 round trip: ZCOUNT các session còn hạn, không ghi gì vào Redis
+    private Set<Long> findOnlineIds(List<Long> userIds) {
+        // Hạn là millis nguyên nên "còn hạn" (score > now) tương đương score >= now + 1
+        double minExpiry = System.currentTimeMillis() + 1;
+        List<Object> counts = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (Long userId : userIds) {
+                conn.zCount(userSessionsKey(userId), minExpiry, Double.POSITIVE_INFINITY);
+            }
+            return null;
+        });
+
+        Set<Long> onlineIds = new HashSet<>();
+        for (int i = 0; i < userIds.size() && i < counts.size(); i++) {
+            if (counts.get(i) instanceof Long count && count > 0) {
+                onlineIds.add(userIds.get(i));
+            }
+        }
+        return onlineIds;
     }
 
-    private boolean isOnline(Long userId) {
-        Long activeSessions = pruneExpiredSessions(userId);
-        return activeSessions != null && activeSessions > 0;
+    private boolean touchSession(Long userId, String sessionId) {
+        Long newlyOnline = redisTemplate.execute(PresenceScripts.TOUCH_SESSION,
+                sessionKeys(userId, sessionId),
+                String.valueOf(System.currentTimeMillis()),
+                String.valueOf(SESSION_TTL.toMillis()),
+                sessionId,
+                String.valueOf(userId));
+        return Long.valueOf(1L).equals(newlyOnline);
+    }
+
+    private List<String> sessionKeys(Long userId, String sessionId) {
+        return List.of(userSessionsKey(userId), PRESENCE_EXPIRY_KEY, sessionUserKey(sessionId));
     }
 
     private Set<Long> resolveAllowedPresenceTargetIds(Long viewerId, List<Long> targetIds) {
@@ -224,34 +278,18 @@ public class UserPresenceServiceImpl implements UserPresenceService {
             return Collections.emptySet();
         }
 
-        Set<Long> acceptedFriendIds = new HashSet<>(
-                friendRepository.findAcceptedFriendIds(viewerId, FriendStatus.ACCEPTED.ordinal())
-        );
         Set<Long> allowedIds = new HashSet<>();
         for (Long targetId : targetIds) {
-            if (Objects.equals(viewerId, targetId) || acceptedFriendIds.contains(targetId)) {
+            if (targetId == null) {
+                continue;
+            }
+            if (Objects.equals(viewerId, targetId) || socialGraphService.areFriends(viewerId, targetId)) {
                 allowedIds.add(targetId);
             }
         }
         return allowedIds;
     }
 
-    private Long pruneExpiredSessions(Long userId) {
-        String userKey = userSessionsKey(userId);
-        Set<String> sessionIds = redisTemplate.opsForSet().members(userKey);
-        if (sessionIds == null || sessionIds.isEmpty()) {
-            return 0L;
-        }
-
-        for (String sessionId : sessionIds) {
-            Boolean exists = redisTemplate.hasKey(sessionUserKey(sessionId));
-            if (!Boolean.TRUE.equals(exists)) {
-                redisTemplate.opsForSet().remove(userKey, sessionId);
-            }
-        }
-        return redisTemplate.opsForSet().size(userKey);
-    }
-
     private String userSessionsKey(Long userId) {
         return USER_SESSIONS_KEY_PREFIX + userId;
     }
@@ -4,7 +4,6 @@
  */
 package iuh.fit.edu.backend.modules.user.service.impl;
 
-import iuh.fit.edu.backend.modules.user.constant.FriendStatus;
 import iuh.fit.edu.backend.modules.user.dto.request.FriendRequest;
 import iuh.fit.edu.backend.modules.user.dto.request.*;
 import iuh.fit.edu.backend.modules.user.dto.response.BlockEventPayload;
@@ -15,14 +14,15 @@ import iuh.fit.edu.backend.modules.user.entity.*;
 import iuh.fit.edu.backend.modules.user.repository.ActiveTokenRepository;
 import iuh.fit.edu.backend.modules.user.repository.BlackListUserRepository;
 import iuh.fit.edu.backend.modules.user.repository.DeviceRepository;
-import iuh.fit.edu.backend.modules.user.repository.FriendRepository;
 import iuh.fit.edu.backend.modules.user.repository.UserRepository;
 import iuh.fit.edu.backend.common.exception.AccountLockedException;
 import iuh.fit.edu.backend.common.exception.RateLimitExceededException;
 import iuh.fit.edu.backend.common.service.security.AccountLockService;
 import iuh.fit.edu.backend.common.service.security.RateLimitService;
 import iuh.fit.edu.backend.modules.user.service.BlockUserService;
+import iuh.fit.edu.backend.modules.user.service.SocialGraphService;
 import iuh.fit.edu.backend.modules.user.service.UserService;
+import iuh.fit.edu.backend.modules.user.service.UserSummaryLoader;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
@@ -64,7 +64,8 @@ public class UserServiceImpl implements UserService {
     ActiveTokenRepository activeTokenRepository;
     RateLimitService rateLimitService;
     AccountLockService accountLockService;
-    FriendRepository friendRepository;
+    SocialGraphService socialGraphService;
+    UserSummaryLoader userSummaryLoader;
 
 
     public UserServiceImpl(BlackListUserRepository blackListUserRepository,
@@ -75,7 +76,8 @@ public class UserServiceImpl implements UserService {
                            ActiveTokenRepository activeTokenRepository,
                            RateLimitService rateLimitService,
                            AccountLockService accountLockService,
-                           FriendRepository friendRepository
+                           SocialGraphService socialGraphService,
+                           UserSummaryLoader userSummaryLoader
                            ) {
         this.blackListUserRepository = blackListUserRepository;
         this.blockUserService = blockUserService;
@@ -87,7 +89,8 @@ public class UserServiceImpl implements UserService {
         this.activeTokenRepository = activeTokenRepository;
         this.rateLimitService = rateLimitService;
         this.accountLockService = accountLockService;
-        this.friendRepository = friendRepository;
+        this.socialGraphService = socialGraphService;
+        this.userSummaryLoader = userSummaryLoader;
     }
 
     /*Đăng kí tài khoản bằng aws cognito
@@ -447,6 +450,7 @@ public class UserServiceImpl implements UserService {
     public boolean deleteUser(long id) {
         if(id>0){
             userRepository.deleteById(id);
+            userSummaryLoader.evict(id);
             return true;
         }
         return false;
@@ -465,6 +469,7 @@ public class UserServiceImpl implements UserService {
                if (requestUpdate.getUsername() != null) user.setUsername(requestUpdate.getUsername());
                user.setUpdatedAt(OffsetDateTime.now());
                userRepository.save(user);
+               userSummaryLoader.evict(user.getId());
 
                Map<String, Object> profileUpdatePayload = new HashMap<>();
                profileUpdatePayload.put("id", user.getId());
@@ -655,7 +660,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public PaginatedUserResponse searchMentionUsers(long viewerId, String keyword, int page, int size) {
-        List<Long> friendIds = friendRepository.findAcceptedFriendIds(viewerId, FriendStatus.ACCEPTED.ordinal());
+        List<Long> friendIds = socialGraphService.getFriendIdList(viewerId);
 
         if (friendIds == null || friendIds.isEmpty()) {
             return PaginatedUserResponse.builder()
@@ -0,0 +1,328 @@
+/*
+ * @ (#) UserSummaryLoaderImpl.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.user.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
+import iuh.fit.edu.backend.modules.user.dto.response.UserSummaryResponse;
+import iuh.fit.edu.backend.modules.user.entity.User;
+import iuh.fit.edu.backend.modules.user.repository.UserRepository;
+import iuh.fit.edu.backend.modules.user.service.UserSummaryLoader;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/*
+ * @description
+ * Nạp UserSummaryResponse theo lô qua 4 tầng, tầng sau chỉ hỏi phần tầng trước còn thiếu:
+ *   1) Map theo request hiện tại: cùng 1 user trong 1 request chỉ tra 1 lần
+ *   2) Near cache trong bộ nhớ (giới hạn số entry, TTL ngắn)
+ *   3) Redis user:summary:{id} -> 1 lệnh MGET
+ *   4) MariaDB -> 1 findAllById, ghi ngược lên Redis bằng pipeline
+ * Mapper của list endpoint gọi loadAll với toàn bộ id trước, các lần load(id) sau đó trúng tầng 1.
+ * evict xóa Redis + near cache của node này và publish USER_SUMMARY_CHANNEL cho các node khác.
+ * @author: Ngoc Hai
+ * @version: 1.0
+ */
+@Service
+@Slf4j
+public class UserSummaryLoaderImpl implements UserSummaryLoader, MessageListener {
+
+    private static final String SUMMARY_KEY = "user:summary:";
+    private static final String PHONE_KEY = "user:summary:phone:";
+    private static final String REQUEST_CACHE_ATTRIBUTE = UserSummaryLoaderImpl.class.getName() + ".REQUEST_CACHE";
+
+    private final UserRepository userRepository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<RedisMessageListenerContainer> containerProvider;
+
+    private final Map<Long, NearEntry> nearCache = new ConcurrentHashMap<>();
+
+    @Value("${app.user-summary.near-cache.max-entries:50000}")
+    private int maxEntries;
+
+    @Value("${app.user-summary.near-cache.ttl-seconds:30}")
+    private long nearTtlSeconds;
+
+    @Value("${app.user-summary.redis-ttl-minutes:60}")
+    private long redisTtlMinutes;
+
+    public UserSummaryLoaderImpl(UserRepository userRepository,
+                                 StringRedisTemplate stringRedisTemplate,
+                                 ObjectMapper objectMapper,
+                                 ObjectProvider<RedisMessageListenerContainer> containerProvider) {
+        this.userRepository = userRepository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.containerProvider = containerProvider;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        RedisMessageListenerContainer container = containerProvider.getIfAvailable();
+        if (container != null) {
+            container.addMessageListener(this, new ChannelTopic(RedisPubSubConfig.USER_SUMMARY_CHANNEL));
+        }
+    }
+
+    @Override
+    public Map<Long, UserSummaryResponse> loadAll(Collection<Long> userIds) {
+        Map<Long, UserSummaryResponse> result = new LinkedHashMap<>();
+        Set<Long> missing = new LinkedHashSet<>();
+        for (Long userId : userIds) {
+            if (userId != null && userId > 0) {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        // 1) Request hiện tại
+        Map<Long, UserSummaryResponse> requestCache = requestCache();
+        if (requestCache != null) {
+            takeFound(missing, result, requestCache::get);
+        }
+
+        // 2) Near cache
+        long now = System.currentTimeMillis();
+        takeFound(missing, result, userId -> {
+            NearEntry entry = nearCache.get(userId);
+            return entry != null && now - entry.loadedAt() < nearTtlSeconds * 1000 ? entry.summary() : null;
+        });
+
+        // 3) Redis
+        if (!missing.isEmpty()) {
+            Map<Long, UserSummaryResponse> fromRedis = readRedis(missing);
+            fromRedis.values().forEach(summary -> putNear(summary, now));
+            takeFound(missing, result, fromRedis::get);
+        }
+
+        // 4) DB
+        if (!missing.isEmpty()) {
+            List<UserSummaryResponse> fromDb = new ArrayList<>();
+            for (User user : userRepository.findAllById(missing)) {
+                UserSummaryResponse summary = toSummary(user);
+                fromDb.add(summary);
+                result.put(summary.getId(), summary);
+                putNear(summary, now);
+            }
+            writeRedis(fromDb);
+        }
+
+        if (requestCache != null) {
+            requestCache.putAll(result);
+        }
+        return result;
+    }
+
+    @Override
+    public UserSummaryResponse load(Long userId) {
+        if (userId == null) {
+            return null;
+        }
+        return loadAll(List.of(userId)).get(userId);
+    }
+
+    @Override
+    public UserSummaryResponse loadByPhone(String phone) {
+        if (phone == null || phone.isBlank()) {
+            return null;
+        }
+        try {
+            String cachedId = stringRedisTemplate.opsForValue().get(PHONE_KEY + phone);
+            if (cachedId != null) {
+                UserSummaryResponse summary = load(Long.parseLong(cachedId));
+                // Số điện thoại đã đổi sang user khác -> bỏ qua mapping cũ
+                if (summary != null && phone.equals(summary.getPhone())) {
+                    return summary;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read user summary phone mapping: {}", e.getMessage());
+        }
+
+        User user = userRepository.findByPhone(phone);
+        if (user == null) {
+            return null;
+        }
+        UserSummaryResponse summary = toSummary(user);
+        putNear(summary, System.currentTimeMillis());
+        writeRedis(List.of(summary));
+        Map<Long, UserSummaryResponse> requestCache = requestCache();
+        if (requestCache != null) {
+            requestCache.put(summary.getId(), summary);
+        }
+        return summary;
+    }
+
+    @Override
+    public void evict(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        nearCache.remove(userId);
+        Map<Long, UserSummaryResponse> requestCache = requestCache();
+        if (requestCache != null) {
+            requestCache.remove(userId);
+        }
+        try {
+            stringRedisTemplate.delete(SUMMARY_KEY + userId);
+            stringRedisTemplate.convertAndSend(RedisPubSubConfig.USER_SUMMARY_CHANNEL, String.valueOf(userId));
+        } catch (Exception e) {
+            // Node khác sẽ tự làm mới khi near cache hết hạn
+            log.warn("Failed to evict user summary {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            nearCache.remove(Long.parseLong(payload.trim()));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid user summary invalidation: {}", payload);
+        }
+    }
+
+    private Map<Long, UserSummaryResponse> readRedis(Collection<Long> userIds) {
+        Map<Long, UserSummaryResponse> found = new HashMap<>();
+        try {
+            List<Long> ids = new ArrayList<>(userIds);
+            List<String> keys = ids.stream().map(id -> SUMMARY_KEY + id).toList();
+            List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+            if (values == null) {
+                return found;
+            }
+            for (int i = 0; i < ids.size(); i++) {
+                String value = values.get(i);
+                if (value != null) {
+                    found.put(ids.get(i), objectMapper.readValue(value, UserSummaryResponse.class));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to read user summaries from Redis: {}", e.getMessage());
+        }
+        return found;
+    }
+
+    private void writeRedis(List<UserSummaryResponse> summaries) {
+        if (summaries.isEmpty()) {
+            return;
+        }
+        try {
+            long ttlSeconds = redisTtlMinutes * 60;
+            List<String[]> entries = new ArrayList<>(summaries.size());
+            for (UserSummaryResponse summary : summaries) {
+                entries.add(new String[]{
+                        String.valueOf(summary.getId()), summary.getPhone(), objectMapper.writeValueAsString(summary)});
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                for (String[] entry : entries) {
+                    conn.setEx(SUMMARY_KEY + entry[0], ttlSeconds, entry[2]);
+                    if (entry[1] != null) {
+                        conn.setEx(PHONE_KEY + entry[1], ttlSeconds, entry[0]);
+                    }
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to cache {} user summaries: {}", summaries.size(), e.getMessage());
+        }
+    }
+
+    private void putNear(UserSummaryResponse summary, long now) {
+        nearCache.put(summary.getId(), new NearEntry(summary, now));
+        if (nearCache.size() > maxEntries) {
+            evictOldest(now);
+        }
+    }
+
+    // Vượt giới hạn -> bỏ entry hết hạn, nếu vẫn đầy thì bỏ ~10% entry nạp sớm nhất
+    private synchronized void evictOldest(long now) {
+        if (nearCache.size() <= maxEntries) {
+            return;
+        }
+        long ttlMillis = nearTtlSeconds * 1000;
+        nearCache.values().removeIf(entry -> now - entry.loadedAt() >= ttlMillis);
+        int excess = nearCache.size() - maxEntries * 9 / 10;
+        if (excess <= 0) {
+            return;
+        }
+        nearCache.entrySet().stream()
+                .sorted(Map.Entry.comparingByValue((a, b) -> Long.compare(a.loadedAt(), b.loadedAt())))
+                .limit(excess)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(nearCache::remove);
+    }
+
+    // Map dùng chung trong 1 HTTP request, null khi chạy ngoài request (scheduler, @Async, STOMP)
+    @SuppressWarnings("unchecked")
+    private Map<Long, UserSummaryResponse> requestCache() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object cache = attributes.getAttribute(REQUEST_CACHE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (cache == null) {
+            cache = new HashMap<Long, UserSummaryResponse>();
+            attributes.setAttribute(REQUEST_CACHE_ATTRIBUTE, cache, RequestAttributes.SCOPE_REQUEST);
+        }
+        return (Map<Long, UserSummaryResponse>) cache;
+    }
+
+    private static void takeFound(Set<Long> missing, Map<Long, UserSummaryResponse> result,
+                                  Function<Long, UserSummaryResponse> lookup) {
+        Iterator<Long> iterator = missing.iterator();
+        while (iterator.hasNext()) {
+            Long userId = iterator.next();
+            UserSummaryResponse summary = lookup.apply(userId);
+            if (summary != null) {
+                result.put(userId, summary);
+                iterator.remove();
+            }
+        }
+    }
+
+    private static UserSummaryResponse toSummary(User user) {
+        return UserSummaryResponse.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .username(user.getUsername())
+                .phone(user.getPhone())
+                .avatarUrl(user.getAvatarUrl())
+                .build();
+    }
+
+    private record NearEntry(UserSummaryResponse summary, long loadedAt) {
+    }
+}
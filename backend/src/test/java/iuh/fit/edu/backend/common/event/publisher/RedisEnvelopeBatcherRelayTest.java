@@ -0,0 +1,373 @@
+/*
+ * @ (#) RedisEnvelopeBatcherRelayTest.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.common.event.publisher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.edu.backend.common.config.RedisPubSubConfig;
+import iuh.fit.edu.backend.common.config.WebSocketBrokerProperties;
+import iuh.fit.edu.backend.common.event.payload.RedisEnvelope;
+import iuh.fit.edu.backend.common.event.subscriber.ConversationInterestRegistry;
+import iuh.fit.edu.backend.common.event.subscriber.LocalUserSessionRegistry;
+import iuh.fit.edu.backend.common.event.subscriber.RedisChatSubscriber;
+import iuh.fit.edu.backend.common.event.subscriber.UserDestinationMulticaster;
+import iuh.fit.edu.backend.common.event.type.DomainEventType;
+import iuh.fit.edu.backend.modules.notification.entity.mongodb.Notification;
+import iuh.fit.edu.backend.modules.notification.event.handler.NotificationEventHandler;
+import iuh.fit.edu.backend.modules.page.event.handler.PageCreatedEventHandler;
+import iuh.fit.edu.backend.modules.page.event.payload.PageListEvent;
+import iuh.fit.edu.backend.modules.user.service.UserPresenceService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.ReactorNettyTcpStompClient;
+import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/*
+ * @description
+ * Chế độ broker relay (app.websocket.mode=relay) chạy với 1 broker STOMP tối giản trong test:
+ * RedisEnvelopeBatcher -> RedisChatSubscriber.dispatchLocal -> handler -> StompBrokerRelayMessageHandler -> broker,
+ * một client STOMP khác (đóng vai node giữ session) nhận lại sự kiện /topic và /user/queue.
+ * Không đụng tới Redis pub/sub ở chế độ này.
+ * @author: Huu Thai
+ * @version: 1.0
+ */
+class RedisEnvelopeBatcherRelayTest {
+
+    private static final long RECIPIENT_ID = 42L;
+    private static final String RECIPIENT_SESSION_ID = "sess1";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private StubStompBroker broker;
+    private StompBrokerRelayMessageHandler relay;
+    private ReactorNettyTcpStompClient client;
+    private ThreadPoolTaskScheduler receiptScheduler;
+    private RedisTemplate<String, Object> pubSubRedisTemplate;
+    private RedisEnvelopeBatcher batcher;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        broker = new StubStompBroker();
+
+        ExecutorSubscribableChannel clientInbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel clientOutbound = new ExecutorSubscribableChannel();
+        ExecutorSubscribableChannel brokerChannel = new ExecutorSubscribableChannel();
+        relay = new StompBrokerRelayMessageHandler(clientInbound, clientOutbound, brokerChannel, List.of("/topic", "/queue"));
+        relay.setRelayHost("127.0.0.1");
+        relay.setRelayPort(broker.getPort());
+        relay.setSystemHeartbeatSendInterval(0);
+        relay.setSystemHeartbeatReceiveInterval(0);
+        relay.start();
+        await().atMost(TIMEOUT).until(relay::isBrokerAvailable);
+
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        SimpMessagingTemplate messagingTemplate = new SimpMessagingTemplate(brokerChannel);
+        messagingTemplate.setMessageConverter(new MappingJackson2MessageConverter(objectMapper));
+
+        WebSocketBrokerProperties brokerProperties = new WebSocketBrokerProperties();
+        brokerProperties.setMode(WebSocketBrokerProperties.Mode.RELAY);
+
+        // Session của người nhận nằm ở node khác: chỉ biết qua presence
+        UserPresenceService userPresenceService = mock(UserPresenceService.class);
+        when(userPresenceService.getActiveSessionIds(anyCollection()))
+                .thenReturn(Map.of(RECIPIENT_ID, List.of(RECIPIENT_SESSION_ID)));
+        UserDestinationMulticaster multicaster = new UserDestinationMulticaster(messagingTemplate,
+                mock(SimpUserRegistry.class), mock(LocalUserSessionRegistry.class), brokerProperties, userPresenceService);
+
+        RedisChatSubscriber subscriber = new RedisChatSubscriber(
+                List.of(new PageCreatedEventHandler(messagingTemplate), new NotificationEventHandler(multicaster)),
+                objectMapper,
+                mock(ConversationInterestRegistry.class));
+
+        pubSubRedisTemplate = mock(RedisTemplate.class);
+        batcher = new RedisEnvelopeBatcher(pubSubRedisTemplate, brokerProperties,
+                new StaticListableBeanFactory(Map.of("redisChatSubscriber", subscriber))
+                        .getBeanProvider(RedisChatSubscriber.class));
+
+        client = new ReactorNettyTcpStompClient("127.0.0.1", broker.getPort());
+        client.setMessageConverter(new MappingJackson2MessageConverter(objectMapper));
+        client.setDefaultHeartbeat(new long[]{0, 0});
+        // Cần scheduler để client chờ RECEIPT của SUBSCRIBE
+        receiptScheduler = new ThreadPoolTaskScheduler();
+        receiptScheduler.initialize();
+        client.setTaskScheduler(receiptScheduler);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (client != null) {
+            client.shutdown();
+        }
+        if (receiptScheduler != null) {
+            receiptScheduler.shutdown();
+        }
+        if (relay != null) {
+            relay.stop();
+        }
+        if (broker != null) {
+            broker.close();
+        }
+    }
+
+    @Test
+    void deliversTopicAndUserQueueEventsThroughBroker() throws Exception {
+        StompSession session = client.connectAsync(new StompSessionHandlerAdapter() {
+        }).get(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        session.setAutoReceipt(true);
+
+        BlockingQueue<Map<String, Object>> pages = new LinkedBlockingQueue<>();
+        BlockingQueue<Map<String, Object>> notifications = new LinkedBlockingQueue<>();
+        CountDownLatch subscribed = new CountDownLatch(2);
+        session.subscribe("/topic/pages", collectInto(pages)).addReceiptTask(subscribed::countDown);
+        // /user/queue/notifications của session sess1 được Spring dịch thành destination này trên node giữ session
+        session.subscribe("/queue/notifications-user" + RECIPIENT_SESSION_ID, collectInto(notifications))
+                .addReceiptTask(subscribed::countDown);
+        assertThat(subscribed.await(TIMEOUT.toSeconds(), TimeUnit.SECONDS)).isTrue();
+
+        batcher.publishNow(RedisPubSubConfig.CHAT_CHANNEL, new RedisEnvelope(null, DomainEventType.PAGE_CREATED,
+                PageListEvent.builder().eventType(DomainEventType.PAGE_CREATED).pageId(7L).build()));
+        batcher.publishNow(RedisPubSubConfig.NOTIFICATION_CHANNEL, new RedisEnvelope(Set.of(RECIPIENT_ID),
+                DomainEventType.NOTIFICATION,
+                Notification.builder().id("n1").recipientId(String.valueOf(RECIPIENT_ID)).build()));
+
+        Map<String, Object> page = pages.poll(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+        Map<String, Object> notification = notifications.poll(TIMEOUT.toSeconds(), TimeUnit.SECONDS);
+
+        assertThat(page).isNotNull().containsEntry("pageId", 7);
+        assertThat(notification).isNotNull().containsEntry("id", "n1");
+        // Relay: broker ngoài fan-out giữa các node, không publish lại qua Redis
+        verifyNoInteractions(pubSubRedisTemplate);
+    }
+
+    private static StompFrameHandler collectInto(BlockingQueue<Map<String, Object>> queue) {
+        return new StompFrameHandler() {
+            @Override
+            public Type getPayloadType(StompHeaders headers) {
+                return Map.class;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void handleFrame(StompHeaders headers, Object payload) {
+                queue.add((Map<String, Object>) payload);
+            }
+        };
+    }
+
+    /*
+     * Broker STOMP 1.2 tối giản thay cho RabbitMQ/ActiveMQ: CONNECT, SUBSCRIBE, UNSUBSCRIBE, SEND, DISCONNECT.
+     * SEND được chuyển thành MESSAGE tới mọi subscription có destination trùng khớp; không hỗ trợ wildcard/ack.
+     */
+    private static final class StubStompBroker implements AutoCloseable {
+
+        private record Subscription(Connection connection, String id, String destination) {}
+
+        private record Frame(String command, Map<String, String> headers, byte[] body) {}
+
+        private final ServerSocket serverSocket;
+        private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+        private final List<Connection> connections = new CopyOnWriteArrayList<>();
+        private final AtomicLong messageIds = new AtomicLong();
+
+        StubStompBroker() throws IOException {
+            serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread.ofPlatform().daemon(true).name("stub-stomp-accept").start(this::acceptLoop);
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Connection connection = new Connection(serverSocket.accept());
+                    connections.add(connection);
+                    Thread.ofPlatform().daemon(true).name("stub-stomp-conn").start(connection::readLoop);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            for (Connection connection : connections) {
+                connection.close();
+            }
+        }
+
+        private final class Connection {
+
+            private final Socket socket;
+            private final InputStream in;
+            private final OutputStream out;
+
+            Connection(Socket socket) throws IOException {
+                this.socket = socket;
+                this.in = new BufferedInputStream(socket.getInputStream());
+                this.out = socket.getOutputStream();
+            }
+
+            void readLoop() {
+                try {
+                    Frame frame;
+                    while ((frame = readFrame()) != null) {
+                        handle(frame);
+                    }
+                } catch (IOException ignored) {
+                    // Client đóng kết nối
+                } finally {
+                    subscriptions.removeIf(subscription -> subscription.connection() == this);
+                    close();
+                }
+            }
+
+            private void handle(Frame frame) throws IOException {
+                Map<String, String> headers = frame.headers();
+                switch (frame.command()) {
+                    case "CONNECT", "STOMP" -> write("CONNECTED", Map.of("version", "1.2", "heart-beat", "0,0"), null);
+                    case "SUBSCRIBE" -> subscriptions.add(new Subscription(this, headers.get("id"), headers.get("destination")));
+                    case "UNSUBSCRIBE" -> subscriptions.removeIf(subscription ->
+                            subscription.connection() == this && subscription.id().equals(headers.get("id")));
+                    case "SEND" -> {
+                        for (Subscription subscription : subscriptions) {
+                            if (subscription.destination().equals(headers.get("destination"))) {
+                                Map<String, String> messageHeaders = new LinkedHashMap<>();
+                                messageHeaders.put("destination", subscription.destination());
+                                messageHeaders.put("subscription", subscription.id());
+                                messageHeaders.put("message-id", String.valueOf(messageIds.incrementAndGet()));
+                                if (headers.containsKey("content-type")) {
+                                    messageHeaders.put("content-type", headers.get("content-type"));
+                                }
+                                subscription.connection().write("MESSAGE", messageHeaders, frame.body());
+                            }
+                        }
+                    }
+                    default -> {
+                        // DISCONNECT và các lệnh khác: chỉ trả receipt nếu được yêu cầu
+                    }
+                }
+                if (headers.containsKey("receipt")) {
+                    write("RECEIPT", Map.of("receipt-id", headers.get("receipt")), null);
+                }
+            }
+
+            private Frame readFrame() throws IOException {
+                String command;
+                do {
+                    command = readLine();
+                    if (command == null) {
+                        return null;
+                    }
+                } while (command.isEmpty()); // Bỏ qua heartbeat (EOL rỗng)
+
+                Map<String, String> headers = new LinkedHashMap<>();
+                String line;
+                while ((line = readLine()) != null && !line.isEmpty()) {
+                    int colon = line.indexOf(':');
+                    // STOMP 1.2: header lặp lại thì giá trị đầu tiên được dùng
+                    headers.putIfAbsent(line.substring(0, colon), line.substring(colon + 1));
+                }
+
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                String contentLength = headers.get("content-length");
+                if (contentLength != null) {
+                    body.write(in.readNBytes(Integer.parseInt(contentLength)));
+                    if (in.read() < 0) {
+                        return null;
+                    }
+                } else {
+                    int b;
+                    while ((b = in.read()) > 0) {
+                        body.write(b);
+                    }
+                    if (b < 0) {
+                        return null;
+                    }
+                }
+                return new Frame(command, headers, body.toByteArray());
+            }
+
+            private String readLine() throws IOException {
+                ByteArrayOutputStream line = new ByteArrayOutputStream();
+                int b;
+                while ((b = in.read()) != '\n') {
+                    if (b < 0) {
+                        return null;
+                    }
+                    if (b != '\r') {
+                        line.write(b);
+                    }
+                }
+                return line.toString(StandardCharsets.UTF_8);
+            }
+
+            synchronized void write(String command, Map<String, String> headers, byte[] body) throws IOException {
+                StringBuilder frame = new StringBuilder(command).append('\n');
+                headers.forEach((name, value) -> frame.append(name).append(':').append(value).append('\n'));
+                if (body != null) {
+                    frame.append("content-length:").append(body.length).append('\n');
+                }
+                frame.append('\n');
+                out.write(frame.toString().getBytes(StandardCharsets.UTF_8));
+                if (body != null) {
+                    out.write(body);
+                }
+                out.write(0);
+                out.flush();
+            }
+
+            void close() {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // Đã đóng
+                }
+            }
+        }
+    }
+}
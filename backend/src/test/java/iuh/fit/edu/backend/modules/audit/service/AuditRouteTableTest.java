@@ -0,0 +1,255 @@
+/*
+ * @ (#) AuditRouteTableTest.java    1.0
+ * Copyright (c)  IUH. All rights reserved.
+ */
+package iuh.fit.edu.backend.modules.audit.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/*
+ * @description
+ * So khớp AuditRouteTable (trie) với cách tra cũ: duyệt tuần tự IGNORE rồi RULES bằng Pattern.find().
+ * Bảng mẫu giống AuditLogService; mỗi mẫu được dịch sang regex cũ ({word} = (\w+), {slug} = ([\w-]+), {num} = (\d+)).
+ * Kết quả so sánh dạng "ACTION:id" ("IGNORED" nếu khớp mẫu ignore, null nếu không khớp).
+ * benchmark() chỉ chạy khi có -Daudit.bench=true, in thời gian trung bình mỗi lượt tra của 2 cách.
+ * @author: Audit Log
+ * @version: 1.0
+ */
+class AuditRouteTableTest {
+
+    private record Template(String method, String template, String action) {}
+
+    private static final List<String> IGNORES = List.of("/admin/audit-logs", "/admin/reports/stream");
+
+    private static final List<Template> RULES = List.of(
+            new Template("POST", "/auth/login$", "LOGIN"),
+            new Template("POST", "/auth/logout$", "LOGOUT"),
+            new Template("POST", "/auth/register$", "REGISTER"),
+            new Template("POST", "/auth/reset-password$", "RESET_PASSWORD"),
+            new Template("POST", "/admin/lock/{word}", "LOCK_USER"),
+            new Template("POST", "/admin/unlock/{word}", "UNLOCK_USER"),
+            new Template("DELETE", "/auth/users/{word}", "DELETE_USER"),
+            new Template("PUT", "/auth/users/{word}", "UPDATE_USER"),
+            new Template("POST", "/friends/request", "FRIEND_REQUEST"),
+            new Template("POST", "/friends/accept", "FRIEND_ACCEPT"),
+            new Template("POST", "/friends/block", "BLOCK_USER"),
+            new Template("DELETE", "/page/delete/{word}", "DELETE_PAGE"),
+            new Template("POST", "/page/create", "CREATE_PAGE"),
+            new Template("POST", "/page-member/approve-join$", "APPROVE_MEMBER"),
+            new Template("POST", "/page-member/reject-join$", "REJECT_MEMBER"),
+            new Template("POST", "/page-member/block$", "BLOCK_MEMBER"),
+            new Template("POST", "/page-member/cancel-block$", "UNBLOCK_MEMBER"),
+            new Template("POST", "/page-member/delete$", "REMOVE_MEMBER"),
+            new Template("POST", "/page-member/authorize$", "AUTHORIZE_MEMBER"),
+            new Template("POST", "/page/post/approve$", "APPROVE_PAGE_POST"),
+            new Template("POST", "/page/post/remove$", "REMOVE_PAGE_POST"),
+            new Template("POST", "/posts$", "CREATE_POST"),
+            new Template("DELETE", "/posts/{slug}$", "DELETE_POST"),
+            new Template("POST", "/reactions", "REACT_POST"),
+            new Template("POST", "/comments", "CREATE_COMMENT"),
+            new Template("POST", "/stories$", "CREATE_STORY"),
+            new Template("DELETE", "/admin/stories/{slug}$", "DELETE_STORY"),
+            new Template("POST", "/report$", "SUBMIT_REPORT"),
+            new Template("POST", "/admin/reports/{num}/handle$", "HANDLE_REPORT")
+    );
+
+    // {method, path, kết quả mong đợi}
+    private static final String[][] CASES = {
+            // Route cố định, có và không có '$'
+            {"POST", "/api/auth/login", "LOGIN:null"},
+            {"POST", "/api/auth/login/extra", null},
+            {"POST", "/api/friends/requests", "FRIEND_REQUEST:null"},
+            {"POST", "/api/friends/request/42", "FRIEND_REQUEST:null"},
+            {"POST", "/api/posts", "CREATE_POST:null"},
+            {"POST", "/api/posts/abc", null},
+            // Tham số {word} / {slug} / {num}
+            {"POST", "/api/admin/lock/user_01", "LOCK_USER:user_01"},
+            {"POST", "/api/admin/lock/user-01", "LOCK_USER:user"},
+            {"POST", "/api/admin/lock/", null},
+            {"DELETE", "/api/posts/6650f0c2-aa12", "DELETE_POST:6650f0c2-aa12"},
+            {"DELETE", "/api/posts/a.b", null},
+            {"DELETE", "/api/admin/stories/st-9", "DELETE_STORY:st-9"},
+            {"POST", "/api/admin/reports/123/handle", "HANDLE_REPORT:123"},
+            {"POST", "/api/admin/reports/12a/handle", null},
+            // Cùng path, khác method
+            {"DELETE", "/api/auth/users/7", "DELETE_USER:7"},
+            {"PUT", "/api/auth/users/7", "UPDATE_USER:7"},
+            {"GET", "/api/auth/users/7", null},
+            {"PATCH", "/api/posts", null},
+            // Mẫu ignore thắng mọi rule, với mọi method
+            {"GET", "/api/admin/audit-logs", "IGNORED"},
+            {"POST", "/api/admin/audit-logs/export", "IGNORED"},
+            {"GET", "/api/admin/reports/stream", "IGNORED"},
+            {"POST", "/api/admin/reports/streaming", "IGNORED"},
+            // Mẫu khớp bắt đầu ở '/' bất kỳ, không chỉ sau /api
+            {"POST", "/v2/auth/register", "REGISTER:null"},
+            {"POST", "/api/x/page/create", "CREATE_PAGE:null"},
+            {"DELETE", "/api/page/delete/p1/members", "DELETE_PAGE:p1"},
+            {"POST", "/api/report", "SUBMIT_REPORT:null"},
+            {"POST", "/api/reports", null},
+            {"POST", "", null},
+            {"POST", "/", null},
+    };
+
+    private static final String[] METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH"};
+
+    // Phân đoạn dùng để sinh path ngẫu nhiên: literal của các mẫu + giá trị tham số hợp lệ/không hợp lệ
+    private static final String[] SEGMENTS = {
+            "api", "v2", "auth", "login", "logout", "register", "reset-password", "admin", "lock", "unlock",
+            "users", "friends", "request", "requests", "accept", "block", "page", "delete", "create",
+            "page-member", "approve-join", "reject-join", "cancel-block", "authorize", "post", "approve",
+            "remove", "posts", "reactions", "comments", "stories", "report", "reports", "handle", "stream",
+            "audit-logs", "123", "user_01", "a-b", "x.y", "", "7a", "-"
+    };
+
+    private static AuditRouteTable trie() {
+        AuditRouteTable.Builder builder = AuditRouteTable.builder();
+        IGNORES.forEach(builder::ignore);
+        for (Template t : RULES) {
+            builder.rule(t.method(), t.template(), id -> new AuditLogService.ActionInfo(t.action(), null, null, null, id));
+        }
+        return builder.build();
+    }
+
+    private static String describe(AuditLogService.ActionInfo info) {
+        if (info == null) return null;
+        return info == AuditRouteTable.IGNORED ? "IGNORED" : info.action() + ":" + info.targetId();
+    }
+
+    /** Cách tra cũ: ignore trước, sau đó rule đầu tiên cùng method có Pattern.find() khớp. */
+    private static final class LinearTable {
+        private record Rule(String method, Pattern pattern, String action) {}
+
+        private final List<Pattern> ignores = new ArrayList<>();
+        private final List<Rule> rules = new ArrayList<>();
+
+        LinearTable() {
+            IGNORES.forEach(ignore -> ignores.add(Pattern.compile(toRegex(ignore))));
+            RULES.forEach(t -> rules.add(new Rule(t.method(), Pattern.compile(toRegex(t.template())), t.action())));
+        }
+
+        private static String toRegex(String template) {
+            return template.replace("{word}", "(\\w+)").replace("{slug}", "([\\w-]+)").replace("{num}", "(\\d+)");
+        }
+
+        String lookup(String method, String path) {
+            for (Pattern ignore : ignores) {
+                if (ignore.matcher(path).find()) return "IGNORED";
+            }
+            for (Rule rule : rules) {
+                if (!rule.method().equals(method)) continue;
+                Matcher matcher = rule.pattern().matcher(path);
+                if (matcher.find()) {
+                    return rule.action() + ":" + (matcher.groupCount() > 0 ? matcher.group(1) : null);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static String randomPath(Random random) {
+        StringBuilder path = new StringBuilder();
+        int segments = 1 + random.nextInt(6);
+        for (int i = 0; i < segments; i++) {
+            path.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        return path.toString();
+    }
+
+    @Test
+    void matchesExpectedTable() {
+        AuditRouteTable table = trie();
+        for (String[] c : CASES) {
+            assertThat(describe(table.lookup(c[0], c[1])))
+                    .as("%s %s", c[0], c[1])
+                    .isEqualTo(c[2]);
+        }
+    }
+
+    @Test
+    void agreesWithLinearRegexLookup() {
+        AuditRouteTable table = trie();
+        LinearTable linear = new LinearTable();
+        for (String[] c : CASES) {
+            assertThat(describe(table.lookup(c[0], c[1])))
+                    .as("%s %s", c[0], c[1])
+                    .isEqualTo(linear.lookup(c[0], c[1]));
+        }
+        Random random = new Random(20261017L);
+        for (int i = 0; i < 200_000; i++) {
+            String method = METHODS[random.nextInt(METHODS.length)];
+            String path = randomPath(random);
+            assertThat(describe(table.lookup(method, path)))
+                    .as("%s %s", method, path)
+                    .isEqualTo(linear.lookup(method, path));
+        }
+    }
+
+    @Test
+    void rejectsUnsupportedTemplates() {
+        assertThat(catchInvalid("posts")).isTrue();
+        assertThat(catchInvalid("/posts//x")).isTrue();
+        assertThat(catchInvalid("/posts/{word}/{num}")).isTrue();
+        assertThat(catchInvalid("/posts/{id}")).isTrue();
+    }
+
+    private static boolean catchInvalid(String template) {
+        try {
+            AuditRouteTable.builder().rule("POST", template, id -> null);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "audit.bench", matches = "true")
+    void benchmark() {
+        AuditRouteTable table = trie();
+        LinearTable linear = new LinearTable();
+        Random random = new Random(1L);
+        int size = 4096;
+        String[] methods = new String[size];
+        String[] paths = new String[size];
+        for (int i = 0; i < size; i++) {
+            // Phần lớn request thật là GET/POST
+            methods[i] = random.nextInt(4) == 0 ? METHODS[random.nextInt(METHODS.length)] : (random.nextBoolean() ? "GET" : "POST");
+            paths[i] = "/api" + randomPath(random);
+        }
+        int rounds = 2_000;
+        for (int warmup = 0; warmup < 3; warmup++) {
+            time(rounds, size, i -> table.lookup(methods[i], paths[i]));
+            time(rounds, size, i -> linear.lookup(methods[i], paths[i]));
+        }
+        double trieNanos = time(rounds, size, i -> table.lookup(methods[i], paths[i]));
+        double linearNanos = time(rounds, size, i -> linear.lookup(methods[i], paths[i]));
+        System.out.printf("audit route lookup: linear %.1f ns/op, trie %.1f ns/op%n", linearNanos, trieNanos);
+    }
+
+    private interface Lookup {
+        Object run(int index);
+    }
+
+    private static double time(int rounds, int size, Lookup lookup) {
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < size; i++) {
+                Object result = lookup.run(i);
+                if (result != null) sink++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == -1) System.out.println();
+        return (double) elapsed / ((long) rounds * size);
+    }
+}
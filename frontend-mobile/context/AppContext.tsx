@@ -448,15 +448,15 @@ export function AppProvider({ children }: PropsWithChildren) {
       }
 
       if (cancelled) return;
-      const destination = `/topic/user/${currentUser.id}/notifications`;
-      chatWebsocketService.subscribeToTopic(destination, (body) => {
+      chatWebsocketService.subscribeToNotifications(currentUser.id, (body) => {
         try {
           const notification = normalizeNotification(
             JSON.parse(body) as AppNotification
           );
+          // Thông báo gộp giữ nguyên id: thay bản cũ và đưa lên đầu danh sách
           setNotifications((prev) => {
-            if (prev.some((item) => item.id === notification.id)) return prev;
-            return [notification, ...prev].slice(0, 50);
+            const rest = prev.filter((item) => item.id !== notification.id);
+            return [notification, ...rest].slice(0, 50);
           });
         } catch {
           // no-op
@@ -468,9 +468,7 @@ export function AppProvider({ children }: PropsWithChildren) {
 
     return () => {
       cancelled = true;
-      chatWebsocketService.unsubscribeFromTopic(
-        `/topic/user/${currentUser.id}/notifications`
-      );
+      chatWebsocketService.unsubscribeFromNotifications(currentUser.id);
     };
   }, [loggedIn, currentUser?.id]);
 
@@ -273,6 +273,21 @@ class ChatWebsocketService {
         return this.presenceLoginPhone ? { login: this.presenceLoginPhone } : undefined;
     }
 
+    /**
+     * Destination thực tế của kênh riêng theo user (conversations, presence, notifications).
+     * - Kết nối có header "login" (backend gắn principal): /user/queue/{channel},
+     *   backend gửi thẳng tới session thay vì fan-out /topic/user/{id}/{channel} cho từng member
+     * - Chưa có login: kênh cũ /topic/user/{id}/{channel}, chỉ nhận được khi backend còn bật
+     *   app.realtime.legacy-user-topics
+     * Key lưu subscription vẫn là /topic/user/{id}/{channel}; destination được tính lại mỗi lần
+     * (re)subscribe nên sau khi setPresenceIdentity reconnect sẽ tự chuyển sang /user/queue.
+     */
+    getUserChannelDestination(userId: number | string, channel: string): string {
+        return this.presenceLoginPhone
+            ? `/user/queue/${channel}`
+            : `/topic/user/${userId}/${channel}`;
+    }
+
     private startPresenceHeartbeat(): void {
         this.stopPresenceHeartbeat();
         if (!this.presenceLoginPhone) return;
@@ -1046,7 +1061,7 @@ class ChatWebsocketService {
                 throw new Error("WebSocket not connected");
             }
 
-            return client.subscribe(destination, (message: IMessage) => {
+            return client.subscribe(this.getUserChannelDestination(currentUserId, "presence"), (message: IMessage) => {
                 try {
                     const raw = JSON.parse(message.body);
                     const payload = raw?.payload ?? raw?.data ?? raw;
@@ -1109,7 +1124,7 @@ class ChatWebsocketService {
                 throw new Error("WebSocket not connected");
             }
 
-            return client.subscribe(destination, (message: IMessage) => {
+            return client.subscribe(this.getUserChannelDestination(userId, "conversations"), (message: IMessage) => {
                 try {
                     const rawPayload = JSON.parse(message.body) as
                         | UserConversationEvent
@@ -1362,6 +1377,28 @@ class ChatWebsocketService {
         this.removeSubscription(destination);
     }
 
+    /**
+     * Thông báo realtime của user: subscribe /user/queue/notifications khi đã có login,
+     * ngược lại dùng kênh cũ /topic/user/{id}/notifications (xem getUserChannelDestination).
+     */
+    subscribeToNotifications(
+        userId: number | string,
+        onMessage: (body: string) => void,
+    ): void {
+        const key = `/topic/user/${userId}/notifications`;
+        this.registerSubscription(key, () => {
+            const client = this.client;
+            if (!client?.connected) throw new Error("WebSocket not connected");
+            return client.subscribe(this.getUserChannelDestination(userId, "notifications"), (msg: IMessage) => {
+                onMessage(msg.body);
+            });
+        });
+    }
+
+    unsubscribeFromNotifications(userId: number | string): void {
+        this.removeSubscription(`/topic/user/${userId}/notifications`);
+    }
+
 
     /**
      * Subscribe to GROUP_DISBANDED events for a specific conversation.
@@ -1384,7 +1421,7 @@ class ChatWebsocketService {
 
             // Không subscribe STOMP mới — chỉ forward từ topic gốc.
             // Thay vào đó ta tạo một subscriber độc lập lên cùng topic.
-            return client.subscribe(destination, (message: IMessage) => {
+            return client.subscribe(this.getUserChannelDestination(userId, "conversations"), (message: IMessage) => {
                 try {
                     const payload = JSON.parse(message.body) as {
                         domainEventType?: string;
@@ -221,6 +221,8 @@ export interface Notification {
     id: string;
     recipientId: string;
     actorIds: string[];
+    // Tổng số người thực hiện; actorIds chỉ giữ vài người gần nhất
+    actorCount?: number;
     type: NotificationType;
     targetType?: TargetType;
     targetId?: string;
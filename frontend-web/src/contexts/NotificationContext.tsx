@@ -1,4 +1,4 @@
-import React, { createContext, useContext, useState, useEffect, useCallback } from "react";
+import React, { createContext, useContext, useState, useEffect, useCallback, useRef } from "react";
 import { useCurrentUser } from "../hooks/useCurrentUser";
 import { getNotifications, getUnreadCount, markAsRead as apiMarkAsRead, markAllAsRead as apiMarkAllAsRead } from "../services/notificationService";
 import websocketService from "../services/websocket";
@@ -19,6 +19,8 @@ const NotificationContext = createContext<NotificationContextType | undefined>(u
 export const NotificationProvider: React.FC<{ children: React.ReactNode }> = ({ children }) => {
   const currentUser = useCurrentUser();
   const [notifications, setNotifications] = useState<Notification[]>([]);
+  const notificationsRef = useRef<Notification[]>([]);
+  notificationsRef.current = notifications;
   const [unreadCount, setUnreadCount] = useState(0);
   const [loading, setLoading] = useState(false);
 
@@ -49,17 +51,21 @@ export const NotificationProvider: React.FC<{ children: React.ReactNode }> = ({
     if (!currentUser?.id) return;
 
     const userId = currentUser.id.toString();
-    const destination = `/topic/user/${userId}/notifications`;
+    // Tính khi đã kết nối: lúc đó AuthProvider đã gắn login nên nhận qua /user/queue/notifications
+    let destination: string | null = null;
     
     const handleNewNotification = (notification: Notification) => {
       console.log("🔔 [FRONTEND-NOTI] Received Real-time:", notification);
       
+      // Thông báo gộp (nhiều người cùng react/comment) được gửi lại cùng id -> thay bản cũ, không tăng unread
+      const isUpdate = notificationsRef.current.some(n => n.id === notification.id);
+
       setNotifications((prev) => {
-        if (prev.some(n => n.id === notification.id)) return prev;
-        return [notification, ...prev].slice(0, 50);
+        const rest = prev.filter(n => n.id !== notification.id);
+        return [notification, ...rest].slice(0, 50);
       });
 
-      if (!notification.isRead) {
+      if (!notification.isRead && !isUpdate) {
         setUnreadCount((prev) => prev + 1);
       }
     };
@@ -69,6 +75,7 @@ export const NotificationProvider: React.FC<{ children: React.ReactNode }> = ({
 
     const attemptSubscription = () => {
       if (websocketService.isConnected()) {
+        destination = websocketService.getUserChannelDestination(userId, "notifications");
         console.log("🔔 [FRONTEND-NOTI] WebSocket connected, subscribing to:", destination);
         websocketService.subscribeToTopic(destination, handleNewNotification);
         subscriptionAttempted = true;
@@ -88,6 +95,7 @@ export const NotificationProvider: React.FC<{ children: React.ReactNode }> = ({
 
     return () => {
       if (intervalId) clearInterval(intervalId);
+      if (!destination) return;
       console.log("🔔 [FRONTEND-NOTI] Unsubscribing from:", destination);
       websocketService.unsubscribeFromTopic(destination);
     };
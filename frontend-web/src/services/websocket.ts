@@ -470,6 +470,21 @@ class WebSocketService {
         return this.presenceLoginPhone ? { login: this.presenceLoginPhone } : undefined;
     }
 
+    /**
+     * Destination thực tế của kênh riêng theo user (conversations, presence, notifications).
+     * - Kết nối có header "login" (backend gắn principal): /user/queue/{channel},
+     *   backend gửi thẳng tới session thay vì fan-out /topic/user/{id}/{channel} cho từng member
+     * - Chưa có login: kênh cũ /topic/user/{id}/{channel}, chỉ nhận được khi backend còn bật
+     *   app.realtime.legacy-user-topics
+     * Key lưu subscription vẫn là /topic/user/{id}/{channel} để subscribe/unsubscribe không đổi;
+     * destination được tính lại mỗi lần (re)subscribe.
+     */
+    getUserChannelDestination(userId: number | string, channel: string): string {
+        return this.presenceLoginPhone
+            ? `/user/queue/${channel}`
+            : `/topic/user/${userId}/${channel}`;
+    }
+
     private startPresenceHeartbeat() {
         this.stopPresenceHeartbeat();
         if (!this.presenceLoginPhone) return;
@@ -1072,7 +1087,7 @@ class WebSocketService {
             }
 
             return client.subscribe(
-            destination,
+            this.getUserChannelDestination(userId, "conversations"),
             (message: IMessage) => {
                 try {
                     const payload = JSON.parse(message.body) as
@@ -1324,7 +1339,8 @@ class WebSocketService {
         const existingSubscription = this.subscriptions.get(destination);
         if (existingSubscription) return;
 
-        const subscription = this.client.subscribe(destination, (message: IMessage) => {
+        const target = this.getUserChannelDestination(currentUserId, "presence");
+        const subscription = this.client.subscribe(target, (message: IMessage) => {
             try {
                 const raw = JSON.parse(message.body);
                 const payload = raw?.payload ?? raw?.data ?? raw;